@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.ahrs;
+
+import java.util.Random;
+
+/**
+ * Measures the time per update of the AHRS filters, with and without the
+ * magnetometer, on synthetic noisy samples. Each filter is warmed up
+ * before timing, and the best of a number of rounds is reported, along with
+ * the update rate that corresponds to. No hardware needed.
+ * 
+ * @author Marcus Hirt
+ */
+public class AhrsBenchmarkTest {
+	private static final int SAMPLES = 100000;
+	private static final int ROUNDS = 20;
+	private static final long PERIOD = 1000000;
+
+	public static void main(String[] args) {
+		float[] samples = new float[SAMPLES * 9];
+		Random random = new Random(4711);
+		for (int i = 0; i < SAMPLES; i++) {
+			int offset = i * 9;
+			for (int axis = 0; axis < 3; axis++) {
+				samples[offset + axis] = (float) random.nextGaussian();
+				samples[offset + 3 + axis] = (float) random.nextGaussian() * 0.1f;
+				samples[offset + 6 + axis] = 0.3f + (float) random.nextGaussian() * 0.01f;
+			}
+			samples[offset + 5] += 9.81f;
+		}
+		run("Madgwick, gyro + accelerometer", new MadgwickAhrs(), samples, false);
+		run("Madgwick, gyro + accelerometer + magnetometer", new MadgwickAhrs(), samples, true);
+		run("Mahony, gyro + accelerometer", new MahonyAhrs(0.5f, 0.1f, 0), samples, false);
+		run("Mahony, gyro + accelerometer + magnetometer", new MahonyAhrs(0.5f, 0.1f, 0), samples, true);
+	}
+
+	private static void run(String name, Ahrs ahrs, float[] samples, boolean magnetometer) {
+		long best = Long.MAX_VALUE;
+		long time = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < SAMPLES; i++) {
+				int offset = i * 9;
+				time += PERIOD;
+				ahrs.onAccelerometer(time, samples[offset + 3], samples[offset + 4], samples[offset + 5]);
+				if (magnetometer) {
+					ahrs.onMagnetometer(time, samples[offset + 6], samples[offset + 7], samples[offset + 8]);
+				}
+				ahrs.onGyro(time, samples[offset], samples[offset + 1], samples[offset + 2]);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		double nanosPerUpdate = best / (double) SAMPLES;
+		System.out.println(String.format("%-48s %6.1f ns/update, %8.0f kHz max (%s)", name, nanosPerUpdate,
+				1e6 / nanosPerUpdate, ahrs));
+	}
+}
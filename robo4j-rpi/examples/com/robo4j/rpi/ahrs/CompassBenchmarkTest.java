@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.ahrs;
+
+import java.util.Random;
+
+import com.robo4j.rpi.geometry.FastMath;
+
+/**
+ * Compares the accuracy and speed of the {@link FastMath} approximations,
+ * and of the {@link TiltCompensatedCompass} heading, with the same
+ * computations done with {@link Math}. No hardware needed.
+ * 
+ * @author Marcus Hirt
+ */
+public class CompassBenchmarkTest {
+	private static final int SAMPLES = 100000;
+	private static final int ROUNDS = 50;
+
+	private interface Function {
+		float apply(float[] samples, int offset);
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(4711);
+		float[] samples = new float[SAMPLES * 6];
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = (float) random.nextGaussian();
+		}
+		// Keep the accelerometer mostly upright
+		for (int i = 0; i < SAMPLES; i++) {
+			samples[i * 6 + 2] += 9.81f;
+		}
+
+		compare("atan2", samples, new Function() {
+			@Override
+			public float apply(float[] samples, int offset) {
+				return (float) Math.atan2(samples[offset], samples[offset + 1]);
+			}
+		}, new Function() {
+			@Override
+			public float apply(float[] samples, int offset) {
+				return FastMath.atan2(samples[offset], samples[offset + 1]);
+			}
+		});
+		compare("asin", samples, new Function() {
+			@Override
+			public float apply(float[] samples, int offset) {
+				return (float) Math.asin(clamp(samples[offset] / 4));
+			}
+		}, new Function() {
+			@Override
+			public float apply(float[] samples, int offset) {
+				return FastMath.asin(clamp(samples[offset] / 4));
+			}
+		});
+		compare("heading", samples, new Function() {
+			@Override
+			public float apply(float[] samples, int offset) {
+				return heading(samples[offset], samples[offset + 1], samples[offset + 2], samples[offset + 3],
+						samples[offset + 4], samples[offset + 5]);
+			}
+		}, new Function() {
+			@Override
+			public float apply(float[] samples, int offset) {
+				return TiltCompensatedCompass.computeMagneticHeading(samples[offset], samples[offset + 1],
+						samples[offset + 2], samples[offset + 3], samples[offset + 4], samples[offset + 5]);
+			}
+		});
+	}
+
+	/**
+	 * The straightforward tilt compensation, with java.lang.Math.
+	 */
+	private static float heading(float ax, float ay, float az, float mx, float my, float mz) {
+		// In the x forward, y right, z down frame
+		ax = -ax;
+		my = -my;
+		mz = -mz;
+		double roll = Math.atan2(ay, az);
+		double pitch = Math.asin(-ax / Math.sqrt(ax * ax + ay * ay + az * az));
+		double horizontalX = mx * Math.cos(pitch) + (my * Math.sin(roll) + mz * Math.cos(roll)) * Math.sin(pitch);
+		double horizontalY = my * Math.cos(roll) - mz * Math.sin(roll);
+		return (float) Math.atan2(-horizontalY, horizontalX);
+	}
+
+	private static float clamp(float x) {
+		return Math.max(-1, Math.min(1, x));
+	}
+
+	private static void compare(String name, float[] samples, Function exact, Function fast) {
+		double maxError = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			double error = Math.abs(exact.apply(samples, i * 6) - fast.apply(samples, i * 6));
+			// Headings wrapping around at +-pi
+			maxError = Math.max(maxError, Math.min(error, 2 * Math.PI - error));
+		}
+		double exactNanos = time(samples, exact);
+		double fastNanos = time(samples, fast);
+		System.out.println(String.format("%-8s Math %6.1f ns, FastMath %6.1f ns, %4.1fx, max error %.2e degrees",
+				name, exactNanos, fastNanos, exactNanos / fastNanos, Math.toDegrees(maxError)));
+	}
+
+	private static double time(float[] samples, Function function) {
+		long best = Long.MAX_VALUE;
+		float sink = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < SAMPLES; i++) {
+				sink += function.apply(samples, i * 6);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		if (sink == Float.MAX_VALUE) {
+			System.out.println(sink);
+		}
+		return best / (double) SAMPLES;
+	}
+}
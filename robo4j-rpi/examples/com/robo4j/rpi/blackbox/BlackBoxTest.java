@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.DataRate;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.FullScale;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.PowerMode;
+import com.robo4j.rpi.i2c.bmp.BMP085Device;
+import com.robo4j.rpi.i2c.bmp.BMP085Device.OperatingMode;
+import com.robo4j.rpi.i2c.gyro.GyroL3GD20Device;
+import com.robo4j.rpi.i2c.gyro.GyroL3GD20Device.Sensitivity;
+import com.robo4j.rpi.sampling.SamplingEngine;
+
+/**
+ * Records the gyro and accelerometer at 200 Hz, and the barometer at about 2
+ * Hz, to a black box recording. Kill it at any time, and run it again with
+ * the argument -dump to see what was recorded, or with -replay to replay the
+ * gyro in real time.
+ * 
+ * @author Marcus Hirt
+ */
+public class BlackBoxTest {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		File file = new File("robot.bbx");
+		if (args.length > 0 && args[0].equals("-dump")) {
+			dump(file);
+			return;
+		}
+		if (args.length > 0 && args[0].equals("-replay")) {
+			replay(file);
+			return;
+		}
+
+		System.out.println("Initializing...");
+		BlackBoxRecorder recorder = new BlackBoxRecorder(file);
+		SamplingEngine engine = new SamplingEngine();
+		engine.add("gyro", new RecordingFloat3DDevice(new GyroL3GD20Device(Sensitivity.DPS_245), recorder, "gyro"), 200);
+		engine.add("accelerometer", new RecordingFloat3DDevice(
+				new AccelerometerLSM303Device(PowerMode.NORMAL, DataRate.HZ_400, FullScale.G_2, true), recorder,
+				"accelerometer"), 200);
+		RecordingBarometer barometer = new RecordingBarometer(new BMP085Device(OperatingMode.STANDARD), recorder, "baro");
+		engine.start();
+		System.out.println("Recording to " + file + ". Press Ctrl-C to stop.");
+		while (true) {
+			barometer.readPressure();
+			// Make sure the recording survives a power loss
+			recorder.force();
+			Thread.sleep(500);
+			System.out.println(recorder);
+		}
+	}
+
+	private static void replay(File file) throws IOException {
+		try (BlackBoxReplay replay = new BlackBoxReplay(new BlackBoxReader(file))) {
+			ReplayFloat3DDevice gyro = new ReplayFloat3DDevice(replay, "gyro");
+			Float3D value = new Float3D();
+			while (true) {
+				gyro.read(value);
+				System.out.println(value);
+				Thread.sleep(100);
+			}
+		} catch (EOFException e) {
+			System.out.println("End of recording");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void dump(File file) throws IOException {
+		final BlackBoxReader reader = new BlackBoxReader(file);
+		System.out.println(reader);
+		reader.read(new RecordHandler() {
+			@Override
+			public void onFloat3D(BlackBoxChannel channel, long timestamp, float x, float y, float z) {
+				System.out.println(String.format("%d %s x:%2.3f, y:%2.3f, z:%2.3f", reader.toEpochMillis(timestamp),
+						channel.getName(), x, y, z));
+			}
+
+			@Override
+			public void onRaw(BlackBoxChannel channel, long timestamp, int x, int y, int z) {
+				System.out.println(String.format("%d %s x:%2.3f, y:%2.3f, z:%2.3f", reader.toEpochMillis(timestamp),
+						channel.getName(), x * channel.getScale().getX(), y * channel.getScale().getY(),
+						z * channel.getScale().getZ()));
+			}
+
+			@Override
+			public void onScalar(BlackBoxChannel channel, long timestamp, float value) {
+				System.out.println(String.format("%d %s %2.3f", reader.toEpochMillis(timestamp), channel.getName(), value));
+			}
+		});
+		System.out.println("Corrupt records: " + reader.getCorruptRecords());
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+
+import com.pi4j.io.i2c.I2CBus;
+
+/**
+ * Discovers the devices on I2C bus 1, keeping the inventory in
+ * devices.inventory in the working directory, and then starts all the
+ * recognized devices. Run twice to see the difference between scanning and
+ * verifying.
+ * 
+ * @author Marcus Hirt
+ */
+public class DeviceDiscoveryTest {
+	public static void main(String[] args) throws IOException {
+		long start = System.nanoTime();
+		DeviceInventory inventory = new DeviceDiscovery().discover(new File("devices.inventory"), I2CBus.BUS_1);
+		System.out.println(String.format("Discovery took %d ms", (System.nanoTime() - start) / 1000000));
+		System.out.println(inventory);
+
+		DeviceManager manager = new DeviceManager(inventory.toConfiguration());
+		try {
+			manager.start().join();
+		} catch (CompletionException e) {
+			System.out.println(e.getCause().getMessage());
+		}
+		System.out.println(manager);
+	}
+}
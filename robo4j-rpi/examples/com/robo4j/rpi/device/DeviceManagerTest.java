@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Brings up all the devices in the configuration file given as argument, and
+ * prints how long each device took to start.
+ * 
+ * @see DeviceConfiguration
+ * 
+ * @author Marcus Hirt
+ */
+public class DeviceManagerTest {
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: DeviceManagerTest <devices.properties>");
+			return;
+		}
+		DeviceConfiguration configuration;
+		try (InputStream in = new FileInputStream(args[0])) {
+			configuration = DeviceConfiguration.load(in);
+		}
+		DeviceManager manager = new DeviceManager(configuration);
+		System.out.println("Starting devices...");
+		try {
+			manager.start().join();
+		} catch (CompletionException e) {
+			System.out.println(e.getCause().getMessage());
+		}
+		System.out.println(manager);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.gyro.GyroL3GD20Device;
+import com.robo4j.rpi.i2c.gyro.GyroL3GD20Device.Sensitivity;
+import com.robo4j.rpi.i2c.lidar.LidarLiteDevice;
+import com.robo4j.rpi.sampling.SamplingEngine;
+import com.robo4j.rpi.serial.gps.GPS;
+
+/**
+ * Publishes the gyro at 200 Hz, the lidar at 10 Hz and the GPS onto an event
+ * bus. One consumer integrates the gyro, and a second one, depending on the
+ * first, prints the lidar and GPS events along with the integrated angle.
+ * 
+ * @author Marcus Hirt
+ */
+public class EventBusTest {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		System.out.println("Initializing...");
+		EventBus bus = new EventBus();
+		final float[] angle = new float[3];
+		EventConsumer integrator = bus.addConsumer("integrator", new EventHandler() {
+			private long lastTimestamp;
+
+			@Override
+			public void onEvent(SensorEvent event, long sequence, boolean endOfBatch) {
+				if (!"gyro".equals(event.getSource())) {
+					return;
+				}
+				if (lastTimestamp != 0) {
+					float dt = (event.getTimestamp() - lastTimestamp) / 1e9f;
+					angle[0] += event.getX() * dt;
+					angle[1] += event.getY() * dt;
+					angle[2] += event.getZ() * dt;
+				}
+				lastTimestamp = event.getTimestamp();
+			}
+		});
+		bus.addConsumer("printer", new EventHandler() {
+			@Override
+			public void onEvent(SensorEvent event, long sequence, boolean endOfBatch) {
+				if (event.getType() != SensorEvent.Type.FLOAT3D) {
+					System.out.println(String.format("%s %s: %.6f, %.6f (angle z:%2.3f)", event.getType(),
+							event.getSource(), event.getX(), event.getY(), angle[2]));
+				}
+			}
+		}, integrator);
+
+		SamplingEngine engine = new SamplingEngine();
+		engine.add("gyro", new PublishingFloat3DDevice(new GyroL3GD20Device(Sensitivity.DPS_245), bus, "gyro"), 200);
+		PublishingRangeFinder lidar = new PublishingRangeFinder(new LidarLiteDevice(), bus, "lidar");
+		GPS gps = new GPS();
+		gps.addListener(new GPSPublisher(bus, "gps"));
+		bus.start();
+		engine.start();
+		while (true) {
+			lidar.acquireRange();
+			Thread.sleep(100);
+			lidar.readDistance();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+import java.util.Random;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * Measures the time per sample of the filters, run over a block of noisy
+ * samples in a float array and one sample at a time through a
+ * {@link Float3D}. No hardware needed.
+ * 
+ * @author Marcus Hirt
+ */
+public class FilterBenchmarkTest {
+	private static final int SAMPLES = 100000;
+	private static final int ROUNDS = 20;
+
+	private interface FilterFactory {
+		Float3DFilter create();
+	}
+
+	public static void main(String[] args) {
+		float[] input = new float[SAMPLES * 3];
+		Random random = new Random(4711);
+		for (int i = 0; i < input.length; i++) {
+			input[i] = (float) (Math.sin(i / 300.0) + random.nextGaussian() * 0.1);
+		}
+
+		run("Moving average (16)", input, new FilterFactory() {
+			@Override
+			public Float3DFilter create() {
+				return new MovingAverageFilter(16);
+			}
+		});
+		run("Exponential", input, new FilterFactory() {
+			@Override
+			public Float3DFilter create() {
+				return ExponentialFilter.forCutoff(400, 10);
+			}
+		});
+		run("Biquad low-pass", input, new FilterFactory() {
+			@Override
+			public Float3DFilter create() {
+				return BiquadFilter.lowPass(400, 10);
+			}
+		});
+		run("Biquad high-pass", input, new FilterFactory() {
+			@Override
+			public Float3DFilter create() {
+				return BiquadFilter.highPass(400, 1);
+			}
+		});
+		run("Median (5)", input, new FilterFactory() {
+			@Override
+			public Float3DFilter create() {
+				return new MedianFilter(5);
+			}
+		});
+		run("Median, biquad, decimate by 4", input, new FilterFactory() {
+			@Override
+			public Float3DFilter create() {
+				return new FilterChain(new MedianFilter(5), BiquadFilter.lowPass(400, 40), new Decimator(4));
+			}
+		});
+	}
+
+	private static void run(String name, float[] input, FilterFactory factory) {
+		float[] samples = new float[input.length];
+		Float3D sample = new Float3D();
+		Float3DFilter arrayFilter = factory.create();
+		Float3DFilter vectorFilter = factory.create();
+		long arrayNanos = Long.MAX_VALUE;
+		long vectorNanos = Long.MAX_VALUE;
+		double checksum = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			System.arraycopy(input, 0, samples, 0, input.length);
+			long start = System.nanoTime();
+			int count = arrayFilter.filter(samples, 0, SAMPLES);
+			arrayNanos = Math.min(arrayNanos, System.nanoTime() - start);
+			checksum += samples[count * 3 / 2];
+
+			start = System.nanoTime();
+			for (int i = 0; i < SAMPLES; i++) {
+				sample.set(input[i * 3], input[i * 3 + 1], input[i * 3 + 2]);
+				vectorFilter.filter(sample);
+				checksum += sample.z;
+			}
+			vectorNanos = Math.min(vectorNanos, System.nanoTime() - start);
+		}
+		System.out.println(String.format("%-32s array: %5.1f ns/sample, Float3D: %5.1f ns/sample (%.1f)", name,
+				arrayNanos / (double) SAMPLES, vectorNanos / (double) SAMPLES, checksum));
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.geometry;
+
+import java.util.Random;
+
+/**
+ * Compares the bulk operations of {@link Float3DArray} with the same
+ * operations done on an array of {@link Float3D}. Each operation is warmed
+ * up before timing, and the best of a number of rounds is reported. No
+ * hardware needed.
+ * 
+ * @author Marcus Hirt
+ */
+public class Float3DArrayBenchmarkTest {
+	private static final int SAMPLES = 50000;
+	private static final int ROUNDS = 200;
+
+	private interface Operation {
+		void run();
+	}
+
+	public static void main(String[] args) {
+		final Float3D[] objects = new Float3D[SAMPLES];
+		final Float3DArray array = new Float3DArray(SAMPLES);
+		Random random = new Random(4711);
+		for (int i = 0; i < SAMPLES; i++) {
+			objects[i] = new Float3D((float) random.nextGaussian(), (float) random.nextGaussian(),
+					(float) random.nextGaussian());
+			array.append(objects[i]);
+		}
+		final Float3D offset = new Float3D(0.001f, -0.001f, 0.002f);
+		final Float3D result = new Float3D();
+		final float[] dots = new float[SAMPLES];
+		final Matrix3 m = new Matrix3();
+		m.setRotationZ(0.001f);
+
+		compare("add", new Operation() {
+			@Override
+			public void run() {
+				for (Float3D f : objects) {
+					f.add(offset);
+				}
+			}
+		}, new Operation() {
+			@Override
+			public void run() {
+				array.add(offset);
+			}
+		});
+		compare("dot", new Operation() {
+			@Override
+			public void run() {
+				for (int i = 0; i < SAMPLES; i++) {
+					dots[i] = objects[i].dot(offset);
+				}
+			}
+		}, new Operation() {
+			@Override
+			public void run() {
+				array.dot(offset, dots);
+			}
+		});
+		compare("mean", new Operation() {
+			@Override
+			public void run() {
+				double x = 0, y = 0, z = 0;
+				for (Float3D f : objects) {
+					x += f.x;
+					y += f.y;
+					z += f.z;
+				}
+				result.set((float) (x / SAMPLES), (float) (y / SAMPLES), (float) (z / SAMPLES));
+			}
+		}, new Operation() {
+			@Override
+			public void run() {
+				array.mean(result);
+			}
+		});
+		compare("min", new Operation() {
+			@Override
+			public void run() {
+				result.set(objects[0]);
+				for (Float3D f : objects) {
+					result.set(Math.min(result.x, f.x), Math.min(result.y, f.y), Math.min(result.z, f.z));
+				}
+			}
+		}, new Operation() {
+			@Override
+			public void run() {
+				array.min(result);
+			}
+		});
+		compare("transform", new Operation() {
+			@Override
+			public void run() {
+				for (Float3D f : objects) {
+					m.transform(f);
+				}
+			}
+		}, new Operation() {
+			@Override
+			public void run() {
+				array.transform(m);
+			}
+		});
+		System.out.println("(" + result + ", " + dots[SAMPLES / 2] + ")");
+	}
+
+	private static void compare(String name, Operation objects, Operation array) {
+		double objectNanos = time(objects);
+		double arrayNanos = time(array);
+		System.out.println(String.format("%-10s Float3D[] %6.2f ns/sample, Float3DArray %6.2f ns/sample, %4.1fx",
+				name, objectNanos, arrayNanos, objectNanos / arrayNanos));
+	}
+
+	private static double time(Operation operation) {
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			operation.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best / (double) SAMPLES;
+	}
+}
@@ -20,6 +20,7 @@ import java.io.IOException;
 
 import com.robo4j.rpi.geometry.Float3D;
 import com.robo4j.rpi.i2c.ReadableDevice;
+import com.robo4j.rpi.stats.Float3DStats;
 
 /**
  * Example useful to check if your accelerometer is working properly.
@@ -38,7 +39,7 @@ public class AccelerometerLSM303Test {
 		print(readValues(device));
 	}
 
-	private static void print(Stats stats) {
+	private static void print(Float3DStats stats) {
 		System.out.println("Result:");
 		System.out.println(stats);
 	}
@@ -49,11 +50,11 @@ public class AccelerometerLSM303Test {
 		System.in.read();
 	}
 
-	private static Stats readValues(ReadableDevice<Float3D> device) throws IOException, InterruptedException {
-		Stats stats = new Stats();
+	private static Float3DStats readValues(ReadableDevice<Float3D> device) throws IOException, InterruptedException {
+		Float3DStats stats = new Float3DStats();
 		for (int i = 0; i < 250; i++) {
 			Float3D fl = device.read();
-			stats.addValue(fl);
+			stats.add(fl);
 			Thread.sleep(20);
 			if (i % 25 == 0) {
 				System.out.print(".");
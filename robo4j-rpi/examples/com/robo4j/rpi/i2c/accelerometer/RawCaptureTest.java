@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.accelerometer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.RawScale;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.DataRate;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.FullScale;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.PowerMode;
+
+/**
+ * Captures a second of raw accelerometer samples at 400 Hz, writes them to a
+ * file as 16 bit integers with the scale in the header, and only then
+ * converts them to floats to print the mean.
+ * 
+ * @author Marcus Hirt
+ */
+public class RawCaptureTest {
+	private static final int SAMPLES = 400;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String fileName = args.length > 0 ? args[0] : "accelerometer.raw";
+		System.out.println("Initializing...");
+		AccelerometerLSM303Device device = new AccelerometerLSM303Device(PowerMode.NORMAL, DataRate.HZ_400,
+				FullScale.G_2, true);
+		short[] raw = new short[SAMPLES * 3];
+		long[] timestamps = new long[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			device.readRaw(raw, i * 3);
+			timestamps[i] = device.getLastSampleTime();
+			Thread.sleep(2);
+		}
+
+		RawScale scale = device.getRawScale();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+			out.writeFloat(scale.getX());
+			out.writeFloat(scale.getY());
+			out.writeFloat(scale.getZ());
+			out.writeInt(SAMPLES);
+			for (int i = 0; i < SAMPLES; i++) {
+				out.writeLong(timestamps[i]);
+				out.writeShort(raw[i * 3]);
+				out.writeShort(raw[i * 3 + 1]);
+				out.writeShort(raw[i * 3 + 2]);
+			}
+		}
+		System.out.println(String.format("Wrote %d samples over %.1f ms to %s", SAMPLES,
+				(timestamps[SAMPLES - 1] - timestamps[0]) / 1e6, fileName));
+
+		float[] values = new float[SAMPLES * 3];
+		scale.apply(raw, 0, values, 0, SAMPLES);
+		float[] mean = new float[3];
+		for (int i = 0; i < SAMPLES; i++) {
+			for (int axis = 0; axis < 3; axis++) {
+				mean[axis] += values[i * 3 + axis] / SAMPLES;
+			}
+		}
+		System.out.println(String.format("Mean: x:%2.3f, y:%2.3f, z:%2.3f", mean[0], mean[1], mean[2]));
+	}
+}
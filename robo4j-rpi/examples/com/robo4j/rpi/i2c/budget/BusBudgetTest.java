@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.budget;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device;
+import com.robo4j.rpi.i2c.gyro.GyroL3GD20Device;
+import com.robo4j.rpi.i2c.magnetometer.MagnetometerLSM303Device;
+import com.robo4j.rpi.i2c.pwm.PWMPCA9685Device;
+
+/**
+ * Checks whether the 10DOF sensors at high data rates, and four servos, fit
+ * on a standard mode bus. No hardware is needed to run this.
+ * 
+ * @author Marcus Hirt
+ */
+public class BusBudgetTest {
+	public static void main(String[] args) {
+		SamplingPlan plan = new SamplingPlan();
+		plan.add("gyro", I2CBus.BUS_1, GyroL3GD20Device.READ_OPERATION, 760, 190);
+		plan.add("accelerometer", I2CBus.BUS_1, AccelerometerLSM303Device.READ_OPERATION, 400, 100);
+		plan.add("magnetometer", I2CBus.BUS_1, MagnetometerLSM303Device.READ_OPERATION, 220, 75);
+		plan.add("servos", I2CBus.BUS_1, PWMPCA9685Device.SET_PWM_OPERATION.times(4), 50);
+
+		BusBudget budget = new BusBudget();
+		System.out.println("Requested plan: " + budget.evaluate(plan));
+		try {
+			budget.admit(plan);
+			System.out.println("Plan admitted");
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			SamplingPlan degraded = budget.degrade(plan);
+			System.out.println("Degraded plan: " + budget.evaluate(degraded));
+			for (SamplingPlan.Entry entry : degraded.getEntries()) {
+				System.out.println("  " + entry);
+			}
+		}
+		budget.setClock(I2CBus.BUS_1, BusBudget.FAST_MODE);
+		System.out.println("In fast mode: " + budget.evaluate(plan));
+	}
+}
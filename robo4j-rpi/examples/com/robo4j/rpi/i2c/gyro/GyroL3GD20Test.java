@@ -18,11 +18,13 @@ package com.robo4j.rpi.i2c.gyro;
 
 import java.io.IOException;
 
+import com.robo4j.rpi.geometry.Float3D;
 import com.robo4j.rpi.i2c.gyro.GyroL3GD20Device.Sensitivity;
 
 /**
- * Simple example which repeatedly reads the gyro. Good for checking that your
- * gyro is working.
+ * Simple example which repeatedly reads the gyro, with the bias removed. Good
+ * for checking that your gyro is working. Keep it still for a few seconds to
+ * let the bias estimate settle.
  * 
  * @author Marcus Hirt
  */
@@ -31,9 +33,12 @@ public class GyroL3GD20Test {
 	public static void main(String[] args) throws IOException, InterruptedException {
 		System.out.println("Initializing...");
 		GyroL3GD20Device device = new GyroL3GD20Device(Sensitivity.DPS_245);
+		BiasCorrectedGyroDevice corrected = new BiasCorrectedGyroDevice(device);
 
+		Float3D bias = new Float3D();
 		while (true) {
-			System.out.println(device.read());
+			Float3D value = corrected.read();
+			System.out.println(value + (corrected.isStationary() ? " (stationary, bias " + corrected.getBias(bias) + ")" : ""));
 			Thread.sleep(200);
 		}
 	}
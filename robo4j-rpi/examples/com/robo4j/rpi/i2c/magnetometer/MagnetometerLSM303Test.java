@@ -17,11 +17,16 @@
 package com.robo4j.rpi.i2c.magnetometer;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
+import com.robo4j.rpi.calibration.EllipsoidCalibratedFloat3DDevice;
 import com.robo4j.rpi.geometry.Float3D;
 
 /**
- * Sanity check every 500ms to see that data is being retrieved.
+ * Sanity check every 500ms to see that data is being retrieved. Move the
+ * sensor around in all directions; the calibration is refined continuously,
+ * and the calibrated field strength should settle to the same value in all
+ * directions.
  * 
  * @author Marcus Hirt
  */
@@ -29,63 +34,18 @@ public class MagnetometerLSM303Test {
 	// FIXME(Marcus/Dec 5, 2016): Verify that this one works.
 	public static void main(String[] args) throws IOException, InterruptedException {
 		MagnetometerLSM303Device device = new MagnetometerLSM303Device();
-
-		Float3D min = new Float3D();
-		min.x = Float.MAX_VALUE;
-		min.y = Float.MAX_VALUE;
-		min.z = Float.MAX_VALUE;
-
-		Float3D max = new Float3D();
-		max.x = Float.MIN_VALUE;
-		max.y = Float.MIN_VALUE;
-		max.z = Float.MIN_VALUE;
-
-		while (true) {
-			Float3D fl = device.read();
-			if (updateMin(min, fl)) {
-				System.out.println("Min: " + fl);
+		EllipsoidCalibratedFloat3DDevice calibrated = new EllipsoidCalibratedFloat3DDevice(device, 5,
+				TimeUnit.SECONDS);
+		calibrated.start();
+
+		Float3D value = new Float3D();
+		for (int i = 0;; i++) {
+			calibrated.read(value);
+			if (i % 25 == 0) {
+				System.out.println(String.format("%s, strength %2.3f, heading %3.0f, calibrations %d", value,
+						value.length(), Math.toDegrees(Math.atan2(value.y, value.x)), calibrated.getUpdates()));
 			}
-			if (updateMax(max, fl)) {
-				System.out.println("Max: " + fl);
-			}
-			Thread.sleep(500);
+			Thread.sleep(20);
 		}
 	}
-
-	private static boolean updateMin(Float3D min, Float3D newVal) {
-		boolean isUpdated = false;
-
-		if (newVal.x < min.x) {
-			min.x = newVal.x;
-			isUpdated = true;
-		}
-		if (newVal.y < min.y) {
-			min.y = newVal.y;
-			isUpdated = true;
-		}
-		if (newVal.z < min.z) {
-			min.z = newVal.z;
-			isUpdated = true;
-		}
-		return isUpdated;
-	}
-
-	private static boolean updateMax(Float3D max, Float3D newVal) {
-		boolean isUpdated = false;
-
-		if (newVal.x > max.x) {
-			max.x = newVal.x;
-			isUpdated = true;
-		}
-		if (newVal.y > max.y) {
-			max.y = newVal.y;
-			isUpdated = true;
-		}
-		if (newVal.z > max.z) {
-			max.z = newVal.z;
-			isUpdated = true;
-		}
-		return isUpdated;
-	}
-
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.mux;
+
+import java.io.IOException;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.DataRate;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.FullScale;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.PowerMode;
+import com.robo4j.rpi.i2c.mux.ChannelTransactionScheduler.Transaction;
+
+/**
+ * Reads two LSM303 accelerometers, connected to channel 0 and 1 of a TCA9548A
+ * at the default address, and prints how many multiplexer switches the reads
+ * cost.
+ * 
+ * @author Marcus Hirt
+ */
+public class TCA9548ATest {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		TCA9548ADevice mux = TCA9548ADevice.getInstance();
+		final AccelerometerLSM303Device left = new AccelerometerLSM303Device(
+				TCA9548ADevice.getVirtualBus(I2CBus.BUS_1, TCA9548ADevice.DEFAULT_ADDRESS, 0), 0x19, PowerMode.NORMAL,
+				DataRate.HZ_100, AccelerometerLSM303Device.AXIS_ENABLE_ALL, FullScale.G_2, false);
+		final AccelerometerLSM303Device right = new AccelerometerLSM303Device(
+				TCA9548ADevice.getVirtualBus(I2CBus.BUS_1, TCA9548ADevice.DEFAULT_ADDRESS, 1), 0x19, PowerMode.NORMAL,
+				DataRate.HZ_100, AccelerometerLSM303Device.AXIS_ENABLE_ALL, FullScale.G_2, false);
+		final Float3D leftValue = new Float3D();
+		final Float3D rightValue = new Float3D();
+		Transaction readLeft = new Transaction() {
+			@Override
+			public void run() throws IOException {
+				left.read(leftValue);
+			}
+		};
+		Transaction readRight = new Transaction() {
+			@Override
+			public void run() throws IOException {
+				right.read(rightValue);
+			}
+		};
+
+		ChannelTransactionScheduler scheduler = new ChannelTransactionScheduler(mux);
+		mux.resetCounters();
+		for (int i = 0; i < 100; i++) {
+			// Submit in the worst possible order - the scheduler will sort it out
+			scheduler.submit(left, readLeft);
+			scheduler.submit(right, readRight);
+			scheduler.submit(left, readLeft);
+			scheduler.flush();
+			Thread.sleep(10);
+		}
+		System.out.println("Left: " + leftValue + " Right: " + rightValue);
+		System.out.println(scheduler);
+		System.out.println(mux);
+	}
+}
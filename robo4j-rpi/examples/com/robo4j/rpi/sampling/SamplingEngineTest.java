@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.sampling;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.DataRate;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.FullScale;
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device.PowerMode;
+import com.robo4j.rpi.i2c.gyro.GyroL3GD20Device;
+import com.robo4j.rpi.i2c.gyro.GyroL3GD20Device.Sensitivity;
+
+/**
+ * Samples the gyro at 200 Hz and the accelerometer at 100 Hz, and prints the
+ * latest values and the timing statistics once a second.
+ * 
+ * @author Marcus Hirt
+ */
+public class SamplingEngineTest {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		System.out.println("Initializing...");
+		SamplingEngine engine = new SamplingEngine();
+		Sampler gyro = engine.add("gyro", new GyroL3GD20Device(Sensitivity.DPS_245), 200);
+		engine.add("accelerometer", new AccelerometerLSM303Device(PowerMode.NORMAL, DataRate.HZ_100, FullScale.G_2, true),
+				100);
+		Float3DRingBuffer.Reader reader = gyro.getBuffer().newReader();
+		final float[] angle = new float[3];
+		final long[] lastTimestamp = { 0 };
+		Float3DRingBuffer.SampleHandler integrator = new Float3DRingBuffer.SampleHandler() {
+			@Override
+			public void onSample(long sequence, long timestamp, float x, float y, float z) {
+				if (lastTimestamp[0] != 0) {
+					float dt = (timestamp - lastTimestamp[0]) / 1e9f;
+					angle[0] += x * dt;
+					angle[1] += y * dt;
+					angle[2] += z * dt;
+				}
+				lastTimestamp[0] = timestamp;
+			}
+		};
+		engine.start();
+		while (true) {
+			for (int i = 0; i < 10; i++) {
+				Thread.sleep(100);
+				reader.drain(integrator, Integer.MAX_VALUE);
+			}
+			System.out.println(String.format("Integrated gyro: x:%2.3f, y:%2.3f, z:%2.3f (lost %d)", angle[0], angle[1],
+					angle[2], reader.getLost()));
+			System.out.println(engine);
+		}
+	}
+}
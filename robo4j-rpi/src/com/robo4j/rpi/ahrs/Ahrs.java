@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.ahrs;
+
+import java.util.concurrent.TimeUnit;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Quaternion;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Base class for attitude and heading reference systems, fusing gyro,
+ * accelerometer and, optionally, magnetometer samples into an orientation,
+ * kept as a unit quaternion.
+ * <p>
+ * Feed the samples at their native rates, with their sample times, using
+ * {@link #onGyro(long, float, float, float)},
+ * {@link #onAccelerometer(long, float, float, float)} and
+ * {@link #onMagnetometer(long, float, float, float)}. Each gyro sample
+ * advances the orientation, corrected by the latest accelerometer sample and
+ * by the latest magnetometer sample if it is recent enough. The time step
+ * is either fixed, for gyros sampled at a steady rate, or taken from the
+ * gyro sample times.
+ * <p>
+ * Updates do not allocate. The filters are not thread safe, so feed them
+ * from a single thread, for example an
+ * {@link com.robo4j.rpi.event.EventBus} consumer.
+ * 
+ * @author Marcus Hirt
+ */
+public abstract class Ahrs {
+	/**
+	 * The default max age of a magnetometer sample used in an update.
+	 */
+	public static final long DEFAULT_MAGNETOMETER_MAX_AGE = TimeUnit.MILLISECONDS.toNanos(200);
+	/**
+	 * Time steps longer than this, in seconds, are clamped, so that a pause
+	 * in the samples does not throw the orientation off.
+	 */
+	public static final float MAX_TIME_STEP = 0.1f;
+
+	private static final float DEG_TO_RAD = (float) (Math.PI / 180);
+
+	// The orientation, as a unit quaternion
+	protected float q0 = 1;
+	protected float q1;
+	protected float q2;
+	protected float q3;
+
+	private final float samplePeriod;
+	private long magnetometerMaxAge = DEFAULT_MAGNETOMETER_MAX_AGE;
+	private long lastGyroTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+	private float ax;
+	private float ay;
+	private float az;
+	private float mx;
+	private float my;
+	private float mz;
+	private long magnetometerTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+	private long updates;
+
+	/**
+	 * @param sampleRate
+	 *            the rate of the gyro samples in Hz, for a fixed time step,
+	 *            or 0 to use the time between the gyro samples.
+	 */
+	protected Ahrs(float sampleRate) {
+		if (sampleRate < 0) {
+			throw new IllegalArgumentException("The sample rate can not be negative, was " + sampleRate);
+		}
+		this.samplePeriod = sampleRate == 0 ? 0 : 1 / sampleRate;
+	}
+
+	/**
+	 * Updates the orientation with a full gyro, accelerometer and
+	 * magnetometer sample.
+	 * 
+	 * @param gx
+	 *            the angular rate around x, in radians/s. Likewise for y and
+	 *            z.
+	 * @param ax
+	 *            the acceleration along x, in any unit. Likewise for y and z.
+	 * @param mx
+	 *            the magnetic field along x, in any unit. Likewise for y and
+	 *            z.
+	 * @param dt
+	 *            the time step, in seconds.
+	 */
+	public abstract void update(float gx, float gy, float gz, float ax, float ay, float az, float mx, float my,
+			float mz, float dt);
+
+	/**
+	 * Updates the orientation with a gyro and accelerometer sample only.
+	 * 
+	 * @see #update(float, float, float, float, float, float, float, float,
+	 *      float, float)
+	 */
+	public abstract void updateImu(float gx, float gy, float gz, float ax, float ay, float az, float dt);
+
+	/**
+	 * Advances the orientation with a gyro sample.
+	 * 
+	 * @param timestamp
+	 *            the sample time, as {@link System#nanoTime()}.
+	 * @param x
+	 *            the angular rate around x, in degrees/s, as read from the
+	 *            gyro. Likewise for y and z.
+	 */
+	public void onGyro(long timestamp, float x, float y, float z) {
+		float dt;
+		if (samplePeriod > 0) {
+			dt = samplePeriod;
+		} else if (lastGyroTime == TimestampedReadableDevice.NO_SAMPLE_TIME) {
+			dt = 0;
+		} else {
+			dt = Math.min((timestamp - lastGyroTime) / 1e9f, MAX_TIME_STEP);
+		}
+		lastGyroTime = timestamp;
+		if (dt <= 0) {
+			return;
+		}
+		float gx = x * DEG_TO_RAD;
+		float gy = y * DEG_TO_RAD;
+		float gz = z * DEG_TO_RAD;
+		if (magnetometerTime != TimestampedReadableDevice.NO_SAMPLE_TIME
+				&& timestamp - magnetometerTime <= magnetometerMaxAge) {
+			update(gx, gy, gz, ax, ay, az, mx, my, mz, dt);
+		} else {
+			updateImu(gx, gy, gz, ax, ay, az, dt);
+		}
+		updates++;
+	}
+
+	/**
+	 * @see #onGyro(long, float, float, float)
+	 */
+	public void onGyro(long timestamp, Float3D value) {
+		onGyro(timestamp, value.x, value.y, value.z);
+	}
+
+	/**
+	 * Sets the acceleration to use in the following updates.
+	 * 
+	 * @param timestamp
+	 *            the sample time, as {@link System#nanoTime()}.
+	 * @param x
+	 *            the acceleration along x, in any unit. Likewise for y and z.
+	 */
+	public void onAccelerometer(long timestamp, float x, float y, float z) {
+		ax = x;
+		ay = y;
+		az = z;
+	}
+
+	/**
+	 * @see #onAccelerometer(long, float, float, float)
+	 */
+	public void onAccelerometer(long timestamp, Float3D value) {
+		onAccelerometer(timestamp, value.x, value.y, value.z);
+	}
+
+	/**
+	 * Sets the magnetic field to use in the following updates.
+	 * 
+	 * @param timestamp
+	 *            the sample time, as {@link System#nanoTime()}.
+	 * @param x
+	 *            the magnetic field along x, in any unit. Likewise for y and
+	 *            z.
+	 */
+	public void onMagnetometer(long timestamp, float x, float y, float z) {
+		mx = x;
+		my = y;
+		mz = z;
+		magnetometerTime = timestamp;
+	}
+
+	/**
+	 * @see #onMagnetometer(long, float, float, float)
+	 */
+	public void onMagnetometer(long timestamp, Float3D value) {
+		onMagnetometer(timestamp, value.x, value.y, value.z);
+	}
+
+	/**
+	 * Sets for how long a magnetometer sample is used. After that, the
+	 * updates only use the gyro and the accelerometer.
+	 */
+	public void setMagnetometerMaxAge(long maxAge, TimeUnit unit) {
+		magnetometerMaxAge = unit.toNanos(maxAge);
+	}
+
+	/**
+	 * Copies the orientation quaternion into an array, as w, x, y and z.
+	 */
+	public void getQuaternion(float[] dst, int offset) {
+		dst[offset] = q0;
+		dst[offset + 1] = q1;
+		dst[offset + 2] = q2;
+		dst[offset + 3] = q3;
+	}
+
+	/**
+	 * Copies the orientation into a quaternion.
+	 * 
+	 * @return dst.
+	 */
+	public Quaternion getQuaternion(Quaternion dst) {
+		dst.set(q0, q1, q2, q3);
+		return dst;
+	}
+
+	/**
+	 * @return the rotation around x, in radians.
+	 */
+	public float getRoll() {
+		return (float) Math.atan2(2 * (q0 * q1 + q2 * q3), 1 - 2 * (q1 * q1 + q2 * q2));
+	}
+
+	/**
+	 * @return the rotation around y, in radians.
+	 */
+	public float getPitch() {
+		float sin = 2 * (q0 * q2 - q3 * q1);
+		return (float) Math.asin(Math.max(-1, Math.min(1, sin)));
+	}
+
+	/**
+	 * @return the rotation around z, in radians.
+	 */
+	public float getYaw() {
+		return (float) Math.atan2(2 * (q0 * q3 + q1 * q2), 1 - 2 * (q2 * q2 + q3 * q3));
+	}
+
+	/**
+	 * Copies the Euler angles, in radians, into a vector, with roll in x,
+	 * pitch in y and yaw in z.
+	 */
+	public void getEulerAngles(Float3D dst) {
+		dst.set(getRoll(), getPitch(), getYaw());
+	}
+
+	/**
+	 * @return the number of updates made.
+	 */
+	public long getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * Resets the orientation to the identity, and forgets all samples.
+	 */
+	public void reset() {
+		q0 = 1;
+		q1 = 0;
+		q2 = 0;
+		q3 = 0;
+		lastGyroTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+		magnetometerTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+		ax = 0;
+		ay = 0;
+		az = 0;
+		updates = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s [roll=%.1f, pitch=%.1f, yaw=%.1f]", getClass().getSimpleName(),
+				Math.toDegrees(getRoll()), Math.toDegrees(getPitch()), Math.toDegrees(getYaw()));
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.ahrs;
+
+import com.robo4j.rpi.geometry.FastMath;
+
+/**
+ * The gradient descent orientation filter by Sebastian Madgwick, "An
+ * efficient orientation filter for inertial and inertial/magnetic sensor
+ * arrays", 2010. A single parameter, beta, trades the gyro against the
+ * accelerometer and magnetometer corrections.
+ * 
+ * @author Marcus Hirt
+ */
+public class MadgwickAhrs extends Ahrs {
+	/**
+	 * The default beta, a good starting point for MEMS sensors.
+	 */
+	public static final float DEFAULT_BETA = 0.1f;
+
+	private volatile float beta;
+
+	/**
+	 * Creates a filter with the default beta, using the time between the gyro
+	 * samples.
+	 */
+	public MadgwickAhrs() {
+		this(DEFAULT_BETA, 0);
+	}
+
+	/**
+	 * @param beta
+	 *            the gain of the correction. Higher values correct gyro
+	 *            drift faster, but let in more accelerometer noise.
+	 * @param sampleRate
+	 *            the rate of the gyro samples in Hz, for a fixed time step,
+	 *            or 0 to use the time between the gyro samples.
+	 */
+	public MadgwickAhrs(float beta, float sampleRate) {
+		super(sampleRate);
+		this.beta = beta;
+	}
+
+	public float getBeta() {
+		return beta;
+	}
+
+	/**
+	 * Changes the gain, for example to converge quickly at startup and then
+	 * settle on a lower value.
+	 */
+	public void setBeta(float beta) {
+		this.beta = beta;
+	}
+
+	@Override
+	public void update(float gx, float gy, float gz, float ax, float ay, float az, float mx, float my, float mz,
+			float dt) {
+		if (mx == 0 && my == 0 && mz == 0) {
+			updateImu(gx, gy, gz, ax, ay, az, dt);
+			return;
+		}
+
+		// Rate of change of the quaternion from the gyro
+		float qDot1 = 0.5f * (-q1 * gx - q2 * gy - q3 * gz);
+		float qDot2 = 0.5f * (q0 * gx + q2 * gz - q3 * gy);
+		float qDot3 = 0.5f * (q0 * gy - q1 * gz + q3 * gx);
+		float qDot4 = 0.5f * (q0 * gz + q1 * gy - q2 * gx);
+
+		if (!(ax == 0 && ay == 0 && az == 0)) {
+			float recipNorm = FastMath.invSqrt(ax * ax + ay * ay + az * az);
+			ax *= recipNorm;
+			ay *= recipNorm;
+			az *= recipNorm;
+			recipNorm = FastMath.invSqrt(mx * mx + my * my + mz * mz);
+			mx *= recipNorm;
+			my *= recipNorm;
+			mz *= recipNorm;
+
+			// Auxiliary variables to avoid repeated arithmetic
+			float _2q0mx = 2 * q0 * mx;
+			float _2q0my = 2 * q0 * my;
+			float _2q0mz = 2 * q0 * mz;
+			float _2q1mx = 2 * q1 * mx;
+			float _2q0 = 2 * q0;
+			float _2q1 = 2 * q1;
+			float _2q2 = 2 * q2;
+			float _2q3 = 2 * q3;
+			float _2q0q2 = 2 * q0 * q2;
+			float _2q2q3 = 2 * q2 * q3;
+			float q0q0 = q0 * q0;
+			float q0q1 = q0 * q1;
+			float q0q2 = q0 * q2;
+			float q0q3 = q0 * q3;
+			float q1q1 = q1 * q1;
+			float q1q2 = q1 * q2;
+			float q1q3 = q1 * q3;
+			float q2q2 = q2 * q2;
+			float q2q3 = q2 * q3;
+			float q3q3 = q3 * q3;
+
+			// Reference direction of the earth's magnetic field
+			float hx = mx * q0q0 - _2q0my * q3 + _2q0mz * q2 + mx * q1q1 + _2q1 * my * q2 + _2q1 * mz * q3
+					- mx * q2q2 - mx * q3q3;
+			float hy = _2q0mx * q3 + my * q0q0 - _2q0mz * q1 + _2q1mx * q2 - my * q1q1 + my * q2q2 + _2q2 * mz * q3
+					- my * q3q3;
+			float _2bx = (float) Math.sqrt(hx * hx + hy * hy);
+			float _2bz = -_2q0mx * q2 + _2q0my * q1 + mz * q0q0 + _2q1mx * q3 - mz * q1q1 + _2q2 * my * q3
+					- mz * q2q2 + mz * q3q3;
+			float _4bx = 2 * _2bx;
+			float _4bz = 2 * _2bz;
+
+			// Gradient descent corrective step
+			float s0 = -_2q2 * (2 * q1q3 - _2q0q2 - ax) + _2q1 * (2 * q0q1 + _2q2q3 - ay)
+					- _2bz * q2 * (_2bx * (0.5f - q2q2 - q3q3) + _2bz * (q1q3 - q0q2) - mx)
+					+ (-_2bx * q3 + _2bz * q1) * (_2bx * (q1q2 - q0q3) + _2bz * (q0q1 + q2q3) - my)
+					+ _2bx * q2 * (_2bx * (q0q2 + q1q3) + _2bz * (0.5f - q1q1 - q2q2) - mz);
+			float s1 = _2q3 * (2 * q1q3 - _2q0q2 - ax) + _2q0 * (2 * q0q1 + _2q2q3 - ay)
+					- 4 * q1 * (1 - 2 * q1q1 - 2 * q2q2 - az)
+					+ _2bz * q3 * (_2bx * (0.5f - q2q2 - q3q3) + _2bz * (q1q3 - q0q2) - mx)
+					+ (_2bx * q2 + _2bz * q0) * (_2bx * (q1q2 - q0q3) + _2bz * (q0q1 + q2q3) - my)
+					+ (_2bx * q3 - _4bz * q1) * (_2bx * (q0q2 + q1q3) + _2bz * (0.5f - q1q1 - q2q2) - mz);
+			float s2 = -_2q0 * (2 * q1q3 - _2q0q2 - ax) + _2q3 * (2 * q0q1 + _2q2q3 - ay)
+					- 4 * q2 * (1 - 2 * q1q1 - 2 * q2q2 - az)
+					+ (-_4bx * q2 - _2bz * q0) * (_2bx * (0.5f - q2q2 - q3q3) + _2bz * (q1q3 - q0q2) - mx)
+					+ (_2bx * q1 + _2bz * q3) * (_2bx * (q1q2 - q0q3) + _2bz * (q0q1 + q2q3) - my)
+					+ (_2bx * q0 - _4bz * q2) * (_2bx * (q0q2 + q1q3) + _2bz * (0.5f - q1q1 - q2q2) - mz);
+			float s3 = _2q1 * (2 * q1q3 - _2q0q2 - ax) + _2q2 * (2 * q0q1 + _2q2q3 - ay)
+					+ (-_4bx * q3 + _2bz * q1) * (_2bx * (0.5f - q2q2 - q3q3) + _2bz * (q1q3 - q0q2) - mx)
+					+ (-_2bx * q0 + _2bz * q2) * (_2bx * (q1q2 - q0q3) + _2bz * (q0q1 + q2q3) - my)
+					+ _2bx * q1 * (_2bx * (q0q2 + q1q3) + _2bz * (0.5f - q1q1 - q2q2) - mz);
+			float norm = s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3;
+			if (norm > 0) {
+				float b = beta * FastMath.invSqrt(norm);
+				qDot1 -= b * s0;
+				qDot2 -= b * s1;
+				qDot3 -= b * s2;
+				qDot4 -= b * s3;
+			}
+		}
+		integrate(qDot1, qDot2, qDot3, qDot4, dt);
+	}
+
+	@Override
+	public void updateImu(float gx, float gy, float gz, float ax, float ay, float az, float dt) {
+		float qDot1 = 0.5f * (-q1 * gx - q2 * gy - q3 * gz);
+		float qDot2 = 0.5f * (q0 * gx + q2 * gz - q3 * gy);
+		float qDot3 = 0.5f * (q0 * gy - q1 * gz + q3 * gx);
+		float qDot4 = 0.5f * (q0 * gz + q1 * gy - q2 * gx);
+
+		if (!(ax == 0 && ay == 0 && az == 0)) {
+			float recipNorm = FastMath.invSqrt(ax * ax + ay * ay + az * az);
+			ax *= recipNorm;
+			ay *= recipNorm;
+			az *= recipNorm;
+
+			float _2q0 = 2 * q0;
+			float _2q1 = 2 * q1;
+			float _2q2 = 2 * q2;
+			float _2q3 = 2 * q3;
+			float _4q0 = 4 * q0;
+			float _4q1 = 4 * q1;
+			float _4q2 = 4 * q2;
+			float _8q1 = 8 * q1;
+			float _8q2 = 8 * q2;
+			float q0q0 = q0 * q0;
+			float q1q1 = q1 * q1;
+			float q2q2 = q2 * q2;
+			float q3q3 = q3 * q3;
+
+			// Gradient descent corrective step
+			float s0 = _4q0 * q2q2 + _2q2 * ax + _4q0 * q1q1 - _2q1 * ay;
+			float s1 = _4q1 * q3q3 - _2q3 * ax + 4 * q0q0 * q1 - _2q0 * ay - _4q1 + _8q1 * q1q1 + _8q1 * q2q2
+					+ _4q1 * az;
+			float s2 = 4 * q0q0 * q2 + _2q0 * ax + _4q2 * q3q3 - _2q3 * ay - _4q2 + _8q2 * q1q1 + _8q2 * q2q2
+					+ _4q2 * az;
+			float s3 = 4 * q1q1 * q3 - _2q1 * ax + 4 * q2q2 * q3 - _2q2 * ay;
+			float norm = s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3;
+			if (norm > 0) {
+				float b = beta * FastMath.invSqrt(norm);
+				qDot1 -= b * s0;
+				qDot2 -= b * s1;
+				qDot3 -= b * s2;
+				qDot4 -= b * s3;
+			}
+		}
+		integrate(qDot1, qDot2, qDot3, qDot4, dt);
+	}
+
+	private void integrate(float qDot1, float qDot2, float qDot3, float qDot4, float dt) {
+		q0 += qDot1 * dt;
+		q1 += qDot2 * dt;
+		q2 += qDot3 * dt;
+		q3 += qDot4 * dt;
+		float recipNorm = FastMath.invSqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+		q0 *= recipNorm;
+		q1 *= recipNorm;
+		q2 *= recipNorm;
+		q3 *= recipNorm;
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.ahrs;
+
+import com.robo4j.rpi.geometry.FastMath;
+
+/**
+ * The complementary filter by Robert Mahony et al, "Nonlinear Complementary
+ * Filters on the Special Orthogonal Group", 2008. The error between the
+ * measured and estimated directions of gravity and the magnetic field is fed
+ * back into the gyro rates through a PI controller, where the integral term
+ * estimates the gyro bias.
+ * 
+ * @author Marcus Hirt
+ */
+public class MahonyAhrs extends Ahrs {
+	/**
+	 * The default proportional gain.
+	 */
+	public static final float DEFAULT_KP = 0.5f;
+	/**
+	 * The default integral gain.
+	 */
+	public static final float DEFAULT_KI = 0.0f;
+
+	private final float kp;
+	private final float ki;
+	// The integral of the error, scaled by ki
+	private float integralX;
+	private float integralY;
+	private float integralZ;
+
+	/**
+	 * Creates a filter with the default gains, using the time between the
+	 * gyro samples.
+	 */
+	public MahonyAhrs() {
+		this(DEFAULT_KP, DEFAULT_KI, 0);
+	}
+
+	/**
+	 * @param kp
+	 *            the proportional gain.
+	 * @param ki
+	 *            the integral gain, or 0 to not estimate the gyro bias.
+	 * @param sampleRate
+	 *            the rate of the gyro samples in Hz, for a fixed time step,
+	 *            or 0 to use the time between the gyro samples.
+	 */
+	public MahonyAhrs(float kp, float ki, float sampleRate) {
+		super(sampleRate);
+		this.kp = kp;
+		this.ki = ki;
+	}
+
+	@Override
+	public void update(float gx, float gy, float gz, float ax, float ay, float az, float mx, float my, float mz,
+			float dt) {
+		if (mx == 0 && my == 0 && mz == 0) {
+			updateImu(gx, gy, gz, ax, ay, az, dt);
+			return;
+		}
+		if (!(ax == 0 && ay == 0 && az == 0)) {
+			float recipNorm = FastMath.invSqrt(ax * ax + ay * ay + az * az);
+			ax *= recipNorm;
+			ay *= recipNorm;
+			az *= recipNorm;
+			recipNorm = FastMath.invSqrt(mx * mx + my * my + mz * mz);
+			mx *= recipNorm;
+			my *= recipNorm;
+			mz *= recipNorm;
+
+			float q0q0 = q0 * q0;
+			float q0q1 = q0 * q1;
+			float q0q2 = q0 * q2;
+			float q0q3 = q0 * q3;
+			float q1q1 = q1 * q1;
+			float q1q2 = q1 * q2;
+			float q1q3 = q1 * q3;
+			float q2q2 = q2 * q2;
+			float q2q3 = q2 * q3;
+			float q3q3 = q3 * q3;
+
+			// Reference direction of the earth's magnetic field
+			float hx = 2 * (mx * (0.5f - q2q2 - q3q3) + my * (q1q2 - q0q3) + mz * (q1q3 + q0q2));
+			float hy = 2 * (mx * (q1q2 + q0q3) + my * (0.5f - q1q1 - q3q3) + mz * (q2q3 - q0q1));
+			float bx = (float) Math.sqrt(hx * hx + hy * hy);
+			float bz = 2 * (mx * (q1q3 - q0q2) + my * (q2q3 + q0q1) + mz * (0.5f - q1q1 - q2q2));
+
+			// Estimated directions of gravity and the magnetic field
+			float halfvx = q1q3 - q0q2;
+			float halfvy = q0q1 + q2q3;
+			float halfvz = q0q0 - 0.5f + q3q3;
+			float halfwx = bx * (0.5f - q2q2 - q3q3) + bz * (q1q3 - q0q2);
+			float halfwy = bx * (q1q2 - q0q3) + bz * (q0q1 + q2q3);
+			float halfwz = bx * (q0q2 + q1q3) + bz * (0.5f - q1q1 - q2q2);
+
+			// The error is the cross product between the estimated and
+			// measured directions
+			float halfex = (ay * halfvz - az * halfvy) + (my * halfwz - mz * halfwy);
+			float halfey = (az * halfvx - ax * halfvz) + (mz * halfwx - mx * halfwz);
+			float halfez = (ax * halfvy - ay * halfvx) + (mx * halfwy - my * halfwx);
+			gx += feedbackX(halfex, dt);
+			gy += feedbackY(halfey, dt);
+			gz += feedbackZ(halfez, dt);
+		}
+		integrate(gx, gy, gz, dt);
+	}
+
+	@Override
+	public void updateImu(float gx, float gy, float gz, float ax, float ay, float az, float dt) {
+		if (!(ax == 0 && ay == 0 && az == 0)) {
+			float recipNorm = FastMath.invSqrt(ax * ax + ay * ay + az * az);
+			ax *= recipNorm;
+			ay *= recipNorm;
+			az *= recipNorm;
+
+			// Estimated direction of gravity
+			float halfvx = q1 * q3 - q0 * q2;
+			float halfvy = q0 * q1 + q2 * q3;
+			float halfvz = q0 * q0 - 0.5f + q3 * q3;
+
+			float halfex = ay * halfvz - az * halfvy;
+			float halfey = az * halfvx - ax * halfvz;
+			float halfez = ax * halfvy - ay * halfvx;
+			gx += feedbackX(halfex, dt);
+			gy += feedbackY(halfey, dt);
+			gz += feedbackZ(halfez, dt);
+		}
+		integrate(gx, gy, gz, dt);
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		integralX = 0;
+		integralY = 0;
+		integralZ = 0;
+	}
+
+	private float feedbackX(float halfError, float dt) {
+		if (ki > 0) {
+			integralX += 2 * ki * halfError * dt;
+		}
+		return integralX + 2 * kp * halfError;
+	}
+
+	private float feedbackY(float halfError, float dt) {
+		if (ki > 0) {
+			integralY += 2 * ki * halfError * dt;
+		}
+		return integralY + 2 * kp * halfError;
+	}
+
+	private float feedbackZ(float halfError, float dt) {
+		if (ki > 0) {
+			integralZ += 2 * ki * halfError * dt;
+		}
+		return integralZ + 2 * kp * halfError;
+	}
+
+	private void integrate(float gx, float gy, float gz, float dt) {
+		gx *= 0.5f * dt;
+		gy *= 0.5f * dt;
+		gz *= 0.5f * dt;
+		float qa = q0;
+		float qb = q1;
+		float qc = q2;
+		q0 += -qb * gx - qc * gy - q3 * gz;
+		q1 += qa * gx + qc * gz - q3 * gy;
+		q2 += qa * gy - qb * gz + q3 * gx;
+		q3 += qa * gz + qb * gy - qc * gx;
+		float recipNorm = FastMath.invSqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+		q0 *= recipNorm;
+		q1 *= recipNorm;
+		q2 *= recipNorm;
+		q3 *= recipNorm;
+	}
+}
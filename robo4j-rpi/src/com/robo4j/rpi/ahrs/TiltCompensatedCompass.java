@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.ahrs;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.geometry.FastMath;
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.ReadableFloat3DDevice;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Compass heading from an accelerometer and a magnetometer, such as the two
+ * halves of an LSM303, compensated for tilt. The roll and pitch taken from
+ * the accelerometer are used to rotate the magnetic field back into the
+ * horizontal plane before the heading is computed, so the heading stays
+ * correct while the robot pitches and rolls, as long as it is not
+ * accelerating much. Uses the same axes as {@link Ahrs}: x forward and z up,
+ * with the accelerometer reading +g on z when level.
+ * <p>
+ * The computation avoids trigonometric functions except for one fast
+ * {@link FastMath#atan2(float, float)}, which adds at most about a
+ * thousandth of a degree of error.
+ * 
+ * @author Marcus Hirt
+ */
+public class TiltCompensatedCompass {
+	private static final float RAD_TO_DEG = (float) (180 / Math.PI);
+	private static final float DEG_TO_RAD = (float) (Math.PI / 180);
+	private static final float TWO_PI = (float) (2 * Math.PI);
+
+	private final ReadableFloat3DDevice accelerometer;
+	private final ReadableFloat3DDevice magnetometer;
+	private final Float3D acceleration = new Float3D();
+	private final Float3D field = new Float3D();
+	private volatile float declination;
+	private long skew;
+
+	/**
+	 * @param accelerometer
+	 *            the accelerometer.
+	 * @param magnetometer
+	 *            the magnetometer, preferably calibrated.
+	 * @param declination
+	 *            the magnetic declination at the location, in degrees, east
+	 *            positive.
+	 */
+	public TiltCompensatedCompass(ReadableFloat3DDevice accelerometer, ReadableFloat3DDevice magnetometer,
+			float declination) {
+		this.accelerometer = accelerometer;
+		this.magnetometer = magnetometer;
+		setDeclination(declination);
+	}
+
+	/**
+	 * Reads both sensors, back to back so that the samples are as close in
+	 * time as the bus allows, and computes the heading.
+	 * 
+	 * @return the heading clockwise from true north, in degrees, in [0, 360).
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	public synchronized float readHeading() throws IOException {
+		magnetometer.read(field);
+		accelerometer.read(acceleration);
+		if (magnetometer instanceof TimestampedReadableDevice
+				&& accelerometer instanceof TimestampedReadableDevice) {
+			skew = ((TimestampedReadableDevice<?>) accelerometer).getLastSampleTime()
+					- ((TimestampedReadableDevice<?>) magnetometer).getLastSampleTime();
+		}
+		return computeHeading(acceleration, field);
+	}
+
+	/**
+	 * Computes the heading from samples read elsewhere.
+	 * 
+	 * @return the heading clockwise from true north, in degrees, in [0, 360).
+	 */
+	public synchronized float computeHeading(Float3D acceleration, Float3D field) {
+		this.acceleration.set(acceleration);
+		float heading = computeMagneticHeading(acceleration.x, acceleration.y, acceleration.z, field.x, field.y,
+				field.z) + declination;
+		if (heading < 0) {
+			heading += TWO_PI;
+		}
+		if (heading >= TWO_PI) {
+			heading -= TWO_PI;
+		}
+		// Tiny negative headings can round up to a full turn
+		float degrees = heading * RAD_TO_DEG;
+		return degrees < 360 ? degrees : 0;
+	}
+
+	/**
+	 * Computes the magnetic heading from an accelerometer and a magnetometer
+	 * sample. The sines and cosines of roll and pitch are taken directly from
+	 * the normalized acceleration, so the only trigonometric function
+	 * evaluated is a {@link FastMath#atan2(float, float)}.
+	 * 
+	 * @return the heading relative to magnetic north, in radians clockwise
+	 *         seen from above, in (-pi, pi].
+	 */
+	public static float computeMagneticHeading(float ax, float ay, float az, float mx, float my, float mz) {
+		float yz = ay * ay + az * az;
+		if (yz == 0) {
+			// Pointing straight up or down, the heading is undefined
+			return 0;
+		}
+		float invYz = FastMath.invSqrt(yz);
+		float invLength = FastMath.invSqrt(yz + ax * ax);
+		// The tilt compensation is done in the x forward, y right, z down
+		// frame, so the samples are mapped to (-ax, ay, az) and
+		// (mx, -my, -mz) on the way in
+		float sinRoll = ay * invYz;
+		float cosRoll = az * invYz;
+		float sinPitch = ax * invLength;
+		float cosPitch = yz * invYz * invLength;
+		// The field rotated back into the horizontal plane
+		float horizontalX = mx * cosPitch - (my * sinRoll + mz * cosRoll) * sinPitch;
+		float horizontalY = mz * sinRoll - my * cosRoll;
+		return FastMath.atan2(-horizontalY, horizontalX);
+	}
+
+	/**
+	 * @return the roll of the last heading computed, in radians.
+	 */
+	public synchronized float getRoll() {
+		return FastMath.atan2(acceleration.y, acceleration.z);
+	}
+
+	/**
+	 * @return the pitch of the last heading computed, in radians.
+	 */
+	public synchronized float getPitch() {
+		float lengthSquared = acceleration.dot(acceleration);
+		if (lengthSquared == 0) {
+			return 0;
+		}
+		return FastMath.asin(Math.max(-1, Math.min(1, -acceleration.x * FastMath.invSqrt(lengthSquared))));
+	}
+
+	/**
+	 * @return the time between the magnetometer and accelerometer samples of
+	 *         the last read, in ns, if both devices provide sample times.
+	 */
+	public synchronized long getLastSkew() {
+		return skew;
+	}
+
+	/**
+	 * @param declination
+	 *            the magnetic declination, in degrees, east positive.
+	 */
+	public void setDeclination(float declination) {
+		this.declination = declination * DEG_TO_RAD;
+	}
+
+	/**
+	 * @return the magnetic declination, in degrees, east positive.
+	 */
+	public float getDeclination() {
+		return declination * RAD_TO_DEG;
+	}
+}
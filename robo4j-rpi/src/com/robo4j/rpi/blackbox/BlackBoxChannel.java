@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import com.robo4j.rpi.i2c.RawScale;
+
+/**
+ * A channel of a black box recording, for example the samples of one device.
+ * 
+ * @author Marcus Hirt
+ */
+public final class BlackBoxChannel {
+	/**
+	 * The kind of samples recorded in a channel.
+	 */
+	public enum Kind {
+		/**
+		 * {@link com.robo4j.rpi.geometry.Float3D} samples.
+		 */
+		FLOAT3D(1),
+		/**
+		 * Raw integer samples, see
+		 * {@link com.robo4j.rpi.i2c.ReadableRawFloat3DDevice}.
+		 */
+		RAW3D(2),
+		/**
+		 * Single float values, for example pressure, distance or servo input.
+		 */
+		SCALAR(3);
+
+		private final int code;
+
+		private Kind(int code) {
+			this.code = code;
+		}
+
+		int getCode() {
+			return code;
+		}
+
+		static Kind fromCode(int code) {
+			for (Kind kind : values()) {
+				if (kind.code == code) {
+					return kind;
+				}
+			}
+			return null;
+		}
+	}
+
+	private final int id;
+	private final String name;
+	private final Kind kind;
+	private final RawScale scale;
+
+	BlackBoxChannel(int id, String name, Kind kind, RawScale scale) {
+		this.id = id;
+		this.name = name;
+		this.kind = kind;
+		this.scale = scale;
+	}
+
+	/**
+	 * @return the id of the channel in the recording, 1-255.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the scale of the raw samples, or null if this is not a
+	 *         {@link Kind#RAW3D} channel.
+	 */
+	public RawScale getScale() {
+		return scale;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d: %s (%s%s)", id, name, kind, scale == null ? "" : ", " + scale);
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Extracts a time range of a black box recording as CSV, one record per line:
+ * epoch millis, seconds since the start of the recording, channel name and
+ * values. Raw records are scaled to device units.
+ * <p>
+ * Usage: java com.robo4j.rpi.blackbox.BlackBoxExtract [-from s] [-to s]
+ * [-channels name,name] &lt;recording&gt;
+ * <p>
+ * The times are in seconds relative to the first record. Negative times are
+ * relative to the last record, so -from -10 extracts the last ten seconds.
+ * 
+ * @author Marcus Hirt
+ */
+public class BlackBoxExtract {
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private final BlackBoxReader reader;
+	private final PrintWriter out;
+
+	public BlackBoxExtract(BlackBoxReader reader, PrintWriter out) {
+		this.reader = reader;
+		this.out = out;
+	}
+
+	/**
+	 * Writes the records in a time range as CSV.
+	 * 
+	 * @param fromSeconds
+	 *            the start of the range, in seconds relative to the first
+	 *            record, or to the last record if negative.
+	 * @param toSeconds
+	 *            the end of the range, in seconds relative to the first
+	 *            record, or to the last record if negative.
+	 * @param channelNames
+	 *            the channels to extract, or none for all.
+	 * @return the number of records written.
+	 */
+	public long extract(double fromSeconds, double toSeconds, String... channelNames) {
+		final long first = reader.getFirstTimestamp();
+		if (first == Long.MIN_VALUE) {
+			return 0;
+		}
+		long last = reader.getLastTimestamp();
+		long from = toTimestamp(fromSeconds, first, last);
+		long to = toTimestamp(toSeconds, first, last);
+		out.println("millis,seconds,channel,x,y,z");
+		long count = reader.query(from, to, new RecordHandler() {
+			@Override
+			public void onFloat3D(BlackBoxChannel channel, long timestamp, float x, float y, float z) {
+				out.println(String.format(Locale.US, "%d,%.6f,%s,%f,%f,%f", reader.toEpochMillis(timestamp),
+						(timestamp - first) / NANOS_PER_SECOND, channel.getName(), x, y, z));
+			}
+
+			@Override
+			public void onRaw(BlackBoxChannel channel, long timestamp, int x, int y, int z) {
+				onFloat3D(channel, timestamp, x * channel.getScale().getX(), y * channel.getScale().getY(),
+						z * channel.getScale().getZ());
+			}
+
+			@Override
+			public void onScalar(BlackBoxChannel channel, long timestamp, float value) {
+				out.println(String.format(Locale.US, "%d,%.6f,%s,%f,,", reader.toEpochMillis(timestamp),
+						(timestamp - first) / NANOS_PER_SECOND, channel.getName(), value));
+			}
+		}, channelNames);
+		out.flush();
+		return count;
+	}
+
+	private static long toTimestamp(double seconds, long first, long last) {
+		if (Double.isInfinite(seconds)) {
+			return seconds > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+		}
+		long nanos = (long) (seconds * NANOS_PER_SECOND);
+		return seconds < 0 ? last + nanos : first + nanos;
+	}
+
+	public static void main(String[] args) throws IOException {
+		double from = Double.NEGATIVE_INFINITY;
+		double to = Double.POSITIVE_INFINITY;
+		String[] channelNames = new String[0];
+		String fileName = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-from")) {
+					from = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-to")) {
+					to = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-channels")) {
+					channelNames = args[++i].split(",");
+				} else if (fileName == null) {
+					fileName = args[i];
+				} else {
+					fileName = null;
+					break;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			fileName = null;
+		}
+		if (fileName == null) {
+			System.out.println("Usage: java " + BlackBoxExtract.class.getName()
+					+ " [-from s] [-to s] [-channels name,name] <recording>");
+			System.exit(2);
+		}
+		try (BlackBoxReader reader = new BlackBoxReader(new File(fileName))) {
+			PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+			long count = new BlackBoxExtract(reader, out).extract(from, to, channelNames);
+			System.err.println(String.format("Extracted %d records (%s)", count,
+					reader.isIndexed() ? "indexed" : "scanned block headers"));
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+/**
+ * The layout of black box recordings, shared by the recorder and the reader.
+ * <p>
+ * A recording starts with a header of {@link #HEADER_SIZE} bytes, holding the
+ * geometry of the file and the channel table, followed by fixed size blocks
+ * used as a ring. Each block starts with a magic, a sequence number (0 for
+ * a block never written) and the timestamp of its first record, followed by
+ * records, followed by a zero byte. A record is:
+ * <ul>
+ * <li>the channel id (1-255),</li>
+ * <li>the zigzag varint delta of the timestamp to the previous record in the
+ * block (to the first timestamp of the block, for the first record),</li>
+ * <li>the payload, as varints: the float bits XOR the previous value in the
+ * channel for float values, or the zigzag delta to the previous value in the
+ * channel for raw values. The previous values are zero at the start of each
+ * block, so that every block can be decoded on its own,</li>
+ * <li>a CRC-8 over all of the above.</li>
+ * </ul>
+ * All multi-byte header fields are big endian.
+ * <p>
+ * Next to the recording, an index file (<i>recording</i>.idx) holds the
+ * sequence number, the first timestamp, the offset and the lowest and highest
+ * timestamp of each block, so that a time range can be found by binary search
+ * without touching the blocks. The bounds are needed since records from
+ * different threads may be slightly out of order, also across blocks.
+ * The block headers are authoritative, the index is only a shortcut.
+ * 
+ * @author Marcus Hirt
+ */
+final class BlackBoxFormat {
+	static final int MAGIC = 0x52344242; // R4BB
+	static final int VERSION = 1;
+	static final int BLOCK_MAGIC = 0x424C4B21; // BLK!
+
+	// Header offsets
+	static final int HEADER_VERSION = 4;
+	static final int HEADER_CHANNEL_COUNT = 6;
+	static final int HEADER_BLOCK_SIZE = 8;
+	static final int HEADER_BLOCK_COUNT = 12;
+	static final int HEADER_START_NANOS = 16;
+	static final int HEADER_START_MILLIS = 24;
+	static final int CHANNEL_TABLE = 64;
+	static final int CHANNEL_ENTRY_SIZE = 64;
+	static final int MAX_CHANNELS = 255;
+	static final int MAX_CHANNEL_NAME_BYTES = 32;
+	// 16 KiB, page aligned
+	static final int HEADER_SIZE = CHANNEL_TABLE + MAX_CHANNELS * CHANNEL_ENTRY_SIZE;
+
+	// Channel entry offsets
+	static final int CHANNEL_ID = 0;
+	static final int CHANNEL_KIND = 1;
+	static final int CHANNEL_NAME_LENGTH = 2;
+	static final int CHANNEL_NAME = 3;
+	static final int CHANNEL_SCALE = 36;
+
+	// Block offsets
+	static final int BLOCK_SEQUENCE = 8;
+	static final int BLOCK_FIRST_TIMESTAMP = 16;
+	static final int BLOCK_HEADER_SIZE = 24;
+
+	// Index layout
+	static final int INDEX_MAGIC = 0x52344249; // R4BI
+	static final int INDEX_BLOCK_COUNT = 4;
+	static final int INDEX_BLOCK_SIZE = 8;
+	static final int INDEX_HEADER_VERSION = 12;
+	static final int INDEX_VERSION = 2;
+	static final int INDEX_HEADER_SIZE = 16;
+	static final int INDEX_ENTRY_SIZE = 40;
+	static final int INDEX_SEQUENCE = 0;
+	static final int INDEX_FIRST_TIMESTAMP = 8;
+	static final int INDEX_OFFSET = 16;
+	static final int INDEX_MIN_TIMESTAMP = 24;
+	static final int INDEX_MAX_TIMESTAMP = 32;
+	static final String INDEX_SUFFIX = ".idx";
+
+	static final int END_OF_BLOCK = 0;
+	// Channel, timestamp, three values and the CRC
+	static final int MAX_RECORD_SIZE = 1 + 10 + 3 * 5 + 1;
+	static final int MIN_BLOCK_SIZE = 1024;
+
+	private static final byte[] CRC_TABLE = new byte[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			int crc = i;
+			for (int bit = 0; bit < 8; bit++) {
+				crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+			}
+			CRC_TABLE[i] = (byte) crc;
+		}
+	}
+
+	private BlackBoxFormat() {
+	}
+
+	static int indexEntryOffset(int block) {
+		return INDEX_HEADER_SIZE + block * INDEX_ENTRY_SIZE;
+	}
+
+	static int blockOffset(int block, int blockSize) {
+		return HEADER_SIZE + block * blockSize;
+	}
+
+	/**
+	 * CRC-8 (polynomial 0x07).
+	 */
+	static byte crc8(byte[] bytes, int offset, int length) {
+		int crc = 0;
+		for (int i = offset; i < offset + length; i++) {
+			crc = crc8Step(crc, bytes[i]);
+		}
+		return (byte) crc;
+	}
+
+	static int crc8Step(int crc, byte b) {
+		return CRC_TABLE[(crc ^ b) & 0xFF] & 0xFF;
+	}
+
+	static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Writes an unsigned varint.
+	 * 
+	 * @return the offset after the varint.
+	 */
+	static int putVarInt(byte[] bytes, int offset, int value) {
+		while ((value & ~0x7F) != 0) {
+			bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Writes an unsigned varint.
+	 * 
+	 * @return the offset after the varint.
+	 */
+	static int putVarLong(byte[] bytes, int offset, long value) {
+		while ((value & ~0x7FL) != 0) {
+			bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[offset++] = (byte) value;
+		return offset;
+	}
+}
@@ -0,0 +1,632 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import static com.robo4j.rpi.blackbox.BlackBoxFormat.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.robo4j.rpi.blackbox.BlackBoxChannel.Kind;
+import com.robo4j.rpi.i2c.RawScale;
+
+/**
+ * Reads a recording made by a {@link BlackBoxRecorder}, oldest block first.
+ * Reading a block stops at the first record failing its CRC, since anything
+ * after it may have been torn by a crash.
+ * <p>
+ * Use {@link #query(long, long, RecordHandler, String...)} to read a time
+ * range. It finds the first block of the range by binary search over the
+ * timestamp bounds in the sparse block index, and only decodes the blocks
+ * overlapping the range. If the index is missing or out of date, the blocks
+ * are scanned for their bounds instead.
+ * 
+ * @author Marcus Hirt
+ */
+public class BlackBoxReader implements Closeable {
+	private static final int PAGE_SIZE = 4096;
+
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private final int blockSize;
+	private final int blockCount;
+	private final long startNanos;
+	private final long startMillis;
+	private final BlackBoxChannel[] channelsById = new BlackBoxChannel[MAX_CHANNELS + 1];
+	private final List<BlackBoxChannel> channels = new ArrayList<>();
+	private final List<Block> blocks = new ArrayList<>();
+	// The highest timestamp in the blocks up to and including a block, and
+	// the lowest in the blocks from a block on. Unlike the bounds of the
+	// blocks themselves, these are sorted, so can be binary searched.
+	private long[] maxUntil = new long[0];
+	private long[] minFrom = new long[0];
+	private boolean indexed;
+	private long corruptRecords;
+
+	/**
+	 * A block in use in the recording.
+	 */
+	public static final class Block {
+		private final int index;
+		private final long sequence;
+		private final long firstTimestamp;
+		private long minTimestamp;
+		private long maxTimestamp;
+
+		Block(int index, long sequence, long firstTimestamp, long minTimestamp, long maxTimestamp) {
+			this.index = index;
+			this.sequence = sequence;
+			this.firstTimestamp = firstTimestamp;
+			this.minTimestamp = minTimestamp;
+			this.maxTimestamp = maxTimestamp;
+		}
+
+		/**
+		 * @return the position of the block in the file.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return the order the block was written in, starting at 1.
+		 */
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * @return the timestamp of the first record of the block.
+		 */
+		public long getFirstTimestamp() {
+			return firstTimestamp;
+		}
+
+		/**
+		 * @return the lowest timestamp in the block. Records may be slightly
+		 *         out of order, so this may be before the first timestamp.
+		 */
+		public long getMinTimestamp() {
+			return minTimestamp;
+		}
+
+		/**
+		 * @return the highest timestamp in the block.
+		 */
+		public long getMaxTimestamp() {
+			return maxTimestamp;
+		}
+	}
+
+	/**
+	 * Opens a recording.
+	 * 
+	 * @param file
+	 *            the recording to read.
+	 * @throws IOException
+	 *             if the file could not be read, or is not a recording.
+	 */
+	public BlackBoxReader(File file) throws IOException {
+		this.file = file;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if (raf.length() < HEADER_SIZE) {
+				throw new IOException(file + " is not a black box recording");
+			}
+			buffer = raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length());
+		}
+		if (buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a black box recording");
+		}
+		if (buffer.getShort(HEADER_VERSION) != VERSION) {
+			throw new IOException("Unsupported black box version " + buffer.getShort(HEADER_VERSION));
+		}
+		blockSize = buffer.getInt(HEADER_BLOCK_SIZE);
+		blockCount = Math.min(buffer.getInt(HEADER_BLOCK_COUNT), (buffer.capacity() - HEADER_SIZE) / blockSize);
+		startNanos = buffer.getLong(HEADER_START_NANOS);
+		startMillis = buffer.getLong(HEADER_START_MILLIS);
+		readChannels();
+		readBlocks();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public List<BlackBoxChannel> getChannels() {
+		return Collections.unmodifiableList(channels);
+	}
+
+	/**
+	 * @return the channels with the specified name. There may be more than
+	 *         one, if for example the scale of a device changed while
+	 *         recording.
+	 */
+	public List<BlackBoxChannel> getChannels(String name) {
+		List<BlackBoxChannel> result = new ArrayList<>();
+		for (BlackBoxChannel channel : channels) {
+			if (channel.getName().equals(name)) {
+				result.add(channel);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the blocks in use, oldest first.
+	 */
+	public List<Block> getBlocks() {
+		return Collections.unmodifiableList(blocks);
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Converts a timestamp in the recording to wall clock time.
+	 * 
+	 * @param timestamp
+	 *            a timestamp in the recording.
+	 * @return the corresponding time, in ms since the epoch.
+	 */
+	public long toEpochMillis(long timestamp) {
+		return startMillis + (timestamp - startNanos) / 1000000;
+	}
+
+	/**
+	 * Reads all records, oldest first.
+	 * 
+	 * @param handler
+	 *            the handler to receive the records.
+	 * @return the number of records read.
+	 */
+	public long read(RecordHandler handler) {
+		return query(Long.MIN_VALUE, Long.MAX_VALUE, handler);
+	}
+
+	/**
+	 * Reads the records in a time range, oldest first.
+	 * 
+	 * @param from
+	 *            the start of the range, inclusive.
+	 * @param to
+	 *            the end of the range, inclusive.
+	 * @param handler
+	 *            the handler to receive the records.
+	 * @param channelNames
+	 *            the names of the channels to read, or none to read all.
+	 * @return the number of records read.
+	 */
+	public long query(long from, long to, RecordHandler handler, String... channelNames) {
+		boolean[] selected = channelNames.length > 0 ? select(channelNames) : null;
+		return query(from, to, handler, selected, 0);
+	}
+
+	/**
+	 * @return the lowest timestamp in the recording, or
+	 *         {@link Long#MIN_VALUE} if the recording is empty.
+	 */
+	public long getFirstTimestamp() {
+		return blocks.isEmpty() ? Long.MIN_VALUE : minFrom[0];
+	}
+
+	/**
+	 * @return the timestamp of the last record, or {@link Long#MIN_VALUE}
+	 *         if the recording is empty.
+	 */
+	public long getLastTimestamp() {
+		final long[] last = { Long.MIN_VALUE };
+		RecordHandler handler = new RecordHandler() {
+			@Override
+			public void onFloat3D(BlackBoxChannel channel, long timestamp, float x, float y, float z) {
+				last[0] = Math.max(last[0], timestamp);
+			}
+
+			@Override
+			public void onRaw(BlackBoxChannel channel, long timestamp, int x, int y, int z) {
+				last[0] = Math.max(last[0], timestamp);
+			}
+
+			@Override
+			public void onScalar(BlackBoxChannel channel, long timestamp, float value) {
+				last[0] = Math.max(last[0], timestamp);
+			}
+		};
+		for (int i = blocks.size() - 1; i >= 0 && last[0] == Long.MIN_VALUE; i--) {
+			read(blocks.get(i), handler);
+		}
+		return last[0];
+	}
+
+	/**
+	 * @return true if the blocks were found using the index file.
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	/**
+	 * Reads the records of one block.
+	 * 
+	 * @param block
+	 *            the block to read.
+	 * @param handler
+	 *            the handler to receive the records.
+	 * @return the number of records read.
+	 */
+	public long read(Block block, RecordHandler handler) {
+		return new BlockDecoder(block).decode(handler, Long.MIN_VALUE, Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * @return the number of records found failing their CRC so far. Usually
+	 *         zero, or one for the record being written when the recorder
+	 *         stopped.
+	 */
+	public long getCorruptRecords() {
+		return corruptRecords;
+	}
+
+	@Override
+	public void close() {
+		// The mapping is released when the buffer is collected
+	}
+
+	/**
+	 * Decodes the records of a block, keeping the per channel state needed
+	 * to undo the delta encoding.
+	 */
+	final class BlockDecoder {
+		private final int[][] previous = new int[MAX_CHANNELS + 1][3];
+		private final int start;
+		private final int end;
+		private final long firstTimestamp;
+		private int position;
+
+		BlockDecoder(Block block) {
+			start = blockOffset(block.getIndex(), blockSize);
+			end = start + blockSize;
+			firstTimestamp = block.getFirstTimestamp();
+		}
+
+		/**
+		 * Decodes the records in [from, to], optionally only for the selected
+		 * channels (indexed by id).
+		 */
+		long decode(RecordHandler handler, long from, long to, boolean[] selected) {
+			long count = 0;
+			long timestamp = firstTimestamp;
+			position = start + BLOCK_HEADER_SIZE;
+			while (position < end) {
+				int recordStart = position;
+				int id = buffer.get(position++) & 0xFF;
+				if (id == END_OF_BLOCK) {
+					break;
+				}
+				BlackBoxChannel channel = channelsById[id];
+				if (channel == null) {
+					corruptRecords++;
+					break;
+				}
+				try {
+					timestamp += unzigzag(getVarLong());
+					int[] values = previous[id];
+					int x;
+					int y = 0;
+					int z = 0;
+					if (channel.getKind() == Kind.RAW3D) {
+						x = values[0] + unzigzag(getVarInt());
+						y = values[1] + unzigzag(getVarInt());
+						z = values[2] + unzigzag(getVarInt());
+					} else {
+						x = values[0] ^ getVarInt();
+						if (channel.getKind() == Kind.FLOAT3D) {
+							y = values[1] ^ getVarInt();
+							z = values[2] ^ getVarInt();
+						}
+					}
+					if (!checkCrc(recordStart, position)) {
+						corruptRecords++;
+						break;
+					}
+					position++;
+					values[0] = x;
+					values[1] = y;
+					values[2] = z;
+					// Records from different threads may be slightly out of order,
+					// so keep going until the end of the block
+					if (timestamp < from || timestamp > to || (selected != null && !selected[id])) {
+						continue;
+					}
+					count++;
+					switch (channel.getKind()) {
+					case FLOAT3D:
+						handler.onFloat3D(channel, timestamp, Float.intBitsToFloat(x), Float.intBitsToFloat(y),
+								Float.intBitsToFloat(z));
+						break;
+					case RAW3D:
+						handler.onRaw(channel, timestamp, x, y, z);
+						break;
+					case SCALAR:
+						handler.onScalar(channel, timestamp, Float.intBitsToFloat(x));
+						break;
+					}
+				} catch (IndexOutOfBoundsException e) {
+					corruptRecords++;
+					break;
+				}
+			}
+			return count;
+		}
+
+		private boolean checkCrc(int from, int to) {
+			int crc = 0;
+			for (int i = from; i < to; i++) {
+				crc = crc8Step(crc, buffer.get(i));
+			}
+			return to < end && (byte) crc == buffer.get(to);
+		}
+
+		private int getVarInt() {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				byte b = buffer.get(position++);
+				value |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IndexOutOfBoundsException("Malformed varint");
+		}
+
+		private long getVarLong() {
+			long value = 0;
+			for (int shift = 0; shift < 70; shift += 7) {
+				byte b = buffer.get(position++);
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IndexOutOfBoundsException("Malformed varint");
+		}
+	}
+
+	private void readChannels() {
+		int count = Math.min(buffer.getShort(HEADER_CHANNEL_COUNT), MAX_CHANNELS);
+		for (int i = 0; i < count; i++) {
+			int entry = CHANNEL_TABLE + i * CHANNEL_ENTRY_SIZE;
+			int id = buffer.get(entry + CHANNEL_ID) & 0xFF;
+			Kind kind = Kind.fromCode(buffer.get(entry + CHANNEL_KIND));
+			if (id == 0 || kind == null) {
+				continue;
+			}
+			byte[] name = new byte[Math.min(buffer.get(entry + CHANNEL_NAME_LENGTH) & 0xFF, MAX_CHANNEL_NAME_BYTES)];
+			for (int j = 0; j < name.length; j++) {
+				name[j] = buffer.get(entry + CHANNEL_NAME + j);
+			}
+			RawScale scale = null;
+			if (kind == Kind.RAW3D) {
+				scale = new RawScale(buffer.getFloat(entry + CHANNEL_SCALE), buffer.getFloat(entry + CHANNEL_SCALE + 4),
+						buffer.getFloat(entry + CHANNEL_SCALE + 8));
+			}
+			BlackBoxChannel channel = new BlackBoxChannel(id, new String(name, StandardCharsets.UTF_8), kind, scale);
+			channelsById[id] = channel;
+			channels.add(channel);
+		}
+	}
+
+	/**
+	 * @return the channels with the specified names, as a flag per channel
+	 *         id.
+	 */
+	boolean[] select(String... channelNames) {
+		boolean[] selected = new boolean[MAX_CHANNELS + 1];
+		for (String name : channelNames) {
+			for (BlackBoxChannel channel : getChannels(name)) {
+				selected[channel.getId()] = true;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Decodes the records of a block from the specified time, skipping the
+	 * block if it has been overwritten since the reader was opened.
+	 */
+	long decode(Block block, RecordHandler handler, long from, boolean[] selected) {
+		if (!isValid(block)) {
+			return 0;
+		}
+		return new BlockDecoder(block).decode(handler, from, Long.MAX_VALUE, selected);
+	}
+
+	/**
+	 * Touches every page of a block, to have the operating system read it
+	 * into memory.
+	 * 
+	 * @return a checksum of sorts, to keep the reads from being optimized
+	 *         away.
+	 */
+	int touch(Block block) {
+		int offset = blockOffset(block.getIndex(), blockSize);
+		int sum = 0;
+		for (int i = 0; i < blockSize; i += PAGE_SIZE) {
+			sum += buffer.get(offset + i);
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the index of the first block holding a record at or after the
+	 *         timestamp, or the number of blocks if there is none.
+	 */
+	int findBlock(long timestamp) {
+		int low = 0;
+		int high = blocks.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (maxUntil[mid] < timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private long query(long from, long to, RecordHandler handler, boolean[] selected, long firstSequence) {
+		long count = 0;
+		for (int i = findBlock(from); i < blocks.size() && minFrom[i] <= to; i++) {
+			Block block = blocks.get(i);
+			if (block.getSequence() < firstSequence || block.getMaxTimestamp() < from
+					|| block.getMinTimestamp() > to) {
+				continue;
+			}
+			if (!isValid(block)) {
+				if (indexed) {
+					// The index is out of date, rescan and go on with the same block
+					scanBlocks();
+					return count + query(from, to, handler, selected, block.getSequence());
+				}
+				continue;
+			}
+			count += new BlockDecoder(block).decode(handler, from, to, selected);
+		}
+		return count;
+	}
+
+	private boolean isValid(Block block) {
+		int offset = blockOffset(block.getIndex(), blockSize);
+		return buffer.getInt(offset) == BLOCK_MAGIC && buffer.getLong(offset + BLOCK_SEQUENCE) == block.getSequence();
+	}
+
+	private void readBlocks() {
+		indexed = readIndex();
+		if (!indexed) {
+			scanBlocks();
+		}
+	}
+
+	private boolean readIndex() {
+		File indexFile = BlackBoxRecorder.getIndexFile(file);
+		if (!indexFile.isFile()) {
+			return false;
+		}
+		MappedByteBuffer index;
+		try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+			if (raf.length() < INDEX_HEADER_SIZE) {
+				return false;
+			}
+			index = raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length());
+		} catch (IOException e) {
+			return false;
+		}
+		if (index.getInt(0) != INDEX_MAGIC || index.getInt(INDEX_HEADER_VERSION) != INDEX_VERSION
+				|| index.getInt(INDEX_BLOCK_SIZE) != blockSize || index.getInt(INDEX_BLOCK_COUNT) < blockCount
+				|| index.capacity() < indexEntryOffset(blockCount)) {
+			return false;
+		}
+		for (int i = 0; i < blockCount; i++) {
+			int entry = indexEntryOffset(i);
+			long sequence = index.getLong(entry + INDEX_SEQUENCE);
+			if (sequence > 0) {
+				blocks.add(new Block(i, sequence, index.getLong(entry + INDEX_FIRST_TIMESTAMP),
+						index.getLong(entry + INDEX_MIN_TIMESTAMP), index.getLong(entry + INDEX_MAX_TIMESTAMP)));
+			}
+		}
+		sortBlocks();
+		return true;
+	}
+
+	private void scanBlocks() {
+		indexed = false;
+		blocks.clear();
+		for (int i = 0; i < blockCount; i++) {
+			int offset = blockOffset(i, blockSize);
+			long sequence = buffer.getLong(offset + BLOCK_SEQUENCE);
+			if (sequence > 0 && buffer.getInt(offset) == BLOCK_MAGIC) {
+				long firstTimestamp = buffer.getLong(offset + BLOCK_FIRST_TIMESTAMP);
+				Block block = new Block(i, sequence, firstTimestamp, firstTimestamp, firstTimestamp);
+				readBounds(block);
+				blocks.add(block);
+			}
+		}
+		sortBlocks();
+	}
+
+	/**
+	 * Decodes a block to find its timestamp bounds, which are only kept in
+	 * the index.
+	 */
+	private void readBounds(final Block block) {
+		read(block, new RecordHandler() {
+			@Override
+			public void onFloat3D(BlackBoxChannel channel, long timestamp, float x, float y, float z) {
+				widen(timestamp);
+			}
+
+			@Override
+			public void onRaw(BlackBoxChannel channel, long timestamp, int x, int y, int z) {
+				widen(timestamp);
+			}
+
+			@Override
+			public void onScalar(BlackBoxChannel channel, long timestamp, float value) {
+				widen(timestamp);
+			}
+
+			private void widen(long timestamp) {
+				block.minTimestamp = Math.min(block.minTimestamp, timestamp);
+				block.maxTimestamp = Math.max(block.maxTimestamp, timestamp);
+			}
+		});
+	}
+
+	private void sortBlocks() {
+		Collections.sort(blocks, new Comparator<Block>() {
+			@Override
+			public int compare(Block a, Block b) {
+				return Long.compare(a.sequence, b.sequence);
+			}
+		});
+		int n = blocks.size();
+		maxUntil = new long[n];
+		minFrom = new long[n];
+		for (int i = 0; i < n; i++) {
+			maxUntil[i] = Math.max(i == 0 ? Long.MIN_VALUE : maxUntil[i - 1], blocks.get(i).getMaxTimestamp());
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			minFrom[i] = Math.min(i == n - 1 ? Long.MAX_VALUE : minFrom[i + 1], blocks.get(i).getMinTimestamp());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Black box recording %s: %d channels, %d of %d blocks in use", file, channels.size(),
+				blocks.size(), blockCount);
+	}
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import static com.robo4j.rpi.blackbox.BlackBoxFormat.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.robo4j.rpi.blackbox.BlackBoxChannel.Kind;
+import com.robo4j.rpi.i2c.RawScale;
+
+/**
+ * Records timestamped samples into a fixed size, memory mapped file used as a
+ * ring, so that the last minutes before a crash or brown out are always
+ * available. See {@link BlackBoxFormat} for the layout.
+ * <p>
+ * Recording only encodes the sample into the mapped memory, so there are no
+ * system calls on the hot path. The operating system writes the pages back
+ * in the background, which means that the recording survives the process
+ * crashing. To survive a power loss, call {@link #force()} periodically from
+ * another thread. Every record has a CRC, so a torn write only loses the
+ * records written last.
+ * <p>
+ * The recorder also maintains a sparse index of the blocks, see
+ * {@link #getIndexFile(File)}, used by {@link BlackBoxReader#query} to find
+ * time ranges quickly in large recordings.
+ * <p>
+ * When a recorder is created, an existing recording with the same name is
+ * kept as <i>name</i>.previous, so that restarting after a crash does not
+ * overwrite the evidence.
+ * 
+ * @author Marcus Hirt
+ */
+public class BlackBoxRecorder implements Closeable {
+	/**
+	 * The default block size, 64 KiB.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+	/**
+	 * The default file size, 16 MiB.
+	 */
+	public static final int DEFAULT_SIZE = 16 * 1024 * 1024;
+
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private final MappedByteBuffer index;
+	private final int blockSize;
+	private final int blockCount;
+	private final List<BlackBoxChannel> channels = new ArrayList<>();
+	private final ChannelState[] states = new ChannelState[MAX_CHANNELS + 1];
+	private final byte[] scratch = new byte[MAX_RECORD_SIZE];
+
+	private int block = -1;
+	private long blockSequence;
+	private int position;
+	private int blockEnd;
+	private int indexEntry;
+	private long blockMinTimestamp;
+	private long blockMaxTimestamp;
+	private long lastTimestamp;
+	private long records;
+
+	private static class ChannelState {
+		long block = -1;
+		int x;
+		int y;
+		int z;
+	}
+
+	/**
+	 * Creates a recorder using the default size and block size.
+	 * 
+	 * @param file
+	 *            the file to record to.
+	 * @throws IOException
+	 *             if the file could not be created.
+	 */
+	public BlackBoxRecorder(File file) throws IOException {
+		this(file, DEFAULT_SIZE, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a recorder.
+	 * 
+	 * @param file
+	 *            the file to record to.
+	 * @param size
+	 *            the total size of the file, in bytes.
+	 * @param blockSize
+	 *            the size of the blocks, in bytes. The oldest block is
+	 *            dropped when the file is full.
+	 * @throws IOException
+	 *             if the file could not be created.
+	 */
+	public BlackBoxRecorder(File file, int size, int blockSize) throws IOException {
+		if (blockSize < MIN_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Block size must be at least " + MIN_BLOCK_SIZE);
+		}
+		this.blockCount = (size - HEADER_SIZE) / blockSize;
+		if (blockCount < 2) {
+			throw new IllegalArgumentException("The file must have room for at least two blocks");
+		}
+		this.file = file;
+		this.blockSize = blockSize;
+		File indexFile = getIndexFile(file);
+		keepPrevious(file, new File(file.getPath() + ".previous"));
+		keepPrevious(indexFile, getIndexFile(new File(file.getPath() + ".previous")));
+		buffer = map(file, HEADER_SIZE + (long) blockCount * blockSize);
+		index = map(indexFile, indexEntryOffset(blockCount));
+		index.putInt(INDEX_BLOCK_COUNT, blockCount);
+		index.putInt(INDEX_BLOCK_SIZE, blockSize);
+		index.putInt(INDEX_HEADER_VERSION, INDEX_VERSION);
+		index.putInt(0, INDEX_MAGIC);
+		buffer.putShort(HEADER_VERSION, (short) VERSION);
+		buffer.putShort(HEADER_CHANNEL_COUNT, (short) 0);
+		buffer.putInt(HEADER_BLOCK_SIZE, blockSize);
+		buffer.putInt(HEADER_BLOCK_COUNT, blockCount);
+		buffer.putLong(HEADER_START_NANOS, System.nanoTime());
+		buffer.putLong(HEADER_START_MILLIS, System.currentTimeMillis());
+		buffer.putInt(0, MAGIC);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the sparse block index kept next to a recording.
+	 * 
+	 * @param recording
+	 *            the recording.
+	 * @return the index file of the recording.
+	 */
+	public static File getIndexFile(File recording) {
+		return new File(recording.getPath() + INDEX_SUFFIX);
+	}
+
+	/**
+	 * Adds a channel for {@link com.robo4j.rpi.geometry.Float3D} samples.
+	 */
+	public BlackBoxChannel addFloat3DChannel(String name) {
+		return addChannel(name, Kind.FLOAT3D, null);
+	}
+
+	/**
+	 * Adds a channel for raw integer samples, which are about half the size
+	 * of float samples when recorded.
+	 * 
+	 * @param name
+	 *            the name of the channel.
+	 * @param scale
+	 *            the scale converting the raw samples to floats.
+	 */
+	public BlackBoxChannel addRawChannel(String name, RawScale scale) {
+		return addChannel(name, Kind.RAW3D, scale);
+	}
+
+	/**
+	 * Adds a channel for single float values.
+	 */
+	public BlackBoxChannel addScalarChannel(String name) {
+		return addChannel(name, Kind.SCALAR, null);
+	}
+
+	public synchronized List<BlackBoxChannel> getChannels() {
+		return Collections.unmodifiableList(new ArrayList<>(channels));
+	}
+
+	/**
+	 * Records a {@link Kind#FLOAT3D} sample.
+	 * 
+	 * @param channel
+	 *            the channel to record to.
+	 * @param timestamp
+	 *            the time of the sample, as {@link System#nanoTime()}.
+	 */
+	public synchronized void record(BlackBoxChannel channel, long timestamp, float x, float y, float z) {
+		ChannelState state = begin(channel, Kind.FLOAT3D, timestamp);
+		int n = putTimestamp(channel, timestamp);
+		int bits = Float.floatToRawIntBits(x);
+		n = putVarInt(scratch, n, bits ^ state.x);
+		state.x = bits;
+		bits = Float.floatToRawIntBits(y);
+		n = putVarInt(scratch, n, bits ^ state.y);
+		state.y = bits;
+		bits = Float.floatToRawIntBits(z);
+		n = putVarInt(scratch, n, bits ^ state.z);
+		state.z = bits;
+		commit(n, timestamp);
+	}
+
+	/**
+	 * Records a {@link Kind#RAW3D} sample.
+	 * 
+	 * @param channel
+	 *            the channel to record to.
+	 * @param timestamp
+	 *            the time of the sample, as {@link System#nanoTime()}.
+	 */
+	public synchronized void recordRaw(BlackBoxChannel channel, long timestamp, int x, int y, int z) {
+		ChannelState state = begin(channel, Kind.RAW3D, timestamp);
+		int n = putTimestamp(channel, timestamp);
+		n = putVarInt(scratch, n, zigzag(x - state.x));
+		n = putVarInt(scratch, n, zigzag(y - state.y));
+		n = putVarInt(scratch, n, zigzag(z - state.z));
+		state.x = x;
+		state.y = y;
+		state.z = z;
+		commit(n, timestamp);
+	}
+
+	/**
+	 * Records a {@link Kind#SCALAR} value.
+	 * 
+	 * @param channel
+	 *            the channel to record to.
+	 * @param timestamp
+	 *            the time of the value, as {@link System#nanoTime()}.
+	 */
+	public synchronized void record(BlackBoxChannel channel, long timestamp, float value) {
+		ChannelState state = begin(channel, Kind.SCALAR, timestamp);
+		int n = putTimestamp(channel, timestamp);
+		int bits = Float.floatToRawIntBits(value);
+		n = putVarInt(scratch, n, bits ^ state.x);
+		state.x = bits;
+		commit(n, timestamp);
+	}
+
+	/**
+	 * @return the number of records written.
+	 */
+	public synchronized long getRecordCount() {
+		return records;
+	}
+
+	/**
+	 * Forces the recording to the storage device. This is a system call
+	 * which may block for a long time, so do not call it from a thread
+	 * recording samples.
+	 */
+	public void force() {
+		buffer.force();
+		index.force();
+	}
+
+	@Override
+	public void close() {
+		force();
+	}
+
+	private synchronized BlackBoxChannel addChannel(String name, Kind kind, RawScale scale) {
+		if (channels.size() == MAX_CHANNELS) {
+			throw new IllegalStateException("Max number of channels (" + MAX_CHANNELS + ") reached");
+		}
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		if (nameBytes.length > MAX_CHANNEL_NAME_BYTES) {
+			throw new IllegalArgumentException("Channel name too long: " + name);
+		}
+		BlackBoxChannel channel = new BlackBoxChannel(channels.size() + 1, name, kind, scale);
+		int entry = CHANNEL_TABLE + channels.size() * CHANNEL_ENTRY_SIZE;
+		buffer.put(entry + CHANNEL_KIND, (byte) kind.getCode());
+		buffer.put(entry + CHANNEL_NAME_LENGTH, (byte) nameBytes.length);
+		for (int i = 0; i < nameBytes.length; i++) {
+			buffer.put(entry + CHANNEL_NAME + i, nameBytes[i]);
+		}
+		if (scale != null) {
+			buffer.putFloat(entry + CHANNEL_SCALE, scale.getX());
+			buffer.putFloat(entry + CHANNEL_SCALE + 4, scale.getY());
+			buffer.putFloat(entry + CHANNEL_SCALE + 8, scale.getZ());
+		}
+		// The id marks the entry as valid, so write it last
+		buffer.put(entry + CHANNEL_ID, (byte) channel.getId());
+		channels.add(channel);
+		states[channel.getId()] = new ChannelState();
+		buffer.putShort(HEADER_CHANNEL_COUNT, (short) channels.size());
+		return channel;
+	}
+
+	private ChannelState begin(BlackBoxChannel channel, Kind kind, long timestamp) {
+		if (channel.getKind() != kind) {
+			throw new IllegalArgumentException("Can not record " + kind + " values in channel " + channel);
+		}
+		if (position + MAX_RECORD_SIZE + 1 > blockEnd) {
+			startBlock(timestamp);
+		}
+		ChannelState state = states[channel.getId()];
+		if (state.block != blockSequence) {
+			state.block = blockSequence;
+			state.x = 0;
+			state.y = 0;
+			state.z = 0;
+		}
+		return state;
+	}
+
+	private int putTimestamp(BlackBoxChannel channel, long timestamp) {
+		scratch[0] = (byte) channel.getId();
+		return putVarLong(scratch, 1, zigzag(timestamp - lastTimestamp));
+	}
+
+	private void commit(int length, long timestamp) {
+		// Widen the bounds in the index before the record can be read
+		if (timestamp < blockMinTimestamp) {
+			blockMinTimestamp = timestamp;
+			index.putLong(indexEntry + INDEX_MIN_TIMESTAMP, timestamp);
+		} else if (timestamp > blockMaxTimestamp) {
+			blockMaxTimestamp = timestamp;
+			index.putLong(indexEntry + INDEX_MAX_TIMESTAMP, timestamp);
+		}
+		scratch[length] = crc8(scratch, 0, length);
+		length++;
+		// Terminate first, so that the block always ends in a zero
+		buffer.put(position + length, (byte) END_OF_BLOCK);
+		buffer.position(position);
+		buffer.put(scratch, 0, length);
+		position += length;
+		lastTimestamp = timestamp;
+		records++;
+	}
+
+	private void startBlock(long timestamp) {
+		block = (block + 1) % blockCount;
+		blockSequence++;
+		int offset = blockOffset(block, blockSize);
+		// Invalidate the block while it is being rewritten
+		buffer.putLong(offset + BLOCK_SEQUENCE, 0);
+		buffer.putInt(offset, BLOCK_MAGIC);
+		buffer.putLong(offset + BLOCK_FIRST_TIMESTAMP, timestamp);
+		buffer.put(offset + BLOCK_HEADER_SIZE, (byte) END_OF_BLOCK);
+		buffer.putLong(offset + BLOCK_SEQUENCE, blockSequence);
+		indexEntry = indexEntryOffset(block);
+		index.putLong(indexEntry + INDEX_SEQUENCE, 0);
+		index.putLong(indexEntry + INDEX_FIRST_TIMESTAMP, timestamp);
+		index.putLong(indexEntry + INDEX_OFFSET, offset);
+		index.putLong(indexEntry + INDEX_MIN_TIMESTAMP, timestamp);
+		index.putLong(indexEntry + INDEX_MAX_TIMESTAMP, timestamp);
+		index.putLong(indexEntry + INDEX_SEQUENCE, blockSequence);
+		position = offset + BLOCK_HEADER_SIZE;
+		blockEnd = offset + blockSize;
+		lastTimestamp = timestamp;
+		blockMinTimestamp = timestamp;
+		blockMaxTimestamp = timestamp;
+	}
+
+	private static MappedByteBuffer map(File file, long size) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+			raf.setLength(size);
+			return raf.getChannel().map(MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	private static void keepPrevious(File file, File previous) throws IOException {
+		if (previous.exists() && !previous.delete()) {
+			throw new IOException("Could not delete " + previous);
+		}
+		if (file.exists() && !file.renameTo(previous)) {
+			throw new IOException("Could not keep previous recording " + file + " as " + previous);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Black box %s: %d blocks of %d bytes, %d channels, %d records", file, blockCount,
+				blockSize, channels.size(), getRecordCount());
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.robo4j.rpi.blackbox.BlackBoxReader.Block;
+
+/**
+ * Replays a black box recording through replay devices, such as the
+ * {@link ReplayFloat3DDevice} and the {@link ReplayBarometer}, to feed
+ * recorded sensor data into fusion and control code deterministically.
+ * <p>
+ * The replay runs at a speed relative to the recording, driven by a
+ * {@link ReplayClock}. At {@link #ORIGINAL_SPEED} the devices return what
+ * the real devices would have returned when read at the same time into the
+ * recording. Other speeds scale the timeline. {@link #AS_FAST_AS_POSSIBLE}
+ * ignores the clock altogether, and has every read return the next
+ * recorded sample of the device. In all cases the sample times reported by
+ * the devices are the ones recorded.
+ * <p>
+ * The recording is read through the memory mapping of the
+ * {@link BlackBoxReader}, and a background thread touches the blocks a few
+ * blocks ahead of the devices, so that replays of long recordings are not
+ * slowed down by page faults.
+ * 
+ * @author Marcus Hirt
+ */
+public class BlackBoxReplay implements Closeable {
+	/**
+	 * Replays the recording on its original timeline.
+	 */
+	public static final double ORIGINAL_SPEED = 1;
+	/**
+	 * Replays the recording without waiting.
+	 */
+	public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+	private static final int PREFETCH_BLOCKS = 4;
+
+	private final BlackBoxReader reader;
+	private final ReplayClock clock;
+	private final double speed;
+	private final long startTimestamp;
+	private final long endTimestamp;
+	private final List<Block> blocks;
+	private final int firstBlock;
+	private final Prefetcher prefetcher;
+	private volatile boolean started;
+	private volatile long clockStart;
+
+	/**
+	 * Touches the blocks ahead of the devices, in the background.
+	 */
+	private final class Prefetcher extends Thread {
+		private final AtomicInteger wanted = new AtomicInteger();
+		private volatile int checksum;
+
+		Prefetcher() {
+			super("BlackBox prefetch " + reader.getFile().getName());
+			setDaemon(true);
+			wanted.set(firstBlock + PREFETCH_BLOCKS);
+		}
+
+		void request(int block) {
+			int target = block + PREFETCH_BLOCKS;
+			int current;
+			do {
+				current = wanted.get();
+				if (current >= target) {
+					return;
+				}
+			} while (!wanted.compareAndSet(current, target));
+			LockSupport.unpark(this);
+		}
+
+		@Override
+		public void run() {
+			int next = firstBlock;
+			while (next < blocks.size() && !isInterrupted()) {
+				int target = Math.min(wanted.get(), blocks.size());
+				int sum = 0;
+				while (next < target) {
+					sum += reader.touch(blocks.get(next++));
+				}
+				checksum += sum;
+				LockSupport.park(this);
+			}
+		}
+	}
+
+	/**
+	 * Creates a replay of a whole recording on its original timeline.
+	 * 
+	 * @param reader
+	 *            the recording to replay.
+	 */
+	public BlackBoxReplay(BlackBoxReader reader) {
+		this(reader, ReplayClock.SYSTEM, ORIGINAL_SPEED);
+	}
+
+	/**
+	 * Creates a replay of a whole recording.
+	 * 
+	 * @param reader
+	 *            the recording to replay.
+	 * @param clock
+	 *            the clock to drive the replay.
+	 * @param speed
+	 *            the speed relative to the recording, for example
+	 *            {@link #ORIGINAL_SPEED} or {@link #AS_FAST_AS_POSSIBLE}.
+	 */
+	public BlackBoxReplay(BlackBoxReader reader, ReplayClock clock, double speed) {
+		this(reader, clock, speed, reader.getFirstTimestamp());
+	}
+
+	/**
+	 * Creates a replay starting at a specified time into the recording.
+	 * 
+	 * @param reader
+	 *            the recording to replay.
+	 * @param clock
+	 *            the clock to drive the replay.
+	 * @param speed
+	 *            the speed relative to the recording, for example
+	 *            {@link #ORIGINAL_SPEED} or {@link #AS_FAST_AS_POSSIBLE}.
+	 * @param from
+	 *            the timestamp in the recording to start replaying from.
+	 */
+	public BlackBoxReplay(BlackBoxReader reader, ReplayClock clock, double speed, long from) {
+		if (!(speed > 0)) {
+			throw new IllegalArgumentException("Speed must be positive, was " + speed);
+		}
+		this.reader = reader;
+		this.clock = clock;
+		this.speed = speed;
+		this.startTimestamp = from;
+		this.endTimestamp = reader.getLastTimestamp();
+		this.blocks = new ArrayList<>(reader.getBlocks());
+		this.firstBlock = reader.findBlock(from);
+		prefetcher = new Prefetcher();
+		prefetcher.start();
+	}
+
+	/**
+	 * Starts the replay clock. Called by the first read of a replay device
+	 * if not called explicitly.
+	 */
+	public synchronized void start() {
+		if (!started) {
+			clockStart = clock.nanoTime();
+			started = true;
+		}
+	}
+
+	/**
+	 * @return the current time in the recording.
+	 */
+	public long getReplayTime() {
+		if (!started) {
+			start();
+		}
+		return startTimestamp + (long) ((clock.nanoTime() - clockStart) * speed);
+	}
+
+	/**
+	 * @return true if the replay follows the clock, false if running as fast
+	 *         as possible.
+	 */
+	public boolean isTimed() {
+		return speed != AS_FAST_AS_POSSIBLE;
+	}
+
+	public double getSpeed() {
+		return speed;
+	}
+
+	public BlackBoxReader getReader() {
+		return reader;
+	}
+
+	/**
+	 * @return the timestamp in the recording the replay starts at.
+	 */
+	public long getStartTimestamp() {
+		return startTimestamp;
+	}
+
+	/**
+	 * @return the timestamp of the last record in the recording.
+	 */
+	public long getEndTimestamp() {
+		return endTimestamp;
+	}
+
+	@Override
+	public void close() {
+		prefetcher.interrupt();
+	}
+
+	/**
+	 * Waits until the replay reaches a time in the recording.
+	 */
+	void waitFor(long timestamp) throws IOException {
+		if (!started) {
+			start();
+		}
+		try {
+			clock.sleepUntil(clockStart + (long) ((timestamp - startTimestamp) / speed));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the replay");
+		}
+	}
+
+	List<Block> getBlocks() {
+		return blocks;
+	}
+
+	int getFirstBlock() {
+		return firstBlock;
+	}
+
+	void prefetch(int block) {
+		prefetcher.request(block);
+	}
+
+	@Override
+	public String toString() {
+		return "BlackBoxReplay [file=" + reader.getFile() + ", speed=" + speed + "]";
+	}
+}
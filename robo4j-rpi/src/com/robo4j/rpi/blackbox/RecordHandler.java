@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+/**
+ * Receives the records read from a black box recording. Implement the
+ * methods for the kinds of channels of interest.
+ * 
+ * @author Marcus Hirt
+ */
+public interface RecordHandler {
+	/**
+	 * Called for records in {@link BlackBoxChannel.Kind#FLOAT3D} channels.
+	 */
+	default void onFloat3D(BlackBoxChannel channel, long timestamp, float x, float y, float z) {
+	}
+
+	/**
+	 * Called for records in {@link BlackBoxChannel.Kind#RAW3D} channels. Use
+	 * the scale of the channel to convert to floats.
+	 */
+	default void onRaw(BlackBoxChannel channel, long timestamp, int x, int y, int z) {
+	}
+
+	/**
+	 * Called for records in {@link BlackBoxChannel.Kind#SCALAR} channels.
+	 */
+	default void onScalar(BlackBoxChannel channel, long timestamp, float value) {
+	}
+}
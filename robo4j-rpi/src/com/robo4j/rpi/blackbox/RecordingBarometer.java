@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.bmp.BMP085Device;
+import com.robo4j.rpi.i2c.bmp.Barometer;
+
+/**
+ * Wrapper for a {@link BMP085Device}, recording the pressure and temperature
+ * readings to a {@link BlackBoxRecorder}, in the channels
+ * <i>name</i>.pressure and <i>name</i>.temperature.
+ * 
+ * @author Marcus Hirt
+ */
+public class RecordingBarometer implements Barometer {
+	private final BMP085Device device;
+	private final BlackBoxRecorder recorder;
+	private final BlackBoxChannel pressureChannel;
+	private final BlackBoxChannel temperatureChannel;
+
+	public RecordingBarometer(BMP085Device device, BlackBoxRecorder recorder, String name) {
+		this.device = device;
+		this.recorder = recorder;
+		this.pressureChannel = recorder.addScalarChannel(name + ".pressure");
+		this.temperatureChannel = recorder.addScalarChannel(name + ".temperature");
+	}
+
+	/**
+	 * @see BMP085Device#readPressure()
+	 */
+	@Override
+	public int readPressure() throws IOException {
+		synchronized (device) {
+			int pressure = device.readPressure();
+			recorder.record(pressureChannel, device.getLastSampleTime(), pressure);
+			return pressure;
+		}
+	}
+
+	/**
+	 * @see BMP085Device#readTemperature()
+	 */
+	@Override
+	public float readTemperature() throws IOException {
+		synchronized (device) {
+			float temperature = device.readTemperature();
+			recorder.record(temperatureChannel, device.getLastSampleTime(), temperature);
+			return temperature;
+		}
+	}
+
+	@Override
+	public Timestamped<Integer> readTimestampedPressure() throws IOException {
+		synchronized (device) {
+			int pressure = readPressure();
+			return new Timestamped<>(pressure, device.getLastSampleTime());
+		}
+	}
+
+	@Override
+	public Timestamped<Float> readTimestampedTemperature() throws IOException {
+		synchronized (device) {
+			float temperature = readTemperature();
+			return new Timestamped<>(temperature, device.getLastSampleTime());
+		}
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return device.getLastSampleTime();
+	}
+
+	public BMP085Device getDevice() {
+		return device;
+	}
+}
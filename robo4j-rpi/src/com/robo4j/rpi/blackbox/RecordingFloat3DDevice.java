@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.robo4j.rpi.blackbox.BlackBoxChannel.Kind;
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Int3D;
+import com.robo4j.rpi.i2c.RawScale;
+import com.robo4j.rpi.i2c.ReadableDevice;
+import com.robo4j.rpi.i2c.ReadableFloat3DDevice;
+import com.robo4j.rpi.i2c.ReadableRawFloat3DDevice;
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Wrapper recording every value read from a device to a
+ * {@link BlackBoxRecorder}. Devices providing raw samples are read and
+ * recorded in their raw form, which takes about half the space.
+ * <p>
+ * A reconfigured raw device is recorded to one raw channel per scale, reused
+ * if the device returns to an earlier scale. When the recorder is down to its
+ * last free channel, new scales are instead recorded as floats in a single
+ * float channel. Should not even that be possible, samples at new scales are
+ * dropped rather than failing the read.
+ * 
+ * @author Marcus Hirt
+ */
+public class RecordingFloat3DDevice implements ReadableFloat3DDevice, TimestampedReadableDevice<Float3D> {
+	private final ReadableDevice<Float3D> device;
+	private final BlackBoxRecorder recorder;
+	private final String name;
+	private final Int3D raw = new Int3D();
+	private final Float3D sample = new Float3D();
+	private final Map<RawScale, BlackBoxChannel> rawChannels = new HashMap<>();
+	private BlackBoxChannel floatChannel;
+	private BlackBoxChannel channel;
+	private RawScale scale;
+	private volatile long lastSampleTime = NO_SAMPLE_TIME;
+
+	/**
+	 * Creates a recording wrapper.
+	 * 
+	 * @param device
+	 *            the device to read.
+	 * @param recorder
+	 *            the recorder to record to.
+	 * @param name
+	 *            the name of the channel to record to.
+	 */
+	public RecordingFloat3DDevice(ReadableDevice<Float3D> device, BlackBoxRecorder recorder, String name) {
+		this.device = device;
+		this.recorder = recorder;
+		this.name = name;
+		if (device instanceof ReadableRawFloat3DDevice) {
+			scale = ((ReadableRawFloat3DDevice) device).getRawScale();
+			channel = recorder.addRawChannel(name, scale);
+			rawChannels.put(scale, channel);
+		} else {
+			channel = recorder.addFloat3DChannel(name);
+		}
+	}
+
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		long before = System.nanoTime();
+		if (scale != null) {
+			ReadableRawFloat3DDevice rawDevice = (ReadableRawFloat3DDevice) device;
+			rawDevice.readRaw(raw);
+			RawScale currentScale = rawDevice.getRawScale();
+			if (currentScale != scale) {
+				// Reconfigured, so the old channel no longer describes the samples
+				scale = currentScale;
+				channel = channelFor(scale);
+			}
+			scale.apply(raw, dst);
+		} else if (device instanceof ReadableFloat3DDevice) {
+			((ReadableFloat3DDevice) device).read(dst);
+		} else {
+			dst.set(device.read());
+		}
+		if (device instanceof TimestampedReadableDevice) {
+			lastSampleTime = ((TimestampedReadableDevice<?>) device).getLastSampleTime();
+		} else {
+			lastSampleTime = before + (System.nanoTime() - before) / 2;
+		}
+		if (channel == null) {
+			return;
+		}
+		if (channel.getKind() == Kind.RAW3D) {
+			recorder.recordRaw(channel, lastSampleTime, raw.x, raw.y, raw.z);
+		} else {
+			recorder.record(channel, lastSampleTime, dst.x, dst.y, dst.z);
+		}
+	}
+
+	@Override
+	public synchronized void read(float[] dst, int offset) throws IOException {
+		read(sample);
+		dst[offset] = sample.x;
+		dst[offset + 1] = sample.y;
+		dst[offset + 2] = sample.z;
+	}
+
+	@Override
+	public synchronized Timestamped<Float3D> readTimestamped() throws IOException {
+		Float3D value = read();
+		return new Timestamped<>(value, lastSampleTime);
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return lastSampleTime;
+	}
+
+	/**
+	 * @return the channel currently recorded to, or null if the samples are
+	 *         dropped.
+	 */
+	public synchronized BlackBoxChannel getChannel() {
+		return channel;
+	}
+
+	private BlackBoxChannel channelFor(RawScale scale) {
+		BlackBoxChannel rawChannel = rawChannels.get(scale);
+		if (rawChannel != null) {
+			return rawChannel;
+		}
+		int free = BlackBoxFormat.MAX_CHANNELS - recorder.getChannels().size();
+		if (free > 1) {
+			rawChannel = recorder.addRawChannel(name, scale);
+			rawChannels.put(scale, rawChannel);
+			return rawChannel;
+		}
+		if (floatChannel == null) {
+			if (free == 0) {
+				getLogger().warning("No free channels in " + recorder + ", dropping samples from " + name);
+				return null;
+			}
+			floatChannel = recorder.addFloat3DChannel(name);
+		}
+		return floatChannel;
+	}
+
+	private static Logger getLogger() {
+		return Logger.getLogger(RecordingFloat3DDevice.class.getName());
+	}
+}
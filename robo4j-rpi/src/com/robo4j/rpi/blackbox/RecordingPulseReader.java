@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.robo4j.rpi.i2c.pwmreader.PWMReader;
+import com.robo4j.rpi.i2c.pwmreader.PulseReader;
+
+/**
+ * Wrapper for a {@link PWMReader}, recording the pulse lengths read to a
+ * {@link BlackBoxRecorder}, in a channel per PWM channel named
+ * <i>name</i>.<i>channel</i>.
+ * 
+ * @author Marcus Hirt
+ */
+public class RecordingPulseReader implements PulseReader {
+	private final PWMReader device;
+	private final BlackBoxRecorder recorder;
+	private final String name;
+	private final Map<Integer, BlackBoxChannel> channels = new HashMap<>();
+
+	public RecordingPulseReader(PWMReader device, BlackBoxRecorder recorder, String name) {
+		this.device = device;
+		this.recorder = recorder;
+		this.name = name;
+	}
+
+	/**
+	 * @see PWMReader#readPulse(int)
+	 */
+	@Override
+	public synchronized double readPulse(int channel) throws IOException {
+		BlackBoxChannel recorderChannel = channels.get(channel);
+		if (recorderChannel == null) {
+			recorderChannel = recorder.addScalarChannel(getChannelName(name, channel));
+			channels.put(channel, recorderChannel);
+		}
+		double pulse = device.readPulse(channel);
+		recorder.record(recorderChannel, device.getLastSampleTime(), (float) pulse);
+		return pulse;
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return device.getLastSampleTime();
+	}
+
+	public PWMReader getDevice() {
+		return device;
+	}
+
+	static String getChannelName(String name, int channel) {
+		return name + "." + channel;
+	}
+}
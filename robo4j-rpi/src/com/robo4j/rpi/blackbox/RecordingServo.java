@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.pwm.PWMPCA9685Device.PWMChannel;
+import com.robo4j.rpi.i2c.pwm.Servo;
+
+/**
+ * A {@link Servo} recording the requested inputs to a
+ * {@link BlackBoxRecorder}.
+ * 
+ * @author Marcus Hirt
+ */
+public class RecordingServo extends Servo {
+	private final BlackBoxRecorder recorder;
+	private final BlackBoxChannel channel;
+
+	public RecordingServo(PWMChannel channel, BlackBoxRecorder recorder, String name) {
+		super(channel);
+		this.recorder = recorder;
+		this.channel = recorder.addScalarChannel(name);
+	}
+
+	@Override
+	public void setInput(float input) throws IOException {
+		recorder.record(channel, System.nanoTime(), input);
+		super.setInput(input);
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+import com.robo4j.rpi.i2c.bmp.Barometer;
+
+/**
+ * Replays a barometer recorded by a {@link RecordingBarometer}.
+ * 
+ * @author Marcus Hirt
+ */
+public class ReplayBarometer implements Barometer {
+	private final ReplayCursor pressure;
+	private final ReplayCursor temperature;
+	private long lastSampleTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+
+	/**
+	 * @param replay
+	 *            the replay to read from.
+	 * @param name
+	 *            the name the barometer was recorded with.
+	 */
+	public ReplayBarometer(BlackBoxReplay replay, String name) {
+		pressure = new ReplayCursor(replay, name + ".pressure");
+		temperature = new ReplayCursor(replay, name + ".temperature");
+	}
+
+	@Override
+	public synchronized float readTemperature() throws IOException {
+		temperature.advance();
+		lastSampleTime = temperature.getTimestamp();
+		return temperature.getX();
+	}
+
+	@Override
+	public synchronized int readPressure() throws IOException {
+		pressure.advance();
+		lastSampleTime = pressure.getTimestamp();
+		return (int) pressure.getX();
+	}
+
+	@Override
+	public synchronized long getLastSampleTime() {
+		return lastSampleTime;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+/**
+ * The clock driving a {@link BlackBoxReplay}. Use {@link #SYSTEM} to replay
+ * in real time, or provide a simulated clock to drive a replay from a test.
+ * 
+ * @author Marcus Hirt
+ */
+public interface ReplayClock {
+	/**
+	 * The system clock, based on {@link System#nanoTime()}.
+	 */
+	ReplayClock SYSTEM = new ReplayClock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void sleepUntil(long nanoTime) throws InterruptedException {
+			long remaining;
+			while ((remaining = nanoTime - System.nanoTime()) > 0) {
+				Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+			}
+		}
+	};
+
+	/**
+	 * @return the current time of the clock, in ns.
+	 */
+	long nanoTime();
+
+	/**
+	 * Waits until the clock reaches the specified time.
+	 * 
+	 * @param nanoTime
+	 *            the time to wait for.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	void sleepUntil(long nanoTime) throws InterruptedException;
+}
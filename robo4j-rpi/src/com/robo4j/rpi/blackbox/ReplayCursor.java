@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.robo4j.rpi.blackbox.BlackBoxReader.Block;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Steps through the records of some channels of a recording, one block at a
+ * time. The records of a block are decoded into primitive arrays, so moving
+ * to the next record does not allocate. Raw records are scaled to device
+ * units, and scalar records have their value in x.
+ * 
+ * @author Marcus Hirt
+ */
+final class ReplayCursor implements RecordHandler {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final BlackBoxReplay replay;
+	private final BlackBoxReader reader;
+	private final String name;
+	private final boolean[] selected;
+	private final List<Block> blocks;
+	private int nextBlock;
+
+	private long[] timestamps = new long[INITIAL_CAPACITY];
+	private float[] values = new float[INITIAL_CAPACITY * 3];
+	private int count;
+	private int position;
+
+	private long timestamp = TimestampedReadableDevice.NO_SAMPLE_TIME;
+	private float x;
+	private float y;
+	private float z;
+
+	ReplayCursor(BlackBoxReplay replay, String name) {
+		this.replay = replay;
+		this.reader = replay.getReader();
+		this.name = name;
+		this.blocks = replay.getBlocks();
+		if (reader.getChannels(name).isEmpty()) {
+			throw new IllegalArgumentException("No channel named " + name + " in " + reader.getFile());
+		}
+		this.selected = reader.select(name);
+		this.nextBlock = replay.getFirstBlock();
+	}
+
+	/**
+	 * Moves to the record a device read right now should return. When
+	 * replaying as fast as possible, that is simply the next record. When
+	 * replaying in time, it is the latest record captured at or before the
+	 * current replay time, waiting for the first record if need be.
+	 * 
+	 * @throws EOFException
+	 *             if the replay has reached the end of the recording.
+	 */
+	void advance() throws IOException {
+		if (!replay.isTimed()) {
+			if (!next()) {
+				throw new EOFException("End of replay for " + name);
+			}
+			return;
+		}
+		long now = replay.getReplayTime();
+		if (timestamp == TimestampedReadableDevice.NO_SAMPLE_TIME && peek() > now) {
+			long first = peek();
+			if (first == Long.MAX_VALUE) {
+				throw new EOFException("No records for " + name);
+			}
+			replay.waitFor(first);
+			now = first;
+		}
+		while (peek() <= now) {
+			next();
+		}
+		if (now > replay.getEndTimestamp()) {
+			throw new EOFException("End of replay for " + name);
+		}
+	}
+
+	/**
+	 * Moves to the next record.
+	 * 
+	 * @return false if there are no more records.
+	 */
+	boolean next() {
+		if (position == count && !fill()) {
+			return false;
+		}
+		timestamp = timestamps[position];
+		int offset = position * 3;
+		x = values[offset];
+		y = values[offset + 1];
+		z = values[offset + 2];
+		position++;
+		return true;
+	}
+
+	/**
+	 * @return the timestamp of the next record, or {@link Long#MAX_VALUE} if
+	 *         there are no more records.
+	 */
+	long peek() {
+		if (position == count && !fill()) {
+			return Long.MAX_VALUE;
+		}
+		return timestamps[position];
+	}
+
+	long getTimestamp() {
+		return timestamp;
+	}
+
+	float getX() {
+		return x;
+	}
+
+	float getY() {
+		return y;
+	}
+
+	float getZ() {
+		return z;
+	}
+
+	private boolean fill() {
+		while (nextBlock < blocks.size()) {
+			count = 0;
+			position = 0;
+			reader.decode(blocks.get(nextBlock++), this, replay.getStartTimestamp(), selected);
+			replay.prefetch(nextBlock);
+			if (count > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void add(long timestamp, float x, float y, float z) {
+		if (count == timestamps.length) {
+			timestamps = Arrays.copyOf(timestamps, count * 2);
+			values = Arrays.copyOf(values, count * 6);
+		}
+		timestamps[count] = timestamp;
+		int offset = count * 3;
+		values[offset] = x;
+		values[offset + 1] = y;
+		values[offset + 2] = z;
+		count++;
+	}
+
+	@Override
+	public void onFloat3D(BlackBoxChannel channel, long timestamp, float x, float y, float z) {
+		add(timestamp, x, y, z);
+	}
+
+	@Override
+	public void onRaw(BlackBoxChannel channel, long timestamp, int x, int y, int z) {
+		add(timestamp, x * channel.getScale().getX(), y * channel.getScale().getY(), z * channel.getScale().getZ());
+	}
+
+	@Override
+	public void onScalar(BlackBoxChannel channel, long timestamp, float value) {
+		add(timestamp, value, 0, 0);
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.ReadableFloat3DDevice;
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Replays a {@link Float3D} device recorded by a
+ * {@link RecordingFloat3DDevice}. Recordings of raw values are scaled back to
+ * device units.
+ * 
+ * @author Marcus Hirt
+ */
+public class ReplayFloat3DDevice implements ReadableFloat3DDevice, TimestampedReadableDevice<Float3D> {
+	private final ReplayCursor cursor;
+
+	/**
+	 * @param replay
+	 *            the replay to read from.
+	 * @param name
+	 *            the name the device was recorded with.
+	 */
+	public ReplayFloat3DDevice(BlackBoxReplay replay, String name) {
+		cursor = new ReplayCursor(replay, name);
+	}
+
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		cursor.advance();
+		dst.set(cursor.getX(), cursor.getY(), cursor.getZ());
+	}
+
+	@Override
+	public synchronized void read(float[] dst, int offset) throws IOException {
+		cursor.advance();
+		dst[offset] = cursor.getX();
+		dst[offset + 1] = cursor.getY();
+		dst[offset + 2] = cursor.getZ();
+	}
+
+	@Override
+	public synchronized Timestamped<Float3D> readTimestamped() throws IOException {
+		Float3D value = read();
+		return new Timestamped<>(value, cursor.getTimestamp());
+	}
+
+	@Override
+	public synchronized long getLastSampleTime() {
+		return cursor.getTimestamp();
+	}
+}
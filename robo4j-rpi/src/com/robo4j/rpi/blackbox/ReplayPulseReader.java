@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+import com.robo4j.rpi.i2c.pwmreader.PulseReader;
+
+/**
+ * Replays a pulse reader recorded by a {@link RecordingPulseReader}.
+ * 
+ * @author Marcus Hirt
+ */
+public class ReplayPulseReader implements PulseReader {
+	private final BlackBoxReplay replay;
+	private final String name;
+	private final Map<Integer, ReplayCursor> cursors = new HashMap<>();
+	private long lastSampleTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+
+	/**
+	 * @param replay
+	 *            the replay to read from.
+	 * @param name
+	 *            the name the pulse reader was recorded with.
+	 */
+	public ReplayPulseReader(BlackBoxReplay replay, String name) {
+		this.replay = replay;
+		this.name = name;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the channel was never read while recording.
+	 */
+	@Override
+	public synchronized double readPulse(int channel) throws IOException {
+		ReplayCursor cursor = cursors.get(channel);
+		if (cursor == null) {
+			cursor = new ReplayCursor(replay, RecordingPulseReader.getChannelName(name, channel));
+			cursors.put(channel, cursor);
+		}
+		cursor.advance();
+		lastSampleTime = cursor.getTimestamp();
+		return cursor.getX();
+	}
+
+	@Override
+	public synchronized long getLastSampleTime() {
+		return lastSampleTime;
+	}
+}
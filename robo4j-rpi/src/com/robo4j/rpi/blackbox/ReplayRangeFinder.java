@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+import com.robo4j.rpi.i2c.lidar.RangeFinder;
+
+/**
+ * Replays a range finder recorded by a {@link RecordingRangeFinder}. Each
+ * {@link #acquireRange()} moves to the next range, which is then returned by
+ * {@link #readDistance()}.
+ * 
+ * @author Marcus Hirt
+ */
+public class ReplayRangeFinder implements RangeFinder {
+	private final ReplayCursor cursor;
+
+	/**
+	 * @param replay
+	 *            the replay to read from.
+	 * @param name
+	 *            the name the range finder was recorded with.
+	 */
+	public ReplayRangeFinder(BlackBoxReplay replay, String name) {
+		cursor = new ReplayCursor(replay, name);
+	}
+
+	@Override
+	public synchronized void acquireRange() throws IOException {
+		cursor.advance();
+	}
+
+	@Override
+	public synchronized float readDistance() throws IOException {
+		if (cursor.getTimestamp() == TimestampedReadableDevice.NO_SAMPLE_TIME) {
+			cursor.advance();
+		}
+		return cursor.getX();
+	}
+
+	@Override
+	public synchronized long getLastSampleTime() {
+		return cursor.getTimestamp();
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.calibration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import com.robo4j.rpi.device.DeviceInventory;
+import com.robo4j.rpi.device.DeviceType;
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Matrix3;
+import com.robo4j.rpi.i2c.CalibratedFloat3DDevice;
+import com.robo4j.rpi.i2c.bmp.BMP085Device;
+import com.robo4j.rpi.i2c.bmp.BMP085Device.OperatingMode;
+import com.robo4j.rpi.i2c.gyro.BiasCorrectedGyroDevice;
+
+/**
+ * Keeps the calibration of devices in a properties file between runs, so
+ * that the devices are usable right after start up instead of after a new
+ * calibration. Entries are keyed by bus and address, and tagged with the
+ * identity of the device; if a different device turns up at the same
+ * location, its old entries are treated as stale and discarded.
+ * <p>
+ * Typical use is to restore the calibration right after creating a device,
+ * and to store it again, followed by a {@link #save()}, when the calibration
+ * has changed or at shut down.
+ * 
+ * @author Marcus Hirt
+ */
+public final class CalibrationStore {
+	private static final String KEY_PREFIX = "device.";
+	private static final String KEY_IDENTITY = ".identity";
+	private static final String KEY_OFFSETS = "offsets";
+	private static final String KEY_MULTIPLIERS = "multipliers";
+	private static final String KEY_CORRECTION = "correction";
+	private static final String KEY_BIAS = "bias";
+	private static final String KEY_FACTORY_CALIBRATION = "factory";
+	private static final String SEPARATOR = ",";
+
+	private final File file;
+	private final Properties properties = new Properties();
+	private boolean modified;
+
+	/**
+	 * Creates a store kept in the specified file, loading the file if it
+	 * exists.
+	 * 
+	 * @param file
+	 *            the file to keep the calibrations in.
+	 * @throws IOException
+	 *             if the file exists but could not be read.
+	 */
+	public CalibrationStore(File file) throws IOException {
+		this.file = file;
+		if (file.exists()) {
+			try (InputStream in = new FileInputStream(file)) {
+				properties.load(in);
+			}
+		}
+	}
+
+	/**
+	 * Creates the identity string of a device, from its type and the value of
+	 * its identity register.
+	 */
+	public static String identity(DeviceType type, int identity) {
+		return String.format("%s:0x%02x", type.getId(), identity);
+	}
+
+	/**
+	 * Creates the identity string of a device found by a device discovery.
+	 */
+	public static String identity(DeviceInventory.Item item) {
+		return String.format("%s:0x%02x", item.getType() == null ? "unknown" : item.getType().getId(),
+				item.getIdentity());
+	}
+
+	/**
+	 * Returns a stored calibration value.
+	 * 
+	 * @return the values, or null if there were none for the device, or if a
+	 *         different device was stored at the location.
+	 */
+	public synchronized float[] getFloats(int bus, int address, String identity, String name) {
+		String[] values = getValues(bus, address, identity, name);
+		if (values == null) {
+			return null;
+		}
+		float[] floats = new float[values.length];
+		try {
+			for (int i = 0; i < values.length; i++) {
+				floats[i] = Float.parseFloat(values[i]);
+			}
+		} catch (NumberFormatException e) {
+			getLogger().warning("Invalid calibration entry " + key(bus, address) + "." + name);
+			return null;
+		}
+		return floats;
+	}
+
+	/**
+	 * Returns a stored calibration value.
+	 * 
+	 * @return the values, or null if there were none for the device, or if a
+	 *         different device was stored at the location.
+	 */
+	public synchronized int[] getInts(int bus, int address, String identity, String name) {
+		String[] values = getValues(bus, address, identity, name);
+		if (values == null) {
+			return null;
+		}
+		int[] ints = new int[values.length];
+		try {
+			for (int i = 0; i < values.length; i++) {
+				ints[i] = Integer.parseInt(values[i]);
+			}
+		} catch (NumberFormatException e) {
+			getLogger().warning("Invalid calibration entry " + key(bus, address) + "." + name);
+			return null;
+		}
+		return ints;
+	}
+
+	/**
+	 * Stores a calibration value. Entries of a different device previously
+	 * stored at the location are removed.
+	 */
+	public synchronized void putFloats(int bus, int address, String identity, String name, float... values) {
+		StringBuilder builder = new StringBuilder();
+		for (float value : values) {
+			if (builder.length() > 0) {
+				builder.append(SEPARATOR);
+			}
+			builder.append(value);
+		}
+		putValue(bus, address, identity, name, builder.toString());
+	}
+
+	/**
+	 * Stores a calibration value. Entries of a different device previously
+	 * stored at the location are removed.
+	 */
+	public synchronized void putInts(int bus, int address, String identity, String name, int... values) {
+		StringBuilder builder = new StringBuilder();
+		for (int value : values) {
+			if (builder.length() > 0) {
+				builder.append(SEPARATOR);
+			}
+			builder.append(value);
+		}
+		putValue(bus, address, identity, name, builder.toString());
+	}
+
+	/**
+	 * Restores the offsets, multipliers and correction matrix of a calibrated
+	 * device.
+	 * 
+	 * @return true if a calibration was found and restored.
+	 */
+	public boolean restore(int bus, int address, String identity, CalibratedFloat3DDevice device) {
+		float[] offsets = getFloats(bus, address, identity, KEY_OFFSETS);
+		float[] multipliers = getFloats(bus, address, identity, KEY_MULTIPLIERS);
+		float[] correction = getFloats(bus, address, identity, KEY_CORRECTION);
+		if (offsets == null || offsets.length != 3 || multipliers == null || multipliers.length != 3
+				|| (correction != null && correction.length != 9)) {
+			return false;
+		}
+		Matrix3 matrix = null;
+		if (correction != null) {
+			matrix = new Matrix3();
+			matrix.set(correction[0], correction[1], correction[2], correction[3], correction[4], correction[5],
+					correction[6], correction[7], correction[8]);
+		}
+		device.setCalibration(toFloat3D(offsets), toFloat3D(multipliers), matrix);
+		return true;
+	}
+
+	/**
+	 * Stores the offsets, multipliers and correction matrix of a calibrated
+	 * device.
+	 */
+	public synchronized void store(int bus, int address, String identity, CalibratedFloat3DDevice device) {
+		Float3D offsets = device.getCenterOffsets();
+		Float3D multipliers = device.getRangeMultipliers();
+		Matrix3 m = device.getCorrection();
+		putFloats(bus, address, identity, KEY_OFFSETS, offsets.x, offsets.y, offsets.z);
+		putFloats(bus, address, identity, KEY_MULTIPLIERS, multipliers.x, multipliers.y, multipliers.z);
+		if (m != null) {
+			putFloats(bus, address, identity, KEY_CORRECTION, m.m00, m.m01, m.m02, m.m10, m.m11, m.m12, m.m20, m.m21,
+					m.m22);
+		} else {
+			modified |= properties.remove(key(bus, address) + "." + KEY_CORRECTION) != null;
+		}
+	}
+
+	/**
+	 * Restores the bias estimate of a gyro.
+	 * 
+	 * @return true if a bias was found and restored.
+	 */
+	public boolean restore(int bus, int address, String identity, BiasCorrectedGyroDevice device) {
+		float[] bias = getFloats(bus, address, identity, KEY_BIAS);
+		if (bias == null || bias.length != 3) {
+			return false;
+		}
+		device.setBias(toFloat3D(bias));
+		return true;
+	}
+
+	/**
+	 * Stores the bias estimate of a gyro.
+	 */
+	public void store(int bus, int address, String identity, BiasCorrectedGyroDevice device) {
+		Float3D bias = device.getBias(new Float3D());
+		putFloats(bus, address, identity, KEY_BIAS, bias.x, bias.y, bias.z);
+	}
+
+	/**
+	 * Creates a BMP085 barometer, reusing the factory calibration data stored
+	 * for the location if the device confirms it; see
+	 * {@link BMP085Device#BMP085Device(int, int, OperatingMode, int[])}. The
+	 * calibration data is put in the store, to be saved by the caller.
+	 * 
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	public BMP085Device createBMP085(int bus, int address, OperatingMode mode) throws IOException {
+		String identity = identity(DeviceType.BAROMETER_BMP085, BMP085Device.CHIP_ID);
+		int[] stored = getInts(bus, address, identity, KEY_FACTORY_CALIBRATION);
+		BMP085Device device = new BMP085Device(bus, address, mode, stored);
+		if (stored != null && !device.isCalibrationReused()) {
+			getLogger().info(String.format(
+					"Calibration data of the BMP085 at bus %d, 0x%02x changed - replaced sensor?", bus, address));
+		}
+		putInts(bus, address, identity, KEY_FACTORY_CALIBRATION, device.getCalibrationData());
+		return device;
+	}
+
+	/**
+	 * Saves the store to its file, if anything was changed since it was
+	 * loaded or last saved. The file is replaced atomically, so that a crash
+	 * while saving never leaves a broken store behind.
+	 * 
+	 * @throws IOException
+	 *             if the file could not be written.
+	 */
+	public synchronized void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+		File temporary = new File(file.getPath() + ".tmp");
+		try (OutputStream out = new FileOutputStream(temporary)) {
+			properties.store(out, "Robo4J calibration store");
+		}
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		modified = false;
+	}
+
+	private String[] getValues(int bus, int address, String identity, String name) {
+		String key = key(bus, address);
+		String storedIdentity = properties.getProperty(key + KEY_IDENTITY);
+		if (storedIdentity == null) {
+			return null;
+		}
+		if (!storedIdentity.equals(identity)) {
+			getLogger().info("Discarding stale calibration for " + storedIdentity + " at bus " + bus
+					+ String.format(", 0x%02x", address) + " - found " + identity);
+			remove(key);
+			return null;
+		}
+		String value = properties.getProperty(key + "." + name);
+		return value == null || value.isEmpty() ? null : value.split(SEPARATOR);
+	}
+
+	private void putValue(int bus, int address, String identity, String name, String value) {
+		String key = key(bus, address);
+		if (!identity.equals(properties.getProperty(key + KEY_IDENTITY))) {
+			remove(key);
+			properties.setProperty(key + KEY_IDENTITY, identity);
+		}
+		Object previous = properties.setProperty(key + "." + name, value);
+		modified |= !value.equals(previous);
+	}
+
+	private void remove(String key) {
+		for (String name : properties.stringPropertyNames()) {
+			if (name.startsWith(key + ".")) {
+				properties.remove(name);
+				modified = true;
+			}
+		}
+	}
+
+	private static String key(int bus, int address) {
+		return String.format("%s%d.0x%02x", KEY_PREFIX, bus, address);
+	}
+
+	private static Float3D toFloat3D(float[] values) {
+		return new Float3D(values[0], values[1], values[2]);
+	}
+
+	private static Logger getLogger() {
+		return Logger.getLogger(CalibrationStore.class.getName());
+	}
+}
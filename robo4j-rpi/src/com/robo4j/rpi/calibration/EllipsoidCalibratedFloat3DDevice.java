@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.calibration;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Matrix3;
+import com.robo4j.rpi.i2c.CalibratedFloat3DDevice;
+import com.robo4j.rpi.i2c.ReadableDevice;
+
+/**
+ * A calibrated device which keeps calibrating itself while in use. Every raw
+ * sample read is added to an {@link EllipsoidFit}, which is solved now and
+ * then on a background thread. When the fit succeeds, its offsets and
+ * correction matrix are swapped into the device, without blocking readers.
+ * <p>
+ * Meant for magnetometers, where it corrects both hard and soft iron
+ * distortion, simply by moving the robot around in normal use instead of
+ * running a dedicated calibration routine.
+ * 
+ * @author Marcus Hirt
+ */
+public class EllipsoidCalibratedFloat3DDevice extends CalibratedFloat3DDevice {
+	/**
+	 * The default number of samples needed before the first solve.
+	 */
+	public static final int DEFAULT_MIN_SAMPLES = 300;
+
+	private static final Float3D ONE = new Float3D(1, 1, 1);
+
+	private final EllipsoidFit fit = new EllipsoidFit();
+	private final int minSamples;
+	private final long interval;
+	private final TimeUnit unit;
+	private final Object solveLock = new Object();
+	private final Float3D center = new Float3D();
+	private final Matrix3 correction = new Matrix3();
+	private long solvedSamples;
+	private volatile int updates;
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Creates a device starting out uncalibrated.
+	 * 
+	 * @param device
+	 *            the device to calibrate.
+	 * @param interval
+	 *            the time between attempts to solve the fit.
+	 * @param unit
+	 *            the unit of the interval.
+	 */
+	public EllipsoidCalibratedFloat3DDevice(ReadableDevice<Float3D> device, long interval, TimeUnit unit) {
+		this(device, new Float3D(), ONE, null, DEFAULT_MIN_SAMPLES, interval, unit);
+	}
+
+	/**
+	 * Creates a device starting out with a known calibration, for instance
+	 * one saved from a previous run.
+	 * 
+	 * @param device
+	 *            the device to calibrate.
+	 * @param offsets
+	 *            the initial offsets.
+	 * @param multipliers
+	 *            the initial multipliers.
+	 * @param correction
+	 *            the initial correction matrix, or null for none.
+	 * @param minSamples
+	 *            the number of samples needed before the first solve.
+	 * @param interval
+	 *            the time between attempts to solve the fit.
+	 * @param unit
+	 *            the unit of the interval.
+	 */
+	public EllipsoidCalibratedFloat3DDevice(ReadableDevice<Float3D> device, Float3D offsets, Float3D multipliers,
+			Matrix3 correction, int minSamples, long interval, TimeUnit unit) {
+		super(device, offsets, multipliers, correction);
+		this.minSamples = minSamples;
+		this.interval = interval;
+		this.unit = unit;
+	}
+
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		readRaw(dst);
+		fit.add(dst);
+		calibrate(dst);
+	}
+
+	/**
+	 * Starts solving the fit in the background.
+	 */
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Ellipsoid Calibration");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				update();
+			}
+		}, interval, interval, unit);
+	}
+
+	/**
+	 * Stops solving the fit in the background. The current calibration is
+	 * kept.
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Solves the fit, and swaps in the result if it succeeds. Called
+	 * periodically once started, but can also be called directly. Does
+	 * nothing if no samples were added since the last attempt.
+	 * 
+	 * @return true if a new calibration was swapped in.
+	 */
+	public boolean update() {
+		synchronized (solveLock) {
+			long samples = fit.getSamples();
+			if (samples < minSamples || samples == solvedSamples) {
+				return false;
+			}
+			solvedSamples = samples;
+			if (!fit.solve(center, correction)) {
+				getLogger().fine("Ellipsoid fit of " + samples + " samples rejected");
+				return false;
+			}
+			center.multiplyScalar(-1);
+			setCalibration(center, ONE, correction);
+			updates++;
+			return true;
+		}
+	}
+
+	/**
+	 * @return the number of times a new calibration was swapped in.
+	 */
+	public int getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * @return the fit collecting the samples, for instance to reset it after
+	 *         the magnetic environment of the sensor has changed.
+	 */
+	public EllipsoidFit getFit() {
+		return fit;
+	}
+
+	private static Logger getLogger() {
+		return Logger.getLogger(EllipsoidCalibratedFloat3DDevice.class.getName());
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.calibration;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Matrix3;
+
+/**
+ * Incremental least squares fit of an ellipsoid to a stream of 3D samples,
+ * used to find the hard iron (offset) and soft iron (scale and cross-axis)
+ * distortion of a magnetometer, or the offsets and scales of an
+ * accelerometer, from samples taken in many orientations.
+ * <p>
+ * Each sample only updates the sums of the normal equations for the general
+ * quadric Ax² + By² + Cz² + 2Dxy + 2Exz + 2Fyz + 2Gx + 2Hy + 2Iz = 1, so the
+ * fit uses constant memory no matter how many samples are added. Samples can
+ * be added from one thread while another one solves.
+ * <p>
+ * The samples must cover the sphere reasonably well. Samples from rotations
+ * around a single axis only do not determine an ellipsoid, and are rejected
+ * by {@link #solve(Float3D, Matrix3)}.
+ * 
+ * @author Marcus Hirt
+ */
+public class EllipsoidFit {
+	/**
+	 * The max ratio between the longest and the shortest semi-axis of an
+	 * accepted fit. Real soft iron distortion is far below this; larger
+	 * ratios come from samples not covering the sphere.
+	 */
+	public static final float MAX_AXIS_RATIO = 3;
+
+	private static final int TERMS = 9;
+	private static final double SINGULAR = 1e-12;
+
+	// Upper triangle of DᵀD, row by row, followed by Dᵀ1
+	private final double[] sums = new double[TERMS * (TERMS + 1) / 2 + TERMS];
+	private final double[] terms = new double[TERMS];
+	private double scale;
+	private long samples;
+
+	/**
+	 * Adds a sample to the fit.
+	 */
+	public synchronized void add(float x, float y, float z) {
+		if (scale == 0) {
+			// Fit in units of the first sample, to keep the normal equations
+			// well conditioned whatever the units of the device
+			double length = Math.sqrt(x * x + y * y + z * z);
+			if (length == 0) {
+				return;
+			}
+			scale = 1 / length;
+		}
+		double sx = x * scale;
+		double sy = y * scale;
+		double sz = z * scale;
+		double[] terms = this.terms;
+		terms[0] = sx * sx;
+		terms[1] = sy * sy;
+		terms[2] = sz * sz;
+		terms[3] = 2 * sx * sy;
+		terms[4] = 2 * sx * sz;
+		terms[5] = 2 * sy * sz;
+		terms[6] = 2 * sx;
+		terms[7] = 2 * sy;
+		terms[8] = 2 * sz;
+		int index = 0;
+		for (int i = 0; i < TERMS; i++) {
+			double term = terms[i];
+			for (int j = i; j < TERMS; j++) {
+				sums[index++] += term * terms[j];
+			}
+		}
+		for (int i = 0; i < TERMS; i++) {
+			sums[index++] += terms[i];
+		}
+		samples++;
+	}
+
+	public void add(Float3D sample) {
+		add(sample.x, sample.y, sample.z);
+	}
+
+	/**
+	 * @return the number of samples added since the last reset.
+	 */
+	public synchronized long getSamples() {
+		return samples;
+	}
+
+	public synchronized void reset() {
+		for (int i = 0; i < sums.length; i++) {
+			sums[i] = 0;
+		}
+		scale = 0;
+		samples = 0;
+	}
+
+	/**
+	 * Solves the fit for the samples added so far. On success, subtracting
+	 * the center from a sample and multiplying with the correction maps the
+	 * ellipsoid onto a sphere, with a radius equal to the geometric mean of
+	 * the semi-axes of the ellipsoid.
+	 * 
+	 * @param center
+	 *            receives the center of the ellipsoid.
+	 * @param correction
+	 *            receives the symmetric matrix mapping the ellipsoid onto a
+	 *            sphere.
+	 * @return false, leaving center and correction unchanged, if the samples
+	 *         do not determine an ellipsoid.
+	 */
+	public boolean solve(Float3D center, Matrix3 correction) {
+		double[] a = new double[TERMS * TERMS];
+		double[] b = new double[TERMS];
+		double scale;
+		synchronized (this) {
+			if (samples < TERMS) {
+				return false;
+			}
+			int index = 0;
+			for (int i = 0; i < TERMS; i++) {
+				for (int j = i; j < TERMS; j++) {
+					a[i * TERMS + j] = sums[index];
+					a[j * TERMS + i] = sums[index];
+					index++;
+				}
+			}
+			for (int i = 0; i < TERMS; i++) {
+				b[i] = sums[index++];
+			}
+			scale = this.scale;
+		}
+		if (!solveCholesky(a, b, TERMS)) {
+			return false;
+		}
+
+		// The quadric xᵀMx + 2vᵀx = 1 has its center at -M⁻¹v, and
+		// (x - c)ᵀM(x - c) = 1 + cᵀMc
+		double[] m = { b[0], b[3], b[4], b[3], b[1], b[5], b[4], b[5], b[2] };
+		double[] c = { -b[6], -b[7], -b[8] };
+		double[] mc = m.clone();
+		if (!solveCholesky(mc, c, 3)) {
+			return false;
+		}
+		double k = 1;
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				k += c[i] * m[i * 3 + j] * c[j];
+			}
+		}
+		if (k <= 0) {
+			return false;
+		}
+
+		// Semi-axes from the eigenvalues of M/k, and the correction as
+		// V·diag(sqrt(λ)·r)·Vᵀ, with r the geometric mean of the semi-axes
+		double[] vectors = new double[9];
+		double[] values = new double[3];
+		for (int i = 0; i < 9; i++) {
+			m[i] /= k;
+		}
+		eigen(m, values, vectors);
+		double minValue = Math.min(values[0], Math.min(values[1], values[2]));
+		double maxValue = Math.max(values[0], Math.max(values[1], values[2]));
+		if (minValue <= 0 || Math.sqrt(maxValue / minValue) > MAX_AXIS_RATIO) {
+			return false;
+		}
+		double radius = Math.pow(values[0] * values[1] * values[2], -1.0 / 6);
+		double[] w = new double[9];
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				double sum = 0;
+				for (int n = 0; n < 3; n++) {
+					sum += vectors[i * 3 + n] * Math.sqrt(values[n]) * radius * vectors[j * 3 + n];
+				}
+				w[i * 3 + j] = sum;
+			}
+		}
+		// Back to the units of the device; the correction keeps the field
+		// strength, so it is the same in both units
+		center.set((float) (c[0] / scale), (float) (c[1] / scale), (float) (c[2] / scale));
+		correction.set((float) w[0], (float) w[1], (float) w[2], (float) w[3], (float) w[4], (float) w[5],
+				(float) w[6], (float) w[7], (float) w[8]);
+		return true;
+	}
+
+	/**
+	 * Solves the symmetric positive definite system ax = b in place, leaving
+	 * x in b.
+	 */
+	private static boolean solveCholesky(double[] a, double[] b, int n) {
+		// Decompose into LLᵀ, with L in the lower triangle of a
+		for (int j = 0; j < n; j++) {
+			double diagonal = a[j * n + j];
+			for (int k = 0; k < j; k++) {
+				diagonal -= a[j * n + k] * a[j * n + k];
+			}
+			if (diagonal <= SINGULAR * Math.abs(a[j * n + j])) {
+				return false;
+			}
+			diagonal = Math.sqrt(diagonal);
+			a[j * n + j] = diagonal;
+			for (int i = j + 1; i < n; i++) {
+				double sum = a[i * n + j];
+				for (int k = 0; k < j; k++) {
+					sum -= a[i * n + k] * a[j * n + k];
+				}
+				a[i * n + j] = sum / diagonal;
+			}
+		}
+		// Forward substitution with L, then back substitution with Lᵀ
+		for (int i = 0; i < n; i++) {
+			double sum = b[i];
+			for (int k = 0; k < i; k++) {
+				sum -= a[i * n + k] * b[k];
+			}
+			b[i] = sum / a[i * n + i];
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			double sum = b[i];
+			for (int k = i + 1; k < n; k++) {
+				sum -= a[k * n + i] * b[k];
+			}
+			b[i] = sum / a[i * n + i];
+		}
+		return true;
+	}
+
+	/**
+	 * Eigen decomposition of a symmetric 3x3 matrix by Jacobi rotations. The
+	 * eigenvectors end up in the columns of vectors.
+	 */
+	private static void eigen(double[] m, double[] values, double[] vectors) {
+		double[] a = m.clone();
+		for (int i = 0; i < 9; i++) {
+			vectors[i] = i % 4 == 0 ? 1 : 0;
+		}
+		for (int sweep = 0; sweep < 50; sweep++) {
+			double offDiagonal = a[1] * a[1] + a[2] * a[2] + a[5] * a[5];
+			if (offDiagonal < 1e-30) {
+				break;
+			}
+			for (int p = 0; p < 2; p++) {
+				for (int q = p + 1; q < 3; q++) {
+					double apq = a[p * 3 + q];
+					if (apq == 0) {
+						continue;
+					}
+					double theta = (a[q * 3 + q] - a[p * 3 + p]) / (2 * apq);
+					double t = theta == 0 ? 1
+							: Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+					double cos = 1 / Math.sqrt(t * t + 1);
+					double sin = t * cos;
+					for (int k = 0; k < 3; k++) {
+						double akp = a[k * 3 + p];
+						double akq = a[k * 3 + q];
+						a[k * 3 + p] = cos * akp - sin * akq;
+						a[k * 3 + q] = sin * akp + cos * akq;
+					}
+					for (int k = 0; k < 3; k++) {
+						double apk = a[p * 3 + k];
+						double aqk = a[q * 3 + k];
+						a[p * 3 + k] = cos * apk - sin * aqk;
+						a[q * 3 + k] = sin * apk + cos * aqk;
+					}
+					for (int k = 0; k < 3; k++) {
+						double vkp = vectors[k * 3 + p];
+						double vkq = vectors[k * 3 + q];
+						vectors[k * 3 + p] = cos * vkp - sin * vkq;
+						vectors[k * 3 + q] = sin * vkp + cos * vkq;
+					}
+				}
+			}
+		}
+		for (int i = 0; i < 3; i++) {
+			values[i] = a[i * 4];
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.pi4j.io.i2c.I2CBus;
+
+/**
+ * Describes a set of devices to bring up. Can be created programmatically, or
+ * loaded from properties on the following format:
+ * 
+ * <pre>
+ * devices=imu.accelerometer,servos
+ * imu.accelerometer.type=lsm303-accelerometer
+ * imu.accelerometer.bus=1
+ * imu.accelerometer.address=0x19
+ * imu.accelerometer.rate=HZ_100
+ * servos.type=pca9685
+ * servos.frequency=50
+ * </pre>
+ * 
+ * Bus defaults to 1 and address to the default address of the device type.
+ * All other settings are device specific, see {@link DeviceType}.
+ * 
+ * @author Marcus Hirt
+ */
+public class DeviceConfiguration {
+	private static final String KEY_DEVICES = "devices";
+	private static final String KEY_TYPE = "type";
+	private static final String KEY_BUS = "bus";
+	private static final String KEY_ADDRESS = "address";
+
+	private final List<Entry> entries = new ArrayList<>();
+
+	/**
+	 * The configuration of a single device.
+	 */
+	public static final class Entry {
+		private final String name;
+		private final DeviceType type;
+		private final int bus;
+		private final int address;
+		private final Map<String, String> settings = new HashMap<>();
+
+		private Entry(String name, DeviceType type, int bus, int address) {
+			this.name = name;
+			this.type = type;
+			this.bus = bus;
+			this.address = address;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public DeviceType getType() {
+			return type;
+		}
+
+		public int getBus() {
+			return bus;
+		}
+
+		public int getAddress() {
+			return address;
+		}
+
+		/**
+		 * Sets a device specific setting.
+		 * 
+		 * @param key
+		 *            the name of the setting.
+		 * @param value
+		 *            the value of the setting.
+		 * @return this entry, for chaining.
+		 */
+		public Entry set(String key, String value) {
+			settings.put(key, value);
+			return this;
+		}
+
+		public String getString(String key, String defaultValue) {
+			String value = settings.get(key);
+			return value == null ? defaultValue : value;
+		}
+
+		public boolean getBoolean(String key, boolean defaultValue) {
+			String value = settings.get(key);
+			return value == null ? defaultValue : Boolean.parseBoolean(value);
+		}
+
+		public double getDouble(String key, double defaultValue) {
+			String value = settings.get(key);
+			return value == null ? defaultValue : Double.parseDouble(value);
+		}
+
+		public <E extends Enum<E>> E getEnum(String key, E defaultValue) {
+			String value = settings.get(key);
+			return value == null ? defaultValue : Enum.valueOf(defaultValue.getDeclaringClass(), value);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s [%s, bus %d, 0x%02x] %s", name, type.getId(), bus, address, settings);
+		}
+	}
+
+	/**
+	 * Adds a device to the configuration.
+	 * 
+	 * @param name
+	 *            the name of the device. Must be unique within the
+	 *            configuration.
+	 * @param type
+	 *            the type of device.
+	 * @param bus
+	 *            the I2C bus to use.
+	 * @param address
+	 *            the address to use.
+	 * @return the new entry, to which device specific settings can be added.
+	 */
+	public Entry add(String name, DeviceType type, int bus, int address) {
+		if (getEntry(name) != null) {
+			throw new IllegalArgumentException("There already is a device named " + name);
+		}
+		Entry entry = new Entry(name, type, bus, address);
+		entries.add(entry);
+		return entry;
+	}
+
+	/**
+	 * Adds a device on its default bus and address.
+	 * 
+	 * @see #add(String, DeviceType, int, int)
+	 */
+	public Entry add(String name, DeviceType type) {
+		return add(name, type, I2CBus.BUS_1, type.getDefaultAddress());
+	}
+
+	/**
+	 * @return the entry with the specified name, or null if there is none.
+	 */
+	public Entry getEntry(String name) {
+		for (Entry entry : entries) {
+			if (entry.name.equals(name)) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return all the entries, in the order they were added.
+	 */
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * Creates a configuration from properties.
+	 * 
+	 * @param properties
+	 *            the properties to read the configuration from.
+	 * @return the configuration.
+	 * @throws IllegalArgumentException
+	 *             if the properties do not describe a valid configuration.
+	 */
+	public static DeviceConfiguration fromProperties(Properties properties) {
+		DeviceConfiguration configuration = new DeviceConfiguration();
+		String devices = properties.getProperty(KEY_DEVICES);
+		if (devices == null) {
+			throw new IllegalArgumentException("No " + KEY_DEVICES + " property in the configuration");
+		}
+		for (String name : devices.split(",")) {
+			name = name.trim();
+			if (name.isEmpty()) {
+				continue;
+			}
+			String typeId = properties.getProperty(name + '.' + KEY_TYPE);
+			if (typeId == null) {
+				throw new IllegalArgumentException("No type specified for device " + name);
+			}
+			DeviceType type = DeviceType.fromId(typeId.trim());
+			int bus = Integer.decode(properties.getProperty(name + '.' + KEY_BUS, String.valueOf(I2CBus.BUS_1)).trim());
+			String addressStr = properties.getProperty(name + '.' + KEY_ADDRESS);
+			int address = addressStr == null ? type.getDefaultAddress() : Integer.decode(addressStr.trim());
+			Entry entry = configuration.add(name, type, bus, address);
+			String prefix = name + '.';
+			for (String key : properties.stringPropertyNames()) {
+				if (key.startsWith(prefix)) {
+					String setting = key.substring(prefix.length());
+					if (!setting.contains(".") && !setting.equals(KEY_TYPE) && !setting.equals(KEY_BUS)
+							&& !setting.equals(KEY_ADDRESS)) {
+						entry.set(setting, properties.getProperty(key).trim());
+					}
+				}
+			}
+		}
+		return configuration;
+	}
+
+	/**
+	 * Loads a configuration from a properties stream.
+	 * 
+	 * @see #fromProperties(Properties)
+	 */
+	public static DeviceConfiguration load(InputStream in) throws IOException {
+		Properties properties = new Properties();
+		properties.load(in);
+		return fromProperties(properties);
+	}
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+import com.pi4j.io.i2c.I2CFactory;
+import com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException;
+
+/**
+ * Discovers the devices on the I2C buses. Each bus is scanned on its own
+ * thread, and any responding address is matched against the known
+ * {@link DeviceSignature}s, reading identity registers where available.
+ * <p>
+ * Scanning is slow compared to verifying a known inventory, so
+ * {@link #discover(File, int...)} will keep the inventory in a file and only
+ * rescan when the hardware no longer matches it.
+ * 
+ * @author Marcus Hirt
+ */
+public class DeviceDiscovery {
+	/**
+	 * The first non-reserved 7-bit I2C address.
+	 */
+	public static final int FIRST_ADDRESS = 0x03;
+	/**
+	 * The last non-reserved 7-bit I2C address.
+	 */
+	public static final int LAST_ADDRESS = 0x77;
+
+	// The LED All-Call address every PCA9685 answers on by default, and its
+	// default sub-call addresses. They are not searched for PCA9685s, since
+	// any PCA9685 on the bus would show up there as well; add a signature to
+	// look for one strapped to these addresses.
+	private static final int[] PCA9685_CALL_ADDRESSES = { 0x70, 0x71, 0x72, 0x74 };
+
+	private static final int[] PCA9685_ADDRESSES = pca9685Addresses();
+
+	// Written to the control register of a TCA9548A and read back, briefly
+	// selecting channels 0 and 2
+	private static final byte TCA9548A_TEST_PATTERN = 0x05;
+
+	private final List<DeviceSignature> signatures = new ArrayList<>();
+
+	/**
+	 * Creates a discovery service knowing about all the devices in this
+	 * library.
+	 */
+	public DeviceDiscovery() {
+		addSignature(new DeviceSignature(DeviceType.GYRO_L3GD20, new int[] { 0x6a, 0x6b }, 0x0F, 0xD4, 0xD7));
+		// IRA_REG_M contains the ASCII character 'H'
+		addSignature(new DeviceSignature(DeviceType.MAGNETOMETER_LSM303, new int[] { 0x1e }, 0x0A, 0x48));
+		addSignature(new DeviceSignature(DeviceType.BAROMETER_BMP085, new int[] { 0x77 }, 0xD0, 0x55));
+		addSignature(new DeviceSignature(DeviceType.ACCELEROMETER_LSM303, new int[] { 0x18, 0x19 },
+				DeviceSignature.NO_IDENTITY_REGISTER));
+		addSignature(new DeviceSignature(DeviceType.LIDAR_LITE, new int[] { 0x62 }, DeviceSignature.NO_IDENTITY_REGISTER));
+		// Must come before the PCA9685, which can also be strapped to 0x73 and
+		// 0x75 - 0x77. Verified, since PCA9685s answer on 0x70 - 0x72 and 0x74
+		addSignature(new DeviceSignature(DeviceType.MULTIPLEXER_TCA9548A,
+				new int[] { 0x70, 0x71, 0x72, 0x73, 0x74, 0x75, 0x76, 0x77 }, new DeviceSignature.Verifier() {
+					@Override
+					public boolean verify(I2CDevice device) throws IOException {
+						return verifyMultiplexer(device);
+					}
+				}));
+		addSignature(new DeviceSignature(DeviceType.PWM_PCA9685, PCA9685_ADDRESSES, DeviceSignature.NO_IDENTITY_REGISTER));
+		addSignature(new DeviceSignature(DeviceType.PWM_READER, new int[] { 0x02 }, DeviceSignature.NO_IDENTITY_REGISTER));
+	}
+
+	/**
+	 * Adds a signature for recognizing a device. Signatures with identity
+	 * registers are always tried before the ones matching by address only.
+	 * 
+	 * @param signature
+	 *            the signature to add.
+	 */
+	public void addSignature(DeviceSignature signature) {
+		if (signature.hasIdentityRegister()) {
+			int i = 0;
+			while (i < signatures.size() && signatures.get(i).hasIdentityRegister()) {
+				i++;
+			}
+			signatures.add(i, signature);
+		} else {
+			signatures.add(signature);
+		}
+	}
+
+	/**
+	 * Scans all non-reserved addresses on the specified buses.
+	 * 
+	 * @see #scan(int, int, int...)
+	 */
+	public DeviceInventory scan(int... buses) throws IOException {
+		return scan(FIRST_ADDRESS, LAST_ADDRESS, buses);
+	}
+
+	/**
+	 * Scans an address range on the specified buses, one thread per bus.
+	 * 
+	 * @param firstAddress
+	 *            the first address to probe.
+	 * @param lastAddress
+	 *            the last address to probe, inclusive.
+	 * @param buses
+	 *            the buses to scan.
+	 * @return the inventory of the devices found.
+	 * @throws IOException
+	 *             if a bus could not be opened.
+	 */
+	public DeviceInventory scan(final int firstAddress, final int lastAddress, int... buses) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, buses.length));
+		try {
+			List<CompletableFuture<List<DeviceInventory.Item>>> scans = new ArrayList<>();
+			for (final int bus : buses) {
+				scans.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						return scanBus(bus, firstAddress, lastAddress);
+					} catch (IOException e) {
+						throw new CompletionException(e);
+					}
+				}, executor));
+			}
+			DeviceInventory inventory = new DeviceInventory();
+			for (CompletableFuture<List<DeviceInventory.Item>> scan : scans) {
+				for (DeviceInventory.Item item : join(scan)) {
+					inventory.add(item);
+				}
+			}
+			return inventory;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Checks that all the devices in the inventory are still present, with the
+	 * same identities.
+	 * 
+	 * @param inventory
+	 *            the inventory to verify.
+	 * @return true if the hardware still matches the inventory.
+	 */
+	public boolean verify(DeviceInventory inventory) {
+		for (DeviceInventory.Item item : inventory.getItems()) {
+			try {
+				I2CDevice device = getBus(item.getBus()).getDevice(item.getAddress());
+				if (!isPresent(device)) {
+					getLogger().info("Device inventory mismatch: nothing found at " + item);
+					return false;
+				}
+				if (item.getType() != null && identify(device, item.getAddress()) != item.getType()) {
+					getLogger().info("Device inventory mismatch: different device found at " + item);
+					return false;
+				}
+				DeviceSignature signature = getSignature(item.getType(), item.getAddress());
+				if (signature != null && signature.readIdentity(device) != item.getIdentity()) {
+					getLogger().info("Device inventory mismatch: identity changed at " + item);
+					return false;
+				}
+			} catch (IOException e) {
+				getLogger().log(Level.INFO, "Device inventory mismatch: could not verify " + item, e);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Loads the inventory from the file and verifies it. If the file does not
+	 * exist, or the hardware no longer matches the inventory, the buses are
+	 * rescanned and the file updated.
+	 * 
+	 * @param inventoryFile
+	 *            the file keeping the inventory.
+	 * @param buses
+	 *            the buses to scan if needed.
+	 * @return the verified or rescanned inventory.
+	 * @throws IOException
+	 *             if a bus could not be opened, or the file could not be
+	 *             written.
+	 */
+	public DeviceInventory discover(File inventoryFile, int... buses) throws IOException {
+		if (inventoryFile.exists()) {
+			try (InputStream in = new FileInputStream(inventoryFile)) {
+				DeviceInventory inventory = DeviceInventory.load(in);
+				if (verify(inventory)) {
+					return inventory;
+				}
+			} catch (IOException e) {
+				getLogger().log(Level.WARNING, "Could not read device inventory " + inventoryFile + " - rescanning", e);
+			}
+		}
+		DeviceInventory inventory = scan(buses);
+		try (OutputStream out = new FileOutputStream(inventoryFile)) {
+			inventory.save(out);
+		}
+		return inventory;
+	}
+
+	private List<DeviceInventory.Item> scanBus(int bus, int firstAddress, int lastAddress) throws IOException {
+		I2CBus i2cBus = getBus(bus);
+		List<DeviceInventory.Item> found = new ArrayList<>();
+		for (int address = firstAddress; address <= lastAddress; address++) {
+			I2CDevice device = i2cBus.getDevice(address);
+			if (!isPresent(device)) {
+				continue;
+			}
+			DeviceType type = identify(device, address);
+			DeviceSignature signature = getSignature(type, address);
+			int identity = signature == null ? 0 : signature.readIdentity(device);
+			found.add(new DeviceInventory.Item(bus, address, type, identity));
+		}
+		return found;
+	}
+
+	private DeviceType identify(I2CDevice device, int address) {
+		for (DeviceSignature signature : signatures) {
+			if (signature.canHaveAddress(address)) {
+				try {
+					if (signature.readIdentity(device) >= 0) {
+						return signature.getType();
+					}
+				} catch (IOException e) {
+					// Register not readable, so not this kind of device
+				}
+			}
+		}
+		return null;
+	}
+
+	private DeviceSignature getSignature(DeviceType type, int address) {
+		if (type == null) {
+			return null;
+		}
+		for (DeviceSignature signature : signatures) {
+			if (signature.getType() == type && signature.canHaveAddress(address)) {
+				return signature;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The TCA9548A has a single control register, reading back what was
+	 * written. Other chips take the written byte as a register pointer, and
+	 * return the contents of that register.
+	 */
+	private static boolean verifyMultiplexer(I2CDevice device) throws IOException {
+		try {
+			device.write(TCA9548A_TEST_PATTERN);
+			return (device.read() & 0xFF) == TCA9548A_TEST_PATTERN;
+		} finally {
+			device.write((byte) 0);
+		}
+	}
+
+	private static int[] pca9685Addresses() {
+		int[] addresses = new int[0x40 - PCA9685_CALL_ADDRESSES.length];
+		int count = 0;
+		for (int address = 0x40; address < 0x80; address++) {
+			boolean isCallAddress = false;
+			for (int callAddress : PCA9685_CALL_ADDRESSES) {
+				isCallAddress |= address == callAddress;
+			}
+			if (!isCallAddress) {
+				addresses[count++] = address;
+			}
+		}
+		return addresses;
+	}
+
+	private static boolean isPresent(I2CDevice device) {
+		try {
+			device.read();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static I2CBus getBus(int bus) throws IOException {
+		try {
+			return I2CFactory.getInstance(bus);
+		} catch (UnsupportedBusNumberException e) {
+			throw new IOException("Unsupported bus", e);
+		}
+	}
+
+	private static <T> T join(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static Logger getLogger() {
+		return Logger.getLogger(DeviceDiscovery.class.getName());
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Creates (and initializes) a device. Device initialization usually involves
+ * a sequence of configuration writes and sleeps, so independent devices can
+ * be brought up concurrently using {@link #createAsync(Executor)}.
+ * 
+ * @author Marcus Hirt
+ *
+ * @param <T>
+ *            the kind of device created.
+ */
+public interface DeviceFactory<T> {
+	/**
+	 * Creates the device, blocking until it is initialized.
+	 * 
+	 * @return the initialized device.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	T create() throws IOException;
+
+	/**
+	 * Creates the device asynchronously.
+	 * 
+	 * @param executor
+	 *            the executor to run the initialization on.
+	 * @return a future completing with the initialized device, or
+	 *         exceptionally with the {@link IOException} preventing the
+	 *         device from being created.
+	 */
+	default CompletableFuture<T> createAsync(Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return create();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+}
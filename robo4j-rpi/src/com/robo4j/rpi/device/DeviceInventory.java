@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The devices found on the I2C buses by a {@link DeviceDiscovery}. Can be
+ * saved, so that later start ups only need to verify the inventory, and
+ * turned into a {@link DeviceConfiguration}.
+ * 
+ * @author Marcus Hirt
+ */
+public final class DeviceInventory {
+	private static final String KEY_PREFIX = "bus.";
+	private static final String KEY_TYPE = ".type";
+	private static final String KEY_IDENTITY = ".identity";
+	private static final String UNKNOWN_TYPE = "unknown";
+
+	private final List<Item> items = new ArrayList<>();
+
+	/**
+	 * A device found on the bus.
+	 */
+	public static final class Item {
+		private final int bus;
+		private final int address;
+		private final DeviceType type;
+		private final int identity;
+
+		Item(int bus, int address, DeviceType type, int identity) {
+			this.bus = bus;
+			this.address = address;
+			this.type = type;
+			this.identity = identity;
+		}
+
+		public int getBus() {
+			return bus;
+		}
+
+		public int getAddress() {
+			return address;
+		}
+
+		/**
+		 * @return the type of the device, or null if something responded on
+		 *         the address, but it could not be matched to a known device.
+		 */
+		public DeviceType getType() {
+			return type;
+		}
+
+		/**
+		 * @return the value read from the identity register of the device, or 0
+		 *         if the device does not have one.
+		 */
+		public int getIdentity() {
+			return identity;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("bus %d, 0x%02x: %s (id 0x%02x)", bus, address, type == null ? UNKNOWN_TYPE : type.getId(),
+					identity);
+		}
+	}
+
+	void add(Item item) {
+		items.add(item);
+	}
+
+	/**
+	 * @return the devices in the inventory.
+	 */
+	public List<Item> getItems() {
+		return Collections.unmodifiableList(items);
+	}
+
+	/**
+	 * Returns the device found at the specified location.
+	 * 
+	 * @return the device found at the location, or null if there was none.
+	 */
+	public Item getItem(int bus, int address) {
+		for (Item item : items) {
+			if (item.bus == bus && item.address == address) {
+				return item;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a device configuration for all the recognized devices in the
+	 * inventory. Devices are named after their type id, suffixed with bus and
+	 * address if there is more than one device of that type.
+	 * 
+	 * @return the configuration.
+	 */
+	public DeviceConfiguration toConfiguration() {
+		Map<DeviceType, Integer> counts = new HashMap<>();
+		for (Item item : items) {
+			if (item.type != null) {
+				Integer count = counts.get(item.type);
+				counts.put(item.type, count == null ? 1 : count + 1);
+			}
+		}
+		DeviceConfiguration configuration = new DeviceConfiguration();
+		for (Item item : items) {
+			if (item.type != null) {
+				String name = item.type.getId();
+				if (counts.get(item.type) > 1) {
+					name = String.format("%s-%d-%02x", name, item.bus, item.address);
+				}
+				configuration.add(name, item.type, item.bus, item.address);
+			}
+		}
+		return configuration;
+	}
+
+	/**
+	 * Saves the inventory as properties.
+	 * 
+	 * @param out
+	 *            the stream to save to.
+	 * @throws IOException
+	 *             if the inventory could not be saved.
+	 */
+	public void save(OutputStream out) throws IOException {
+		Properties properties = new Properties();
+		for (Item item : items) {
+			String key = key(item.bus, item.address);
+			properties.setProperty(key + KEY_TYPE, item.type == null ? UNKNOWN_TYPE : item.type.getId());
+			properties.setProperty(key + KEY_IDENTITY, String.format("0x%02x", item.identity));
+		}
+		properties.store(out, "Robo4J device inventory");
+	}
+
+	/**
+	 * Loads an inventory previously saved with {@link #save(OutputStream)}.
+	 * 
+	 * @param in
+	 *            the stream to load from.
+	 * @return the loaded inventory.
+	 * @throws IOException
+	 *             if the inventory could not be loaded.
+	 */
+	public static DeviceInventory load(InputStream in) throws IOException {
+		Properties properties = new Properties();
+		properties.load(in);
+		DeviceInventory inventory = new DeviceInventory();
+		for (String key : properties.stringPropertyNames()) {
+			if (!key.startsWith(KEY_PREFIX) || !key.endsWith(KEY_TYPE)) {
+				continue;
+			}
+			String[] location = key.substring(KEY_PREFIX.length(), key.length() - KEY_TYPE.length()).split("\\.");
+			try {
+				int bus = Integer.decode(location[0]);
+				int address = Integer.decode(location[1]);
+				String typeId = properties.getProperty(key);
+				DeviceType type = UNKNOWN_TYPE.equals(typeId) ? null : DeviceType.fromId(typeId);
+				int identity = Integer.decode(properties.getProperty(key(bus, address) + KEY_IDENTITY, "0"));
+				inventory.add(new Item(bus, address, type, identity));
+			} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Invalid inventory entry " + key, e);
+			}
+		}
+		Collections.sort(inventory.items, (a, b) -> a.bus != b.bus ? a.bus - b.bus : a.address - b.address);
+		return inventory;
+	}
+
+	private static String key(int bus, int address) {
+		return String.format("%s%d.0x%02x", KEY_PREFIX, bus, address);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("Device inventory:");
+		for (Item item : items) {
+			builder.append(System.lineSeparator()).append("  ").append(item);
+		}
+		return builder.toString();
+	}
+}
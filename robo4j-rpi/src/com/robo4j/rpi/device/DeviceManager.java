@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Brings up a set of devices concurrently. Device initialization is mostly
+ * configuration writes and sleeps, and each device gets its own thread during
+ * start up, so the sleeps of independent devices overlap. Transactions on a
+ * shared bus are still serialized by the bus itself, and devices on separate
+ * buses run fully in parallel.
+ * <p>
+ * Example:
+ * 
+ * <pre>
+ * DeviceManager manager = new DeviceManager(DeviceConfiguration.load(in));
+ * manager.start().join();
+ * GyroL3GD20Device gyro = manager.getDevice("gyro", GyroL3GD20Device.class);
+ * </pre>
+ * 
+ * @author Marcus Hirt
+ */
+public class DeviceManager {
+	private final Map<String, DeviceFactory<?>> factories = new LinkedHashMap<>();
+	private final Map<String, CompletableFuture<?>> devices = new LinkedHashMap<>();
+	private final List<DeviceStartup> startups = Collections.synchronizedList(new ArrayList<DeviceStartup>());
+	private volatile long startTime;
+
+	/**
+	 * Creates a device manager without any devices. Add devices using
+	 * {@link #add(String, DeviceFactory)}.
+	 */
+	public DeviceManager() {
+	}
+
+	/**
+	 * Creates a device manager for the devices in the configuration.
+	 * 
+	 * @param configuration
+	 *            the devices to manage.
+	 */
+	public DeviceManager(DeviceConfiguration configuration) {
+		for (final DeviceConfiguration.Entry entry : configuration.getEntries()) {
+			add(entry.getName(), new DeviceFactory<Object>() {
+				@Override
+				public Object create() throws IOException {
+					return entry.getType().create(entry);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Adds a device to be started by this manager.
+	 * 
+	 * @param name
+	 *            the unique name of the device.
+	 * @param factory
+	 *            the factory creating the device.
+	 */
+	public synchronized void add(String name, DeviceFactory<?> factory) {
+		if (!devices.isEmpty()) {
+			throw new IllegalStateException("Devices can not be added after the manager has been started");
+		}
+		if (factories.containsKey(name)) {
+			throw new IllegalArgumentException("There already is a device named " + name);
+		}
+		factories.put(name, factory);
+	}
+
+	/**
+	 * Starts all the devices concurrently.
+	 * 
+	 * @return a future completing with this manager when all devices have
+	 *         been started, or exceptionally with an {@link IOException} if
+	 *         one or more of the devices failed to start. The individual
+	 *         results are available from {@link #getStartupReport()} either
+	 *         way.
+	 */
+	public synchronized CompletableFuture<DeviceManager> start() {
+		if (!devices.isEmpty()) {
+			throw new IllegalStateException("The device manager has already been started");
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, factories.size()),
+				new StartupThreadFactory());
+		startTime = System.nanoTime();
+		for (Map.Entry<String, DeviceFactory<?>> entry : factories.entrySet()) {
+			devices.put(entry.getKey(), startDevice(entry.getKey(), entry.getValue(), executor));
+		}
+		CompletableFuture<Void> all = CompletableFuture.allOf(devices.values().toArray(new CompletableFuture<?>[devices.size()]));
+		return all.handle((result, ignore) -> {
+			executor.shutdown();
+			IOException failure = null;
+			for (DeviceStartup startup : getStartupReport()) {
+				if (!startup.isStarted()) {
+					if (failure == null) {
+						failure = new IOException("Failed to start device(s)");
+					}
+					failure.addSuppressed(startup.getFailure());
+				}
+			}
+			if (failure != null) {
+				throw new CompletionException(failure);
+			}
+			return this;
+		});
+	}
+
+	private <T> CompletableFuture<T> startDevice(final String name, DeviceFactory<T> factory, ExecutorService executor) {
+		final DeviceFactory<T> timedFactory = new DeviceFactory<T>() {
+			@Override
+			public T create() throws IOException {
+				long start = System.nanoTime();
+				try {
+					T device = factory.create();
+					startups.add(new DeviceStartup(name, start - startTime, System.nanoTime() - start, null));
+					return device;
+				} catch (IOException | RuntimeException e) {
+					startups.add(new DeviceStartup(name, start - startTime, System.nanoTime() - start, e));
+					throw e;
+				}
+			}
+		};
+		return timedFactory.createAsync(executor);
+	}
+
+	/**
+	 * Returns a started device.
+	 * 
+	 * @param name
+	 *            the name of the device.
+	 * @param type
+	 *            the expected type of the device.
+	 * @return the device.
+	 * @throws IllegalStateException
+	 *             if the device has not been started yet, or failed to start.
+	 * @throws IllegalArgumentException
+	 *             if there is no device with that name.
+	 */
+	public synchronized <T> T getDevice(String name, Class<T> type) {
+		CompletableFuture<?> future = devices.get(name);
+		if (future == null) {
+			if (factories.containsKey(name)) {
+				throw new IllegalStateException("The device manager has not been started");
+			}
+			throw new IllegalArgumentException("There is no device named " + name);
+		}
+		if (!future.isDone()) {
+			throw new IllegalStateException("The device " + name + " has not finished starting");
+		}
+		if (future.isCompletedExceptionally()) {
+			throw new IllegalStateException("The device " + name + " failed to start");
+		}
+		return type.cast(future.join());
+	}
+
+	/**
+	 * @return the start up results of the devices started so far, ordered by
+	 *         when they started.
+	 */
+	public List<DeviceStartup> getStartupReport() {
+		List<DeviceStartup> report;
+		synchronized (startups) {
+			report = new ArrayList<>(startups);
+		}
+		Collections.sort(report, (a, b) -> Long.compare(a.getStartOffset(), b.getStartOffset()));
+		return report;
+	}
+
+	/**
+	 * @return the time from when the manager was started until the last device
+	 *         was done starting, in ns.
+	 */
+	public long getTimeToReady() {
+		long ready = 0;
+		for (DeviceStartup startup : getStartupReport()) {
+			ready = Math.max(ready, startup.getStartOffset() + startup.getDuration());
+		}
+		return ready;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("Devices ready after %d ms", TimeUnit.NANOSECONDS.toMillis(getTimeToReady())));
+		for (DeviceStartup startup : getStartupReport()) {
+			builder.append(System.lineSeparator()).append("  ").append(startup);
+		}
+		return builder.toString();
+	}
+
+	private static final class StartupThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Device Startup " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
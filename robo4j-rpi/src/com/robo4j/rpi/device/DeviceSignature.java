@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.io.IOException;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+/**
+ * Describes how to recognize a kind of device on the I2C bus: the addresses
+ * it can be strapped to and, if the chip has one, the identity register and
+ * the values it can contain. Chips without an identity register can be given
+ * a {@link Verifier}, probing the device to tell it from other chips
+ * answering on the same address.
+ * 
+ * @author Marcus Hirt
+ */
+public final class DeviceSignature {
+	/**
+	 * Used as register for devices without an identity register. Such devices
+	 * are recognized by address only.
+	 */
+	public static final int NO_IDENTITY_REGISTER = -1;
+
+	/**
+	 * Probes a device without an identity register, to confirm that it is of
+	 * the expected kind.
+	 */
+	public interface Verifier {
+		/**
+		 * @return true if the device is of the expected kind.
+		 * @throws IOException
+		 *             if the device could not be accessed.
+		 */
+		boolean verify(I2CDevice device) throws IOException;
+	}
+
+	private final DeviceType type;
+	private final int[] addresses;
+	private final int identityRegister;
+	private final int[] identities;
+	private final Verifier verifier;
+
+	/**
+	 * Creates a new signature.
+	 * 
+	 * @param type
+	 *            the type of device recognized.
+	 * @param addresses
+	 *            the addresses the device can have.
+	 * @param identityRegister
+	 *            the register containing the chip identity, or
+	 *            {@link #NO_IDENTITY_REGISTER}.
+	 * @param identities
+	 *            the acceptable values of the identity register.
+	 */
+	public DeviceSignature(DeviceType type, int[] addresses, int identityRegister, int... identities) {
+		this.type = type;
+		this.addresses = addresses.clone();
+		this.identityRegister = identityRegister;
+		this.identities = identities.clone();
+		this.verifier = null;
+	}
+
+	/**
+	 * Creates a new signature for a device without an identity register,
+	 * confirmed by probing it.
+	 * 
+	 * @param type
+	 *            the type of device recognized.
+	 * @param addresses
+	 *            the addresses the device can have.
+	 * @param verifier
+	 *            the probe confirming the kind of device.
+	 */
+	public DeviceSignature(DeviceType type, int[] addresses, Verifier verifier) {
+		this.type = type;
+		this.addresses = addresses.clone();
+		this.identityRegister = NO_IDENTITY_REGISTER;
+		this.identities = new int[0];
+		this.verifier = verifier;
+	}
+
+	public DeviceType getType() {
+		return type;
+	}
+
+	/**
+	 * @return true if the device can be strapped to the address.
+	 */
+	public boolean canHaveAddress(int address) {
+		for (int a : addresses) {
+			if (a == address) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the device can be positively identified by reading an
+	 *         identity register, false if recognized by address only.
+	 */
+	public boolean hasIdentityRegister() {
+		return identityRegister != NO_IDENTITY_REGISTER;
+	}
+
+	/**
+	 * Reads the identity of the device.
+	 * 
+	 * @param device
+	 *            the device to read the identity from.
+	 * @return the identity read, or -1 if the device does not match this
+	 *         signature.
+	 * @throws IOException
+	 *             if the device could not be read.
+	 */
+	public int readIdentity(I2CDevice device) throws IOException {
+		if (!hasIdentityRegister()) {
+			return verifier == null || verifier.verify(device) ? 0 : -1;
+		}
+		int id = device.read(identityRegister) & 0xFF;
+		for (int identity : identities) {
+			if (identity == id) {
+				return id;
+			}
+		}
+		return -1;
+	}
+}
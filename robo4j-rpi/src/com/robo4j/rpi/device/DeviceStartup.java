@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how the start up of a device managed by a {@link DeviceManager}
+ * went.
+ * 
+ * @author Marcus Hirt
+ */
+public final class DeviceStartup {
+	private final String name;
+	private final long startOffset;
+	private final long duration;
+	private final Throwable failure;
+
+	DeviceStartup(String name, long startOffset, long duration, Throwable failure) {
+		this.name = name;
+		this.startOffset = startOffset;
+		this.duration = duration;
+		this.failure = failure;
+	}
+
+	/**
+	 * @return the name of the device.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the time from the start of the device manager until the
+	 *         initialization of this device began, in ns.
+	 */
+	public long getStartOffset() {
+		return startOffset;
+	}
+
+	/**
+	 * @return the time it took to create and initialize the device, in ns.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return true if the device was successfully started.
+	 */
+	public boolean isStarted() {
+		return failure == null;
+	}
+
+	/**
+	 * @return the reason the device failed to start, or null if it started.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %s after %d ms, took %d ms", name, isStarted() ? "started" : "FAILED (" + failure + ")",
+				TimeUnit.NANOSECONDS.toMillis(startOffset), TimeUnit.NANOSECONDS.toMillis(duration));
+	}
+}
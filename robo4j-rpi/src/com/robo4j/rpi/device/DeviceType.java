@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device;
+import com.robo4j.rpi.i2c.bmp.BMP085Device;
+import com.robo4j.rpi.i2c.gyro.GyroL3GD20Device;
+import com.robo4j.rpi.i2c.lidar.LidarLiteDevice;
+import com.robo4j.rpi.i2c.magnetometer.MagnetometerLSM303Device;
+import com.robo4j.rpi.i2c.mux.TCA9548ADevice;
+import com.robo4j.rpi.i2c.pwm.PWMPCA9685Device;
+import com.robo4j.rpi.i2c.pwmreader.PWMReader;
+import com.robo4j.rpi.serial.gps.GPS;
+
+/**
+ * The kinds of devices which can be created from a
+ * {@link DeviceConfiguration}. Each type knows its default address, and
+ * which additional settings it takes.
+ * 
+ * @author Marcus Hirt
+ */
+public enum DeviceType {
+	/**
+	 * LSM303 accelerometer. Settings: mode, rate, scale, highres.
+	 */
+	ACCELEROMETER_LSM303("lsm303-accelerometer", 0x19) {
+		@Override
+		public Object create(DeviceConfiguration.Entry entry) throws IOException {
+			return new AccelerometerLSM303Device(entry.getBus(), entry.getAddress(),
+					entry.getEnum("mode", AccelerometerLSM303Device.PowerMode.NORMAL),
+					entry.getEnum("rate", AccelerometerLSM303Device.DataRate.HZ_10),
+					AccelerometerLSM303Device.AXIS_ENABLE_ALL,
+					entry.getEnum("scale", AccelerometerLSM303Device.FullScale.G_2), entry.getBoolean("highres", false));
+		}
+	},
+	/**
+	 * LSM303 magnetometer. Settings: mode, rate, temperature.
+	 */
+	MAGNETOMETER_LSM303("lsm303-magnetometer", 0x1e) {
+		@Override
+		public Object create(DeviceConfiguration.Entry entry) throws IOException {
+			return new MagnetometerLSM303Device(entry.getBus(), entry.getAddress(),
+					entry.getEnum("mode", MagnetometerLSM303Device.Mode.CONTINUOUS_CONVERSION),
+					entry.getEnum("rate", MagnetometerLSM303Device.Rate.RATE_1_5), entry.getBoolean("temperature", false));
+		}
+	},
+	/**
+	 * L3GD20 gyro. Settings: sensitivity, highpass.
+	 */
+	GYRO_L3GD20("l3gd20", 0x6b) {
+		@Override
+		public Object create(DeviceConfiguration.Entry entry) throws IOException {
+			return new GyroL3GD20Device(entry.getBus(), entry.getAddress(),
+					entry.getEnum("sensitivity", GyroL3GD20Device.Sensitivity.DPS_245), entry.getBoolean("highpass", true));
+		}
+	},
+	/**
+	 * BMP085/BMP180 barometer. Settings: mode.
+	 */
+	BAROMETER_BMP085("bmp085", 0x77) {
+		@Override
+		public Object create(DeviceConfiguration.Entry entry) throws IOException {
+			return new BMP085Device(entry.getBus(), entry.getAddress(),
+					entry.getEnum("mode", BMP085Device.OperatingMode.STANDARD));
+		}
+	},
+	/**
+	 * LidarLite range finder.
+	 */
+	LIDAR_LITE("lidarlite", 0x62) {
+		@Override
+		public Object create(DeviceConfiguration.Entry entry) throws IOException {
+			return new LidarLiteDevice(entry.getBus(), entry.getAddress());
+		}
+	},
+	/**
+	 * PCA9685 PWM driver. Settings: frequency (in Hz, optional).
+	 */
+	PWM_PCA9685("pca9685", 0x40) {
+		@Override
+		public Object create(DeviceConfiguration.Entry entry) throws IOException {
+			PWMPCA9685Device device = new PWMPCA9685Device(entry.getBus(), entry.getAddress());
+			double frequency = entry.getDouble("frequency", Double.NaN);
+			if (!Double.isNaN(frequency)) {
+				device.setPWMFrequency(frequency);
+			}
+			return device;
+		}
+	},
+	/**
+	 * The Arduino based PWM reader.
+	 */
+	PWM_READER("pwmreader", 0x02) {
+		@Override
+		public Object create(DeviceConfiguration.Entry entry) throws IOException {
+			return new PWMReader(entry.getBus(), entry.getAddress());
+		}
+	},
+	/**
+	 * TCA9548A I2C multiplexer. Devices behind it use the virtual bus numbers
+	 * of its channels, see {@link TCA9548ADevice#getVirtualBus(int, int, int)}.
+	 */
+	MULTIPLEXER_TCA9548A("tca9548a", TCA9548ADevice.DEFAULT_ADDRESS) {
+		@Override
+		public Object create(DeviceConfiguration.Entry entry) throws IOException {
+			return TCA9548ADevice.getInstance(entry.getBus(), entry.getAddress());
+		}
+	},
+	/**
+	 * The serial MTK3339 GPS. Bus and address are ignored.
+	 */
+	GPS_MTK3339("gps", -1) {
+		@Override
+		public Object create(DeviceConfiguration.Entry entry) throws IOException {
+			return new GPS();
+		}
+	};
+
+	private final String id;
+	private final int defaultAddress;
+
+	private DeviceType(String id, int defaultAddress) {
+		this.id = id;
+		this.defaultAddress = defaultAddress;
+	}
+
+	/**
+	 * @return the id used for the type in configuration files.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the address used if none is configured.
+	 */
+	public int getDefaultAddress() {
+		return defaultAddress;
+	}
+
+	/**
+	 * Creates and initializes a device of this type.
+	 * 
+	 * @param entry
+	 *            the configuration for the device.
+	 * @return the initialized device.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	public abstract Object create(DeviceConfiguration.Entry entry) throws IOException;
+
+	/**
+	 * Looks up a device type from its configuration id.
+	 * 
+	 * @param id
+	 *            the id to look up.
+	 * @return the device type.
+	 * @throws IllegalArgumentException
+	 *             if there is no device type with the id.
+	 */
+	public static DeviceType fromId(String id) {
+		for (DeviceType type : values()) {
+			if (type.id.equals(id)) {
+				return type;
+			}
+		}
+		throw new IllegalArgumentException("Unknown device type " + id);
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.robo4j.rpi.event.SensorEvent.Type;
+
+/**
+ * An in-process bus multicasting sensor events from any number of producers
+ * to a set of consumers, in the style of the LMAX Disruptor. The events live
+ * in a ring of preallocated {@link SensorEvent}s. Producers claim a slot,
+ * fill in the event and publish it, and every consumer sees every event, in
+ * order, on a thread of its own, tracking its position with its own
+ * {@link Sequence}. A consumer can depend on other consumers, to only see
+ * the events they are done with, for example to have a fusion step run
+ * after a filtering step.
+ * <p>
+ * Producers never overtake the slowest consumer. If the ring is full, they
+ * wait, so size the ring to absorb the bursts. Publishing does not allocate.
+ * <p>
+ * Add the consumers, then {@link #start()} the bus. Events published before
+ * the bus is started are not delivered.
+ * 
+ * @author Marcus Hirt
+ */
+public class EventBus {
+	/**
+	 * The default number of events in the ring.
+	 */
+	public static final int DEFAULT_SIZE = 1024;
+
+	private final SensorEvent[] events;
+	private final int mask;
+	private final int shift;
+	// The round each slot was last published in, to tell published slots
+	// from merely claimed ones when there are several producers
+	private final AtomicIntegerArray published;
+	private final Sequence claimed = new Sequence(-1);
+	private final Sequence gatingCache = new Sequence(-1);
+	private final WaitStrategy waitStrategy;
+	private final List<EventConsumer> consumers = new ArrayList<>();
+	private volatile EventConsumer[] gating = new EventConsumer[0];
+	private volatile boolean running;
+
+	/**
+	 * Creates a bus with the default size, parking when idle.
+	 */
+	public EventBus() {
+		this(DEFAULT_SIZE, WaitStrategy.PARK);
+	}
+
+	/**
+	 * @param size
+	 *            the number of events in the ring, a power of two.
+	 * @param waitStrategy
+	 *            how to wait for events, or for free slots.
+	 */
+	public EventBus(int size, WaitStrategy waitStrategy) {
+		if (size < 1 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("The size must be a power of two, was " + size);
+		}
+		this.events = new SensorEvent[size];
+		for (int i = 0; i < size; i++) {
+			events[i] = new SensorEvent();
+		}
+		this.mask = size - 1;
+		this.shift = Integer.numberOfTrailingZeros(size);
+		this.published = new AtomicIntegerArray(size);
+		for (int i = 0; i < size; i++) {
+			published.set(i, -1);
+		}
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Adds a consumer, which will see every event after the consumers it
+	 * depends on are done with it.
+	 * 
+	 * @param name
+	 *            the name of the consumer, also used for its thread.
+	 * @param handler
+	 *            the handler for the events.
+	 * @param dependencies
+	 *            the consumers which must process each event first.
+	 * @return the consumer.
+	 * @throws IllegalStateException
+	 *             if the bus has been started.
+	 */
+	public synchronized EventConsumer addConsumer(String name, EventHandler handler, EventConsumer... dependencies) {
+		if (running) {
+			throw new IllegalStateException("Consumers must be added before the bus is started");
+		}
+		for (EventConsumer dependency : dependencies) {
+			if (!consumers.contains(dependency)) {
+				throw new IllegalArgumentException(dependency + " is not a consumer of this bus");
+			}
+		}
+		EventConsumer consumer = new EventConsumer(this, name, handler, dependencies);
+		consumers.add(consumer);
+		return consumer;
+	}
+
+	/**
+	 * Starts a thread for each consumer.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		long start = claimed.get();
+		for (EventConsumer consumer : consumers) {
+			consumer.getSequence().set(start);
+		}
+		gatingCache.set(start);
+		gating = consumers.toArray(new EventConsumer[consumers.size()]);
+		running = true;
+		for (EventConsumer consumer : consumers) {
+			consumer.start();
+		}
+	}
+
+	/**
+	 * Stops the consumers, after they have processed the events they have
+	 * already picked up.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the consumers to stop.
+	 */
+	public synchronized void stop() throws InterruptedException {
+		running = false;
+		for (EventConsumer consumer : consumers) {
+			consumer.join();
+		}
+		gating = new EventConsumer[0];
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Claims the next slot, waiting for the slowest consumer if the ring is
+	 * full. Fill in the event using {@link #get(long)}, and then
+	 * {@link #publish(long)} it.
+	 * 
+	 * @return the sequence number of the claimed slot.
+	 */
+	public long next() {
+		long sequence = claimed.incrementAndGet();
+		long wrapPoint = sequence - events.length;
+		if (wrapPoint > gatingCache.get()) {
+			int count = 0;
+			long minimum;
+			while (wrapPoint > (minimum = getMinimumSequence(sequence)) && running) {
+				waitStrategy.idle(count++);
+			}
+			gatingCache.set(minimum);
+		}
+		return sequence;
+	}
+
+	/**
+	 * @return the event in the slot with the sequence number.
+	 */
+	public SensorEvent get(long sequence) {
+		return events[(int) sequence & mask];
+	}
+
+	/**
+	 * Makes a claimed event visible to the consumers.
+	 */
+	public void publish(long sequence) {
+		published.lazySet((int) sequence & mask, (int) (sequence >>> shift));
+	}
+
+	/**
+	 * Publishes an event.
+	 */
+	public void publish(Type type, String source, long timestamp, double x, double y, double z, Object attachment) {
+		long sequence = next();
+		get(sequence).set(type, source, timestamp, x, y, z, attachment);
+		publish(sequence);
+	}
+
+	/**
+	 * Publishes a {@link Type#FLOAT3D} event.
+	 */
+	public void publishFloat3D(String source, long timestamp, float x, float y, float z) {
+		publish(Type.FLOAT3D, source, timestamp, x, y, z, null);
+	}
+
+	/**
+	 * Publishes a {@link Type#SCALAR} event.
+	 */
+	public void publishScalar(String source, long timestamp, double value) {
+		publish(Type.SCALAR, source, timestamp, value, 0, 0, null);
+	}
+
+	/**
+	 * @return the highest sequence number claimed by a producer.
+	 */
+	public long getCursor() {
+		return claimed.get();
+	}
+
+	public int getSize() {
+		return events.length;
+	}
+
+	public List<EventConsumer> getConsumers() {
+		return Arrays.asList(gating);
+	}
+
+	WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	/**
+	 * @return the highest sequence number a consumer with the specified
+	 *         dependencies can process, or next - 1 if there is nothing to
+	 *         process.
+	 */
+	long getAvailable(long next, EventConsumer[] dependencies) {
+		if (dependencies.length > 0) {
+			long available = Long.MAX_VALUE;
+			for (EventConsumer dependency : dependencies) {
+				available = Math.min(available, dependency.getSequence().get());
+			}
+			return available;
+		}
+		long available = claimed.get();
+		for (long sequence = next; sequence <= available; sequence++) {
+			if (published.get((int) sequence & mask) != (int) (sequence >>> shift)) {
+				return sequence - 1;
+			}
+		}
+		return available;
+	}
+
+	private long getMinimumSequence(long fallback) {
+		long minimum = fallback;
+		for (EventConsumer consumer : gating) {
+			minimum = Math.min(minimum, consumer.getSequence().get());
+		}
+		return minimum;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A consumer of an {@link EventBus}, running its {@link EventHandler} on a
+ * thread of its own.
+ * 
+ * @author Marcus Hirt
+ */
+public final class EventConsumer {
+	private final EventBus bus;
+	private final String name;
+	private final EventHandler handler;
+	private final EventConsumer[] dependencies;
+	private final Sequence sequence = new Sequence(-1);
+	private Thread thread;
+	private volatile long errors;
+
+	EventConsumer(EventBus bus, String name, EventHandler handler, EventConsumer[] dependencies) {
+		this.bus = bus;
+		this.name = name;
+		this.handler = handler;
+		this.dependencies = dependencies.clone();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the sequence number of the last event processed.
+	 */
+	public Sequence getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the number of events the handler failed on.
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	void start() {
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				consume();
+			}
+		}, "EventConsumer " + name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void join() throws InterruptedException {
+		if (thread != null) {
+			thread.join();
+			thread = null;
+		}
+	}
+
+	private void consume() {
+		WaitStrategy waitStrategy = bus.getWaitStrategy();
+		long next = sequence.get() + 1;
+		int idle = 0;
+		while (bus.isRunning()) {
+			long available = bus.getAvailable(next, dependencies);
+			if (available < next) {
+				waitStrategy.idle(idle++);
+				continue;
+			}
+			idle = 0;
+			for (long current = next; current <= available; current++) {
+				try {
+					handler.onEvent(bus.get(current), current, current == available);
+				} catch (RuntimeException e) {
+					Logger.getLogger(EventConsumer.class.getName()).log(errors == 0 ? Level.WARNING : Level.FINE,
+							"Consumer " + name + " failed to handle an event", e);
+					errors++;
+				}
+			}
+			sequence.set(available);
+			next = available + 1;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "EventConsumer [name=" + name + ", sequence=" + sequence + "]";
+	}
+}
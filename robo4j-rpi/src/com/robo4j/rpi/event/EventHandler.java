@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+/**
+ * Consumes the events of an {@link EventBus}.
+ * 
+ * @author Marcus Hirt
+ */
+public interface EventHandler {
+	/**
+	 * Called for every event published, in order, on the thread of the
+	 * consumer. The event is reused once the handler returns.
+	 * 
+	 * @param event
+	 *            the event.
+	 * @param sequence
+	 *            the sequence number of the event.
+	 * @param endOfBatch
+	 *            true if this is the last of the events currently available,
+	 *            for handlers which want to batch their work.
+	 */
+	void onEvent(SensorEvent event, long sequence, boolean endOfBatch);
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import com.robo4j.rpi.serial.gps.GPS;
+import com.robo4j.rpi.serial.gps.GPSListener;
+import com.robo4j.rpi.serial.gps.PositionEvent;
+import com.robo4j.rpi.serial.gps.VelocityEvent;
+
+/**
+ * Listener publishing the updates of a {@link GPS} to an {@link EventBus},
+ * as {@link SensorEvent.Type#GPS_POSITION} and
+ * {@link SensorEvent.Type#GPS_VELOCITY} events, with the GPS events as
+ * attachments. Register it with {@link GPS#addListener(GPSListener)}.
+ * <p>
+ * The GPS does not timestamp its sentences, so the events are stamped with
+ * the time they were parsed.
+ * 
+ * @author Marcus Hirt
+ */
+public class GPSPublisher implements GPSListener {
+	private final EventBus bus;
+	private final String name;
+
+	public GPSPublisher(EventBus bus, String name) {
+		this.bus = bus;
+		this.name = name;
+	}
+
+	@Override
+	public void onEvent(PositionEvent event) {
+		if (event.getLocation() == null) {
+			return;
+		}
+		bus.publish(SensorEvent.Type.GPS_POSITION, name, System.nanoTime(), event.getLocation().getLatitude(),
+				event.getLocation().getLongitude(), event.getAltitude(), event);
+	}
+
+	@Override
+	public void onEvent(VelocityEvent event) {
+		bus.publish(SensorEvent.Type.GPS_VELOCITY, name, System.nanoTime(), event.getGroundSpeed(),
+				event.getTrueTrackMadeGood(), 0, event);
+	}
+}
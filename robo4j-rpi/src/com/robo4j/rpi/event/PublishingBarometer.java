@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.bmp.Barometer;
+
+/**
+ * Wrapper for a {@link Barometer}, publishing the readings to an
+ * {@link EventBus} as {@link SensorEvent.Type#SCALAR} events from
+ * <i>name</i>.pressure and <i>name</i>.temperature.
+ * 
+ * @author Marcus Hirt
+ */
+public class PublishingBarometer implements Barometer {
+	private final Barometer device;
+	private final EventBus bus;
+	private final String pressureSource;
+	private final String temperatureSource;
+
+	public PublishingBarometer(Barometer device, EventBus bus, String name) {
+		this.device = device;
+		this.bus = bus;
+		this.pressureSource = name + ".pressure";
+		this.temperatureSource = name + ".temperature";
+	}
+
+	@Override
+	public int readPressure() throws IOException {
+		synchronized (device) {
+			int pressure = device.readPressure();
+			bus.publishScalar(pressureSource, device.getLastSampleTime(), pressure);
+			return pressure;
+		}
+	}
+
+	@Override
+	public float readTemperature() throws IOException {
+		synchronized (device) {
+			float temperature = device.readTemperature();
+			bus.publishScalar(temperatureSource, device.getLastSampleTime(), temperature);
+			return temperature;
+		}
+	}
+
+	@Override
+	public Timestamped<Integer> readTimestampedPressure() throws IOException {
+		synchronized (device) {
+			int pressure = readPressure();
+			return new Timestamped<>(pressure, device.getLastSampleTime());
+		}
+	}
+
+	@Override
+	public Timestamped<Float> readTimestampedTemperature() throws IOException {
+		synchronized (device) {
+			float temperature = readTemperature();
+			return new Timestamped<>(temperature, device.getLastSampleTime());
+		}
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return device.getLastSampleTime();
+	}
+}
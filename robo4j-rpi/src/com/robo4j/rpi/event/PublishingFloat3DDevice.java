@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.ReadableDevice;
+import com.robo4j.rpi.i2c.ReadableFloat3DDevice;
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Decorator publishing every value read from a device to an
+ * {@link EventBus}, as a {@link SensorEvent.Type#FLOAT3D} event. Add it to a
+ * {@link com.robo4j.rpi.sampling.SamplingEngine} to have the device sampled
+ * at a fixed rate onto the bus.
+ * 
+ * @author Marcus Hirt
+ */
+public class PublishingFloat3DDevice implements ReadableFloat3DDevice, TimestampedReadableDevice<Float3D> {
+	private final ReadableDevice<Float3D> device;
+	private final EventBus bus;
+	private final String name;
+	private final Float3D value = new Float3D();
+	private volatile long lastSampleTime = NO_SAMPLE_TIME;
+
+	public PublishingFloat3DDevice(ReadableDevice<Float3D> device, EventBus bus, String name) {
+		this.device = device;
+		this.bus = bus;
+		this.name = name;
+	}
+
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		long before = System.nanoTime();
+		if (device instanceof ReadableFloat3DDevice) {
+			((ReadableFloat3DDevice) device).read(dst);
+		} else {
+			dst.set(device.read());
+		}
+		if (device instanceof TimestampedReadableDevice) {
+			lastSampleTime = ((TimestampedReadableDevice<?>) device).getLastSampleTime();
+		} else {
+			lastSampleTime = before + (System.nanoTime() - before) / 2;
+		}
+		bus.publishFloat3D(name, lastSampleTime, dst.x, dst.y, dst.z);
+	}
+
+	@Override
+	public synchronized void read(float[] dst, int offset) throws IOException {
+		read(value);
+		dst[offset] = value.x;
+		dst[offset + 1] = value.y;
+		dst[offset + 2] = value.z;
+	}
+
+	@Override
+	public synchronized Timestamped<Float3D> readTimestamped() throws IOException {
+		Float3D result = read();
+		return new Timestamped<>(result, lastSampleTime);
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return lastSampleTime;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
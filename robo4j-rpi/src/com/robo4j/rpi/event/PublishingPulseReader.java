@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.pwmreader.PulseReader;
+
+/**
+ * Wrapper for a {@link PulseReader}, such as the
+ * {@link com.robo4j.rpi.i2c.pwmreader.PWMReader}, publishing the pulse
+ * lengths read to an {@link EventBus} as {@link SensorEvent.Type#SCALAR}
+ * events from <i>name</i>.<i>channel</i>.
+ * 
+ * @author Marcus Hirt
+ */
+public class PublishingPulseReader implements PulseReader {
+	private final PulseReader device;
+	private final EventBus bus;
+	private final String name;
+	// The source names per channel, created once to not allocate when
+	// publishing
+	private String[] sources = new String[0];
+
+	public PublishingPulseReader(PulseReader device, EventBus bus, String name) {
+		this.device = device;
+		this.bus = bus;
+		this.name = name;
+	}
+
+	@Override
+	public synchronized double readPulse(int channel) throws IOException {
+		double pulse = device.readPulse(channel);
+		bus.publishScalar(getSource(channel), device.getLastSampleTime(), pulse);
+		return pulse;
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return device.getLastSampleTime();
+	}
+
+	private String getSource(int channel) {
+		if (channel >= sources.length) {
+			String[] newSources = new String[channel + 1];
+			System.arraycopy(sources, 0, newSources, 0, sources.length);
+			sources = newSources;
+		}
+		if (sources[channel] == null) {
+			sources[channel] = name + "." + channel;
+		}
+		return sources[channel];
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.lidar.RangeFinder;
+
+/**
+ * Wrapper for a {@link RangeFinder}, such as the
+ * {@link com.robo4j.rpi.i2c.lidar.LidarLiteDevice}, publishing the distances
+ * read to an {@link EventBus} as {@link SensorEvent.Type#SCALAR} events,
+ * timestamped with the time the range was acquired.
+ * 
+ * @author Marcus Hirt
+ */
+public class PublishingRangeFinder implements RangeFinder {
+	private final RangeFinder device;
+	private final EventBus bus;
+	private final String name;
+
+	public PublishingRangeFinder(RangeFinder device, EventBus bus, String name) {
+		this.device = device;
+		this.bus = bus;
+		this.name = name;
+	}
+
+	@Override
+	public void acquireRange() throws IOException {
+		device.acquireRange();
+	}
+
+	@Override
+	public float readDistance() throws IOException {
+		synchronized (device) {
+			float distance = device.readDistance();
+			bus.publishScalar(name, device.getLastSampleTime(), distance);
+			return distance;
+		}
+	}
+
+	@Override
+	public Timestamped<Float> readTimestampedDistance() throws IOException {
+		synchronized (device) {
+			float distance = readDistance();
+			return new Timestamped<>(distance, device.getLastSampleTime());
+		}
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return device.getLastSampleTime();
+	}
+}
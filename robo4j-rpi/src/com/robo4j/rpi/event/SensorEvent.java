@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * An event in an {@link EventBus}. The events are preallocated by the bus
+ * and reused, so consumers must copy out any values they want to keep
+ * before returning from the handler.
+ * 
+ * @author Marcus Hirt
+ */
+public final class SensorEvent {
+	/**
+	 * The kinds of events.
+	 */
+	public enum Type {
+		/**
+		 * A vector, such as from a gyro or an accelerometer, in x, y and z.
+		 */
+		FLOAT3D,
+		/**
+		 * A single value, such as a pressure or a distance, in x.
+		 */
+		SCALAR,
+		/**
+		 * A GPS position, with the latitude in x, the longitude in y and the
+		 * altitude in z. The attachment is the PositionEvent.
+		 */
+		GPS_POSITION,
+		/**
+		 * A GPS velocity, with the ground speed in x and the true track made
+		 * good in y. The attachment is the VelocityEvent.
+		 */
+		GPS_VELOCITY
+	}
+
+	private Type type;
+	private String source;
+	private long timestamp;
+	private double x;
+	private double y;
+	private double z;
+	private Object attachment;
+
+	SensorEvent() {
+	}
+
+	/**
+	 * Sets all the values of the event. Used by producers between
+	 * {@link EventBus#next()} and {@link EventBus#publish(long)}.
+	 */
+	public void set(Type type, String source, long timestamp, double x, double y, double z, Object attachment) {
+		this.type = type;
+		this.source = source;
+		this.timestamp = timestamp;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.attachment = attachment;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the name of the producer.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return the time the sample was captured, as {@link System#nanoTime()}.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public double getZ() {
+		return z;
+	}
+
+	/**
+	 * Copies x, y and z into a vector.
+	 */
+	public void get(Float3D dst) {
+		dst.set((float) x, (float) y, (float) z);
+	}
+
+	/**
+	 * @return any additional data from the producer, or null.
+	 */
+	public Object getAttachment() {
+		return attachment;
+	}
+
+	@Override
+	public String toString() {
+		return "SensorEvent [type=" + type + ", source=" + source + ", timestamp=" + timestamp + ", x=" + x + ", y=" + y
+				+ ", z=" + z + "]";
+	}
+}
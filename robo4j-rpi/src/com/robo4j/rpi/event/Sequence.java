@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A sequence number in an {@link EventBus}, padded to keep it on a cache line
+ * of its own, so that the producers and consumers updating their sequences do
+ * not slow each other down through false sharing.
+ * 
+ * @author Marcus Hirt
+ */
+public final class Sequence {
+	private static final AtomicLongFieldUpdater<Sequence> UPDATER = AtomicLongFieldUpdater.newUpdater(Sequence.class,
+			"value");
+
+	long p1, p2, p3, p4, p5, p6, p7;
+	private volatile long value;
+	long p9, p10, p11, p12, p13, p14, p15;
+
+	Sequence(long initialValue) {
+		value = initialValue;
+	}
+
+	public long get() {
+		return value;
+	}
+
+	void set(long value) {
+		UPDATER.lazySet(this, value);
+	}
+
+	long incrementAndGet() {
+		return UPDATER.incrementAndGet(this);
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(value);
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How the consumers of an {@link EventBus} wait for new events, and the
+ * producers for free slots when the ring is full. Spinning gives the lowest
+ * latency, but keeps a core busy. On a Raspberry Pi, with four cores, only
+ * spin with very few consumers.
+ * 
+ * @author Marcus Hirt
+ */
+public enum WaitStrategy {
+	/**
+	 * Spins on the sequences. Lowest latency, burns a core per waiting
+	 * thread.
+	 */
+	BUSY_SPIN {
+		@Override
+		void idle(int count) {
+			// Just spin
+		}
+	},
+	/**
+	 * Spins for a while, then yields to other threads.
+	 */
+	YIELD {
+		@Override
+		void idle(int count) {
+			if (count > SPIN_TRIES) {
+				Thread.yield();
+			}
+		}
+	},
+	/**
+	 * Spins and yields for a while, then parks for short periods. Gives the
+	 * lowest CPU usage, at the cost of up to the park time in latency.
+	 */
+	PARK {
+		@Override
+		void idle(int count) {
+			if (count > 2 * SPIN_TRIES) {
+				LockSupport.parkNanos(PARK_NANOS);
+			} else if (count > SPIN_TRIES) {
+				Thread.yield();
+			}
+		}
+	};
+
+	private static final int SPIN_TRIES = 100;
+	private static final long PARK_NANOS = 100000;
+
+	/**
+	 * Waits a little.
+	 * 
+	 * @param count
+	 *            the number of times idle has been called since there was
+	 *            something to do.
+	 */
+	abstract void idle(int count);
+}
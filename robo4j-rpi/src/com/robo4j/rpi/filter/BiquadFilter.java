@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+/**
+ * A second order IIR filter, using the coefficients from the Audio EQ
+ * Cookbook by Robert Bristow-Johnson. Runs in transposed direct form II,
+ * with the state in double precision to keep low cutoff frequencies stable.
+ * <p>
+ * The filter starts from a steady state at the first sample, to avoid the
+ * step response from zero.
+ * 
+ * @author Marcus Hirt
+ */
+public class BiquadFilter extends Float3DFilter {
+	/**
+	 * The Q of a Butterworth filter, with a maximally flat pass band.
+	 */
+	public static final double BUTTERWORTH_Q = 1 / Math.sqrt(2);
+
+	private final double b0;
+	private final double b1;
+	private final double b2;
+	private final double a1;
+	private final double a2;
+	// The two state variables for each axis
+	private final double[] state = new double[6];
+	private boolean initialized;
+
+	/**
+	 * Creates a filter from normalized coefficients (a0 = 1).
+	 */
+	public BiquadFilter(double b0, double b1, double b2, double a1, double a2) {
+		this.b0 = b0;
+		this.b1 = b1;
+		this.b2 = b2;
+		this.a1 = a1;
+		this.a2 = a2;
+	}
+
+	/**
+	 * Creates a Butterworth low-pass filter.
+	 * 
+	 * @param sampleRate
+	 *            the sample rate, in Hz.
+	 * @param cutoff
+	 *            the cutoff frequency, in Hz. Must be below half the sample
+	 *            rate.
+	 * @return the filter.
+	 */
+	public static BiquadFilter lowPass(double sampleRate, double cutoff) {
+		return lowPass(sampleRate, cutoff, BUTTERWORTH_Q);
+	}
+
+	/**
+	 * Creates a low-pass filter.
+	 * 
+	 * @param sampleRate
+	 *            the sample rate, in Hz.
+	 * @param cutoff
+	 *            the cutoff frequency, in Hz. Must be below half the sample
+	 *            rate.
+	 * @param q
+	 *            the quality factor.
+	 * @return the filter.
+	 */
+	public static BiquadFilter lowPass(double sampleRate, double cutoff, double q) {
+		double w0 = omega(sampleRate, cutoff);
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2 * q);
+		double a0 = 1 + alpha;
+		return new BiquadFilter((1 - cos) / 2 / a0, (1 - cos) / a0, (1 - cos) / 2 / a0, -2 * cos / a0,
+				(1 - alpha) / a0);
+	}
+
+	/**
+	 * Creates a Butterworth high-pass filter.
+	 * 
+	 * @param sampleRate
+	 *            the sample rate, in Hz.
+	 * @param cutoff
+	 *            the cutoff frequency, in Hz. Must be below half the sample
+	 *            rate.
+	 * @return the filter.
+	 */
+	public static BiquadFilter highPass(double sampleRate, double cutoff) {
+		return highPass(sampleRate, cutoff, BUTTERWORTH_Q);
+	}
+
+	/**
+	 * Creates a high-pass filter.
+	 * 
+	 * @param sampleRate
+	 *            the sample rate, in Hz.
+	 * @param cutoff
+	 *            the cutoff frequency, in Hz. Must be below half the sample
+	 *            rate.
+	 * @param q
+	 *            the quality factor.
+	 * @return the filter.
+	 */
+	public static BiquadFilter highPass(double sampleRate, double cutoff, double q) {
+		double w0 = omega(sampleRate, cutoff);
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2 * q);
+		double a0 = 1 + alpha;
+		return new BiquadFilter((1 + cos) / 2 / a0, -(1 + cos) / a0, (1 + cos) / 2 / a0, -2 * cos / a0,
+				(1 - alpha) / a0);
+	}
+
+	private static double omega(double sampleRate, double cutoff) {
+		if (!(cutoff > 0 && cutoff < sampleRate / 2)) {
+			throw new IllegalArgumentException(
+					"The cutoff must be between 0 and " + sampleRate / 2 + " Hz, was " + cutoff);
+		}
+		return 2 * Math.PI * cutoff / sampleRate;
+	}
+
+	@Override
+	public boolean filter(float[] sample, int offset) {
+		if (!initialized) {
+			initialize(sample, offset);
+		}
+		sample[offset] = step(0, sample[offset]);
+		sample[offset + 1] = step(2, sample[offset + 1]);
+		sample[offset + 2] = step(4, sample[offset + 2]);
+		return true;
+	}
+
+	private float step(int s, double in) {
+		double out = b0 * in + state[s];
+		state[s] = b1 * in - a1 * out + state[s + 1];
+		state[s + 1] = b2 * in - a2 * out;
+		return (float) out;
+	}
+
+	/**
+	 * Sets the state to what it would be after a constant input equal to the
+	 * sample.
+	 */
+	private void initialize(float[] sample, int offset) {
+		double gain = (b0 + b1 + b2) / (1 + a1 + a2);
+		for (int i = 0; i < 3; i++) {
+			double in = sample[offset + i];
+			double out = gain * in;
+			state[i * 2 + 1] = b2 * in - a2 * out;
+			state[i * 2] = out - b0 * in;
+		}
+		initialized = true;
+	}
+
+	@Override
+	public void reset() {
+		initialized = false;
+	}
+}
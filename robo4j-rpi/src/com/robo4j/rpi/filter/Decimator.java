@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+/**
+ * Passes on every n:th sample, reducing the sample rate by a factor n. To
+ * avoid aliasing, chain it after a low-pass filter with a cutoff below half
+ * the reduced rate, for example a {@link BiquadFilter} or a
+ * {@link MovingAverageFilter} over n samples.
+ * 
+ * @author Marcus Hirt
+ */
+public class Decimator extends Float3DFilter {
+	private final int factor;
+	private int skipped;
+
+	/**
+	 * @param factor
+	 *            the factor to reduce the sample rate by.
+	 */
+	public Decimator(int factor) {
+		if (factor < 1) {
+			throw new IllegalArgumentException("The factor must be at least 1, was " + factor);
+		}
+		this.factor = factor;
+	}
+
+	@Override
+	public boolean filter(float[] sample, int offset) {
+		if (++skipped < factor) {
+			return false;
+		}
+		skipped = 0;
+		return true;
+	}
+
+	@Override
+	public void reset() {
+		skipped = 0;
+	}
+
+	public int getFactor() {
+		return factor;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+/**
+ * An exponential moving average, the simplest first order low-pass filter.
+ * The first sample is passed through as is.
+ * 
+ * @author Marcus Hirt
+ */
+public class ExponentialFilter extends Float3DFilter {
+	private final float alpha;
+	private float x;
+	private float y;
+	private float z;
+	private boolean initialized;
+
+	/**
+	 * @param alpha
+	 *            the weight of a new sample, in (0, 1]. Smaller values
+	 *            smooth more.
+	 */
+	public ExponentialFilter(float alpha) {
+		if (!(alpha > 0 && alpha <= 1)) {
+			throw new IllegalArgumentException("Alpha must be in (0, 1], was " + alpha);
+		}
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Creates a filter with the specified cutoff frequency.
+	 * 
+	 * @param sampleRate
+	 *            the sample rate, in Hz.
+	 * @param cutoff
+	 *            the -3 dB frequency, in Hz.
+	 * @return the filter.
+	 */
+	public static ExponentialFilter forCutoff(double sampleRate, double cutoff) {
+		double dt = 1.0 / sampleRate;
+		double rc = 1.0 / (2 * Math.PI * cutoff);
+		return new ExponentialFilter((float) (dt / (rc + dt)));
+	}
+
+	@Override
+	public boolean filter(float[] sample, int offset) {
+		if (!initialized) {
+			x = sample[offset];
+			y = sample[offset + 1];
+			z = sample[offset + 2];
+			initialized = true;
+			return true;
+		}
+		x += alpha * (sample[offset] - x);
+		y += alpha * (sample[offset + 1] - y);
+		z += alpha * (sample[offset + 2] - z);
+		sample[offset] = x;
+		sample[offset + 1] = y;
+		sample[offset + 2] = z;
+		return true;
+	}
+
+	@Override
+	public void reset() {
+		initialized = false;
+	}
+
+	public float getAlpha() {
+		return alpha;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+/**
+ * Runs samples through a series of filters, in order. A sample dropped by one
+ * filter is not passed on to the following ones.
+ * 
+ * @author Marcus Hirt
+ */
+public class FilterChain extends Float3DFilter {
+	private final Float3DFilter[] filters;
+
+	public FilterChain(Float3DFilter... filters) {
+		this.filters = filters.clone();
+	}
+
+	@Override
+	public boolean filter(float[] sample, int offset) {
+		for (Float3DFilter filter : filters) {
+			if (!filter.filter(sample, offset)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void reset() {
+		for (Float3DFilter filter : filters) {
+			filter.reset();
+		}
+	}
+}
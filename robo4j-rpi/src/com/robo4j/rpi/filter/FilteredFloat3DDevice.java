@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.ReadableDevice;
+import com.robo4j.rpi.i2c.ReadableFloat3DDevice;
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Decorator running the values read from a device through a
+ * {@link Float3DFilter}, for example a {@link FilterChain}. If the filter
+ * drops samples, as a {@link Decimator} does, the device is read until a
+ * sample makes it through, so every read returns a filtered value.
+ * <p>
+ * The sample time is the one of the last sample read from the device. Note
+ * that smoothing filters delay the signal, so the filtered value lags
+ * behind that time.
+ * 
+ * @author Marcus Hirt
+ */
+public class FilteredFloat3DDevice implements ReadableFloat3DDevice, TimestampedReadableDevice<Float3D> {
+	private final ReadableDevice<Float3D> device;
+	private final Float3DFilter filter;
+	private final float[] sample = new float[3];
+	private final Float3D value = new Float3D();
+	private volatile long lastSampleTime = NO_SAMPLE_TIME;
+
+	public FilteredFloat3DDevice(ReadableDevice<Float3D> device, Float3DFilter filter) {
+		this.device = device;
+		this.filter = filter;
+	}
+
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		read(sample, 0);
+		dst.set(sample[0], sample[1], sample[2]);
+	}
+
+	@Override
+	public synchronized void read(float[] dst, int offset) throws IOException {
+		do {
+			long before = System.nanoTime();
+			if (device instanceof ReadableFloat3DDevice) {
+				((ReadableFloat3DDevice) device).read(dst, offset);
+			} else {
+				Float3D read = device.read();
+				dst[offset] = read.x;
+				dst[offset + 1] = read.y;
+				dst[offset + 2] = read.z;
+			}
+			if (device instanceof TimestampedReadableDevice) {
+				lastSampleTime = ((TimestampedReadableDevice<?>) device).getLastSampleTime();
+			} else {
+				lastSampleTime = before + (System.nanoTime() - before) / 2;
+			}
+		} while (!filter.filter(dst, offset));
+	}
+
+	@Override
+	public synchronized Timestamped<Float3D> readTimestamped() throws IOException {
+		read(value);
+		return new Timestamped<>(value.copy(), lastSampleTime);
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return lastSampleTime;
+	}
+
+	/**
+	 * Forgets the previous samples, for example after the device has been
+	 * reconfigured.
+	 */
+	public synchronized void reset() {
+		filter.reset();
+	}
+
+	public Float3DFilter getFilter() {
+		return filter;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * A stateful filter for a stream of {@link Float3D} samples, filtering each
+ * axis independently. Samples are filtered in place, either in a vector or
+ * as x, y and z in a float array, and filtering does not allocate.
+ * <p>
+ * Filters keep state between samples, and are not thread safe. Use one
+ * filter instance per stream, and chain filters with a {@link FilterChain}.
+ * 
+ * @author Marcus Hirt
+ */
+public abstract class Float3DFilter {
+	private final float[] scratch = new float[3];
+
+	/**
+	 * Filters a sample in place.
+	 * 
+	 * @param sample
+	 *            the array holding the sample.
+	 * @param offset
+	 *            the index of x in the array, followed by y and z.
+	 * @return true if the filter produced an output sample, false if the
+	 *         sample was consumed without output, for example by a
+	 *         {@link Decimator}.
+	 */
+	public abstract boolean filter(float[] sample, int offset);
+
+	/**
+	 * Forgets all previous samples.
+	 */
+	public abstract void reset();
+
+	/**
+	 * Filters a sample in place.
+	 * 
+	 * @param sample
+	 *            the sample to filter.
+	 * @return true if the filter produced an output sample.
+	 * @see #filter(float[], int)
+	 */
+	public boolean filter(Float3D sample) {
+		scratch[0] = sample.x;
+		scratch[1] = sample.y;
+		scratch[2] = sample.z;
+		boolean output = filter(scratch, 0);
+		sample.set(scratch[0], scratch[1], scratch[2]);
+		return output;
+	}
+
+	/**
+	 * Filters a series of samples in place, stored as x, y and z after each
+	 * other. The samples producing output are moved to the front.
+	 * 
+	 * @param samples
+	 *            the array holding the samples.
+	 * @param offset
+	 *            the index of the first x in the array.
+	 * @param count
+	 *            the number of samples.
+	 * @return the number of output samples, stored from offset.
+	 */
+	public int filter(float[] samples, int offset, int count) {
+		int out = offset;
+		for (int i = 0; i < count; i++) {
+			int in = offset + i * 3;
+			if (filter(samples, in)) {
+				if (in != out) {
+					samples[out] = samples[in];
+					samples[out + 1] = samples[in + 1];
+					samples[out + 2] = samples[in + 2];
+				}
+				out += 3;
+			}
+		}
+		return (out - offset) / 3;
+	}
+}
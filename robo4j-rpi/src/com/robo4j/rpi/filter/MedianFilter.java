@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+/**
+ * The median of the last samples, per axis, for removing spikes. Keeps the
+ * window sorted per axis, replacing the oldest value by the new one and
+ * moving it into place, so the cost per sample is linear in the window size.
+ * Intended for small windows. Until the window has been filled, the output is
+ * the median of the samples so far.
+ * 
+ * @author Marcus Hirt
+ */
+public class MedianFilter extends Float3DFilter {
+	private final int size;
+	// The samples in arrival order, and sorted, per axis
+	private final float[][] history = new float[3][];
+	private final float[][] sorted = new float[3][];
+	private int position;
+	private int count;
+
+	/**
+	 * @param size
+	 *            the number of samples to take the median of. Odd sizes
+	 *            avoid averaging the two middle values.
+	 */
+	public MedianFilter(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("The window must hold at least one sample, was " + size);
+		}
+		this.size = size;
+		for (int i = 0; i < 3; i++) {
+			history[i] = new float[size];
+			sorted[i] = new float[size];
+		}
+	}
+
+	@Override
+	public boolean filter(float[] sample, int offset) {
+		boolean full = count == size;
+		if (!full) {
+			count++;
+		}
+		for (int i = 0; i < 3; i++) {
+			float value = sample[offset + i];
+			float[] values = sorted[i];
+			if (full) {
+				replace(values, history[i][position], value);
+			} else {
+				insert(values, count - 1, value);
+			}
+			history[i][position] = value;
+			int middle = count / 2;
+			sample[offset + i] = (count & 1) == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+		}
+		if (++position == size) {
+			position = 0;
+		}
+		return true;
+	}
+
+	private static void replace(float[] values, float oldValue, float value) {
+		int i = 0;
+		while (i < values.length - 1 && Float.compare(values[i], oldValue) != 0) {
+			i++;
+		}
+		while (i > 0 && values[i - 1] > value) {
+			values[i] = values[i - 1];
+			i--;
+		}
+		while (i < values.length - 1 && values[i + 1] < value) {
+			values[i] = values[i + 1];
+			i++;
+		}
+		values[i] = value;
+	}
+
+	private static void insert(float[] values, int length, float value) {
+		int i = length;
+		while (i > 0 && values[i - 1] > value) {
+			values[i] = values[i - 1];
+			i--;
+		}
+		values[i] = value;
+	}
+
+	@Override
+	public void reset() {
+		position = 0;
+		count = 0;
+	}
+
+	public int getSize() {
+		return size;
+	}
+}
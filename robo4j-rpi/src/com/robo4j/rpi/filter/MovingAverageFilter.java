@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+/**
+ * The average of the last samples, kept as a running sum so that the cost
+ * per sample does not depend on the window size. Until the window has been
+ * filled, the output is the average of the samples so far.
+ * 
+ * @author Marcus Hirt
+ */
+public class MovingAverageFilter extends Float3DFilter {
+	private final float[] window;
+	private final int size;
+	// Summing in double keeps the rounding errors of adding and removing the
+	// same values from accumulating
+	private double sumX;
+	private double sumY;
+	private double sumZ;
+	private int position;
+	private int count;
+
+	/**
+	 * @param size
+	 *            the number of samples to average over.
+	 */
+	public MovingAverageFilter(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("The window must hold at least one sample, was " + size);
+		}
+		this.size = size;
+		this.window = new float[size * 3];
+	}
+
+	@Override
+	public boolean filter(float[] sample, int offset) {
+		int slot = position * 3;
+		if (count == size) {
+			sumX -= window[slot];
+			sumY -= window[slot + 1];
+			sumZ -= window[slot + 2];
+		} else {
+			count++;
+		}
+		window[slot] = sample[offset];
+		window[slot + 1] = sample[offset + 1];
+		window[slot + 2] = sample[offset + 2];
+		sumX += window[slot];
+		sumY += window[slot + 1];
+		sumZ += window[slot + 2];
+		if (++position == size) {
+			position = 0;
+		}
+		sample[offset] = (float) (sumX / count);
+		sample[offset + 1] = (float) (sumY / count);
+		sample[offset + 2] = (float) (sumZ / count);
+		return true;
+	}
+
+	@Override
+	public void reset() {
+		sumX = 0;
+		sumY = 0;
+		sumZ = 0;
+		position = 0;
+		count = 0;
+	}
+
+	public int getSize() {
+		return size;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.geometry;
+
+/**
+ * Fast approximations of math functions, for the inner loops of fusion and
+ * kinematics code, where the full precision of {@link Math} is not needed.
+ * 
+ * @author Marcus Hirt
+ */
+public final class FastMath {
+	/**
+	 * The max absolute error of {@link #atan(float)} and
+	 * {@link #atan2(float, float)}, in radians.
+	 */
+	public static final float ATAN_MAX_ERROR = 1.5e-5f;
+
+	/**
+	 * The max absolute error of {@link #asin(float)}, in radians.
+	 */
+	public static final float ASIN_MAX_ERROR = 5e-7f;
+
+	private static final float PI = (float) Math.PI;
+	private static final float HALF_PI = (float) (Math.PI / 2);
+
+	private FastMath() {
+	}
+
+	/**
+	 * Approximates 1 / sqrt(x), using the bit level initial guess popularized
+	 * by Quake III followed by two Newton-Raphson iterations. The relative
+	 * error is below 5e-6, which is good enough for renormalizing vectors
+	 * and quaternions. On cores without fast floating point square roots and
+	 * divisions this is considerably faster than the exact computation.
+	 * 
+	 * @param x
+	 *            a positive number.
+	 * @return approximately 1 / sqrt(x).
+	 */
+	public static float invSqrt(float x) {
+		float half = 0.5f * x;
+		float y = Float.intBitsToFloat(0x5f375a86 - (Float.floatToRawIntBits(x) >> 1));
+		y = y * (1.5f - half * y * y);
+		return y * (1.5f - half * y * y);
+	}
+
+	/**
+	 * Approximates atan(x) with an odd polynomial of degree 9 on [-1, 1],
+	 * using atan(x) = pi/2 - atan(1/x) outside of it. The absolute error is
+	 * below {@link #ATAN_MAX_ERROR}.
+	 */
+	public static float atan(float x) {
+		if (x > 1) {
+			return HALF_PI - atanUnit(1 / x);
+		} else if (x < -1) {
+			return -HALF_PI - atanUnit(1 / x);
+		}
+		return atanUnit(x);
+	}
+
+	/**
+	 * Approximates {@link Math#atan2(double, double)}, with the same
+	 * quadrants and range, using the polynomial of {@link #atan(float)}. The
+	 * absolute error is below {@link #ATAN_MAX_ERROR}.
+	 */
+	public static float atan2(float y, float x) {
+		float absX = Math.abs(x);
+		float absY = Math.abs(y);
+		if (absX == 0 && absY == 0) {
+			return 0;
+		}
+		float angle;
+		if (absX >= absY) {
+			angle = atanUnit(absY / absX);
+		} else {
+			angle = HALF_PI - atanUnit(absX / absY);
+		}
+		if (x < 0) {
+			angle = PI - angle;
+		}
+		return y < 0 ? -angle : angle;
+	}
+
+	/**
+	 * Approximates asin(x), using the polynomial of Abramowitz and Stegun
+	 * 4.4.46. The absolute error is below {@link #ASIN_MAX_ERROR}.
+	 * 
+	 * @param x
+	 *            a number in [-1, 1]. Other values return NaN.
+	 */
+	public static float asin(float x) {
+		float a = Math.abs(x);
+		float p = -0.0012624911f;
+		p = p * a + 0.0066700901f;
+		p = p * a - 0.0170881256f;
+		p = p * a + 0.0308918810f;
+		p = p * a - 0.0501743046f;
+		p = p * a + 0.0889789874f;
+		p = p * a - 0.2145988016f;
+		p = p * a + 1.5707963050f;
+		float angle = HALF_PI - (float) Math.sqrt(1 - a) * p;
+		return x < 0 ? -angle : angle;
+	}
+
+	private static float atanUnit(float x) {
+		float x2 = x * x;
+		return x * (0.9998660f + x2 * (-0.3302995f + x2 * (0.1801410f + x2 * (-0.0851330f + x2 * 0.0208351f))));
+	}
+}
@@ -84,8 +84,68 @@ public class Float3D {
 	public Float3D diff(Float3D f) {
 		return new Float3D(f.x - x, f.y - y, f.z - z);
 	}
+
+	/**
+	 * Like {@link #diff(Float3D)}, but stores the difference in dst instead of
+	 * allocating.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D diff(Float3D f, Float3D dst) {
+		dst.set(f.x - x, f.y - y, f.z - z);
+		return dst;
+	}
 	
 	public Float3D copy() {
 		return new Float3D(x, y, z);
 	}
+
+	/**
+	 * Copies this vector into dst, without allocating.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D copy(Float3D dst) {
+		dst.set(this);
+		return dst;
+	}
+
+	public float dot(Float3D f) {
+		return x * f.x + y * f.y + z * f.z;
+	}
+
+	/**
+	 * Sets this vector to the cross product of itself and f.
+	 */
+	public void cross(Float3D f) {
+		cross(this, f, this);
+	}
+
+	/**
+	 * Stores the cross product a x b in dst, which may be a or b.
+	 * 
+	 * @return dst.
+	 */
+	public static Float3D cross(Float3D a, Float3D b, Float3D dst) {
+		float cx = a.y * b.z - a.z * b.y;
+		float cy = a.z * b.x - a.x * b.z;
+		float cz = a.x * b.y - a.y * b.x;
+		dst.set(cx, cy, cz);
+		return dst;
+	}
+
+	public float length() {
+		return (float) Math.sqrt(x * x + y * y + z * z);
+	}
+
+	/**
+	 * Scales this vector to unit length, using {@link FastMath#invSqrt(float)}.
+	 * Zero vectors are left as they are.
+	 */
+	public void normalize() {
+		float lengthSquared = x * x + y * y + z * z;
+		if (lengthSquared > 0) {
+			multiplyScalar(FastMath.invSqrt(lengthSquared));
+		}
+	}
 }
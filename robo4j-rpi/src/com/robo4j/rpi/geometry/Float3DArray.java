@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.geometry;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of 3D vectors, stored as one column of floats per axis
+ * rather than one {@link Float3D} per vector. Meant for post-processing and
+ * calibration, where tens of thousands of samples are processed at a time;
+ * the bulk operations are simple loops over the columns, which the JIT can
+ * unroll and vectorize.
+ * 
+ * @author Marcus Hirt
+ */
+public class Float3DArray {
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int SUM_BLOCK = 256;
+
+	private float[] x;
+	private float[] y;
+	private float[] z;
+	private int size;
+
+	public Float3DArray() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public Float3DArray(int capacity) {
+		x = new float[capacity];
+		y = new float[capacity];
+		z = new float[capacity];
+	}
+
+	/**
+	 * Appends a vector, growing the columns as needed.
+	 */
+	public void append(float x, float y, float z) {
+		if (size == this.x.length) {
+			grow();
+		}
+		this.x[size] = x;
+		this.y[size] = y;
+		this.z[size] = z;
+		size++;
+	}
+
+	public void append(Float3D f) {
+		append(f.x, f.y, f.z);
+	}
+
+	/**
+	 * Copies the vector at the specified index into dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D get(int index, Float3D dst) {
+		checkIndex(index);
+		dst.set(x[index], y[index], z[index]);
+		return dst;
+	}
+
+	public void set(int index, float x, float y, float z) {
+		checkIndex(index);
+		this.x[index] = x;
+		this.y[index] = y;
+		this.z[index] = z;
+	}
+
+	public void set(int index, Float3D f) {
+		set(index, f.x, f.y, f.z);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the x column. Only the first {@link #size()} elements are
+	 *         valid, and the array is replaced when the columns grow.
+	 */
+	public float[] getX() {
+		return x;
+	}
+
+	/**
+	 * @see #getX()
+	 */
+	public float[] getY() {
+		return y;
+	}
+
+	/**
+	 * @see #getX()
+	 */
+	public float[] getZ() {
+		return z;
+	}
+
+	/**
+	 * Adds f to every vector.
+	 */
+	public void add(Float3D f) {
+		add(x, f.x, size);
+		add(y, f.y, size);
+		add(z, f.z, size);
+	}
+
+	/**
+	 * Subtracts f from every vector.
+	 */
+	public void subtract(Float3D f) {
+		add(x, -f.x, size);
+		add(y, -f.y, size);
+		add(z, -f.z, size);
+	}
+
+	/**
+	 * Multiplies every vector, axis by axis, with f.
+	 */
+	public void multiply(Float3D f) {
+		multiply(x, f.x, size);
+		multiply(y, f.y, size);
+		multiply(z, f.z, size);
+	}
+
+	public void multiplyScalar(float f) {
+		multiply(x, f, size);
+		multiply(y, f, size);
+		multiply(z, f, size);
+	}
+
+	/**
+	 * Stores the dot product of every vector and f in dst.
+	 * 
+	 * @return dst.
+	 */
+	public float[] dot(Float3D f, float[] dst) {
+		checkDestination(dst);
+		float fx = f.x;
+		float fy = f.y;
+		float fz = f.z;
+		for (int i = 0; i < size; i++) {
+			dst[i] = x[i] * fx + y[i] * fy + z[i] * fz;
+		}
+		return dst;
+	}
+
+	/**
+	 * Stores the dot products of the vectors in this array and the
+	 * corresponding vectors in other in dst.
+	 * 
+	 * @return dst.
+	 */
+	public float[] dot(Float3DArray other, float[] dst) {
+		if (other.size != size) {
+			throw new IllegalArgumentException("Size mismatch: " + other.size + " != " + size);
+		}
+		checkDestination(dst);
+		float[] ox = other.x;
+		float[] oy = other.y;
+		float[] oz = other.z;
+		for (int i = 0; i < size; i++) {
+			dst[i] = x[i] * ox[i] + y[i] * oy[i] + z[i] * oz[i];
+		}
+		return dst;
+	}
+
+	/**
+	 * Stores the length of every vector in dst.
+	 * 
+	 * @return dst.
+	 */
+	public float[] length(float[] dst) {
+		checkDestination(dst);
+		for (int i = 0; i < size; i++) {
+			dst[i] = (float) Math.sqrt(x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
+		}
+		return dst;
+	}
+
+	/**
+	 * Scales every vector to unit length, leaving zero vectors alone.
+	 */
+	public void normalize() {
+		for (int i = 0; i < size; i++) {
+			float lengthSquared = x[i] * x[i] + y[i] * y[i] + z[i] * z[i];
+			float scale = lengthSquared > 0 ? FastMath.invSqrt(lengthSquared) : 1;
+			x[i] *= scale;
+			y[i] *= scale;
+			z[i] *= scale;
+		}
+	}
+
+	/**
+	 * Multiplies every vector with the matrix m.
+	 */
+	public void transform(Matrix3 m) {
+		float m00 = m.m00, m01 = m.m01, m02 = m.m02;
+		float m10 = m.m10, m11 = m.m11, m12 = m.m12;
+		float m20 = m.m20, m21 = m.m21, m22 = m.m22;
+		for (int i = 0; i < size; i++) {
+			float vx = x[i];
+			float vy = y[i];
+			float vz = z[i];
+			x[i] = m00 * vx + m01 * vy + m02 * vz;
+			y[i] = m10 * vx + m11 * vy + m12 * vz;
+			z[i] = m20 * vx + m21 * vy + m22 * vz;
+		}
+	}
+
+	/**
+	 * Stores the smallest value of every axis in dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D min(Float3D dst) {
+		checkNotEmpty();
+		dst.set(min(x, size), min(y, size), min(z, size));
+		return dst;
+	}
+
+	/**
+	 * Stores the largest value of every axis in dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D max(Float3D dst) {
+		checkNotEmpty();
+		dst.set(max(x, size), max(y, size), max(z, size));
+		return dst;
+	}
+
+	/**
+	 * Stores the mean of every axis in dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D mean(Float3D dst) {
+		checkNotEmpty();
+		// Float partial sums over short blocks vectorize, and adding the
+		// blocks up in double keeps the rounding errors down for large arrays
+		double sumX = 0, sumY = 0, sumZ = 0;
+		for (int start = 0; start < size; start += SUM_BLOCK) {
+			int end = Math.min(size, start + SUM_BLOCK);
+			float blockX = 0, blockY = 0, blockZ = 0;
+			for (int i = start; i < end; i++) {
+				blockX += x[i];
+				blockY += y[i];
+				blockZ += z[i];
+			}
+			sumX += blockX;
+			sumY += blockY;
+			sumZ += blockZ;
+		}
+		dst.set((float) (sumX / size), (float) (sumY / size), (float) (sumZ / size));
+		return dst;
+	}
+
+	@Override
+	public String toString() {
+		return "Float3DArray [size=" + size + "]";
+	}
+
+	private static void add(float[] column, float value, int size) {
+		for (int i = 0; i < size; i++) {
+			column[i] += value;
+		}
+	}
+
+	private static void multiply(float[] column, float value, int size) {
+		for (int i = 0; i < size; i++) {
+			column[i] *= value;
+		}
+	}
+
+	private static float min(float[] column, int size) {
+		float min = column[0];
+		for (int i = 1; i < size; i++) {
+			float value = column[i];
+			min = value < min ? value : min;
+		}
+		return min;
+	}
+
+	private static float max(float[] column, int size) {
+		float max = column[0];
+		for (int i = 1; i < size; i++) {
+			float value = column[i];
+			max = value > max ? value : max;
+		}
+		return max;
+	}
+
+	private void grow() {
+		int capacity = Math.max(DEFAULT_CAPACITY, x.length * 2);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		z = Arrays.copyOf(z, capacity);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+	}
+
+	private void checkDestination(float[] dst) {
+		if (dst.length < size) {
+			throw new IllegalArgumentException("Destination too small: " + dst.length + " < " + size);
+		}
+	}
+
+	private void checkNotEmpty() {
+		if (size == 0) {
+			throw new IllegalStateException("Empty array");
+		}
+	}
+}
@@ -25,7 +25,30 @@ public class Int3D {
 	public int x;
 	public int y;
 	public int z;
-	
+
+	public Int3D() {
+	}
+
+	public Int3D(int x, int y, int z) {
+		set(x, y, z);
+	}
+
+	public Int3D(Int3D val) {
+		set(val);
+	}
+
+	public void set(int x, int y, int z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public void set(Int3D i) {
+		x = i.x;
+		y = i.y;
+		z = i.z;
+	}
+
 	public String toString() {
 		return "x:" + x + " y:" + y +  " z:" + z;
 	}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.geometry;
+
+/**
+ * Mutable 3x3 matrix of floats, mostly used as a rotation matrix. The
+ * element mRC is at row R and column C. The operations work in place, or
+ * store their result in a destination argument, so that they can be used
+ * without allocating. The destination may be one of the arguments.
+ * 
+ * @author Marcus Hirt
+ */
+public class Matrix3 {
+	public float m00, m01, m02;
+	public float m10, m11, m12;
+	public float m20, m21, m22;
+
+	/**
+	 * Creates the identity matrix.
+	 */
+	public Matrix3() {
+		setIdentity();
+	}
+
+	public Matrix3(Matrix3 m) {
+		set(m);
+	}
+
+	public void set(float m00, float m01, float m02, float m10, float m11, float m12, float m20, float m21,
+			float m22) {
+		this.m00 = m00;
+		this.m01 = m01;
+		this.m02 = m02;
+		this.m10 = m10;
+		this.m11 = m11;
+		this.m12 = m12;
+		this.m20 = m20;
+		this.m21 = m21;
+		this.m22 = m22;
+	}
+
+	public void set(Matrix3 m) {
+		set(m.m00, m.m01, m.m02, m.m10, m.m11, m.m12, m.m20, m.m21, m.m22);
+	}
+
+	public void setIdentity() {
+		set(1, 0, 0, 0, 1, 0, 0, 0, 1);
+	}
+
+	/**
+	 * Sets this matrix to a rotation around x.
+	 * 
+	 * @param angle
+	 *            the angle, in radians.
+	 */
+	public void setRotationX(float angle) {
+		float cos = (float) Math.cos(angle);
+		float sin = (float) Math.sin(angle);
+		set(1, 0, 0, 0, cos, -sin, 0, sin, cos);
+	}
+
+	/**
+	 * Sets this matrix to a rotation around y.
+	 * 
+	 * @param angle
+	 *            the angle, in radians.
+	 */
+	public void setRotationY(float angle) {
+		float cos = (float) Math.cos(angle);
+		float sin = (float) Math.sin(angle);
+		set(cos, 0, sin, 0, 1, 0, -sin, 0, cos);
+	}
+
+	/**
+	 * Sets this matrix to a rotation around z.
+	 * 
+	 * @param angle
+	 *            the angle, in radians.
+	 */
+	public void setRotationZ(float angle) {
+		float cos = (float) Math.cos(angle);
+		float sin = (float) Math.sin(angle);
+		set(cos, -sin, 0, sin, cos, 0, 0, 0, 1);
+	}
+
+	/**
+	 * Sets this matrix to the rotation described by a unit quaternion.
+	 */
+	public void setRotation(Quaternion q) {
+		float xx = q.x * q.x;
+		float yy = q.y * q.y;
+		float zz = q.z * q.z;
+		float xy = q.x * q.y;
+		float xz = q.x * q.z;
+		float yz = q.y * q.z;
+		float wx = q.w * q.x;
+		float wy = q.w * q.y;
+		float wz = q.w * q.z;
+		set(1 - 2 * (yy + zz), 2 * (xy - wz), 2 * (xz + wy), 2 * (xy + wz), 1 - 2 * (xx + zz), 2 * (yz - wx),
+				2 * (xz - wy), 2 * (yz + wx), 1 - 2 * (xx + yy));
+	}
+
+	/**
+	 * Sets this matrix to this * m, that is, m applied first.
+	 */
+	public void multiply(Matrix3 m) {
+		multiply(this, m, this);
+	}
+
+	/**
+	 * Stores the product a * b in dst.
+	 * 
+	 * @return dst.
+	 */
+	public static Matrix3 multiply(Matrix3 a, Matrix3 b, Matrix3 dst) {
+		dst.set(a.m00 * b.m00 + a.m01 * b.m10 + a.m02 * b.m20, a.m00 * b.m01 + a.m01 * b.m11 + a.m02 * b.m21,
+				a.m00 * b.m02 + a.m01 * b.m12 + a.m02 * b.m22, a.m10 * b.m00 + a.m11 * b.m10 + a.m12 * b.m20,
+				a.m10 * b.m01 + a.m11 * b.m11 + a.m12 * b.m21, a.m10 * b.m02 + a.m11 * b.m12 + a.m12 * b.m22,
+				a.m20 * b.m00 + a.m21 * b.m10 + a.m22 * b.m20, a.m20 * b.m01 + a.m21 * b.m11 + a.m22 * b.m21,
+				a.m20 * b.m02 + a.m21 * b.m12 + a.m22 * b.m22);
+		return dst;
+	}
+
+	/**
+	 * Multiplies a vector in place by this matrix.
+	 */
+	public void transform(Float3D v) {
+		transform(v, v);
+	}
+
+	/**
+	 * Stores this matrix times the vector v in dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D transform(Float3D v, Float3D dst) {
+		dst.set(m00 * v.x + m01 * v.y + m02 * v.z, m10 * v.x + m11 * v.y + m12 * v.z,
+				m20 * v.x + m21 * v.y + m22 * v.z);
+		return dst;
+	}
+
+	/**
+	 * Transposes this matrix, which for a rotation matrix is the inverse
+	 * rotation.
+	 */
+	public void transpose() {
+		transpose(this);
+	}
+
+	/**
+	 * Stores the transpose of this matrix in dst.
+	 * 
+	 * @return dst.
+	 */
+	public Matrix3 transpose(Matrix3 dst) {
+		dst.set(m00, m10, m20, m01, m11, m21, m02, m12, m22);
+		return dst;
+	}
+
+	public float determinant() {
+		return m00 * (m11 * m22 - m12 * m21) - m01 * (m10 * m22 - m12 * m20) + m02 * (m10 * m21 - m11 * m20);
+	}
+
+	/**
+	 * Inverts this matrix.
+	 * 
+	 * @return false, leaving the matrix unchanged, if the matrix is
+	 *         singular.
+	 */
+	public boolean invert() {
+		return invert(this);
+	}
+
+	/**
+	 * Stores the inverse of this matrix in dst.
+	 * 
+	 * @return false, leaving dst unchanged, if the matrix is singular.
+	 */
+	public boolean invert(Matrix3 dst) {
+		float determinant = determinant();
+		if (determinant == 0) {
+			return false;
+		}
+		float s = 1 / determinant;
+		dst.set((m11 * m22 - m12 * m21) * s, (m02 * m21 - m01 * m22) * s, (m01 * m12 - m02 * m11) * s,
+				(m12 * m20 - m10 * m22) * s, (m00 * m22 - m02 * m20) * s, (m02 * m10 - m00 * m12) * s,
+				(m10 * m21 - m11 * m20) * s, (m01 * m20 - m00 * m21) * s, (m00 * m11 - m01 * m10) * s);
+		return true;
+	}
+
+	/**
+	 * Makes the columns of this matrix orthogonal and of unit length again,
+	 * using Gram-Schmidt, to remove the rounding errors accumulated when
+	 * composing many rotations.
+	 */
+	public void normalize() {
+		// First column
+		float scale = FastMath.invSqrt(m00 * m00 + m10 * m10 + m20 * m20);
+		m00 *= scale;
+		m10 *= scale;
+		m20 *= scale;
+		// Second column, minus its projection on the first
+		float dot = m00 * m01 + m10 * m11 + m20 * m21;
+		m01 -= dot * m00;
+		m11 -= dot * m10;
+		m21 -= dot * m20;
+		scale = FastMath.invSqrt(m01 * m01 + m11 * m11 + m21 * m21);
+		m01 *= scale;
+		m11 *= scale;
+		m21 *= scale;
+		// Third column, the cross product of the first two
+		m02 = m10 * m21 - m20 * m11;
+		m12 = m20 * m01 - m00 * m21;
+		m22 = m00 * m11 - m10 * m01;
+	}
+
+	public Matrix3 copy() {
+		return new Matrix3(this);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%2.3f, %2.3f, %2.3f; %2.3f, %2.3f, %2.3f; %2.3f, %2.3f, %2.3f]", m00, m01, m02, m10,
+				m11, m12, m20, m21, m22);
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.geometry;
+
+/**
+ * Mutable quaternion of floats, w + xi + yj + zk, mostly used as a unit
+ * quaternion representing a rotation. The operations work in place, or
+ * store their result in a destination argument, so that they can be used
+ * without allocating. The destination may be one of the arguments.
+ * 
+ * @author Marcus Hirt
+ */
+public class Quaternion {
+	public float w;
+	public float x;
+	public float y;
+	public float z;
+
+	/**
+	 * Creates the identity rotation.
+	 */
+	public Quaternion() {
+		w = 1;
+	}
+
+	public Quaternion(float w, float x, float y, float z) {
+		set(w, x, y, z);
+	}
+
+	public Quaternion(Quaternion q) {
+		set(q);
+	}
+
+	public void set(float w, float x, float y, float z) {
+		this.w = w;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public void set(Quaternion q) {
+		set(q.w, q.x, q.y, q.z);
+	}
+
+	public void setIdentity() {
+		set(1, 0, 0, 0);
+	}
+
+	/**
+	 * Sets this quaternion to a rotation around an axis.
+	 * 
+	 * @param axis
+	 *            the axis, of unit length.
+	 * @param angle
+	 *            the angle, in radians.
+	 */
+	public void setAxisAngle(Float3D axis, float angle) {
+		float sin = (float) Math.sin(angle / 2);
+		set((float) Math.cos(angle / 2), axis.x * sin, axis.y * sin, axis.z * sin);
+	}
+
+	/**
+	 * Sets this quaternion from Euler angles, applied in the order yaw (z),
+	 * pitch (y) and roll (x).
+	 * 
+	 * @param roll
+	 *            the rotation around x, in radians.
+	 * @param pitch
+	 *            the rotation around y, in radians.
+	 * @param yaw
+	 *            the rotation around z, in radians.
+	 */
+	public void setEulerAngles(float roll, float pitch, float yaw) {
+		float cr = (float) Math.cos(roll / 2);
+		float sr = (float) Math.sin(roll / 2);
+		float cp = (float) Math.cos(pitch / 2);
+		float sp = (float) Math.sin(pitch / 2);
+		float cy = (float) Math.cos(yaw / 2);
+		float sy = (float) Math.sin(yaw / 2);
+		set(cr * cp * cy + sr * sp * sy, sr * cp * cy - cr * sp * sy, cr * sp * cy + sr * cp * sy,
+				cr * cp * sy - sr * sp * cy);
+	}
+
+	/**
+	 * Stores the Euler angles of this rotation in dst, in radians, with roll
+	 * in x, pitch in y and yaw in z.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D getEulerAngles(Float3D dst) {
+		float roll = (float) Math.atan2(2 * (w * x + y * z), 1 - 2 * (x * x + y * y));
+		float sinPitch = 2 * (w * y - z * x);
+		float pitch = (float) Math.asin(Math.max(-1, Math.min(1, sinPitch)));
+		float yaw = (float) Math.atan2(2 * (w * z + x * y), 1 - 2 * (y * y + z * z));
+		dst.set(roll, pitch, yaw);
+		return dst;
+	}
+
+	/**
+	 * Sets this quaternion to the rotation described by a rotation matrix.
+	 */
+	public void setRotation(Matrix3 m) {
+		float trace = m.m00 + m.m11 + m.m22;
+		if (trace > 0) {
+			float s = 0.5f / (float) Math.sqrt(trace + 1);
+			set(0.25f / s, (m.m21 - m.m12) * s, (m.m02 - m.m20) * s, (m.m10 - m.m01) * s);
+		} else if (m.m00 > m.m11 && m.m00 > m.m22) {
+			float s = 2 * (float) Math.sqrt(1 + m.m00 - m.m11 - m.m22);
+			set((m.m21 - m.m12) / s, 0.25f * s, (m.m01 + m.m10) / s, (m.m02 + m.m20) / s);
+		} else if (m.m11 > m.m22) {
+			float s = 2 * (float) Math.sqrt(1 + m.m11 - m.m00 - m.m22);
+			set((m.m02 - m.m20) / s, (m.m01 + m.m10) / s, 0.25f * s, (m.m12 + m.m21) / s);
+		} else {
+			float s = 2 * (float) Math.sqrt(1 + m.m22 - m.m00 - m.m11);
+			set((m.m10 - m.m01) / s, (m.m02 + m.m20) / s, (m.m12 + m.m21) / s, 0.25f * s);
+		}
+	}
+
+	public float dot(Quaternion q) {
+		return w * q.w + x * q.x + y * q.y + z * q.z;
+	}
+
+	public float length() {
+		return (float) Math.sqrt(dot(this));
+	}
+
+	/**
+	 * Scales this quaternion to unit length, using
+	 * {@link FastMath#invSqrt(float)}. Call it now and then when composing
+	 * many rotations, to keep rounding errors from accumulating.
+	 */
+	public void normalize() {
+		float lengthSquared = dot(this);
+		if (lengthSquared > 0) {
+			float scale = FastMath.invSqrt(lengthSquared);
+			set(w * scale, x * scale, y * scale, z * scale);
+		}
+	}
+
+	/**
+	 * Sets this quaternion to its conjugate, which for a unit quaternion is
+	 * the inverse rotation.
+	 */
+	public void conjugate() {
+		set(w, -x, -y, -z);
+	}
+
+	/**
+	 * Stores the conjugate of this quaternion in dst.
+	 * 
+	 * @return dst.
+	 */
+	public Quaternion conjugate(Quaternion dst) {
+		dst.set(w, -x, -y, -z);
+		return dst;
+	}
+
+	/**
+	 * Sets this quaternion to this * q, the rotation q followed by this
+	 * rotation.
+	 */
+	public void multiply(Quaternion q) {
+		multiply(this, q, this);
+	}
+
+	/**
+	 * Stores the product a * b, the rotation b followed by a, in dst.
+	 * 
+	 * @return dst.
+	 */
+	public static Quaternion multiply(Quaternion a, Quaternion b, Quaternion dst) {
+		float w = a.w * b.w - a.x * b.x - a.y * b.y - a.z * b.z;
+		float x = a.w * b.x + a.x * b.w + a.y * b.z - a.z * b.y;
+		float y = a.w * b.y - a.x * b.z + a.y * b.w + a.z * b.x;
+		float z = a.w * b.z + a.x * b.y - a.y * b.x + a.z * b.w;
+		dst.set(w, x, y, z);
+		return dst;
+	}
+
+	/**
+	 * Rotates a vector in place by this unit quaternion.
+	 */
+	public void rotate(Float3D v) {
+		rotate(v, v);
+	}
+
+	/**
+	 * Stores the vector v rotated by this unit quaternion in dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D rotate(Float3D v, Float3D dst) {
+		// v' = v + 2w(u x v) + 2u x (u x v), with u the vector part
+		float tx = 2 * (y * v.z - z * v.y);
+		float ty = 2 * (z * v.x - x * v.z);
+		float tz = 2 * (x * v.y - y * v.x);
+		dst.set(v.x + w * tx + y * tz - z * ty, v.y + w * ty + z * tx - x * tz, v.z + w * tz + x * ty - y * tx);
+		return dst;
+	}
+
+	/**
+	 * Stores the spherical linear interpolation between the unit quaternions
+	 * a and b in dst, taking the shortest path.
+	 * 
+	 * @param t
+	 *            the position between a (0) and b (1).
+	 * @return dst.
+	 */
+	public static Quaternion slerp(Quaternion a, Quaternion b, float t, Quaternion dst) {
+		float cos = a.dot(b);
+		float sign = 1;
+		if (cos < 0) {
+			cos = -cos;
+			sign = -1;
+		}
+		float wa;
+		float wb;
+		if (cos > 0.9995f) {
+			// Close enough for a linear interpolation, avoiding the
+			// division by a tiny sine
+			wa = 1 - t;
+			wb = t;
+		} else {
+			float angle = (float) Math.acos(cos);
+			float sin = (float) Math.sin(angle);
+			wa = (float) Math.sin((1 - t) * angle) / sin;
+			wb = (float) Math.sin(t * angle) / sin;
+		}
+		wb *= sign;
+		dst.set(wa * a.w + wb * b.w, wa * a.x + wb * b.x, wa * a.y + wb * b.y, wa * a.z + wb * b.z);
+		dst.normalize();
+		return dst;
+	}
+
+	public Quaternion copy() {
+		return new Quaternion(this);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("w:%2.3f, x:%2.3f, y:%2.3f, z:%2.3f", w, x, y, z);
+	}
+}
@@ -19,10 +19,17 @@ package com.robo4j.rpi.i2c;
 import java.io.IOException;
 import java.util.logging.Logger;
 
+import jdk.jfr.FlightRecorder;
+
 import com.pi4j.io.i2c.I2CBus;
 import com.pi4j.io.i2c.I2CDevice;
 import com.pi4j.io.i2c.I2CFactory;
 import com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException;
+import com.robo4j.rpi.i2c.budget.BusTraffic;
+import com.robo4j.rpi.i2c.budget.I2COperation;
+import com.robo4j.rpi.i2c.mux.TCA9548ADevice;
+import com.robo4j.rpi.jfr.DeviceReadEvent;
+import com.robo4j.rpi.jfr.I2CTransactionEvent;
 
 /**
  * Abstract super class for I2C devices.
@@ -32,13 +39,20 @@ import com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException;
 public abstract class AbstractI2CDevice {
 	private final int bus;
 	private final int address;
+	private final String deviceName;
+	private final TCA9548ADevice.Channel channel;
 	protected final I2CDevice i2cDevice;
+	private final BusTraffic traffic;
+	private volatile long lastTransactionTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+	private volatile long lastSampleTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
 
 	/**
 	 * Creates an I2C device.
 	 * 
 	 * @param bus
-	 *            the I2C bus to use.
+	 *            the I2C bus to use. This can also be a virtual bus
+	 *            representing a channel on a TCA9548A multiplexer, see
+	 *            {@link TCA9548ADevice#getVirtualBus(int, int, int)}.
 	 * @param address
 	 *            the address to use.
 	 * 
@@ -51,8 +65,17 @@ public abstract class AbstractI2CDevice {
 	public AbstractI2CDevice(int bus, int address) throws IOException {
 		this.bus = bus;
 		this.address = address;
+		this.deviceName = getClass().getSimpleName();
+		int physicalBus = bus;
+		if (TCA9548ADevice.isVirtualBus(bus)) {
+			this.channel = TCA9548ADevice.getVirtualBusChannel(bus);
+			physicalBus = channel.getMultiplexer().getBus();
+		} else {
+			this.channel = null;
+		}
+		this.traffic = BusTraffic.forBus(physicalBus);
 		try {
-			this.i2cDevice = I2CFactory.getInstance(bus).getDevice(address);
+			this.i2cDevice = I2CFactory.getInstance(physicalBus).getDevice(address);
 		} catch (com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException e) {
 			throw new IOException("Unsupported bus", e);
 		}
@@ -76,12 +99,253 @@ public abstract class AbstractI2CDevice {
 		return address;
 	}
 	
+	/**
+	 * Returns the multiplexer channel this device is connected through.
+	 * 
+	 * @return the multiplexer channel this device is connected through, or
+	 *         null if the device is directly on a physical bus.
+	 */
+	public final TCA9548ADevice.Channel getMultiplexerChannel() {
+		return channel;
+	}
+
+	/**
+	 * Writes a byte to the specified register.
+	 * 
+	 * @param address
+	 *            the register to write to.
+	 * @param b
+	 *            the byte to write.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
 	protected void writeByte(int address, byte b) throws IOException {
-		i2cDevice.write(address, b);
+		acquireChannel();
+		try {
+			I2CTransactionEvent event = beginTransaction();
+			long start = System.nanoTime();
+			i2cDevice.write(address, b);
+			traffic.record(I2COperation.bitsForRegisterWrite(1));
+			commit(event, start, address, 1, true);
+		} finally {
+			releaseChannel();
+		}
+	}
+
+	/**
+	 * Writes a byte directly to the device, without addressing a register.
+	 * 
+	 * @param b
+	 *            the byte to write.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	protected void writeByte(byte b) throws IOException {
+		acquireChannel();
+		try {
+			I2CTransactionEvent event = beginTransaction();
+			long start = System.nanoTime();
+			i2cDevice.write(b);
+			traffic.record(I2COperation.bitsForWrite(1));
+			commit(event, start, -1, 1, true);
+		} finally {
+			releaseChannel();
+		}
 	}
 
+	/**
+	 * Reads a byte from the specified register.
+	 * 
+	 * @param address
+	 *            the register to read from.
+	 * @return the byte read.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
 	protected int readByte(int address) throws IOException {
-		return i2cDevice.read(address);
+		acquireChannel();
+		try {
+			I2CTransactionEvent event = beginTransaction();
+			long start = System.nanoTime();
+			int result = i2cDevice.read(address);
+			traffic.record(I2COperation.bitsForRegisterRead(1));
+			commit(event, start, address, 1, false);
+			return result;
+		} finally {
+			releaseChannel();
+		}
+	}
+
+	/**
+	 * Reads a block of bytes, starting at the specified register.
+	 * 
+	 * @param address
+	 *            the register to start reading from.
+	 * @param buffer
+	 *            the buffer to read into.
+	 * @param offset
+	 *            the offset in the buffer to start writing at.
+	 * @param size
+	 *            the number of bytes to read.
+	 * @return the number of bytes actually read.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	protected int readBytes(int address, byte[] buffer, int offset, int size) throws IOException {
+		acquireChannel();
+		try {
+			I2CTransactionEvent event = beginTransaction();
+			long start = System.nanoTime();
+			int n = i2cDevice.read(address, buffer, offset, size);
+			traffic.record(I2COperation.bitsForRegisterRead(n));
+			commit(event, start, address, n, false);
+			return n;
+		} finally {
+			releaseChannel();
+		}
+	}
+
+	/**
+	 * Reads a block of bytes directly from the device, without addressing a
+	 * register.
+	 * 
+	 * @param buffer
+	 *            the buffer to read into.
+	 * @param offset
+	 *            the offset in the buffer to start writing at.
+	 * @param size
+	 *            the number of bytes to read.
+	 * @return the number of bytes actually read.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	protected int readBytes(byte[] buffer, int offset, int size) throws IOException {
+		acquireChannel();
+		try {
+			I2CTransactionEvent event = beginTransaction();
+			long start = System.nanoTime();
+			int n = i2cDevice.read(buffer, offset, size);
+			traffic.record(I2COperation.bitsForRead(n));
+			commit(event, start, -1, n, false);
+			return n;
+		} finally {
+			releaseChannel();
+		}
+	}
+
+	/**
+	 * Returns the time of the most recent transaction with this device.
+	 * 
+	 * @return the {@link System#nanoTime()} at the midpoint of the most recent
+	 *         transaction, or {@link TimestampedReadableDevice#NO_SAMPLE_TIME}
+	 *         if there has been none.
+	 */
+	protected final long getLastTransactionTime() {
+		return lastTransactionTime;
+	}
+
+	/**
+	 * Marks the most recent transaction as the one capturing the sample being
+	 * read. Drivers call this after the transaction which best represents the
+	 * time of the measurement, usually the one reading the data.
+	 */
+	protected final void markSampleTime() {
+		lastSampleTime = lastTransactionTime;
+	}
+
+	/**
+	 * Returns the time the most recently read sample was captured.
+	 * 
+	 * @return the {@link System#nanoTime()} at the midpoint of the transaction
+	 *         capturing the most recent sample, or
+	 *         {@link TimestampedReadableDevice#NO_SAMPLE_TIME} if nothing has
+	 *         been read yet.
+	 */
+	public long getLastSampleTime() {
+		return lastSampleTime;
+	}
+
+	private void acquireChannel() throws IOException {
+		if (channel != null) {
+			channel.acquire();
+		}
+	}
+
+	private void releaseChannel() {
+		if (channel != null) {
+			channel.release();
+		}
+	}
+
+	private static I2CTransactionEvent beginTransaction() {
+		if (!FlightRecorder.isInitialized()) {
+			return null;
+		}
+		I2CTransactionEvent event = new I2CTransactionEvent();
+		event.begin();
+		return event;
+	}
+
+	private void commit(I2CTransactionEvent event, long start, int register, int bytes, boolean write) {
+		lastTransactionTime = start + (System.nanoTime() - start) / 2;
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.device = deviceName;
+			event.bus = bus;
+			event.address = address;
+			event.register = register;
+			event.bytes = bytes;
+			event.write = write;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Creates and begins a {@link DeviceReadEvent}. Returns null while the
+	 * flight recorder is not initialized, so that reads do not rely on escape
+	 * analysis to stay allocation free when nobody is recording.
+	 * 
+	 * @return the begun event, or null.
+	 */
+	protected static DeviceReadEvent beginRead() {
+		if (!FlightRecorder.isInitialized()) {
+			return null;
+		}
+		DeviceReadEvent event = new DeviceReadEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Commits a {@link DeviceReadEvent} for a sample read from this device, if
+	 * the event is enabled and above the threshold.
+	 * 
+	 * @param event
+	 *            the event from {@link #beginRead()}, may be null.
+	 * @param x
+	 *            the x value read.
+	 * @param y
+	 *            the y value read.
+	 * @param z
+	 *            the z value read.
+	 */
+	protected void commitRead(DeviceReadEvent event, float x, float y, float z) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.device = deviceName;
+			event.bus = bus;
+			event.address = address;
+			event.x = x;
+			event.y = y;
+			event.z = z;
+			event.commit();
+		}
 	}
 
 	protected void sleep(long millis) {
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * Decorator sharing the samples of a device between several consumers. A
+ * read returns the cached sample if it is younger than the max age. If not,
+ * one caller reads the device, while any other callers arriving meanwhile
+ * wait for, and share, its result instead of issuing reads of their own. With
+ * N consumers reading at about the same rate, this cuts the bus traffic for
+ * the device by up to a factor N.
+ * <p>
+ * The age of a sample is counted from its sample time if the device is a
+ * {@link TimestampedReadableDevice}, and from the middle of the read
+ * otherwise.
+ * 
+ * @author Marcus Hirt
+ */
+public class CachingFloat3DDevice implements ReadableFloat3DDevice, TimestampedReadableDevice<Float3D> {
+	private final ReadableDevice<Float3D> device;
+	private final long maxAgeNanos;
+	private final Object lock = new Object();
+	private final Float3D cached = new Float3D();
+	private final Float3D scratch = new Float3D();
+	private long sampleTime = NO_SAMPLE_TIME;
+	private boolean reading;
+	private long generation;
+	private Throwable failure;
+	private long hits;
+	private long shared;
+	private long misses;
+
+	/**
+	 * @param device
+	 *            the device to cache the samples of.
+	 * @param maxAge
+	 *            the max age of a cached sample.
+	 * @param unit
+	 *            the unit of the max age.
+	 */
+	public CachingFloat3DDevice(ReadableDevice<Float3D> device, long maxAge, TimeUnit unit) {
+		this.device = device;
+		this.maxAgeNanos = unit.toNanos(maxAge);
+	}
+
+	@Override
+	public void read(Float3D dst) throws IOException {
+		read(dst, null, 0);
+	}
+
+	@Override
+	public void read(float[] dst, int offset) throws IOException {
+		read(null, dst, offset);
+	}
+
+	@Override
+	public Timestamped<Float3D> readTimestamped() throws IOException {
+		Float3D value = new Float3D();
+		long time = read(value, null, 0);
+		return new Timestamped<>(value, time);
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		synchronized (lock) {
+			return sampleTime;
+		}
+	}
+
+	/**
+	 * @return the number of reads served from the cache.
+	 */
+	public long getHits() {
+		synchronized (lock) {
+			return hits;
+		}
+	}
+
+	/**
+	 * @return the number of reads which waited for a read by another caller,
+	 *         and shared its result.
+	 */
+	public long getSharedReads() {
+		synchronized (lock) {
+			return shared;
+		}
+	}
+
+	/**
+	 * @return the number of reads which went to the device.
+	 */
+	public long getMisses() {
+		synchronized (lock) {
+			return misses;
+		}
+	}
+
+	/**
+	 * @return the fraction of the reads not going to the device, or 0 if
+	 *         nothing has been read.
+	 */
+	public double getHitRate() {
+		synchronized (lock) {
+			long total = hits + shared + misses;
+			return total == 0 ? 0 : (hits + shared) / (double) total;
+		}
+	}
+
+	/**
+	 * Resets the hit and miss counts.
+	 */
+	public void resetStatistics() {
+		synchronized (lock) {
+			hits = 0;
+			shared = 0;
+			misses = 0;
+		}
+	}
+
+	public long getMaxAge(TimeUnit unit) {
+		return unit.convert(maxAgeNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		synchronized (lock) {
+			return String.format("CachingFloat3DDevice [hits=%d, shared=%d, misses=%d, hit rate=%.1f%%]", hits, shared,
+					misses, getHitRate() * 100);
+		}
+	}
+
+	/**
+	 * Waits for any ongoing read by another caller. Must hold the lock.
+	 * 
+	 * @return true if there is a usable cached sample, false if the caller
+	 *         should read the device, having been marked as the one reading.
+	 */
+	private boolean awaitCached() throws IOException {
+		if (sampleTime != NO_SAMPLE_TIME && System.nanoTime() - sampleTime <= maxAgeNanos) {
+			hits++;
+			return true;
+		}
+		if (reading) {
+			long awaited = generation;
+			try {
+				while (generation == awaited) {
+					lock.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for a shared read");
+			}
+			if (failure != null) {
+				throw new IOException("Shared read failed", failure);
+			}
+			shared++;
+			return true;
+		}
+		reading = true;
+		misses++;
+		return false;
+	}
+
+	/**
+	 * Copies the cached sample, or a new one, into either the vector or the
+	 * array.
+	 * 
+	 * @return the sample time of the copied sample.
+	 */
+	private long read(Float3D vector, float[] array, int offset) throws IOException {
+		synchronized (lock) {
+			if (awaitCached()) {
+				return copy(vector, array, offset);
+			}
+		}
+		return fetch(vector, array, offset);
+	}
+
+	/**
+	 * Copies the cached sample. Must hold the lock.
+	 */
+	private long copy(Float3D vector, float[] array, int offset) {
+		if (vector != null) {
+			vector.set(cached);
+		} else {
+			array[offset] = cached.x;
+			array[offset + 1] = cached.y;
+			array[offset + 2] = cached.z;
+		}
+		return sampleTime;
+	}
+
+	/**
+	 * Reads the device, without holding the lock, and publishes the result
+	 * to any waiting callers. Whatever the device throws, the waiting callers
+	 * are released.
+	 */
+	private long fetch(Float3D vector, float[] array, int offset) throws IOException {
+		long before = System.nanoTime();
+		long time = NO_SAMPLE_TIME;
+		Throwable error = null;
+		try {
+			if (device instanceof ReadableFloat3DDevice) {
+				((ReadableFloat3DDevice) device).read(scratch);
+			} else {
+				scratch.set(device.read());
+			}
+		} catch (Throwable t) {
+			error = t;
+			throw t;
+		} finally {
+			synchronized (lock) {
+				if (error == null) {
+					cached.set(scratch);
+					if (device instanceof TimestampedReadableDevice) {
+						sampleTime = ((TimestampedReadableDevice<?>) device).getLastSampleTime();
+					} else {
+						sampleTime = before + (System.nanoTime() - before) / 2;
+					}
+				}
+				failure = error;
+				reading = false;
+				generation++;
+				lock.notifyAll();
+				if (error == null) {
+					time = copy(vector, array, offset);
+				}
+			}
+		}
+		return time;
+	}
+}
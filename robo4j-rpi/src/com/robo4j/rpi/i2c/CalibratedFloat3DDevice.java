@@ -1,44 +1,165 @@
 package com.robo4j.rpi.i2c;
 
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Matrix3;
 
 /**
  * Wrapper class for readable devices returning Float3D, allowing for calibration.
+ * The calibrated value is (raw + offsets) * multipliers, optionally followed
+ * by a multiplication with a 3x3 correction matrix, which can compensate for
+ * cross-axis effects such as soft iron distortion of a magnetometer.
+ * <p>
+ * The calibration can be replaced at any time; it is swapped in as a whole,
+ * so a read never sees a mix of old and new values.
+ * <p>
+ * If the wrapped device is a {@link TimestampedReadableDevice}, its sample
+ * times are passed through, otherwise the midpoint of the read is used.
  * 
  * @author Marcus Hirt
  */
-public class CalibratedFloat3DDevice implements ReadableDevice<Float3D> {
-	private final Float3D centerOffsets; 
-	private final Float3D rangeMultipliers;
+public class CalibratedFloat3DDevice implements ReadableFloat3DDevice, TimestampedReadableDevice<Float3D> {
 	private final ReadableDevice<Float3D> device;
+	private volatile Calibration calibration;
+	private volatile long lastSampleTime = NO_SAMPLE_TIME;
+	private final Float3D sample = new Float3D();
+
+	private static final class Calibration {
+		private final Float3D offsets;
+		private final Float3D multipliers;
+		private final Matrix3 correction;
+
+		private Calibration(Float3D offsets, Float3D multipliers, Matrix3 correction) {
+			this.offsets = offsets.copy();
+			this.multipliers = multipliers.copy();
+			this.correction = correction != null ? correction.copy() : null;
+		}
+	}
 
 	public CalibratedFloat3DDevice(ReadableDevice<Float3D> device, Float3D offsets, Float3D multipliers) {
+		this(device, offsets, multipliers, null);
+	}
+
+	/**
+	 * @param device
+	 *            the device to calibrate.
+	 * @param offsets
+	 *            the offsets to add to the raw values.
+	 * @param multipliers
+	 *            the multipliers to apply after the offsets.
+	 * @param correction
+	 *            the matrix to multiply with last, or null for none.
+	 */
+	public CalibratedFloat3DDevice(ReadableDevice<Float3D> device, Float3D offsets, Float3D multipliers,
+			Matrix3 correction) {
 		this.device = device;
-		this.centerOffsets = offsets;
-		this.rangeMultipliers = multipliers;
+		this.calibration = new Calibration(offsets, multipliers, correction);
 	}
-	
-	public Float3D read() throws IOException {
-		Float3D value = device.read();
-		value.add(centerOffsets);
-		value.multiply(rangeMultipliers);
-		return value;
+
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		readRaw(dst);
+		calibrate(dst);
+	}
+
+	@Override
+	public synchronized void read(float[] dst, int offset) throws IOException {
+		read(sample);
+		dst[offset] = sample.x;
+		dst[offset + 1] = sample.y;
+		dst[offset + 2] = sample.z;
+	}
+
+	@Override
+	public synchronized Timestamped<Float3D> readTimestamped() throws IOException {
+		Float3D value = read();
+		return new Timestamped<>(value, lastSampleTime);
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return lastSampleTime;
 	}
 	
 	public void setCalibration(Float3D offsets, Float3D multipliers) {
-		centerOffsets.set(offsets);
-		rangeMultipliers.set(multipliers);
-		System.out.println("Gyro offsets: " + centerOffsets);
-		System.out.println("Gyro multipliers: " + rangeMultipliers);
+		setCalibration(offsets, multipliers, null);
 	}
-	
-	protected Float3D getRangeMultipliers() {
-		return rangeMultipliers;
+
+	/**
+	 * Replaces the calibration. The values are copied, and take effect
+	 * atomically, without blocking readers.
+	 * 
+	 * @param offsets
+	 *            the offsets to add to the raw values.
+	 * @param multipliers
+	 *            the multipliers to apply after the offsets.
+	 * @param correction
+	 *            the matrix to multiply with last, or null for none.
+	 */
+	public void setCalibration(Float3D offsets, Float3D multipliers, Matrix3 correction) {
+		calibration = new Calibration(offsets, multipliers, correction);
+		if (getLogger().isLoggable(Level.FINE)) {
+			getLogger().fine("Calibration offsets: " + offsets + ", multipliers: " + multipliers
+					+ (correction != null ? ", correction: " + correction : ""));
+		}
+	}
+
+	/**
+	 * @return a copy of the multipliers.
+	 */
+	public Float3D getRangeMultipliers() {
+		return calibration.multipliers.copy();
 	}
 	
-	protected Float3D getCenterOffsets() {
-		return centerOffsets;
+	/**
+	 * @return a copy of the offsets.
+	 */
+	public Float3D getCenterOffsets() {
+		return calibration.offsets.copy();
+	}
+
+	/**
+	 * @return a copy of the correction matrix, or null if there is none.
+	 */
+	public Matrix3 getCorrection() {
+		Matrix3 correction = calibration.correction;
+		return correction != null ? correction.copy() : null;
+	}
+
+	/**
+	 * Reads an uncalibrated value from the wrapped device, and records its
+	 * sample time.
+	 */
+	protected void readRaw(Float3D dst) throws IOException {
+		long before = System.nanoTime();
+		if (device instanceof ReadableFloat3DDevice) {
+			((ReadableFloat3DDevice) device).read(dst);
+		} else {
+			dst.set(device.read());
+		}
+		if (device instanceof TimestampedReadableDevice) {
+			lastSampleTime = ((TimestampedReadableDevice<?>) device).getLastSampleTime();
+		} else {
+			lastSampleTime = before + (System.nanoTime() - before) / 2;
+		}
+	}
+
+	/**
+	 * Applies the current calibration to a raw value, in place.
+	 */
+	protected void calibrate(Float3D value) {
+		Calibration calibration = this.calibration;
+		value.add(calibration.offsets);
+		value.multiply(calibration.multipliers);
+		if (calibration.correction != null) {
+			calibration.correction.transform(value);
+		}
+	}
+
+	private static Logger getLogger() {
+		return Logger.getLogger(CalibratedFloat3DDevice.class.getName());
 	}
 }
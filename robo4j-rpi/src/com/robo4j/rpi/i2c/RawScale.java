@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Int3D;
+
+/**
+ * The per axis factors converting the raw integer samples of a
+ * {@link ReadableRawFloat3DDevice} into the units of its
+ * {@link ReadableFloat3DDevice#read(Float3D)}. Keep samples in their raw
+ * form for as long as possible, for example when logging or transporting
+ * them, and apply the scale where floats are actually needed.
+ * <p>
+ * A scale is immutable. If the device is reconfigured, for example changing
+ * the gain, the device will return a new scale.
+ * 
+ * @author Marcus Hirt
+ */
+public final class RawScale {
+	private final float x;
+	private final float y;
+	private final float z;
+
+	public RawScale(float scale) {
+		this(scale, scale, scale);
+	}
+
+	public RawScale(float x, float y, float z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public float getX() {
+		return x;
+	}
+
+	public float getY() {
+		return y;
+	}
+
+	public float getZ() {
+		return z;
+	}
+
+	/**
+	 * Scales a raw sample.
+	 * 
+	 * @param raw
+	 *            the raw sample.
+	 * @param dst
+	 *            the vector to store the scaled sample in.
+	 */
+	public void apply(Int3D raw, Float3D dst) {
+		dst.x = raw.x * x;
+		dst.y = raw.y * y;
+		dst.z = raw.z * z;
+	}
+
+	/**
+	 * Scales a block of packed raw samples, stored as x, y and z.
+	 * 
+	 * @param raw
+	 *            the raw samples.
+	 * @param rawOffset
+	 *            the index of the first raw value.
+	 * @param dst
+	 *            the array to store the scaled samples in.
+	 * @param dstOffset
+	 *            the index to store the first scaled value at.
+	 * @param count
+	 *            the number of samples (not values) to scale.
+	 */
+	public void apply(short[] raw, int rawOffset, float[] dst, int dstOffset, int count) {
+		for (int i = 0; i < count; i++) {
+			int r = rawOffset + 3 * i;
+			int d = dstOffset + 3 * i;
+			dst[d] = raw[r] * x;
+			dst[d + 1] = raw[r + 1] * y;
+			dst[d + 2] = raw[r + 2] * z;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof RawScale)) {
+			return false;
+		}
+		RawScale other = (RawScale) obj;
+		return Float.floatToIntBits(x) == Float.floatToIntBits(other.x)
+				&& Float.floatToIntBits(y) == Float.floatToIntBits(other.y)
+				&& Float.floatToIntBits(z) == Float.floatToIntBits(other.z);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * Float.floatToIntBits(x) + Float.floatToIntBits(y)) + Float.floatToIntBits(z);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("scale x:%g, y:%g, z:%g", x, y, z);
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * A device providing {@link Float3D} values, which can be read without
+ * allocating, either into a vector or into a float array. Use these when
+ * reading at high rates, to avoid constantly creating garbage.
+ * 
+ * @author Marcus Hirt
+ */
+public interface ReadableFloat3DDevice extends ReadableDevice<Float3D> {
+	/**
+	 * Reads a value into the provided vector.
+	 * 
+	 * @param dst
+	 *            the vector to read the value into.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	void read(Float3D dst) throws IOException;
+
+	/**
+	 * Reads a value into the provided array, as x, y and z.
+	 * 
+	 * @param dst
+	 *            the array to read the value into.
+	 * @param offset
+	 *            the index to store x at.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	void read(float[] dst, int offset) throws IOException;
+
+	/**
+	 * Reads a value into a newly allocated vector.
+	 */
+	@Override
+	default Float3D read() throws IOException {
+		Float3D value = new Float3D();
+		read(value);
+		return value;
+	}
+}
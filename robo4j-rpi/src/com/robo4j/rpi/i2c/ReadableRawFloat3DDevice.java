@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.geometry.Int3D;
+
+/**
+ * A {@link ReadableFloat3DDevice} which can also provide its samples in the
+ * raw integer form read from the sensor, before conversion to floats. All
+ * raw values fit in a short, so samples can be stored in half the space of
+ * the float form, see {@link #readRaw(short[], int)}.
+ * 
+ * @author Marcus Hirt
+ */
+public interface ReadableRawFloat3DDevice extends ReadableFloat3DDevice {
+	/**
+	 * Reads a raw sample.
+	 * 
+	 * @param dst
+	 *            the vector to read the raw sample into.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	void readRaw(Int3D dst) throws IOException;
+
+	/**
+	 * Reads a raw sample into a packed array, as x, y and z.
+	 * 
+	 * @param dst
+	 *            the array to read the raw sample into.
+	 * @param offset
+	 *            the index to store x at.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	void readRaw(short[] dst, int offset) throws IOException;
+
+	/**
+	 * Returns the scale converting raw samples into the units of
+	 * {@link #read()}, for the current configuration of the device.
+	 * 
+	 * @return the current scale.
+	 */
+	RawScale getRawScale();
+}
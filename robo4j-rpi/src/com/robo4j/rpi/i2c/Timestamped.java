@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c;
+
+/**
+ * A value read from a device, together with the time it was captured.
+ * 
+ * @author Marcus Hirt
+ *
+ * @param <E>
+ *            the kind of value.
+ */
+public final class Timestamped<E> {
+	private final E value;
+	private final long timestamp;
+
+	public Timestamped(E value, long timestamp) {
+		this.value = value;
+		this.timestamp = timestamp;
+	}
+
+	public E getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the time the value was captured, as {@link System#nanoTime()}.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return value + " @ " + timestamp;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c;
+
+import java.io.IOException;
+
+/**
+ * A readable device which knows when its samples were captured. For I2C
+ * devices this is the midpoint of the bus transaction reading the data, which
+ * is considerably more accurate than taking the time after
+ * {@link #read()} returns, since that includes the bus latency and any
+ * scheduling delay.
+ * 
+ * @author Marcus Hirt
+ *
+ * @param <E>
+ *            the kind of data which can be read from the device.
+ */
+public interface TimestampedReadableDevice<E> extends ReadableDevice<E> {
+	/**
+	 * Returned by {@link #getLastSampleTime()} if nothing has been read yet.
+	 */
+	long NO_SAMPLE_TIME = Long.MIN_VALUE;
+
+	/**
+	 * Reads a value, and the time it was captured.
+	 * 
+	 * @return the value and its timestamp.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	Timestamped<E> readTimestamped() throws IOException;
+
+	/**
+	 * Returns the time the most recently read value was captured, as
+	 * {@link System#nanoTime()}. Use this instead of
+	 * {@link #readTimestamped()} to avoid the allocation, when there is only
+	 * one thread reading the device.
+	 * 
+	 * @return the capture time of the last value read, or
+	 *         {@link #NO_SAMPLE_TIME} if nothing has been read yet.
+	 */
+	long getLastSampleTime();
+}
@@ -4,8 +4,14 @@ import java.io.IOException;
 
 import com.pi4j.io.i2c.I2CBus;
 import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Int3D;
 import com.robo4j.rpi.i2c.AbstractI2CDevice;
-import com.robo4j.rpi.i2c.ReadableDevice;
+import com.robo4j.rpi.i2c.RawScale;
+import com.robo4j.rpi.i2c.ReadableRawFloat3DDevice;
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+import com.robo4j.rpi.i2c.budget.I2COperation;
+import com.robo4j.rpi.jfr.DeviceReadEvent;
 
 /**
  * Abstraction for reading data from a LSM303 accelerometer, for example the one
@@ -13,7 +19,8 @@ import com.robo4j.rpi.i2c.ReadableDevice;
  * 
  * @author Marcus Hirt
  */
-public class AccelerometerLSM303Device extends AbstractI2CDevice implements ReadableDevice<Float3D> {
+public class AccelerometerLSM303Device extends AbstractI2CDevice
+		implements ReadableRawFloat3DDevice, TimestampedReadableDevice<Float3D> {
 	public static final float GRAVITY_ZURICH = 9.807f;
 
 	public static final int AXIS_ENABLE_X = 1;
@@ -21,6 +28,11 @@ public class AccelerometerLSM303Device extends AbstractI2CDevice implements Read
 	public static final int AXIS_ENABLE_Z = 4;
 	public static final int AXIS_ENABLE_ALL = AXIS_ENABLE_X | AXIS_ENABLE_Y | AXIS_ENABLE_Z;
 
+	/**
+	 * The bus traffic of a {@link #read()}.
+	 */
+	public static final I2COperation READ_OPERATION = I2COperation.registerRead("accelerometer read", 6);
+
 	private static final int CTRL_REG1_A = 0x20;
 	private static final int CTRL_REG4_A = 0x23;
 	private static final int OUT_X_L_A = 0x28;
@@ -29,6 +41,10 @@ public class AccelerometerLSM303Device extends AbstractI2CDevice implements Read
 	private static final int HIGH_RES_DISABLE = 0x0;
 
 	private final FullScale scale;
+	private final RawScale rawScale;
+	private final byte[] data = new byte[6];
+	private final Int3D counts = new Int3D();
+	private final Float3D sample = new Float3D();
 
 	public AccelerometerLSM303Device() throws IOException {
 		this(PowerMode.NORMAL, DataRate.HZ_10, FullScale.G_2, false);
@@ -42,25 +58,62 @@ public class AccelerometerLSM303Device extends AbstractI2CDevice implements Read
 			boolean highres) throws IOException {
 		super(bus, address);
 		this.scale = scale;
+		this.rawScale = new RawScale(scale.getSensitivity() / 1000.0f);
 		initialize(mode, rate, axisEnable, scale, highres);
 	}
 
 	/**
-	 * @return current acceleration, m/s^2
-	 * @throws IOException
+	 * Reads the current acceleration, in m/s^2.
+	 */
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		DeviceReadEvent event = beginRead();
+		readRaw(counts);
+		rawScale.apply(counts, dst);
+		commitRead(event, dst.x, dst.y, dst.z);
+	}
+
+	/**
+	 * Reads the current acceleration, as signed 12 bit values. Multiply with
+	 * the {@link #getRawScale()} to get m/s^2.
 	 */
-	public synchronized Float3D read() throws IOException {
-		Float3D rawData = new Float3D();
-		byte[] data = new byte[6];
-		int n = i2cDevice.read(OUT_X_L_A | 0x80, data, 0, 6);
+	@Override
+	public synchronized void readRaw(Int3D dst) throws IOException {
+		int n = readBytes(OUT_X_L_A | 0x80, data, 0, 6);
+		markSampleTime();
 		if (n != 6) {
 			getLogger().warning("Failed to read all data from accelerometer. Should have read 6, could only read " + n);
 		}
-		float k = scale.getSensitivity() / 1000.0f;
-		rawData.x = read12bitSigned(data, 0) * k;
-		rawData.y = read12bitSigned(data, 2) * k;
-		rawData.z = read12bitSigned(data, 4) * k;
-		return rawData;
+		dst.x = read12bitSigned(data, 0);
+		dst.y = read12bitSigned(data, 2);
+		dst.z = read12bitSigned(data, 4);
+	}
+
+	@Override
+	public synchronized void readRaw(short[] dst, int offset) throws IOException {
+		readRaw(counts);
+		dst[offset] = (short) counts.x;
+		dst[offset + 1] = (short) counts.y;
+		dst[offset + 2] = (short) counts.z;
+	}
+
+	@Override
+	public RawScale getRawScale() {
+		return rawScale;
+	}
+
+	@Override
+	public synchronized void read(float[] dst, int offset) throws IOException {
+		read(sample);
+		dst[offset] = sample.x;
+		dst[offset + 1] = sample.y;
+		dst[offset + 2] = sample.z;
+	}
+
+	@Override
+	public synchronized Timestamped<Float3D> readTimestamped() throws IOException {
+		Float3D value = read();
+		return new Timestamped<>(value, getLastSampleTime());
 	}
 
 	private int read12bitSigned(byte[] data, int offset) {
@@ -19,22 +19,49 @@ package com.robo4j.rpi.i2c.bmp;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 import com.pi4j.io.i2c.I2CBus;
 import com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException;
 import com.robo4j.rpi.i2c.AbstractI2CDevice;
+import com.robo4j.rpi.i2c.budget.I2COperation;
 
 /**
  * Abstraction to read a Bosch digital barometric pressure sensor (BMP085/BMP180).
+ * The time the data of the latest reading was read out of the sensor is
+ * available from {@link #getLastSampleTime()}, or together with the reading
+ * from {@link #readTimestampedPressure()}.
  * 
  * @author Marcus Hirt
  */
-public final class BMP085Device extends AbstractI2CDevice {
-	private static final int PRESSURE_SEA_LEVEL = 101325;
-	private static final double POW_FACT = 1.0 / 5.225;
+public final class BMP085Device extends AbstractI2CDevice implements Barometer {
+	/**
+	 * The bus traffic of a {@link #readTemperature()}.
+	 */
+	public static final I2COperation TEMPERATURE_OPERATION = I2COperation.registerWrite("temperature read", 1)
+			.then(I2COperation.registerRead("temperature read", 1).times(2));
+	/**
+	 * The bus traffic of a {@link #readPressure()}, which also reads the
+	 * temperature.
+	 */
+	public static final I2COperation PRESSURE_OPERATION = TEMPERATURE_OPERATION.named("pressure read")
+			.then(I2COperation.registerWrite("pressure read", 1))
+			.then(I2COperation.registerRead("pressure read", 1).times(3));
+
+	/**
+	 * The value of the chip ID register, the same for every BMP085 and BMP180.
+	 */
+	public static final int CHIP_ID = 0x55;
+
+	/**
+	 * The number of calibration words compared when reusing calibration data.
+	 */
+	public static final int FINGERPRINT_WORDS = 2;
+
 	// Calibration data
 	private static final int CALIBRATION_START = 0xAA;
 	private static final int CALIBRATION_END = 0xBF;
+	private static final int CALIBRATION_WORDS = (CALIBRATION_END - CALIBRATION_START + 1) / 2;
 
 	private static final short BMP085_CONTROL = 0xF4;
 	private static final short BMP085_TEMPDATA = 0xF6;
@@ -43,6 +70,8 @@ public final class BMP085Device extends AbstractI2CDevice {
 	private static final byte BMP085_READPRESSURECMD = 0x34;
 
 	private final OperatingMode mode;
+	private int[] calibrationData;
+	private boolean calibrationReused;
 
 	// Calibration variables
 	private short AC1;
@@ -86,17 +115,60 @@ public final class BMP085Device extends AbstractI2CDevice {
 	public BMP085Device(int bus, int address, OperatingMode mode) throws IOException {
 		super(bus, address);
 		this.mode = mode;
-		readCalibrationData();
+		setCalibrationData(readCalibrationData(CALIBRATION_WORDS));
 	}
 
 	/**
-	 * Returns the temperature in degrees Celcius.
+	 * Creates a software interface to an Adafruit BMP board (BMP085), reusing
+	 * factory calibration data from an earlier run, as returned by
+	 * {@link #getCalibrationData()}, to start faster. The factory calibration
+	 * is trimmed per chip, so the first {@link #FINGERPRINT_WORDS} words are
+	 * read back in a single short read and compared; if they differ, as when
+	 * the sensor has been replaced, or if no data is provided, all of the
+	 * calibration data is read from the device.
+	 * 
+	 * @param bus
+	 *            the I2C bus to use.
+	 * @param address
+	 *            the address to use.
+	 * @param mode
+	 *            the operating mode to use.
+	 * @param calibrationData
+	 *            the calibration data from an earlier run, or null.
 	 * 
-	 * @return the temperature in degrees Celcius.
 	 * @throws IOException
 	 *             if there was communication problem
 	 */
-	public float readTemperature() throws IOException {
+	public BMP085Device(int bus, int address, OperatingMode mode, int[] calibrationData) throws IOException {
+		super(bus, address);
+		this.mode = mode;
+		if (calibrationData != null && calibrationData.length == CALIBRATION_WORDS && Arrays
+				.equals(readCalibrationData(FINGERPRINT_WORDS), Arrays.copyOf(calibrationData, FINGERPRINT_WORDS))) {
+			setCalibrationData(calibrationData.clone());
+			calibrationReused = true;
+		} else {
+			setCalibrationData(readCalibrationData(CALIBRATION_WORDS));
+		}
+	}
+
+	/**
+	 * @return a copy of the factory calibration data, as unsigned 16 bit
+	 *         words.
+	 */
+	public int[] getCalibrationData() {
+		return calibrationData.clone();
+	}
+
+	/**
+	 * @return true if the calibration data provided at construction was used,
+	 *         rather than read from the device.
+	 */
+	public boolean isCalibrationReused() {
+		return calibrationReused;
+	}
+
+	@Override
+	public synchronized float readTemperature() throws IOException {
 		int UT = readRawTemp();
 		int X1 = ((UT - AC6) * AC5) >> 15;
 		int X2 = (MC << 11) / (X1 + MD);
@@ -104,14 +176,8 @@ public final class BMP085Device extends AbstractI2CDevice {
 		return ((B5 + 8) >> 4) / 10.0f;
 	}
 
-	/**
-	 * Returns the pressure in Pascal.
-	 * 
-	 * @return the pressure in Pascal.
-	 * @throws IOException
-	 *             if there was communication problem
-	 */
-	public int readPressure() throws IOException {
+	@Override
+	public synchronized int readPressure() throws IOException {
 		long p = 0;
 		int UT = readRawTemp();
 		int UP = readRawPressure();
@@ -145,18 +211,6 @@ public final class BMP085Device extends AbstractI2CDevice {
 		return (int) p;
 	}
 
-	/**
-	 * Returns the barometric altitude above sea level in meters.
-	 * 
-	 * @return the barometric altitude above sea level in meters.
-	 * @throws IOException
-	 *             if there was communication problem
-	 */
-	public float readAltitude() throws IOException {
-		float pressure = readPressure();
-		return (float) (44330.0 * (1.0 - Math.pow(pressure / PRESSURE_SEA_LEVEL, POW_FACT)));
-	}
-
 	/**
 	 * Returns the raw temperature sensor data. Mostly for debugging.
 	 * 
@@ -164,10 +218,12 @@ public final class BMP085Device extends AbstractI2CDevice {
 	 * @throws IOException
 	 *             if there was a communication problem
 	 */
-	public int readRawTemp() throws IOException {
-		i2cDevice.write(BMP085_CONTROL, BMP085_READTEMPCMD);
+	public synchronized int readRawTemp() throws IOException {
+		writeByte(BMP085_CONTROL, BMP085_READTEMPCMD);
 		sleep(50);
-		return readU2(BMP085_TEMPDATA);
+		int raw = readU2(BMP085_TEMPDATA);
+		markSampleTime();
+		return raw;
 	}
 
 	/**
@@ -177,18 +233,20 @@ public final class BMP085Device extends AbstractI2CDevice {
 	 * @throws IOException
 	 *             if there was a communication problem
 	 */
-	public int readRawPressure() throws IOException {
-		i2cDevice.write(BMP085_CONTROL, BMP085_READPRESSURECMD);
+	public synchronized int readRawPressure() throws IOException {
+		writeByte(BMP085_CONTROL, BMP085_READPRESSURECMD);
 		sleep(mode.getWaitTime());
-		return readU3(BMP085_PRESSUREDATA) >> (8 - mode.getOverSamplingSetting());
+		int raw = readU3(BMP085_PRESSUREDATA) >> (8 - mode.getOverSamplingSetting());
+		markSampleTime();
+		return raw;
 	}
 
 	/**
 	 * Read 2 bytes unsigned.
 	 */
 	private int readU2(int address) throws IOException {
-		int hi = i2cDevice.read(address);
-		int lo = i2cDevice.read(address + 1);
+		int hi = readByte(address);
+		int lo = readByte(address + 1);
 		return (hi << 8) + lo;
 	}
 
@@ -199,32 +257,45 @@ public final class BMP085Device extends AbstractI2CDevice {
 		// TODO: Check if there is any potential performance benefit to reading
 		// them all at once into a byte array. It's probably translated to
 		// to consecutive byte reads anyways, so probably not.
-		int msb = i2cDevice.read(address);
-		int lsb = i2cDevice.read(address + 1);
-		int xlsb = i2cDevice.read(address + 2);
+		int msb = readByte(address);
+		int lsb = readByte(address + 1);
+		int xlsb = readByte(address + 2);
 		return (msb << 16) + (lsb << 8) + xlsb;
 	}
 
-	private void readCalibrationData() throws IOException {
-		int totalBytes = CALIBRATION_END - CALIBRATION_START + 1;
+	/**
+	 * Reads the first words of the factory calibration data, as unsigned 16
+	 * bit words.
+	 */
+	private int[] readCalibrationData(int wordCount) throws IOException {
+		int totalBytes = wordCount * 2;
 		byte[] bytes = new byte[totalBytes];
-		int bytesRead = i2cDevice.read(CALIBRATION_START, bytes, 0, totalBytes);
+		int bytesRead = readBytes(CALIBRATION_START, bytes, 0, totalBytes);
 		if (bytesRead != totalBytes) {
-			throw new IOException("Could not read calibration data. Read " + bytes + " of " + totalBytes);
+			throw new IOException("Could not read calibration data. Read " + bytesRead + " of " + totalBytes);
 		}
 
 		DataInputStream calibrationData = new DataInputStream(new ByteArrayInputStream(bytes));
-		AC1 = calibrationData.readShort();
-		AC2 = calibrationData.readShort();
-		AC3 = calibrationData.readShort();
-		AC4 = calibrationData.readUnsignedShort();
-		AC5 = calibrationData.readUnsignedShort();
-		AC6 = calibrationData.readUnsignedShort();
-		B1 = calibrationData.readShort();
-		B2 = calibrationData.readShort();
-		calibrationData.readShort(); // MB not used for anything it seems...
-		MC = calibrationData.readShort();
-		MD = calibrationData.readShort();
+		int[] words = new int[wordCount];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = calibrationData.readUnsignedShort();
+		}
+		return words;
+	}
+
+	private void setCalibrationData(int[] words) {
+		calibrationData = words;
+		AC1 = (short) words[0];
+		AC2 = (short) words[1];
+		AC3 = (short) words[2];
+		AC4 = words[3];
+		AC5 = words[4];
+		AC6 = words[5];
+		B1 = (short) words[6];
+		B2 = (short) words[7];
+		// words[8] is MB, not used for anything it seems...
+		MC = (short) words[9];
+		MD = (short) words[10];
 
 		if (Boolean.getBoolean("se.hirt.pi.adafruit.debug")) {
 			System.out.println(String.format("AC1:%d, AC2:%d, AC3:%d, AC4:%d, AC5:%d, AC6:%d, B1:%d, B2:%d, MC:%d, MD:%d", AC1, AC2, AC3,
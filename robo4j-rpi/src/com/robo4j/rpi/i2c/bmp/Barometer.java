@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.bmp;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.Timestamped;
+
+/**
+ * A barometric pressure sensor, such as the {@link BMP085Device}. Also
+ * implemented by devices recording or replaying a barometer, so that code
+ * using one can be fed recorded data.
+ * 
+ * @author Marcus Hirt
+ */
+public interface Barometer {
+	/**
+	 * The standard atmospheric pressure at sea level, in Pascal.
+	 */
+	int PRESSURE_SEA_LEVEL = 101325;
+
+	/**
+	 * Returns the temperature in degrees Celcius.
+	 * 
+	 * @return the temperature in degrees Celcius.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	float readTemperature() throws IOException;
+
+	/**
+	 * Returns the pressure in Pascal.
+	 * 
+	 * @return the pressure in Pascal.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	int readPressure() throws IOException;
+
+	/**
+	 * Returns the barometric altitude above sea level in meters, assuming
+	 * the standard pressure at sea level.
+	 * 
+	 * @return the barometric altitude above sea level in meters.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	default float readAltitude() throws IOException {
+		return readAltitude(PRESSURE_SEA_LEVEL);
+	}
+
+	/**
+	 * Returns the barometric altitude above sea level in meters, given the
+	 * current pressure at sea level, for instance from a weather report or
+	 * from {@link com.robo4j.rpi.navigation.AltitudeFilter}.
+	 * 
+	 * @param seaLevelPressure
+	 *            the pressure at sea level, in Pascal.
+	 * @return the barometric altitude above sea level in meters.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	default float readAltitude(float seaLevelPressure) throws IOException {
+		return toAltitude(readPressure(), seaLevelPressure);
+	}
+
+	/**
+	 * Converts a pressure to an altitude.
+	 * 
+	 * @param pressure
+	 *            the pressure, in Pascal.
+	 * @param seaLevelPressure
+	 *            the pressure at sea level, in Pascal.
+	 * @return the altitude above sea level in meters.
+	 */
+	static float toAltitude(float pressure, float seaLevelPressure) {
+		return (float) (44330.0 * (1.0 - Math.pow(pressure / seaLevelPressure, 1.0 / 5.225)));
+	}
+
+	/**
+	 * Converts a pressure measured at a known altitude to the pressure at sea
+	 * level. The inverse of {@link #toAltitude(float, float)}.
+	 * 
+	 * @param pressure
+	 *            the pressure, in Pascal.
+	 * @param altitude
+	 *            the altitude above sea level in meters.
+	 * @return the pressure at sea level, in Pascal.
+	 */
+	static float toSeaLevelPressure(float pressure, float altitude) {
+		return (float) (pressure / Math.pow(1.0 - altitude / 44330.0, 5.225));
+	}
+
+	/**
+	 * Returns the time the data of the latest reading was captured. Use
+	 * {@link #readTimestampedPressure()} or
+	 * {@link #readTimestampedTemperature()} instead if there is more than one
+	 * thread reading the barometer.
+	 * 
+	 * @return the time the data of the latest reading was captured, as
+	 *         {@link System#nanoTime()}.
+	 */
+	long getLastSampleTime();
+
+	/**
+	 * Reads the pressure, and the time its data was captured. The default
+	 * implementation relies on the barometer synchronizing its reads on
+	 * itself.
+	 * 
+	 * @return the pressure in Pascal, and its timestamp.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	default Timestamped<Integer> readTimestampedPressure() throws IOException {
+		synchronized (this) {
+			int pressure = readPressure();
+			return new Timestamped<>(pressure, getLastSampleTime());
+		}
+	}
+
+	/**
+	 * Reads the temperature, and the time its data was captured. The default
+	 * implementation relies on the barometer synchronizing its reads on
+	 * itself.
+	 * 
+	 * @return the temperature in degrees Celcius, and its timestamp.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	default Timestamped<Float> readTimestampedTemperature() throws IOException {
+		synchronized (this) {
+			float temperature = readTemperature();
+			return new Timestamped<>(temperature, getLastSampleTime());
+		}
+	}
+}
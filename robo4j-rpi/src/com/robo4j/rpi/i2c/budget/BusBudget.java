@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.budget;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.robo4j.rpi.i2c.mux.TCA9548ADevice;
+
+/**
+ * The capacity of the I2C buses, used to check whether a
+ * {@link SamplingPlan} can be carried before running it. Plans over budget
+ * can either be rejected with {@link #admit(SamplingPlan)}, or degraded to
+ * fit with {@link #degrade(SamplingPlan)}.
+ * <p>
+ * Devices behind multiplexers are accounted on the physical bus of the
+ * multiplexer. Multiplexer switches are not included in the projection, so
+ * plan them explicitly using {@link TCA9548ADevice#SELECT_OPERATION} if
+ * needed.
+ * 
+ * @author Marcus Hirt
+ */
+public class BusBudget {
+	/**
+	 * I2C standard mode, 100 kHz. The default on the Raspberry Pi.
+	 */
+	public static final int STANDARD_MODE = 100000;
+	/**
+	 * I2C fast mode, 400 kHz.
+	 */
+	public static final int FAST_MODE = 400000;
+	/**
+	 * By default, keep 30% headroom for clock stretching, gaps between
+	 * transactions and scheduling jitter.
+	 */
+	public static final double DEFAULT_MAX_UTILIZATION = 0.7;
+
+	private final Map<Integer, Integer> clocks = new HashMap<>();
+	private final int defaultClock;
+	private final double maxUtilization;
+
+	/**
+	 * Creates a budget for standard mode buses, with the default headroom.
+	 */
+	public BusBudget() {
+		this(STANDARD_MODE, DEFAULT_MAX_UTILIZATION);
+	}
+
+	/**
+	 * Creates a budget.
+	 * 
+	 * @param defaultClock
+	 *            the clock of buses not explicitly configured, in Hz.
+	 * @param maxUtilization
+	 *            the max fraction of the bus capacity a plan may use, (0, 1].
+	 */
+	public BusBudget(int defaultClock, double maxUtilization) {
+		if (maxUtilization <= 0 || maxUtilization > 1) {
+			throw new IllegalArgumentException("Max utilization must be in (0, 1]");
+		}
+		this.defaultClock = defaultClock;
+		this.maxUtilization = maxUtilization;
+	}
+
+	/**
+	 * Sets the clock of a physical bus, for example after configuring
+	 * i2c_baudrate=400000 for the bus.
+	 * 
+	 * @param bus
+	 *            the physical bus.
+	 * @param clock
+	 *            the bus clock, in Hz.
+	 * @return this budget, for chaining.
+	 */
+	public BusBudget setClock(int bus, int clock) {
+		clocks.put(bus, clock);
+		return this;
+	}
+
+	/**
+	 * @return the clock of the bus, in Hz.
+	 */
+	public int getClock(int bus) {
+		Integer clock = clocks.get(TCA9548ADevice.getPhysicalBus(bus));
+		return clock == null ? defaultClock : clock;
+	}
+
+	/**
+	 * @return the max fraction of the bus capacity a plan may use.
+	 */
+	public double getMaxUtilization() {
+		return maxUtilization;
+	}
+
+	/**
+	 * Projects the load the plan would put on each bus.
+	 * 
+	 * @param plan
+	 *            the plan to evaluate.
+	 * @return the projected load.
+	 */
+	public BusLoadReport evaluate(SamplingPlan plan) {
+		return createReport(projectBitsPerSecond(plan), null);
+	}
+
+	/**
+	 * Checks that the plan can be carried by the buses.
+	 * 
+	 * @param plan
+	 *            the plan to check.
+	 * @return the plan, if within budget.
+	 * @throws IllegalArgumentException
+	 *             if the plan would put any bus over budget.
+	 */
+	public SamplingPlan admit(SamplingPlan plan) {
+		BusLoadReport report = evaluate(plan);
+		if (report.isOverBudget()) {
+			throw new IllegalArgumentException("Sampling plan rejected. " + report);
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns a plan fitting the budget. On buses over budget, the rates of
+	 * the entries allowing it are lowered towards their min rates, all by the
+	 * same fraction of their allowed range.
+	 * 
+	 * @param plan
+	 *            the requested plan.
+	 * @return the plan itself if within budget, otherwise a degraded plan.
+	 * @throws IllegalArgumentException
+	 *             if the plan does not fit even with all entries at their min
+	 *             rates.
+	 */
+	public SamplingPlan degrade(SamplingPlan plan) {
+		Map<Integer, Double> projected = projectBitsPerSecond(plan);
+		Map<Integer, Double> fixed = new HashMap<>();
+		for (SamplingPlan.Entry entry : plan.getEntries()) {
+			add(fixed, TCA9548ADevice.getPhysicalBus(entry.getBus()), entry.getOperation().getBits() * entry.getMinRate());
+		}
+		Map<Integer, Double> factors = new HashMap<>();
+		List<Integer> overloaded = new ArrayList<>();
+		for (Map.Entry<Integer, Double> load : projected.entrySet()) {
+			int bus = load.getKey();
+			double capacity = getClock(bus) * maxUtilization;
+			if (load.getValue() <= capacity) {
+				continue;
+			}
+			double fixedLoad = fixed.get(bus);
+			if (fixedLoad > capacity) {
+				overloaded.add(bus);
+				continue;
+			}
+			// Fraction of the degradable range (rate - minRate) that can be kept
+			factors.put(bus, (capacity - fixedLoad) / (load.getValue() - fixedLoad));
+		}
+		if (!overloaded.isEmpty()) {
+			throw new IllegalArgumentException("Sampling plan can not be degraded to fit bus(es) " + overloaded + ". "
+					+ createReport(fixed, null));
+		}
+		if (factors.isEmpty()) {
+			return plan;
+		}
+		SamplingPlan degraded = new SamplingPlan();
+		for (SamplingPlan.Entry entry : plan.getEntries()) {
+			Double factor = factors.get(TCA9548ADevice.getPhysicalBus(entry.getBus()));
+			double rate = factor == null ? entry.getRate()
+					: entry.getMinRate() + factor * (entry.getRate() - entry.getMinRate());
+			degraded.add(entry.getName(), entry.getBus(), entry.getOperation(), rate, entry.getMinRate());
+		}
+		return degraded;
+	}
+
+	/**
+	 * Creates a monitor tracking the measured bus load against the
+	 * projection of the plan.
+	 * 
+	 * @param plan
+	 *            the plan being run.
+	 * @return the monitor.
+	 */
+	public BusLoadMonitor monitor(SamplingPlan plan) {
+		return new BusLoadMonitor(this, plan);
+	}
+
+	Map<Integer, Double> projectBitsPerSecond(SamplingPlan plan) {
+		Map<Integer, Double> bitsPerSecond = new HashMap<>();
+		for (SamplingPlan.Entry entry : plan.getEntries()) {
+			add(bitsPerSecond, TCA9548ADevice.getPhysicalBus(entry.getBus()), entry.getBitsPerSecond());
+		}
+		return bitsPerSecond;
+	}
+
+	BusLoadReport createReport(Map<Integer, Double> projected, Map<Integer, Double> measured) {
+		BusLoadReport report = new BusLoadReport();
+		for (Map.Entry<Integer, Double> load : projected.entrySet()) {
+			int bus = load.getKey();
+			Double measuredLoad = measured == null ? null : measured.get(bus);
+			report.add(new BusLoadReport.BusLoad(bus, getClock(bus), maxUtilization, load.getValue(),
+					measuredLoad == null ? Double.NaN : measuredLoad));
+		}
+		return report;
+	}
+
+	private static void add(Map<Integer, Double> map, int bus, double value) {
+		Double old = map.get(bus);
+		map.put(bus, old == null ? value : old + value);
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.budget;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the measured load on the buses of a running {@link SamplingPlan}
+ * against the projection. Call {@link #sample()} periodically, for example
+ * once a second.
+ * 
+ * @see BusBudget#monitor(SamplingPlan)
+ * 
+ * @author Marcus Hirt
+ */
+public class BusLoadMonitor {
+	/**
+	 * A warning is logged when the measured load exceeds the projected load
+	 * by more than this fraction.
+	 */
+	public static final double DEFAULT_TOLERANCE = 0.2;
+
+	private final BusBudget budget;
+	private final Map<Integer, Double> projected;
+	private final Map<Integer, Long> lastBits = new HashMap<>();
+	private long lastTime;
+
+	BusLoadMonitor(BusBudget budget, SamplingPlan plan) {
+		this.budget = budget;
+		this.projected = budget.projectBitsPerSecond(plan);
+		reset();
+	}
+
+	/**
+	 * Restarts the measurement interval.
+	 */
+	public synchronized void reset() {
+		for (Integer bus : projected.keySet()) {
+			lastBits.put(bus, BusTraffic.forBus(bus).getBits());
+		}
+		lastTime = System.nanoTime();
+	}
+
+	/**
+	 * Measures the load since the last sample (or reset), and compares it to
+	 * the projection. Logs a warning for any bus over budget, or
+	 * significantly above the projection.
+	 * 
+	 * @return the projected and measured load.
+	 */
+	public synchronized BusLoadReport sample() {
+		long now = System.nanoTime();
+		double seconds = (now - lastTime) / 1e9;
+		Map<Integer, Double> measured = new HashMap<>();
+		for (Integer bus : projected.keySet()) {
+			long bits = BusTraffic.forBus(bus).getBits();
+			measured.put(bus, seconds > 0 ? (bits - lastBits.get(bus)) / seconds : 0.0);
+			lastBits.put(bus, bits);
+		}
+		lastTime = now;
+		BusLoadReport report = budget.createReport(projected, measured);
+		for (BusLoadReport.BusLoad load : report.getLoads()) {
+			if (load.getMeasuredUtilization() > budget.getMaxUtilization()
+					|| load.getMeasuredUtilization() > load.getProjectedUtilization() * (1 + DEFAULT_TOLERANCE)) {
+				Logger.getLogger(BusLoadMonitor.class.getName()).warning("Measured bus load above plan: " + load);
+			}
+		}
+		return report;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.budget;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The projected, and optionally measured, load on each physical bus.
+ * 
+ * @see BusBudget#evaluate(SamplingPlan)
+ * @see BusLoadMonitor#sample()
+ * 
+ * @author Marcus Hirt
+ */
+public final class BusLoadReport {
+	private final Map<Integer, BusLoad> loads = new TreeMap<>();
+
+	/**
+	 * The load on a single bus.
+	 */
+	public static final class BusLoad {
+		private final int bus;
+		private final int clock;
+		private final double maxUtilization;
+		private final double projectedBitsPerSecond;
+		private final double measuredBitsPerSecond;
+
+		BusLoad(int bus, int clock, double maxUtilization, double projectedBitsPerSecond, double measuredBitsPerSecond) {
+			this.bus = bus;
+			this.clock = clock;
+			this.maxUtilization = maxUtilization;
+			this.projectedBitsPerSecond = projectedBitsPerSecond;
+			this.measuredBitsPerSecond = measuredBitsPerSecond;
+		}
+
+		public int getBus() {
+			return bus;
+		}
+
+		/**
+		 * @return the bus clock, in Hz.
+		 */
+		public int getClock() {
+			return clock;
+		}
+
+		/**
+		 * @return the projected fraction of the bus capacity used, [0, 1+].
+		 */
+		public double getProjectedUtilization() {
+			return projectedBitsPerSecond / clock;
+		}
+
+		/**
+		 * @return the measured fraction of the bus capacity used, or NaN if
+		 *         not measured.
+		 */
+		public double getMeasuredUtilization() {
+			return measuredBitsPerSecond / clock;
+		}
+
+		/**
+		 * @return true if the projected utilization is above the budget.
+		 */
+		public boolean isOverBudget() {
+			return getProjectedUtilization() > maxUtilization;
+		}
+
+		@Override
+		public String toString() {
+			String measured = Double.isNaN(measuredBitsPerSecond) ? ""
+					: String.format(", measured %.1f%%", getMeasuredUtilization() * 100);
+			return String.format("Bus %d @ %d kHz: projected %.1f%%%s of max %.1f%%%s", bus, clock / 1000,
+					getProjectedUtilization() * 100, measured, maxUtilization * 100, isOverBudget() ? " OVER BUDGET" : "");
+		}
+	}
+
+	void add(BusLoad load) {
+		loads.put(load.bus, load);
+	}
+
+	/**
+	 * @return the load on the specified physical bus, or null if the plan
+	 *         does not use the bus.
+	 */
+	public BusLoad getLoad(int bus) {
+		return loads.get(bus);
+	}
+
+	/**
+	 * @return the loads on all buses used, ordered by bus.
+	 */
+	public Collection<BusLoad> getLoads() {
+		return Collections.unmodifiableCollection(loads.values());
+	}
+
+	/**
+	 * @return true if any bus is over budget.
+	 */
+	public boolean isOverBudget() {
+		for (BusLoad load : loads.values()) {
+			if (load.isOverBudget()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("Bus load:");
+		for (BusLoad load : loads.values()) {
+			builder.append(System.lineSeparator()).append("  ").append(load);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.budget;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the traffic actually sent over a physical I2C bus. All transactions
+ * made through {@link com.robo4j.rpi.i2c.AbstractI2CDevice} are counted,
+ * including transactions to devices behind multiplexers.
+ * 
+ * @author Marcus Hirt
+ */
+public final class BusTraffic {
+	private static final ConcurrentMap<Integer, BusTraffic> BUSES = new ConcurrentHashMap<>();
+
+	private final int bus;
+	private final LongAdder bits = new LongAdder();
+	private final LongAdder transactions = new LongAdder();
+
+	private BusTraffic(int bus) {
+		this.bus = bus;
+	}
+
+	/**
+	 * Returns the traffic counter for a physical bus.
+	 * 
+	 * @param bus
+	 *            the physical bus.
+	 * @return the traffic counter for the bus.
+	 */
+	public static BusTraffic forBus(int bus) {
+		BusTraffic traffic = BUSES.get(bus);
+		if (traffic == null) {
+			BusTraffic newTraffic = new BusTraffic(bus);
+			traffic = BUSES.putIfAbsent(bus, newTraffic);
+			if (traffic == null) {
+				traffic = newTraffic;
+			}
+		}
+		return traffic;
+	}
+
+	/**
+	 * Records a transaction.
+	 * 
+	 * @param bits
+	 *            the clock cycles used by the transaction.
+	 * @see I2COperation
+	 */
+	public void record(long bits) {
+		this.bits.add(bits);
+		transactions.increment();
+	}
+
+	public int getBus() {
+		return bus;
+	}
+
+	/**
+	 * @return the total number of clock cycles used so far.
+	 */
+	public long getBits() {
+		return bits.sum();
+	}
+
+	/**
+	 * @return the total number of transactions so far.
+	 */
+	public long getTransactions() {
+		return transactions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Bus %d [transactions:%d, bits:%d]", bus, getTransactions(), getBits());
+	}
+}
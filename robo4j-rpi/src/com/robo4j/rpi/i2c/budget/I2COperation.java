@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.budget;
+
+/**
+ * Describes the bus traffic of an operation on an I2C device, such as reading
+ * a sample, as the sequence of transactions it needs. Drivers declare their
+ * operations as constants, for example
+ * {@link com.robo4j.rpi.i2c.accelerometer.AccelerometerLSM303Device#READ_OPERATION},
+ * which a {@link BusBudget} uses to project the bus utilization of a
+ * {@link SamplingPlan}.
+ * <p>
+ * The cost of a transaction is counted in clock cycles on the wire: start and
+ * stop conditions, and nine cycles (eight bits plus acknowledge) per byte,
+ * including the address byte(s). Clock stretching and the time between
+ * transactions are not included, which is why a budget should keep some
+ * headroom.
+ * 
+ * @author Marcus Hirt
+ */
+public final class I2COperation {
+	private static final int BITS_PER_BYTE = 9;
+	private static final int START_STOP_BITS = 2;
+	private static final int REPEATED_START_BITS = 1;
+
+	private final String name;
+	private final int transactions;
+	private final int payloadBytes;
+	private final long bits;
+
+	private I2COperation(String name, int transactions, int payloadBytes, long bits) {
+		this.name = name;
+		this.transactions = transactions;
+		this.payloadBytes = payloadBytes;
+		this.bits = bits;
+	}
+
+	/**
+	 * A plain read of bytes from the device.
+	 */
+	public static I2COperation read(String name, int bytes) {
+		return new I2COperation(name, 1, bytes, bitsForRead(bytes));
+	}
+
+	/**
+	 * A plain write of bytes to the device.
+	 */
+	public static I2COperation write(String name, int bytes) {
+		return new I2COperation(name, 1, bytes, bitsForWrite(bytes));
+	}
+
+	/**
+	 * A read of bytes starting at a register.
+	 */
+	public static I2COperation registerRead(String name, int bytes) {
+		return new I2COperation(name, 1, bytes, bitsForRegisterRead(bytes));
+	}
+
+	/**
+	 * A write of bytes starting at a register.
+	 */
+	public static I2COperation registerWrite(String name, int bytes) {
+		return new I2COperation(name, 1, bytes, bitsForRegisterWrite(bytes));
+	}
+
+	/**
+	 * @return a new operation consisting of this operation followed by the
+	 *         specified one. The name of this operation is kept.
+	 */
+	public I2COperation then(I2COperation next) {
+		return new I2COperation(name, transactions + next.transactions, payloadBytes + next.payloadBytes, bits + next.bits);
+	}
+
+	/**
+	 * @return a new operation consisting of this operation repeated the
+	 *         specified number of times.
+	 */
+	public I2COperation times(int count) {
+		return new I2COperation(name, transactions * count, payloadBytes * count, bits * count);
+	}
+
+	/**
+	 * @return a copy of this operation with a new name.
+	 */
+	public I2COperation named(String name) {
+		return new I2COperation(name, transactions, payloadBytes, bits);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of bus transactions in the operation.
+	 */
+	public int getTransactions() {
+		return transactions;
+	}
+
+	/**
+	 * @return the number of data bytes transferred, excluding addresses and
+	 *         registers.
+	 */
+	public int getPayloadBytes() {
+		return payloadBytes;
+	}
+
+	/**
+	 * @return the number of clock cycles the operation occupies the bus.
+	 */
+	public long getBits() {
+		return bits;
+	}
+
+	/**
+	 * @return the time the operation occupies the bus at the specified bus
+	 *         clock, in s.
+	 */
+	public double getDuration(int clockHz) {
+		return bits / (double) clockHz;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s [%d transaction(s), %d bytes, %d bits]", name, transactions, payloadBytes, bits);
+	}
+
+	/**
+	 * @return the clock cycles used by a plain read of the specified number
+	 *         of bytes.
+	 */
+	public static long bitsForRead(int bytes) {
+		return START_STOP_BITS + BITS_PER_BYTE * (1 + bytes);
+	}
+
+	/**
+	 * @return the clock cycles used by a plain write of the specified number
+	 *         of bytes.
+	 */
+	public static long bitsForWrite(int bytes) {
+		return START_STOP_BITS + BITS_PER_BYTE * (1 + bytes);
+	}
+
+	/**
+	 * @return the clock cycles used by reading the specified number of bytes
+	 *         from a register: address and register, a repeated start, and
+	 *         address and data.
+	 */
+	public static long bitsForRegisterRead(int bytes) {
+		return START_STOP_BITS + REPEATED_START_BITS + BITS_PER_BYTE * (3 + bytes);
+	}
+
+	/**
+	 * @return the clock cycles used by writing the specified number of bytes
+	 *         to a register.
+	 */
+	public static long bitsForRegisterWrite(int bytes) {
+		return START_STOP_BITS + BITS_PER_BYTE * (2 + bytes);
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.budget;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.robo4j.rpi.i2c.AbstractI2CDevice;
+
+/**
+ * A set of operations to run periodically on the I2C buses, for example
+ * sampling the gyro at 200 Hz and updating the servos at 50 Hz. Check it
+ * against a {@link BusBudget} before running it.
+ * 
+ * @author Marcus Hirt
+ */
+public final class SamplingPlan {
+	private final List<Entry> entries = new ArrayList<>();
+
+	/**
+	 * An operation to run periodically.
+	 */
+	public static final class Entry {
+		private final String name;
+		private final int bus;
+		private final I2COperation operation;
+		private final double rate;
+		private final double minRate;
+
+		private Entry(String name, int bus, I2COperation operation, double rate, double minRate) {
+			if (rate <= 0 || minRate <= 0 || minRate > rate) {
+				throw new IllegalArgumentException("Rates must be positive, and min rate no higher than rate");
+			}
+			this.name = name;
+			this.bus = bus;
+			this.operation = operation;
+			this.rate = rate;
+			this.minRate = minRate;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the bus of the device. This may be a virtual bus.
+		 */
+		public int getBus() {
+			return bus;
+		}
+
+		public I2COperation getOperation() {
+			return operation;
+		}
+
+		/**
+		 * @return the requested rate, in Hz.
+		 */
+		public double getRate() {
+			return rate;
+		}
+
+		/**
+		 * @return the lowest acceptable rate if the plan needs to be degraded,
+		 *         in Hz.
+		 */
+		public double getMinRate() {
+			return minRate;
+		}
+
+		/**
+		 * @return the clock cycles per second needed for this entry at the
+		 *         requested rate.
+		 */
+		public double getBitsPerSecond() {
+			return operation.getBits() * rate;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %s on bus %d at %.1f Hz (min %.1f Hz)", name, operation.getName(), bus, rate, minRate);
+		}
+	}
+
+	/**
+	 * Adds an operation which must run at the requested rate.
+	 * 
+	 * @param name
+	 *            a descriptive name of the entry.
+	 * @param bus
+	 *            the bus of the device.
+	 * @param operation
+	 *            the operation to run.
+	 * @param rate
+	 *            the rate to run it at, in Hz.
+	 * @return the entry added.
+	 */
+	public Entry add(String name, int bus, I2COperation operation, double rate) {
+		return add(name, bus, operation, rate, rate);
+	}
+
+	/**
+	 * Adds an operation which can be run at a lower rate, down to the minimum
+	 * rate, if the bus can not carry the requested rate.
+	 * 
+	 * @param name
+	 *            a descriptive name of the entry.
+	 * @param bus
+	 *            the bus of the device.
+	 * @param operation
+	 *            the operation to run.
+	 * @param rate
+	 *            the requested rate, in Hz.
+	 * @param minRate
+	 *            the lowest acceptable rate, in Hz.
+	 * @return the entry added.
+	 */
+	public Entry add(String name, int bus, I2COperation operation, double rate, double minRate) {
+		Entry entry = new Entry(name, bus, operation, rate, minRate);
+		entries.add(entry);
+		return entry;
+	}
+
+	/**
+	 * Convenience method for adding an operation on a device.
+	 * 
+	 * @see #add(String, int, I2COperation, double, double)
+	 */
+	public Entry add(AbstractI2CDevice device, I2COperation operation, double rate, double minRate) {
+		return add(String.format("%s@0x%02x", device.getClass().getSimpleName(), device.getAddress()), device.getBus(), operation,
+				rate, minRate);
+	}
+
+	/**
+	 * @return the entries of the plan.
+	 */
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("Sampling plan:");
+		for (Entry entry : entries) {
+			builder.append(System.lineSeparator()).append("  ").append(entry);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.gyro;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.ReadableDevice;
+import com.robo4j.rpi.i2c.ReadableFloat3DDevice;
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Decorator removing the bias of a gyro, which it keeps estimating while in
+ * use. The bias is only learned while the sensor is stationary, which is
+ * detected from a low exponentially weighted variance of the gyro rates, and
+ * of the accelerometer if accelerometer samples are provided through
+ * {@link #onAccelerometer(float, float, float)}. Rates beyond a max bias are
+ * never taken for bias, so that turning steadily is not mistaken for
+ * standing still.
+ * <p>
+ * The estimate is kept in a few primitive fields, and costs a handful of
+ * flops per sample; the correction is applied in place.
+ * 
+ * @author Marcus Hirt
+ */
+public class BiasCorrectedGyroDevice implements ReadableFloat3DDevice, TimestampedReadableDevice<Float3D> {
+	/**
+	 * The default standard deviation of the gyro rates, in degrees/s, below
+	 * which the gyro may be stationary.
+	 */
+	public static final float DEFAULT_GYRO_NOISE = 0.5f;
+
+	/**
+	 * The default standard deviation of the accelerometer, in the units of
+	 * the accelerometer, below which the sensor may be stationary.
+	 */
+	public static final float DEFAULT_ACCELEROMETER_NOISE = 0.05f;
+
+	/**
+	 * The default max bias, in degrees/s.
+	 */
+	public static final float DEFAULT_MAX_BIAS = 5;
+
+	/**
+	 * The default weight of a stationary sample in the bias estimate.
+	 */
+	public static final float DEFAULT_BIAS_WEIGHT = 0.01f;
+
+	/**
+	 * The weight of a sample in the variances, about the last 20 samples.
+	 */
+	private static final float VARIANCE_WEIGHT = 0.05f;
+
+	private final ReadableDevice<Float3D> device;
+	private final float gyroThreshold;
+	private final float accelerometerThreshold;
+	private final float maxBias;
+	private final float biasWeight;
+	private final Float3D sample = new Float3D();
+
+	private float biasX, biasY, biasZ;
+	private float meanX, meanY, meanZ;
+	private float varianceX, varianceY, varianceZ;
+	private float accelerometerX, accelerometerY, accelerometerZ;
+	private float accelerometerVariance;
+	private boolean hasGyro;
+	private boolean hasAccelerometer;
+	private boolean stationary;
+	private volatile long lastSampleTime = NO_SAMPLE_TIME;
+
+	public BiasCorrectedGyroDevice(ReadableDevice<Float3D> device) {
+		this(device, DEFAULT_GYRO_NOISE, DEFAULT_ACCELEROMETER_NOISE, DEFAULT_MAX_BIAS, DEFAULT_BIAS_WEIGHT);
+	}
+
+	/**
+	 * @param device
+	 *            the gyro, reading degrees/s.
+	 * @param gyroNoise
+	 *            the standard deviation of the gyro rates, in degrees/s,
+	 *            below which the gyro may be stationary.
+	 * @param accelerometerNoise
+	 *            the standard deviation of the accelerometer, below which
+	 *            the sensor may be stationary.
+	 * @param maxBias
+	 *            the largest rate, in degrees/s, to be taken for bias.
+	 * @param biasWeight
+	 *            the weight of a stationary sample in the bias estimate,
+	 *            between 0 and 1.
+	 */
+	public BiasCorrectedGyroDevice(ReadableDevice<Float3D> device, float gyroNoise, float accelerometerNoise,
+			float maxBias, float biasWeight) {
+		this.device = device;
+		this.gyroThreshold = gyroNoise * gyroNoise;
+		this.accelerometerThreshold = accelerometerNoise * accelerometerNoise;
+		this.maxBias = maxBias;
+		this.biasWeight = biasWeight;
+	}
+
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		long before = System.nanoTime();
+		if (device instanceof ReadableFloat3DDevice) {
+			((ReadableFloat3DDevice) device).read(dst);
+		} else {
+			dst.set(device.read());
+		}
+		if (device instanceof TimestampedReadableDevice) {
+			lastSampleTime = ((TimestampedReadableDevice<?>) device).getLastSampleTime();
+		} else {
+			lastSampleTime = before + (System.nanoTime() - before) / 2;
+		}
+		update(dst.x, dst.y, dst.z);
+		dst.x -= biasX;
+		dst.y -= biasY;
+		dst.z -= biasZ;
+	}
+
+	@Override
+	public synchronized void read(float[] dst, int offset) throws IOException {
+		read(sample);
+		dst[offset] = sample.x;
+		dst[offset + 1] = sample.y;
+		dst[offset + 2] = sample.z;
+	}
+
+	@Override
+	public synchronized Timestamped<Float3D> readTimestamped() throws IOException {
+		Float3D value = read();
+		return new Timestamped<>(value, lastSampleTime);
+	}
+
+	@Override
+	public long getLastSampleTime() {
+		return lastSampleTime;
+	}
+
+	/**
+	 * Provides an accelerometer sample, to make the detection of stationary
+	 * periods more reliable. Once called, the sensor is only considered
+	 * stationary if the accelerometer is steady too.
+	 */
+	public synchronized void onAccelerometer(float x, float y, float z) {
+		if (!hasAccelerometer) {
+			accelerometerX = x;
+			accelerometerY = y;
+			accelerometerZ = z;
+			// Start out unsettled, not stationary
+			accelerometerVariance = 4 * accelerometerThreshold;
+			hasAccelerometer = true;
+			return;
+		}
+		float dx = x - accelerometerX;
+		float dy = y - accelerometerY;
+		float dz = z - accelerometerZ;
+		accelerometerX += VARIANCE_WEIGHT * dx;
+		accelerometerY += VARIANCE_WEIGHT * dy;
+		accelerometerZ += VARIANCE_WEIGHT * dz;
+		accelerometerVariance = (1 - VARIANCE_WEIGHT)
+				* (accelerometerVariance + VARIANCE_WEIGHT * (dx * dx + dy * dy + dz * dz));
+	}
+
+	public void onAccelerometer(Float3D value) {
+		onAccelerometer(value.x, value.y, value.z);
+	}
+
+	/**
+	 * @return true if the sensor was considered stationary at the last read.
+	 */
+	public synchronized boolean isStationary() {
+		return stationary;
+	}
+
+	/**
+	 * Copies the current bias estimate, in degrees/s, into dst.
+	 * 
+	 * @return dst.
+	 */
+	public synchronized Float3D getBias(Float3D dst) {
+		dst.set(biasX, biasY, biasZ);
+		return dst;
+	}
+
+	/**
+	 * Sets the bias estimate, for instance to one saved from a previous run.
+	 */
+	public synchronized void setBias(Float3D bias) {
+		biasX = bias.x;
+		biasY = bias.y;
+		biasZ = bias.z;
+	}
+
+	/**
+	 * Forgets the bias and the variances.
+	 */
+	public synchronized void reset() {
+		biasX = biasY = biasZ = 0;
+		hasGyro = false;
+		hasAccelerometer = false;
+		stationary = false;
+	}
+
+	private void update(float x, float y, float z) {
+		if (!hasGyro) {
+			meanX = x;
+			meanY = y;
+			meanZ = z;
+			varianceX = varianceY = varianceZ = 4 * gyroThreshold;
+			hasGyro = true;
+			return;
+		}
+		float dx = x - meanX;
+		float dy = y - meanY;
+		float dz = z - meanZ;
+		meanX += VARIANCE_WEIGHT * dx;
+		meanY += VARIANCE_WEIGHT * dy;
+		meanZ += VARIANCE_WEIGHT * dz;
+		varianceX = (1 - VARIANCE_WEIGHT) * (varianceX + VARIANCE_WEIGHT * dx * dx);
+		varianceY = (1 - VARIANCE_WEIGHT) * (varianceY + VARIANCE_WEIGHT * dy * dy);
+		varianceZ = (1 - VARIANCE_WEIGHT) * (varianceZ + VARIANCE_WEIGHT * dz * dz);
+
+		stationary = varianceX < gyroThreshold && varianceY < gyroThreshold && varianceZ < gyroThreshold
+				&& (!hasAccelerometer || accelerometerVariance < accelerometerThreshold)
+				&& Math.abs(meanX) < maxBias && Math.abs(meanY) < maxBias && Math.abs(meanZ) < maxBias;
+		if (stationary) {
+			biasX += biasWeight * (x - biasX);
+			biasY += biasWeight * (y - biasY);
+			biasZ += biasWeight * (z - biasZ);
+		}
+	}
+}
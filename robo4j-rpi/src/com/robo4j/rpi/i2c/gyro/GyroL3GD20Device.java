@@ -20,8 +20,14 @@ import java.io.IOException;
 
 import com.pi4j.io.i2c.I2CBus;
 import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Int3D;
 import com.robo4j.rpi.i2c.AbstractI2CDevice;
-import com.robo4j.rpi.i2c.ReadableDevice;
+import com.robo4j.rpi.i2c.RawScale;
+import com.robo4j.rpi.i2c.ReadableRawFloat3DDevice;
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+import com.robo4j.rpi.i2c.budget.I2COperation;
+import com.robo4j.rpi.jfr.DeviceReadEvent;
 
 /**
  * Abstraction to read angular change from a L3GD20 Gyro, for example the Gyro 
@@ -30,9 +36,18 @@ import com.robo4j.rpi.i2c.ReadableDevice;
  * @author Marcus Hirt
  */
 public class GyroL3GD20Device extends AbstractI2CDevice implements
-		ReadableDevice<Float3D> {
+		ReadableRawFloat3DDevice, TimestampedReadableDevice<Float3D> {
+	/**
+	 * The bus traffic of a {@link #read()}.
+	 */
+	public static final I2COperation READ_OPERATION = I2COperation.write("gyro read", 1)
+			.then(I2COperation.registerRead("gyro read", 6));
 
 	private final Sensitivity sensitivity;
+	private final RawScale rawScale;
+	private final byte[] xyz = new byte[6];
+	private final Int3D counts = new Int3D();
+	private final Float3D sample = new Float3D();
 
 	// Registers
 	private final int REGISTER_WHO_AM_I = 0x0F;
@@ -75,25 +90,26 @@ public class GyroL3GD20Device extends AbstractI2CDevice implements
 			throws IOException {
 		super(bus, address);
 		this.sensitivity = sensitivity;
+		this.rawScale = new RawScale(sensitivity.getSensitivityFactor());
 		initialize(enableHighPassFilter);
 	}
 
 	private void initialize(boolean enableHighPassFilter) throws IOException {
-		int id = i2cDevice.read(REGISTER_WHO_AM_I);
+		int id = readByte(REGISTER_WHO_AM_I);
 		if ((id != L3GD20_ID) && (id != L3GD20H_ID)) {
 			throw new IOException(String.format("Did not find L3GD20 chip on the address %02X. Read ID was %02X.", getAddress(), id));
 		}
 		// Reset / Power down
-		i2cDevice.write(REGISTER_CTRL_REG1, (byte) 0x00);
+		writeByte(REGISTER_CTRL_REG1, (byte) 0x00);
 		// Enable all three channels + normal mode (also sets data rate and bandwidth, see chip docs)
-		i2cDevice.write(REGISTER_CTRL_REG1, (byte) 0x0F);
+		writeByte(REGISTER_CTRL_REG1, (byte) 0x0F);
 		// Set sensitivity
-		i2cDevice.write(REGISTER_CTRL_REG4,
+		writeByte(REGISTER_CTRL_REG4,
 				(byte) sensitivity.fullScaleSelectionMask);
 		if (enableHighPassFilter) {
-			i2cDevice.write(REGISTER_CTRL_REG5, (byte) 0x10);			
+			writeByte(REGISTER_CTRL_REG5, (byte) 0x10);			
 		}
-		i2cDevice.write(REGISTER_LOW_ODR, (byte) 0x1);
+		writeByte(REGISTER_LOW_ODR, (byte) 0x1);
 	}
 
 	public enum OperationMode {
@@ -127,18 +143,53 @@ public class GyroL3GD20Device extends AbstractI2CDevice implements
 		}
 	}
 
-	public Float3D read() throws IOException {
-		byte[] xyz = new byte[6];
-		Float3D data = new Float3D();
-		i2cDevice.write((byte) (REGISTER_OUT_X_L | 0x80));
-		i2cDevice.read(REGISTER_OUT_X_H | 0x80, xyz, 0, 6);
-		int x = (xyz[1] & 0xFF | (xyz[0] << 8));
-		int y = (xyz[3] & 0xFF | (xyz[2] << 8));
-		int z = (xyz[5] & 0xFF | (xyz[4] << 8));
-		data.x = x * sensitivity.getSensitivityFactor();
-		data.y = y * sensitivity.getSensitivityFactor();
-		data.z = z * sensitivity.getSensitivityFactor();
-		return data;
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		DeviceReadEvent event = beginRead();
+		readRaw(counts);
+		rawScale.apply(counts, dst);
+		commitRead(event, dst.x, dst.y, dst.z);
+	}
+
+	/**
+	 * Reads the angular change, as signed 16 bit values. Multiply with the
+	 * {@link #getRawScale()} to get degrees per second.
+	 */
+	@Override
+	public synchronized void readRaw(Int3D dst) throws IOException {
+		writeByte((byte) (REGISTER_OUT_X_L | 0x80));
+		readBytes(REGISTER_OUT_X_H | 0x80, xyz, 0, 6);
+		markSampleTime();
+		dst.x = (xyz[1] & 0xFF | (xyz[0] << 8));
+		dst.y = (xyz[3] & 0xFF | (xyz[2] << 8));
+		dst.z = (xyz[5] & 0xFF | (xyz[4] << 8));
+	}
+
+	@Override
+	public synchronized void readRaw(short[] dst, int offset) throws IOException {
+		readRaw(counts);
+		dst[offset] = (short) counts.x;
+		dst[offset + 1] = (short) counts.y;
+		dst[offset + 2] = (short) counts.z;
+	}
+
+	@Override
+	public RawScale getRawScale() {
+		return rawScale;
+	}
+
+	@Override
+	public synchronized void read(float[] dst, int offset) throws IOException {
+		read(sample);
+		dst[offset] = sample.x;
+		dst[offset + 1] = sample.y;
+		dst[offset + 2] = sample.z;
+	}
+
+	@Override
+	public synchronized Timestamped<Float3D> readTimestamped() throws IOException {
+		Float3D value = read();
+		return new Timestamped<>(value, getLastSampleTime());
 	}
 
 }
@@ -20,13 +20,23 @@ import java.io.IOException;
 
 import com.pi4j.io.i2c.I2CBus;
 import com.robo4j.rpi.i2c.AbstractI2CDevice;
+import com.robo4j.rpi.i2c.budget.I2COperation;
 
 /**
  * Abstraction for the Garmin/PulsedLight LidarLite device.
  * 
  * @author Marcus Hirt
  */
-public final class LidarLiteDevice extends AbstractI2CDevice {
+public final class LidarLiteDevice extends AbstractI2CDevice implements RangeFinder {
+	/**
+	 * The bus traffic of an {@link #acquireRange()}.
+	 */
+	public static final I2COperation ACQUIRE_OPERATION = I2COperation.registerWrite("lidar acquire", 1);
+	/**
+	 * The bus traffic of a {@link #readDistance()}.
+	 */
+	public static final I2COperation READ_OPERATION = I2COperation.registerRead("lidar read", 2);
+
 	private static final int REGISTER_COMMAND = 0x0;
 	private static final int REGISTER_RESULT = 0x8f;
 	private static final byte COMMAND_ACQUIRE_RANGE = 0x4;
@@ -59,14 +69,10 @@ public final class LidarLiteDevice extends AbstractI2CDevice {
 		super(bus, address);
 	}
 
-	/**
-	 * Call this to acquire a new range reading.
-	 * 
-	 * @throws IOException
-	 *             if there was communication problem
-	 */
-	public void acquireRange() throws IOException {
-		i2cDevice.write(REGISTER_COMMAND, COMMAND_ACQUIRE_RANGE);
+	@Override
+	public synchronized void acquireRange() throws IOException {
+		writeByte(REGISTER_COMMAND, COMMAND_ACQUIRE_RANGE);
+		markSampleTime();
 	}
 
 	/**
@@ -79,7 +85,8 @@ public final class LidarLiteDevice extends AbstractI2CDevice {
 	 * @throws IOException
 	 *             if there was communication problem
 	 */
-	public float readDistance() throws IOException {
+	@Override
+	public synchronized float readDistance() throws IOException {
 		int inCM = readU2(REGISTER_RESULT);
 		return inCM / 100.0f;
 	}
@@ -89,7 +96,7 @@ public final class LidarLiteDevice extends AbstractI2CDevice {
 	 */
 	private int readU2(int address) throws IOException {
 		byte[] result = new byte[2];
-		i2cDevice.read(address, result, 0, 2);
+		readBytes(address, result, 0, 2);
 		return (result[0] << 8) + (result[1] & 0xff);
 	}
 }
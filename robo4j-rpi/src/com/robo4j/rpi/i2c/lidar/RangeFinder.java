@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.lidar;
+
+import java.io.IOException;
+
+import com.robo4j.rpi.i2c.Timestamped;
+
+/**
+ * A range finder, such as the {@link LidarLiteDevice}, where a range is first
+ * acquired and then read. Also implemented by devices recording or replaying
+ * a range finder.
+ * 
+ * @author Marcus Hirt
+ */
+public interface RangeFinder {
+	/**
+	 * Acquires a new range reading. The time of the acquisition is available
+	 * from {@link #getLastSampleTime()}.
+	 * 
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	void acquireRange() throws IOException;
+
+	/**
+	 * Reads the most recently acquired range.
+	 * 
+	 * @return the distance in m.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	float readDistance() throws IOException;
+
+	/**
+	 * Returns the time the latest range was acquired. Use
+	 * {@link #readTimestampedDistance()} instead if there is more than one
+	 * thread using the range finder.
+	 * 
+	 * @return the time the latest range was acquired, as
+	 *         {@link System#nanoTime()}.
+	 */
+	long getLastSampleTime();
+
+	/**
+	 * Reads the most recently acquired range, and the time it was acquired.
+	 * The default implementation relies on the range finder synchronizing
+	 * its methods on itself.
+	 * 
+	 * @return the distance in m, and its timestamp.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	default Timestamped<Float> readTimestampedDistance() throws IOException {
+		synchronized (this) {
+			float distance = readDistance();
+			return new Timestamped<>(distance, getLastSampleTime());
+		}
+	}
+}
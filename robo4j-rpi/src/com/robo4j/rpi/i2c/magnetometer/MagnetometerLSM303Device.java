@@ -20,8 +20,14 @@ import java.io.IOException;
 
 import com.pi4j.io.i2c.I2CBus;
 import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Int3D;
 import com.robo4j.rpi.i2c.AbstractI2CDevice;
-import com.robo4j.rpi.i2c.ReadableDevice;
+import com.robo4j.rpi.i2c.RawScale;
+import com.robo4j.rpi.i2c.ReadableRawFloat3DDevice;
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+import com.robo4j.rpi.i2c.budget.I2COperation;
+import com.robo4j.rpi.jfr.DeviceReadEvent;
 
 /**
  * Represents a LSM303 magnetometer, for example the one on the Adafruit IMU
@@ -30,7 +36,13 @@ import com.robo4j.rpi.i2c.ReadableDevice;
  * @author Marcus Hirt
  */
 // FIXME(Marcus/Dec 5, 2016): Verify that this one works.
-public class MagnetometerLSM303Device extends AbstractI2CDevice implements ReadableDevice<Float3D> {
+public class MagnetometerLSM303Device extends AbstractI2CDevice
+		implements ReadableRawFloat3DDevice, TimestampedReadableDevice<Float3D> {
+	/**
+	 * The bus traffic of a {@link #read()}.
+	 */
+	public static final I2COperation READ_OPERATION = I2COperation.registerRead("magnetometer read", 6);
+
 	private static final int CRA_REG_M = 0x00;
 	private static final int CRB_REG_M = 0x01;
 	private static final int MR_REG_M = 0x02;
@@ -38,6 +50,10 @@ public class MagnetometerLSM303Device extends AbstractI2CDevice implements Reada
 
 	private static final int ENABLE_TEMP = 0x80;
 	private Gain gain = Gain.GAIN_1_3;
+	private volatile RawScale rawScale;
+	private final byte[] data = new byte[6];
+	private final Int3D counts = new Int3D();
+	private final Float3D sample = new Float3D();
 
 	public MagnetometerLSM303Device() throws IOException {
 		this(I2CBus.BUS_1, 0x1e, Mode.CONTINUOUS_CONVERSION, Rate.RATE_1_5, false);
@@ -48,17 +64,55 @@ public class MagnetometerLSM303Device extends AbstractI2CDevice implements Reada
 		initialize(mode, rate, enableTemp);
 	}
 
-	public synchronized Float3D read() throws IOException {
-		Float3D rawData = new Float3D();
-		byte[] data = new byte[6];
-		int n = i2cDevice.read(OUT_X_H_M, data, 0, 6);
+	@Override
+	public synchronized void read(Float3D dst) throws IOException {
+		DeviceReadEvent event = beginRead();
+		readRaw(counts);
+		rawScale.apply(counts, dst);
+		commitRead(event, dst.x, dst.y, dst.z);
+	}
+
+	/**
+	 * Reads the magnetic field, as signed 16 bit values. Multiply with the
+	 * {@link #getRawScale()} for the current gain to get gauss.
+	 */
+	@Override
+	public synchronized void readRaw(Int3D dst) throws IOException {
+		int n = readBytes(OUT_X_H_M, data, 0, 6);
+		markSampleTime();
 		if (n != 6) {
 			getLogger().warning("Failed to read all data from accelerometer. Should have read 6, could only read " + n);
 		}
-		rawData.x = read16bitSigned(data, 0) / gain.getXY();
-		rawData.y = read16bitSigned(data, 2) / gain.getXY();
-		rawData.z = read16bitSigned(data, 4) / gain.getZ();
-		return rawData;
+		dst.x = read16bitSigned(data, 0);
+		dst.y = read16bitSigned(data, 2);
+		dst.z = read16bitSigned(data, 4);
+	}
+
+	@Override
+	public synchronized void readRaw(short[] dst, int offset) throws IOException {
+		readRaw(counts);
+		dst[offset] = (short) counts.x;
+		dst[offset + 1] = (short) counts.y;
+		dst[offset + 2] = (short) counts.z;
+	}
+
+	@Override
+	public RawScale getRawScale() {
+		return rawScale;
+	}
+
+	@Override
+	public synchronized void read(float[] dst, int offset) throws IOException {
+		read(sample);
+		dst[offset] = sample.x;
+		dst[offset + 1] = sample.y;
+		dst[offset + 2] = sample.z;
+	}
+
+	@Override
+	public synchronized Timestamped<Float3D> readTimestamped() throws IOException {
+		Float3D value = read();
+		return new Timestamped<>(value, getLastSampleTime());
 	}
 
 	private short read16bitSigned(byte[] data, int i) {
@@ -77,9 +131,10 @@ public class MagnetometerLSM303Device extends AbstractI2CDevice implements Reada
 		}
 	}
 
-	public void setGain(Gain gain) throws IOException {
+	public synchronized void setGain(Gain gain) throws IOException {
 		writeByte(CRB_REG_M, (byte) gain.getGain());
 		this.gain = gain;
+		this.rawScale = new RawScale(1 / gain.getXY(), 1 / gain.getXY(), 1 / gain.getZ());
 	}
 
 	public enum Gain {
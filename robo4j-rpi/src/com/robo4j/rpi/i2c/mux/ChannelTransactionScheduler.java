@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.mux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.robo4j.rpi.i2c.AbstractI2CDevice;
+
+/**
+ * Runs transactions against devices behind a {@link TCA9548ADevice} grouped by
+ * channel, so that the multiplexer is switched as rarely as possible.
+ * Transactions are queued with {@link #submit(AbstractI2CDevice, Transaction)}
+ * and run with {@link #flush()}.
+ * <p>
+ * Each flush starts with the channel already selected and then continues
+ * through the other channels in ascending order, wrapping around. When the
+ * same set of reads is submitted every cycle, this means that the last channel
+ * of one cycle is the first channel of the next, so a cycle over n channels
+ * costs n - 1 switches instead of one switch per read.
+ * 
+ * @author Marcus Hirt
+ */
+public class ChannelTransactionScheduler {
+	private final TCA9548ADevice multiplexer;
+	private final List<List<Transaction>> pending = new ArrayList<>(TCA9548ADevice.CHANNEL_COUNT);
+	private final List<Transaction> unmultiplexed = new ArrayList<>();
+	private long flushCount;
+	private long transactionCount;
+	private long switchCount;
+
+	/**
+	 * A transaction, or sequence of transactions, to run against a device.
+	 */
+	public interface Transaction {
+		void run() throws IOException;
+	}
+
+	/**
+	 * Creates a scheduler for the specified multiplexer.
+	 * 
+	 * @param multiplexer
+	 *            the multiplexer to schedule transactions for.
+	 */
+	public ChannelTransactionScheduler(TCA9548ADevice multiplexer) {
+		this.multiplexer = multiplexer;
+		for (int i = 0; i < TCA9548ADevice.CHANNEL_COUNT; i++) {
+			pending.add(new ArrayList<Transaction>());
+		}
+	}
+
+	/**
+	 * Queues a transaction for the specified device. Transactions for devices
+	 * not behind this multiplexer are run first in the next flush, without
+	 * any switching.
+	 * 
+	 * @param device
+	 *            the device the transaction will talk to.
+	 * @param transaction
+	 *            the transaction to run.
+	 */
+	public synchronized void submit(AbstractI2CDevice device, Transaction transaction) {
+		TCA9548ADevice.Channel channel = device.getMultiplexerChannel();
+		if (channel == null || channel.getMultiplexer() != multiplexer) {
+			unmultiplexed.add(transaction);
+		} else {
+			pending.get(channel.getChannel()).add(transaction);
+		}
+	}
+
+	/**
+	 * Runs all queued transactions, grouped by channel. If a transaction
+	 * fails, the remaining ones are still run, and the first failure is
+	 * rethrown at the end with the others suppressed.
+	 * 
+	 * @return the number of times the multiplexer had to be switched.
+	 * @throws IOException
+	 *             if one or more of the transactions failed.
+	 */
+	public synchronized int flush() throws IOException {
+		IOException failure = null;
+		for (Transaction transaction : unmultiplexed) {
+			failure = run(transaction, failure);
+		}
+		transactionCount += unmultiplexed.size();
+		unmultiplexed.clear();
+
+		long switchesBefore = multiplexer.getSwitchCount();
+		int start = Math.max(0, multiplexer.getSelectedChannel());
+		for (int i = 0; i < TCA9548ADevice.CHANNEL_COUNT; i++) {
+			List<Transaction> transactions = pending.get((start + i) % TCA9548ADevice.CHANNEL_COUNT);
+			if (transactions.isEmpty()) {
+				continue;
+			}
+			TCA9548ADevice.Channel channel = multiplexer.getChannel((start + i) % TCA9548ADevice.CHANNEL_COUNT);
+			try {
+				channel.acquire();
+			} catch (IOException e) {
+				failure = addFailure(failure, e);
+				transactionCount += transactions.size();
+				transactions.clear();
+				continue;
+			}
+			try {
+				for (Transaction transaction : transactions) {
+					failure = run(transaction, failure);
+				}
+			} finally {
+				channel.release();
+			}
+			transactionCount += transactions.size();
+			transactions.clear();
+		}
+		int switches = (int) (multiplexer.getSwitchCount() - switchesBefore);
+		switchCount += switches;
+		flushCount++;
+		if (failure != null) {
+			throw failure;
+		}
+		return switches;
+	}
+
+	/**
+	 * @return the number of flushes done.
+	 */
+	public synchronized long getFlushCount() {
+		return flushCount;
+	}
+
+	/**
+	 * @return the number of transactions run.
+	 */
+	public synchronized long getTransactionCount() {
+		return transactionCount;
+	}
+
+	/**
+	 * @return the number of multiplexer switches made while flushing.
+	 */
+	public synchronized long getSwitchCount() {
+		return switchCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("Scheduler for %s [flushes:%d, transactions:%d, switches:%d (%.2f/flush)]", multiplexer, flushCount,
+				transactionCount, switchCount, flushCount == 0 ? 0.0 : switchCount / (double) flushCount);
+	}
+
+	private static IOException run(Transaction transaction, IOException failure) {
+		try {
+			transaction.run();
+		} catch (IOException e) {
+			return addFailure(failure, e);
+		}
+		return failure;
+	}
+
+	private static IOException addFailure(IOException failure, IOException e) {
+		if (failure == null) {
+			return e;
+		}
+		failure.addSuppressed(e);
+		return failure;
+	}
+}
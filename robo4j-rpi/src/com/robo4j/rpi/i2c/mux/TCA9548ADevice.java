@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.mux;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.robo4j.rpi.i2c.AbstractI2CDevice;
+import com.robo4j.rpi.i2c.budget.I2COperation;
+
+/**
+ * Abstraction for a TCA9548A 8 channel I2C multiplexer, for example the
+ * Adafruit TCA9548A breakout board. Allows several devices with the same
+ * fixed address, such as two LSM303s, on the same bus.
+ * <p>
+ * Each channel is exposed as a virtual bus number, which can be used with
+ * any device constructor taking a bus:
+ * 
+ * <pre>
+ * int left = TCA9548ADevice.getVirtualBus(I2CBus.BUS_1, 0x70, 0);
+ * int right = TCA9548ADevice.getVirtualBus(I2CBus.BUS_1, 0x70, 1);
+ * new AccelerometerLSM303Device(left, 0x19, ...);
+ * new AccelerometerLSM303Device(right, 0x19, ...);
+ * </pre>
+ * 
+ * Every transaction on a virtual bus holds the multiplexer lock and selects
+ * its channel first. The multiplexer remembers the selected channel, so only
+ * actual channel changes cost a bus write. Use a
+ * {@link ChannelTransactionScheduler} to group transactions per channel.
+ * 
+ * @author Marcus Hirt
+ */
+public final class TCA9548ADevice extends AbstractI2CDevice {
+	/**
+	 * The default address of the TCA9548A. Can be strapped to 0x70 - 0x77.
+	 */
+	public static final int DEFAULT_ADDRESS = 0x70;
+	/**
+	 * The number of channels on the TCA9548A.
+	 */
+	public static final int CHANNEL_COUNT = 8;
+	/**
+	 * Returned by {@link #getSelectedChannel()} when no channel is selected.
+	 */
+	public static final int NO_CHANNEL = -1;
+	/**
+	 * The bus traffic of switching channel.
+	 */
+	public static final I2COperation SELECT_OPERATION = I2COperation.write("channel select", 1);
+
+	// Virtual bus = 1000 * (bus + 1) + 10 * (address - 0x70) + channel
+	private static final int VIRTUAL_BUS_BASE = 1000;
+	private static final Map<Integer, TCA9548ADevice> INSTANCES = new HashMap<>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Channel[] channels = new Channel[CHANNEL_COUNT];
+	private volatile int selectedChannel = NO_CHANNEL;
+	private volatile long selectionCount;
+	private volatile long switchCount;
+
+	private TCA9548ADevice(int bus, int address) throws IOException {
+		super(bus, address);
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			channels[i] = new Channel(i, getVirtualBus(bus, address, i));
+		}
+		// Start from a known state, with all channels disconnected
+		writeByte((byte) 0);
+	}
+
+	/**
+	 * Returns the multiplexer on the default bus and address. (I2CBUS.BUS_1,
+	 * 0x70)
+	 * 
+	 * @see #getInstance(int, int)
+	 */
+	public static TCA9548ADevice getInstance() throws IOException {
+		return getInstance(I2CBus.BUS_1, DEFAULT_ADDRESS);
+	}
+
+	/**
+	 * Returns the multiplexer at the specified location. There is only one
+	 * instance per physical multiplexer, since it keeps track of the selected
+	 * channel.
+	 * 
+	 * @param bus
+	 *            the I2C bus the multiplexer is on.
+	 * @param address
+	 *            the address of the multiplexer, [0x70, 0x77].
+	 * @return the multiplexer.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	public static TCA9548ADevice getInstance(int bus, int address) throws IOException {
+		checkAddress(address);
+		synchronized (INSTANCES) {
+			int key = bus << 8 | address;
+			TCA9548ADevice device = INSTANCES.get(key);
+			if (device == null) {
+				device = new TCA9548ADevice(bus, address);
+				INSTANCES.put(key, device);
+			}
+			return device;
+		}
+	}
+
+	/**
+	 * Returns the virtual bus number representing a channel on a multiplexer.
+	 * 
+	 * @param bus
+	 *            the physical bus the multiplexer is on.
+	 * @param address
+	 *            the address of the multiplexer, [0x70, 0x77].
+	 * @param channel
+	 *            the channel, [0, 7].
+	 * @return the virtual bus number.
+	 */
+	public static int getVirtualBus(int bus, int address, int channel) {
+		checkAddress(address);
+		checkChannel(channel);
+		return VIRTUAL_BUS_BASE * (bus + 1) + 10 * (address - DEFAULT_ADDRESS) + channel;
+	}
+
+	/**
+	 * @return true if the bus number is a virtual bus representing a
+	 *         multiplexer channel.
+	 */
+	public static boolean isVirtualBus(int bus) {
+		return bus >= VIRTUAL_BUS_BASE;
+	}
+
+	/**
+	 * Returns the physical bus that a bus number is carried on.
+	 * 
+	 * @param bus
+	 *            a physical or virtual bus number.
+	 * @return the bus itself if it is a physical bus, or the bus of the
+	 *         multiplexer if it is a virtual bus.
+	 */
+	public static int getPhysicalBus(int bus) {
+		return isVirtualBus(bus) ? bus / VIRTUAL_BUS_BASE - 1 : bus;
+	}
+
+	/**
+	 * Returns the channel represented by a virtual bus number.
+	 * 
+	 * @param virtualBus
+	 *            the virtual bus number.
+	 * @return the channel.
+	 * @throws IOException
+	 *             if there was communication problem setting up the
+	 *             multiplexer.
+	 */
+	public static Channel getVirtualBusChannel(int virtualBus) throws IOException {
+		if (!isVirtualBus(virtualBus)) {
+			throw new IllegalArgumentException(virtualBus + " is not a virtual bus");
+		}
+		int rest = virtualBus % VIRTUAL_BUS_BASE;
+		return getInstance(getPhysicalBus(virtualBus), DEFAULT_ADDRESS + rest / 10).getChannel(rest % 10);
+	}
+
+	/**
+	 * Returns one of the channels of the multiplexer. Allowed range is [0, 7].
+	 * 
+	 * @param channel
+	 *            the channel to retrieve.
+	 * @return the specified channel.
+	 */
+	public Channel getChannel(int channel) {
+		checkChannel(channel);
+		return channels[channel];
+	}
+
+	/**
+	 * @return the currently selected channel, or {@link #NO_CHANNEL}.
+	 */
+	public int getSelectedChannel() {
+		return selectedChannel;
+	}
+
+	/**
+	 * @return the number of times a channel was requested by a transaction.
+	 */
+	public long getSelectionCount() {
+		return selectionCount;
+	}
+
+	/**
+	 * @return the number of times the multiplexer actually had to be switched
+	 *         to another channel.
+	 */
+	public long getSwitchCount() {
+		return switchCount;
+	}
+
+	/**
+	 * Resets the selection and switch counters.
+	 */
+	public void resetCounters() {
+		lock.lock();
+		try {
+			selectionCount = 0;
+			switchCount = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Disconnects all the channels.
+	 * 
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	public void disconnect() throws IOException {
+		lock.lock();
+		try {
+			selectedChannel = NO_CHANNEL;
+			writeByte((byte) 0);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("TCA9548A on bus %d, 0x%02x [selected:%d, selections:%d, switches:%d]", getBus(), getAddress(),
+				selectedChannel, selectionCount, switchCount);
+	}
+
+	// Must hold the lock
+	private void select(int channel) throws IOException {
+		selectionCount++;
+		if (selectedChannel != channel) {
+			// If the write fails, we no longer know what is selected
+			selectedChannel = NO_CHANNEL;
+			writeByte((byte) (1 << channel));
+			selectedChannel = channel;
+			switchCount++;
+		}
+	}
+
+	private static void checkAddress(int address) {
+		if (address < DEFAULT_ADDRESS || address >= DEFAULT_ADDRESS + 8) {
+			throw new IllegalArgumentException(String.format("0x%02x is not a valid TCA9548A address", address));
+		}
+	}
+
+	private static void checkChannel(int channel) {
+		if (channel < 0 || channel >= CHANNEL_COUNT) {
+			throw new IllegalArgumentException("There is no channel " + channel + " on the multiplexer.");
+		}
+	}
+
+	/**
+	 * A downstream channel of the multiplexer.
+	 * 
+	 * @see TCA9548ADevice#getChannel(int)
+	 */
+	public final class Channel {
+		private final int channel;
+		private final int virtualBus;
+
+		private Channel(int channel, int virtualBus) {
+			this.channel = channel;
+			this.virtualBus = virtualBus;
+		}
+
+		/**
+		 * Takes the multiplexer lock and selects this channel. Must always be
+		 * followed by a {@link #release()}. Reentrant, so a thread holding the
+		 * channel can run any number of transactions on it without
+		 * additional switching.
+		 * 
+		 * @throws IOException
+		 *             if the channel could not be selected.
+		 */
+		public void acquire() throws IOException {
+			lock.lock();
+			try {
+				select(channel);
+			} catch (IOException | RuntimeException e) {
+				lock.unlock();
+				throw e;
+			}
+		}
+
+		/**
+		 * Releases the multiplexer lock taken in {@link #acquire()}. The
+		 * channel stays selected until another channel is needed.
+		 */
+		public void release() {
+			lock.unlock();
+		}
+
+		/**
+		 * @return the channel number, [0, 7].
+		 */
+		public int getChannel() {
+			return channel;
+		}
+
+		/**
+		 * @return the virtual bus number representing this channel.
+		 */
+		public int getVirtualBus() {
+			return virtualBus;
+		}
+
+		/**
+		 * @return the multiplexer this channel belongs to.
+		 */
+		public TCA9548ADevice getMultiplexer() {
+			return TCA9548ADevice.this;
+		}
+
+		@Override
+		public String toString() {
+			return "Channel " + channel + " (virtual bus " + virtualBus + ")";
+		}
+	}
+}
@@ -22,6 +22,7 @@ import com.pi4j.io.i2c.I2CBus;
 import com.pi4j.io.i2c.I2CDevice;
 import com.pi4j.io.i2c.I2CFactory;
 import com.robo4j.rpi.i2c.AbstractI2CDevice;
+import com.robo4j.rpi.i2c.budget.I2COperation;
 
 /**
  * Abstraction for talking to a PCA9685 PWM/Servo driver. For example 
@@ -32,6 +33,12 @@ import com.robo4j.rpi.i2c.AbstractI2CDevice;
 //Not using all commands - yet.
 @SuppressWarnings("unused")
 public class PWMPCA9685Device extends AbstractI2CDevice {
+	/**
+	 * The bus traffic of setting the PWM of a channel, for example when
+	 * moving a {@link Servo}.
+	 */
+	public static final I2COperation SET_PWM_OPERATION = I2COperation.registerWrite("set pwm", 1).times(4);
+
 	private static final double PRESCALE_FACTOR = 25000000.0 / 4096.0;
 	
 	private static final int MODE1 = 0x00;
@@ -118,7 +125,7 @@ public class PWMPCA9685Device extends AbstractI2CDevice {
 		double prescaleval = PRESCALE_FACTOR / frequency;
 		prescaleval -= 1.0;
 		double prescale = Math.floor(prescaleval + 0.5);
-		int oldmode = i2cDevice.read(MODE1);
+		int oldmode = readByte(MODE1);
 		int newmode = (oldmode & 0x7F) | 0x10;
 		writeByte(MODE1, (byte) newmode);
 		writeByte(PRESCALE, (byte) (Math.floor(prescale)));
@@ -176,10 +183,10 @@ public class PWMPCA9685Device extends AbstractI2CDevice {
 		 * @throws IOException
 		 */
 		public void setPWM(int on, int off) throws IOException {
-			i2cDevice.write(LED0_ON_L + 4 * channel, (byte) (on & 0xFF));
-			i2cDevice.write(LED0_ON_H + 4 * channel, (byte) (on >> 8));
-			i2cDevice.write(LED0_OFF_L + 4 * channel, (byte) (off & 0xFF));
-			i2cDevice.write(LED0_OFF_H + 4 * channel, (byte) (off >> 8));
+			writeByte(LED0_ON_L + 4 * channel, (byte) (on & 0xFF));
+			writeByte(LED0_ON_H + 4 * channel, (byte) (on >> 8));
+			writeByte(LED0_OFF_L + 4 * channel, (byte) (off & 0xFF));
+			writeByte(LED0_OFF_H + 4 * channel, (byte) (off >> 8));
 		}
 		
 		/**
@@ -195,6 +202,13 @@ public class PWMPCA9685Device extends AbstractI2CDevice {
 		public Object getChannelID() {
 			return channel;
 		}
+
+		/**
+		 * @return the channel number, [0, 15].
+		 */
+		public int getChannel() {
+			return channel;
+		}
 	}
 
 	private void sleep(int millis) {
@@ -19,6 +19,7 @@ package com.robo4j.rpi.i2c.pwm;
 import java.io.IOException;
 
 import com.robo4j.rpi.i2c.pwm.PWMPCA9685Device.PWMChannel;
+import com.robo4j.rpi.jfr.ServoActuationEvent;
 
 /**
  * Simple wrapper class for simplifying working with a PWM Channel having a
@@ -62,6 +63,9 @@ public class Servo {
 	 *             if there was a problem communicating with the device.
 	 */
 	public void setInput(float input) throws IOException {
+		ServoActuationEvent event = new ServoActuationEvent();
+		event.begin();
+		float requestedInput = input;
 		input = calculateExpo(input);
 		input = (input * dualRate) + trim / TRIM_STEPS;
 		
@@ -72,6 +76,16 @@ public class Servo {
 		int width = Math.round((max - min) * input) + min;
 		channel.setPWM(0, width);
 		this.input = input;
+		event.end();
+		if (event.shouldCommit()) {
+			PWMPCA9685Device device = channel.getPWMDevice();
+			event.bus = device.getBus();
+			event.address = device.getAddress();
+			event.channel = channel.getChannel();
+			event.input = requestedInput;
+			event.pulseWidth = width;
+			event.commit();
+		}
 	}
 
 	/**
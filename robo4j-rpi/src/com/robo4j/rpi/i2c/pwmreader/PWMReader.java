@@ -19,6 +19,7 @@ package com.robo4j.rpi.i2c.pwmreader;
 import java.io.IOException;
 import com.pi4j.io.i2c.I2CBus;
 import com.robo4j.rpi.i2c.AbstractI2CDevice;
+import com.robo4j.rpi.i2c.budget.I2COperation;
 
 /**
  * Abstraction for reading PWM pulse lengths from a PWM reader.
@@ -28,7 +29,12 @@ import com.robo4j.rpi.i2c.AbstractI2CDevice;
  * 
  * @author Marcus Hirt
  */
-public class PWMReader extends AbstractI2CDevice {
+public class PWMReader extends AbstractI2CDevice implements PulseReader {
+	/**
+	 * The bus traffic of a {@link #readPulse(int)}.
+	 */
+	public static final I2COperation READ_OPERATION = I2COperation.write("pulse read", 1)
+			.then(I2COperation.read("pulse read", 2));
 
 	public PWMReader() throws IOException {
 		this(I2CBus.BUS_1, 0x02);
@@ -38,20 +44,18 @@ public class PWMReader extends AbstractI2CDevice {
 		super(bus, address);
 	}
 
-	/**
-	 * @return the pulse length in ms
-	 * @throws IOException
-	 */
+	@Override
 	public double readPulse(int channel) throws IOException {
-		i2cDevice.write((byte) channel);
+		writeByte((byte) channel);
 		sleep(10);
 		int valueInMicros = readU2();
+		markSampleTime();
 		return valueInMicros / 1000.0;
 	}
 
 	private int readU2() throws IOException {
 		byte[] result = new byte[2];
-		i2cDevice.read(result, 0, 2);
+		readBytes(result, 0, 2);
 		return (result[0] << 8) + (result[1] & 0xff);
 	}
 }
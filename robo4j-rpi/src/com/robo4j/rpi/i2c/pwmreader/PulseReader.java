@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.pwmreader;
+
+import java.io.IOException;
+
+/**
+ * Reads the pulse lengths of PWM signals, for example from an RC receiver.
+ * Implemented by the {@link PWMReader}, and by devices recording or
+ * replaying one.
+ * 
+ * @author Marcus Hirt
+ */
+public interface PulseReader {
+	/**
+	 * @param channel
+	 *            the channel to read.
+	 * @return the pulse length in ms
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	double readPulse(int channel) throws IOException;
+
+	/**
+	 * @return the time the latest pulse length was read, as
+	 *         {@link System#nanoTime()}.
+	 */
+	long getLastSampleTime();
+}
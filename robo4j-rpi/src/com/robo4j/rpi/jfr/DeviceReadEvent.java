@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event emitted when a sample is read from a
+ * {@link com.robo4j.rpi.i2c.ReadableDevice}. The duration covers the
+ * complete read, including all bus transactions and the conversion of the
+ * raw data.
+ * 
+ * @author Marcus Hirt
+ */
+@Name(DeviceReadEvent.NAME)
+@Label("Device Read")
+@Description("A sample read from a readable device")
+@Category({ "Robo4J", "Sensors" })
+@StackTrace(false)
+@Threshold("2 ms")
+public final class DeviceReadEvent extends jdk.jfr.Event {
+	public static final String NAME = "com.robo4j.rpi.DeviceRead";
+
+	@Label("Device")
+	public String device;
+
+	@Label("Bus")
+	public int bus;
+
+	@Label("Address")
+	public int address;
+
+	@Label("X")
+	public float x;
+
+	@Label("Y")
+	public float y;
+
+	@Label("Z")
+	public float z;
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted when a NMEA sentence from the
+ * {@link com.robo4j.rpi.serial.gps.GPS} is consumed. The duration covers
+ * validation, parsing and the notification of all listeners.
+ * 
+ * @author Marcus Hirt
+ */
+@Name(GPSSentenceEvent.NAME)
+@Label("GPS Sentence")
+@Description("A NMEA sentence received from the GPS")
+@Category({ "Robo4J", "GPS" })
+@StackTrace(false)
+public final class GPSSentenceEvent extends jdk.jfr.Event {
+	public static final String NAME = "com.robo4j.rpi.GPSSentence";
+
+	@Label("Sentence")
+	@Description("The NMEA tag of the sentence, for example $GPGGA")
+	public String sentence;
+
+	@Label("Dispatched")
+	@Description("True if the sentence was recognized, had a valid checksum and was dispatched")
+	public boolean dispatched;
+
+	@Label("Listeners")
+	@Description("The number of listeners notified")
+	public int listeners;
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event emitted for every transaction on the I2C bus made
+ * through {@link com.robo4j.rpi.i2c.AbstractI2CDevice}. By default only
+ * transactions slower than 1 ms are recorded, which keeps the overhead low
+ * enough for a continuous recording.
+ * 
+ * @author Marcus Hirt
+ */
+@Name(I2CTransactionEvent.NAME)
+@Label("I2C Transaction")
+@Description("A read or write on the I2C bus")
+@Category({ "Robo4J", "I2C" })
+@StackTrace(false)
+@Threshold("1 ms")
+public final class I2CTransactionEvent extends jdk.jfr.Event {
+	public static final String NAME = "com.robo4j.rpi.I2CTransaction";
+
+	@Label("Device")
+	public String device;
+
+	@Label("Bus")
+	public int bus;
+
+	@Label("Address")
+	@Description("The address of the device on the bus")
+	public int address;
+
+	@Label("Register")
+	@Description("The register accessed, or -1 if the transaction did not address a register")
+	public int register;
+
+	@Label("Bytes")
+	@Description("The number of payload bytes transferred")
+	public int bytes;
+
+	@Label("Write")
+	public boolean write;
+}
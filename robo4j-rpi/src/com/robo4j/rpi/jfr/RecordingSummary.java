@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.jfr;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Small analyzer summarizing the Robo4J events in a flight recording, per
+ * device. Useful for getting a quick overview of the bus traffic and the
+ * read, actuation and dispatch times before opening the recording in Java
+ * Mission Control.
+ * <p>
+ * Usage: java com.robo4j.rpi.jfr.RecordingSummary &lt;recording.jfr&gt;
+ * 
+ * @author Marcus Hirt
+ */
+public class RecordingSummary {
+	private final Map<String, Entry> entries = new TreeMap<>();
+
+	/**
+	 * Summary statistics for one kind of event from one device.
+	 */
+	public static final class Entry {
+		private long count;
+		private long bytes;
+		private long totalNanos;
+		private long maxNanos;
+
+		private void add(long nanos, long bytes) {
+			count++;
+			this.bytes += bytes;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		/**
+		 * @return the number of events.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the total number of bytes transferred, or 0 for events not
+		 *         describing bus transfers.
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return the average duration, in ns.
+		 */
+		public long getAverageNanos() {
+			return count == 0 ? 0 : totalNanos / count;
+		}
+
+		/**
+		 * @return the max duration, in ns.
+		 */
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+	}
+
+	/**
+	 * Reads all the Robo4J events in the specified recording.
+	 * 
+	 * @param recording
+	 *            the flight recording to summarize.
+	 * @return the summary.
+	 * @throws IOException
+	 *             if the recording could not be read.
+	 */
+	public static RecordingSummary read(Path recording) throws IOException {
+		RecordingSummary summary = new RecordingSummary();
+		try (RecordingFile file = new RecordingFile(recording)) {
+			while (file.hasMoreEvents()) {
+				summary.add(file.readEvent());
+			}
+		}
+		return summary;
+	}
+
+	/**
+	 * @return the summary entries, keyed on device and event kind.
+	 */
+	public Map<String, Entry> getEntries() {
+		return entries;
+	}
+
+	private void add(RecordedEvent event) {
+		String key;
+		long bytes = 0;
+		switch (event.getEventType().getName()) {
+		case I2CTransactionEvent.NAME:
+			key = String.format("%s (bus %d, 0x%02x) %s", event.getString("device"), event.getInt("bus"), event.getInt("address"),
+					event.getBoolean("write") ? "write" : "read");
+			bytes = event.getInt("bytes");
+			break;
+		case DeviceReadEvent.NAME:
+			key = String.format("%s (bus %d, 0x%02x) sample", event.getString("device"), event.getInt("bus"), event.getInt("address"));
+			break;
+		case ServoActuationEvent.NAME:
+			key = String.format("Servo (bus %d, 0x%02x, ch %d) actuation", event.getInt("bus"), event.getInt("address"),
+					event.getInt("channel"));
+			break;
+		case GPSSentenceEvent.NAME:
+			key = String.format("GPS %s", event.getString("sentence"));
+			break;
+		default:
+			return;
+		}
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry();
+			entries.put(key, entry);
+		}
+		Duration duration = event.getDuration();
+		entry.add(duration.toNanos(), bytes);
+	}
+
+	/**
+	 * Prints the summary as a table.
+	 * 
+	 * @param out
+	 *            where to print the summary.
+	 */
+	public void print(PrintStream out) {
+		out.println(String.format("%-50s %10s %10s %12s %12s", "Device", "Count", "Bytes", "Avg (us)", "Max (us)"));
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			Entry entry = e.getValue();
+			out.println(String.format("%-50s %10d %10d %12.1f %12.1f", e.getKey(), entry.getCount(), entry.getBytes(),
+					entry.getAverageNanos() / 1000.0, entry.getMaxNanos() / 1000.0));
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: java " + RecordingSummary.class.getName() + " <recording.jfr>");
+			System.exit(2);
+		}
+		read(Paths.get(args[0])).print(System.out);
+	}
+}
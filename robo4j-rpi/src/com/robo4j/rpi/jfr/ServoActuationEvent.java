@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted when a new input is set on a
+ * {@link com.robo4j.rpi.i2c.pwm.Servo}. Servos are typically updated at the
+ * PWM frequency or lower, so all actuations are recorded.
+ * 
+ * @author Marcus Hirt
+ */
+@Name(ServoActuationEvent.NAME)
+@Label("Servo Actuation")
+@Description("A new input set on a servo")
+@Category({ "Robo4J", "Actuators" })
+@StackTrace(false)
+public final class ServoActuationEvent extends jdk.jfr.Event {
+	public static final String NAME = "com.robo4j.rpi.ServoActuation";
+
+	@Label("Bus")
+	public int bus;
+
+	@Label("Address")
+	public int address;
+
+	@Label("Channel")
+	public int channel;
+
+	@Label("Input")
+	@Description("The requested input, between -1 and 1")
+	public float input;
+
+	@Label("Pulse Width")
+	@Description("The resulting pulse width, in PWM steps")
+	public int pulseWidth;
+}
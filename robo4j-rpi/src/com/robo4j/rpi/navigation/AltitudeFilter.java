@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.navigation;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.robo4j.rpi.i2c.Timestamped;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+import com.robo4j.rpi.i2c.bmp.Barometer;
+import com.robo4j.rpi.serial.gps.GPS;
+import com.robo4j.rpi.serial.gps.PositionEvent;
+
+/**
+ * Kalman filter fusing barometric and GPS altitude. The barometer is precise
+ * over short times, but its absolute altitude depends on the weather, since
+ * the pressure at sea level does; the GPS altitude is noisy and slow, but does
+ * not drift. The filter tracks the altitude, the vertical speed and the
+ * offset of the barometric altitude, which is equivalent to estimating the
+ * pressure at sea level, and provides estimates at the barometer rate.
+ * <p>
+ * Until the first GPS altitude, the altitude is the barometric altitude for
+ * the initial sea level pressure, by default
+ * {@link Barometer#PRESSURE_SEA_LEVEL}. The offset is allowed to wander
+ * slowly, to follow the weather.
+ * <p>
+ * Not thread safe; feed it from a single thread.
+ * 
+ * @author Marcus Hirt
+ */
+public class AltitudeFilter {
+	/**
+	 * The default noise of the barometric altitude, in meters.
+	 */
+	public static final float DEFAULT_BAROMETER_NOISE = 0.5f;
+
+	/**
+	 * The default uncertainty of the vertical acceleration, in m/s².
+	 */
+	public static final float DEFAULT_ACCELERATION_NOISE = 0.5f;
+
+	/**
+	 * Time steps longer than this, in seconds, are clamped.
+	 */
+	public static final float MAX_TIME_STEP = 1;
+
+	// The barometric offset of a weather change of about 1 hPa per hour
+	private static final double OFFSET_WALK = 0.01;
+	// Sea level pressures range some 50 hPa around the standard, or 400 m
+	private static final double INITIAL_OFFSET_VARIANCE = 200 * 200;
+	private static final double INITIAL_SPEED_VARIANCE = 1;
+	// The vertical error of a GPS fix is typically half as large again as
+	// the horizontal one
+	private static final float VERTICAL_DILUTION = 1.5f;
+	private static final double GATE = 5 * 5;
+
+	private final double barometerVariance;
+	private final double accelerationVariance;
+
+	// State: altitude, vertical speed and the barometric altitude offset,
+	// with the covariance in row major order
+	private double altitude;
+	private double speed;
+	private double offset;
+	private final double[] p = new double[9];
+	private final double[] ph = new double[3];
+
+	private float seaLevelPressure = Barometer.PRESSURE_SEA_LEVEL;
+	private float lastPressure = Float.NaN;
+	private long lastTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+	private long updates;
+	private long rejected;
+
+	public AltitudeFilter() {
+		this(DEFAULT_BAROMETER_NOISE, DEFAULT_ACCELERATION_NOISE);
+	}
+
+	/**
+	 * @param barometerNoise
+	 *            the noise of the barometric altitude, in meters.
+	 * @param accelerationNoise
+	 *            the uncertainty of the vertical acceleration, in m/s².
+	 */
+	public AltitudeFilter(float barometerNoise, float accelerationNoise) {
+		this.barometerVariance = barometerNoise * barometerNoise;
+		this.accelerationVariance = accelerationNoise * accelerationNoise;
+		reset();
+	}
+
+	/**
+	 * Reads the pressure from the barometer and updates the estimates.
+	 * 
+	 * @return the altitude, in meters.
+	 * @throws IOException
+	 *             if there was communication problem
+	 */
+	public float update(Barometer barometer) throws IOException {
+		Timestamped<Integer> pressure = barometer.readTimestampedPressure();
+		onPressure(pressure.getTimestamp(), pressure.getValue());
+		return getAltitude();
+	}
+
+	/**
+	 * Provides a pressure sample.
+	 * 
+	 * @param time
+	 *            the sample time, in ns.
+	 * @param pressure
+	 *            the pressure, in Pascal.
+	 */
+	public void onPressure(long time, float pressure) {
+		double barometricAltitude = Barometer.toAltitude(pressure, seaLevelPressure);
+		lastPressure = pressure;
+		if (lastTime == TimestampedReadableDevice.NO_SAMPLE_TIME) {
+			// Until a GPS altitude arrives, the altitude is as uncertain as
+			// the offset
+			altitude = barometricAltitude - offset;
+			p[0] = p[8] + barometerVariance;
+			p[2] = -p[8];
+			p[6] = -p[8];
+			lastTime = time;
+			return;
+		}
+		float dt = Math.min(MAX_TIME_STEP, Math.max(0, (time - lastTime) / 1e9f));
+		lastTime = time;
+		predict(dt);
+		update(barometricAltitude - (altitude + offset), barometerVariance, 1, 1);
+		updates++;
+	}
+
+	/**
+	 * Corrects the estimates with the altitude of a GPS fix.
+	 */
+	public void onPosition(PositionEvent event) {
+		if (event.getFixQuality() == PositionEvent.FixQuality.INVALID) {
+			return;
+		}
+		onGpsAltitude(event.getAltitude(), event.getHorizontalDilutionOfPrecision());
+	}
+
+	/**
+	 * Corrects the estimates with a GPS altitude.
+	 * 
+	 * @param gpsAltitude
+	 *            the altitude above sea level, in meters.
+	 * @param hdop
+	 *            the horizontal dilution of precision of the fix.
+	 */
+	public void onGpsAltitude(double gpsAltitude, float hdop) {
+		if (Double.isNaN(gpsAltitude) || !(hdop > 0) || lastTime == TimestampedReadableDevice.NO_SAMPLE_TIME) {
+			return;
+		}
+		float error = hdop * GPS.UNAIDED_POSITION_ACCURACY * VERTICAL_DILUTION;
+		update(gpsAltitude - altitude, error * error, 1, 0);
+	}
+
+	/**
+	 * Sets the initial pressure at sea level, for instance from a weather
+	 * report or from an earlier run. Restarts the estimates.
+	 * 
+	 * @param seaLevelPressure
+	 *            the pressure at sea level, in Pascal.
+	 */
+	public void setSeaLevelPressure(float seaLevelPressure) {
+		reset();
+		this.seaLevelPressure = seaLevelPressure;
+	}
+
+	/**
+	 * @return the altitude above sea level, in meters.
+	 */
+	public float getAltitude() {
+		return (float) altitude;
+	}
+
+	/**
+	 * @return the vertical speed, in m/s, positive upwards.
+	 */
+	public float getVerticalSpeed() {
+		return (float) speed;
+	}
+
+	/**
+	 * @return the estimated pressure at sea level, in Pascal.
+	 */
+	public float getSeaLevelPressure() {
+		if (Float.isNaN(lastPressure)) {
+			return seaLevelPressure;
+		}
+		return Barometer.toSeaLevelPressure(lastPressure, (float) altitude);
+	}
+
+	/**
+	 * @return the standard deviation of the altitude, in meters.
+	 */
+	public float getAltitudeError() {
+		return (float) Math.sqrt(p[0]);
+	}
+
+	/**
+	 * @return the number of pressure samples used.
+	 */
+	public long getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * @return the number of measurements rejected as outliers.
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Starts over, keeping the sea level pressure last set.
+	 */
+	public void reset() {
+		altitude = 0;
+		speed = 0;
+		offset = 0;
+		Arrays.fill(p, 0);
+		p[0] = barometerVariance;
+		p[4] = INITIAL_SPEED_VARIANCE;
+		p[8] = INITIAL_OFFSET_VARIANCE;
+		lastPressure = Float.NaN;
+		lastTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+		updates = 0;
+		rejected = 0;
+	}
+
+	private void predict(float dt) {
+		altitude += speed * dt;
+		// P = F P Fᵀ, with F = [1 dt 0; 0 1 0; 0 0 1]
+		double p00 = p[0] + dt * (p[1] + p[3]) + dt * dt * p[4];
+		double p01 = p[1] + dt * p[4];
+		double p02 = p[2] + dt * p[5];
+		p[0] = p00;
+		p[1] = p01;
+		p[3] = p01;
+		p[2] = p02;
+		p[6] = p02;
+		// Q, for white noise acceleration and a random walk offset
+		double dt2 = dt * dt;
+		p[0] += accelerationVariance * dt2 * dt / 3;
+		p[1] += accelerationVariance * dt2 / 2;
+		p[3] += accelerationVariance * dt2 / 2;
+		p[4] += accelerationVariance * dt;
+		p[8] += OFFSET_WALK * OFFSET_WALK * dt;
+	}
+
+	/**
+	 * Scalar Kalman update, for a measurement of altitude * h0 + offset * h2.
+	 */
+	private void update(double innovation, double variance, double h0, double h2) {
+		for (int i = 0; i < 3; i++) {
+			ph[i] = p[i * 3] * h0 + p[i * 3 + 2] * h2;
+		}
+		double s = h0 * ph[0] + h2 * ph[2] + variance;
+		if (innovation * innovation > GATE * s) {
+			rejected++;
+			return;
+		}
+		altitude += ph[0] * innovation / s;
+		speed += ph[1] * innovation / s;
+		offset += ph[2] * innovation / s;
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				p[i * 3 + j] -= ph[i] * ph[j] / s;
+			}
+		}
+	}
+}
@@ -0,0 +1,690 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.navigation;
+
+import java.util.Arrays;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Matrix3;
+import com.robo4j.rpi.geometry.Quaternion;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+import com.robo4j.rpi.serial.gps.GPS;
+import com.robo4j.rpi.serial.gps.Location;
+import com.robo4j.rpi.serial.gps.PositionEvent;
+import com.robo4j.rpi.serial.gps.VelocityEvent;
+
+/**
+ * GPS aided inertial navigation, using an error state extended Kalman
+ * filter. The accelerometer and gyro samples are integrated at their own
+ * rate into position, velocity and attitude, so the estimates keep moving
+ * between GPS fixes. The GPS positions and velocities, and optionally a
+ * compass heading, correct the estimates and the accelerometer and gyro
+ * biases when they arrive.
+ * <p>
+ * The state is kept in a local east-north-up frame, in meters, with its
+ * origin at the first GPS fix; see {@link #getLocalFrame()}. The body axes
+ * are the same as for {@link com.robo4j.rpi.ahrs.Ahrs}: x forward and z up,
+ * with the accelerometer reading +g on z when level.
+ * <p>
+ * The GPS speed and track are used as a velocity vector, with a fixed
+ * uncertainty, so the track gets less and less weight as the speed drops,
+ * instead of a meaningless track throwing the heading off. Above
+ * {@link #MIN_ALIGNMENT_SPEED} the robot is assumed to move forward, and the
+ * track is also used as a heading; driving straight at constant speed
+ * otherwise leaves the heading unobservable. Until the heading is known, it
+ * is aligned with the first such track, or with the first compass heading.
+ * The position uncertainty is scaled by the horizontal dilution of precision
+ * of the fix.
+ * <p>
+ * All the matrices are preallocated, and updates do not allocate. The
+ * filter is not thread safe, so feed it from a single thread, for example an
+ * {@link com.robo4j.rpi.event.EventBus} consumer. The GPS sentences carry no
+ * sample times of their own, so they are applied as they arrive.
+ * 
+ * @author Marcus Hirt
+ */
+public class InertialNavigationFilter {
+	/**
+	 * Standard gravity, in m/s².
+	 */
+	public static final float GRAVITY = 9.80665f;
+
+	/**
+	 * The default noise of the accelerometer, including vibrations, in m/s².
+	 */
+	public static final float DEFAULT_ACCELEROMETER_NOISE = 0.5f;
+
+	/**
+	 * The default noise of the gyro, in degrees/s.
+	 */
+	public static final float DEFAULT_GYRO_NOISE = 1;
+
+	/**
+	 * The default uncertainty of the GPS velocity, in m/s.
+	 */
+	public static final float DEFAULT_VELOCITY_NOISE = 0.3f;
+
+	/**
+	 * The GPS speed, in m/s, above which the GPS track is trusted for
+	 * aligning an unknown heading.
+	 */
+	public static final float MIN_ALIGNMENT_SPEED = 1.5f;
+
+	/**
+	 * The GPS speed, in m/s, at or below which a velocity without a track is
+	 * taken to mean standing still.
+	 */
+	public static final float STATIONARY_SPEED = 0.1f;
+
+	/**
+	 * Time steps longer than this, in seconds, are clamped.
+	 */
+	public static final float MAX_TIME_STEP = 0.1f;
+
+	private static final float DEG_TO_RAD = (float) (Math.PI / 180);
+	private static final float RAD_TO_DEG = (float) (180 / Math.PI);
+	private static final double ACCELEROMETER_BIAS_WALK = 0.005;
+	private static final double GYRO_BIAS_WALK = 0.01 * DEG_TO_RAD;
+	private static final double INITIAL_POSITION_VARIANCE = 100 * 100;
+	private static final double INITIAL_TILT_VARIANCE = square(5 * DEG_TO_RAD);
+	private static final double ALIGNED_HEADING_VARIANCE = square(10 * DEG_TO_RAD);
+	// Allowance for the track differing from the heading when driving
+	private static final double TRACK_HEADING_VARIANCE = square(5 * DEG_TO_RAD);
+	private static final double INITIAL_ACCELEROMETER_BIAS_VARIANCE = 0.1 * 0.1;
+	private static final double INITIAL_GYRO_BIAS_VARIANCE = square(1 * DEG_TO_RAD);
+	// Innovations beyond 5 standard deviations are rejected as outliers
+	private static final double GATE = 5 * 5;
+
+	// The error state: position, velocity, attitude, accelerometer bias and
+	// gyro bias, three elements each
+	private static final int N = 15;
+	private static final int POSITION = 0;
+	private static final int VELOCITY = 3;
+	private static final int ATTITUDE = 6;
+	private static final int ACCELEROMETER_BIAS = 9;
+	private static final int GYRO_BIAS = 12;
+
+	private final double accelerometerVariance;
+	private final double gyroVariance;
+	private final double velocityVariance;
+
+	// Covariance, transition matrix and scratch space, row major
+	private final double[] p = new double[N * N];
+	private final double[] phi = new double[N * N];
+	private final double[] product = new double[N * N];
+	private final double[] h = new double[N];
+	private final double[] ph = new double[N];
+	private final double[] dx = new double[N];
+
+	// The nominal state; the attitude rotates from body to local frame
+	private final Float3D position = new Float3D();
+	private final Float3D velocity = new Float3D();
+	private final Quaternion attitude = new Quaternion();
+	private final Float3D accelerometerBias = new Float3D();
+	private final Float3D gyroBias = new Float3D();
+
+	private final Matrix3 rotation = new Matrix3();
+	private final Quaternion delta = new Quaternion();
+	private final Float3D angles = new Float3D();
+	private final Float3D local = new Float3D();
+
+	private float ax;
+	private float ay;
+	private float az;
+	private boolean hasAccelerometer;
+	private boolean levelled;
+	private boolean headingKnown;
+	private long lastGyroTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+	private LocalFrame frame;
+	private long updates;
+	private long rejected;
+
+	public InertialNavigationFilter() {
+		this(DEFAULT_ACCELEROMETER_NOISE, DEFAULT_GYRO_NOISE, DEFAULT_VELOCITY_NOISE);
+	}
+
+	/**
+	 * @param accelerometerNoise
+	 *            the noise of the accelerometer, in m/s².
+	 * @param gyroNoise
+	 *            the noise of the gyro, in degrees/s.
+	 * @param velocityNoise
+	 *            the uncertainty of the GPS velocity, in m/s.
+	 */
+	public InertialNavigationFilter(float accelerometerNoise, float gyroNoise, float velocityNoise) {
+		this.accelerometerVariance = square(accelerometerNoise);
+		this.gyroVariance = square(gyroNoise * DEG_TO_RAD);
+		this.velocityVariance = square(velocityNoise);
+		reset();
+	}
+
+	/**
+	 * Provides an accelerometer sample, used by the following gyro samples.
+	 * 
+	 * @param time
+	 *            the sample time, in ns.
+	 * @param x
+	 *            the acceleration along x, in m/s².
+	 */
+	public void onAccelerometer(long time, float x, float y, float z) {
+		ax = x;
+		ay = y;
+		az = z;
+		hasAccelerometer = true;
+	}
+
+	/**
+	 * Provides a gyro sample, advancing the estimates by the time since the
+	 * previous gyro sample.
+	 * 
+	 * @param time
+	 *            the sample time, in ns.
+	 * @param x
+	 *            the rate around x, in degrees/s.
+	 */
+	public void onGyro(long time, float x, float y, float z) {
+		if (!hasAccelerometer) {
+			return;
+		}
+		if (!levelled) {
+			// Start out level with the accelerometer
+			float roll = (float) Math.atan2(ay, az);
+			float pitch = (float) Math.asin(Math.max(-1, Math.min(1, -ax / Math.sqrt(ax * ax + ay * ay + az * az))));
+			attitude.setEulerAngles(roll, pitch, 0);
+			levelled = true;
+		}
+		if (lastGyroTime != TimestampedReadableDevice.NO_SAMPLE_TIME) {
+			float dt = Math.min(MAX_TIME_STEP, Math.max(0, (time - lastGyroTime) / 1e9f));
+			if (dt > 0) {
+				propagate(dt, x * DEG_TO_RAD - gyroBias.x, y * DEG_TO_RAD - gyroBias.y, z * DEG_TO_RAD - gyroBias.z);
+				updates++;
+			}
+		}
+		lastGyroTime = time;
+	}
+
+	/**
+	 * Corrects the estimates with a GPS fix.
+	 */
+	public void onPosition(PositionEvent event) {
+		if (event.getLocation() == null || event.getFixQuality() == PositionEvent.FixQuality.INVALID) {
+			return;
+		}
+		onPosition(event.getLocation().getLatitude(), event.getLocation().getLongitude(), event.getAltitude(),
+				event.getHorizontalDilutionOfPrecision());
+	}
+
+	/**
+	 * Corrects the estimates with a GPS fix. The first fix becomes the origin
+	 * of the local frame.
+	 * 
+	 * @param latitude
+	 *            the latitude, in decimal degrees.
+	 * @param longitude
+	 *            the longitude, in decimal degrees.
+	 * @param altitude
+	 *            the altitude, in meters, or NaN if unknown.
+	 * @param hdop
+	 *            the horizontal dilution of precision of the fix.
+	 */
+	public void onPosition(double latitude, double longitude, double altitude, float hdop) {
+		if (!(hdop > 0)) {
+			return;
+		}
+		double horizontalVariance = square(hdop * GPS.UNAIDED_POSITION_ACCURACY);
+		if (frame == null) {
+			frame = new LocalFrame(latitude, longitude, Double.isNaN(altitude) ? 0 : altitude);
+			position.set(0, 0, 0);
+			for (int i = 0; i < 3; i++) {
+				clear(POSITION + i);
+				p[(POSITION + i) * N + POSITION + i] = horizontalVariance;
+			}
+			return;
+		}
+		frame.toLocal(latitude, longitude, Double.isNaN(altitude) ? frame.getAltitude() : altitude, local);
+		measure(POSITION, local.x - position.x, horizontalVariance);
+		measure(POSITION + 1, local.y - position.y, horizontalVariance);
+		if (!Double.isNaN(altitude)) {
+			// No vertical dilution of precision in the sentences; the
+			// vertical error is typically half as large again
+			measure(POSITION + 2, local.z - position.z, 2.25 * horizontalVariance);
+		}
+		inject();
+	}
+
+	/**
+	 * Corrects the estimates with a GPS velocity.
+	 */
+	public void onVelocity(VelocityEvent event) {
+		onVelocity(event.getGroundSpeed() / 3.6f, event.getTrueTrackMadeGood());
+	}
+
+	/**
+	 * Corrects the estimates with a GPS velocity.
+	 * 
+	 * @param speed
+	 *            the ground speed, in m/s.
+	 * @param track
+	 *            the true track made good, in degrees clockwise from north,
+	 *            or NaN if unknown.
+	 */
+	public void onVelocity(float speed, float track) {
+		if (Float.isNaN(speed) || !levelled) {
+			return;
+		}
+		float east;
+		float north;
+		if (Float.isNaN(track)) {
+			if (speed > STATIONARY_SPEED) {
+				return;
+			}
+			// Standing still, so the missing track does not matter
+			east = 0;
+			north = 0;
+		} else {
+			east = speed * (float) Math.sin(track * DEG_TO_RAD);
+			north = speed * (float) Math.cos(track * DEG_TO_RAD);
+			if (!headingKnown && speed >= MIN_ALIGNMENT_SPEED) {
+				alignHeading(track, ALIGNED_HEADING_VARIANCE);
+				velocity.x = east;
+				velocity.y = north;
+			}
+		}
+		measure(VELOCITY, east - velocity.x, velocityVariance);
+		measure(VELOCITY + 1, north - velocity.y, velocityVariance);
+		inject();
+		if (headingKnown && speed >= MIN_ALIGNMENT_SPEED && !Float.isNaN(track)) {
+			updateHeading(track, velocityVariance / (speed * speed) + TRACK_HEADING_VARIANCE);
+		}
+	}
+
+	/**
+	 * Corrects the estimates with a heading, for instance from a tilt
+	 * compensated compass.
+	 * 
+	 * @param heading
+	 *            the true heading, in degrees clockwise from north.
+	 * @param standardDeviation
+	 *            the uncertainty of the heading, in degrees.
+	 */
+	public void onHeading(float heading, float standardDeviation) {
+		if (!levelled) {
+			return;
+		}
+		double variance = square(standardDeviation * DEG_TO_RAD);
+		if (!headingKnown) {
+			alignHeading(heading, variance);
+		} else {
+			updateHeading(heading, variance);
+		}
+	}
+
+	/**
+	 * Copies the position into dst.
+	 * 
+	 * @return dst, in meters east, north and up of the origin of the local
+	 *         frame.
+	 */
+	public Float3D getPosition(Float3D dst) {
+		dst.set(position);
+		return dst;
+	}
+
+	/**
+	 * Copies the velocity into dst.
+	 * 
+	 * @return dst, in m/s east, north and up.
+	 */
+	public Float3D getVelocity(Float3D dst) {
+		dst.set(velocity);
+		return dst;
+	}
+
+	/**
+	 * Copies the attitude, rotating from the body to the local frame, into
+	 * dst.
+	 * 
+	 * @return dst.
+	 */
+	public Quaternion getQuaternion(Quaternion dst) {
+		dst.set(attitude);
+		return dst;
+	}
+
+	/**
+	 * @return the location, or null before the first GPS fix.
+	 */
+	public Location getLocation() {
+		return frame == null ? null : frame.toLocation(position);
+	}
+
+	/**
+	 * @return the local frame, or null before the first GPS fix.
+	 */
+	public LocalFrame getLocalFrame() {
+		return frame;
+	}
+
+	/**
+	 * @return the true heading, in degrees clockwise from north, in [0, 360).
+	 */
+	public float getHeading() {
+		attitude.getEulerAngles(angles);
+		float heading = 90 - angles.z * RAD_TO_DEG;
+		heading %= 360;
+		return heading < 0 ? heading + 360 : heading;
+	}
+
+	/**
+	 * @return the rotation around x, in radians.
+	 */
+	public float getRoll() {
+		return attitude.getEulerAngles(angles).x;
+	}
+
+	/**
+	 * @return the rotation around y, in radians.
+	 */
+	public float getPitch() {
+		return attitude.getEulerAngles(angles).y;
+	}
+
+	/**
+	 * @return the standard deviation of the horizontal position, in meters.
+	 */
+	public float getHorizontalPositionError() {
+		return (float) Math.sqrt(p[POSITION * N + POSITION] + p[(POSITION + 1) * N + POSITION + 1]);
+	}
+
+	/**
+	 * @return true once the heading has been aligned, from the GPS track or
+	 *         from a compass.
+	 */
+	public boolean isHeadingKnown() {
+		return headingKnown;
+	}
+
+	/**
+	 * Copies the estimated gyro bias into dst.
+	 * 
+	 * @return dst, in degrees/s.
+	 */
+	public Float3D getGyroBias(Float3D dst) {
+		dst.set(gyroBias);
+		dst.multiplyScalar(RAD_TO_DEG);
+		return dst;
+	}
+
+	/**
+	 * Copies the estimated accelerometer bias into dst.
+	 * 
+	 * @return dst, in m/s².
+	 */
+	public Float3D getAccelerometerBias(Float3D dst) {
+		dst.set(accelerometerBias);
+		return dst;
+	}
+
+	/**
+	 * @return the number of inertial updates.
+	 */
+	public long getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * @return the number of measurements rejected as outliers.
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Starts over, forgetting the state and the local frame.
+	 */
+	public void reset() {
+		position.set(0, 0, 0);
+		velocity.set(0, 0, 0);
+		attitude.setIdentity();
+		accelerometerBias.set(0, 0, 0);
+		gyroBias.set(0, 0, 0);
+		Arrays.fill(p, 0);
+		Arrays.fill(dx, 0);
+		for (int i = 0; i < 3; i++) {
+			p[(POSITION + i) * N + POSITION + i] = INITIAL_POSITION_VARIANCE;
+			p[(VELOCITY + i) * N + VELOCITY + i] = 1;
+			p[(ATTITUDE + i) * N + ATTITUDE + i] = INITIAL_TILT_VARIANCE;
+			p[(ACCELEROMETER_BIAS + i) * N + ACCELEROMETER_BIAS + i] = INITIAL_ACCELEROMETER_BIAS_VARIANCE;
+			p[(GYRO_BIAS + i) * N + GYRO_BIAS + i] = INITIAL_GYRO_BIAS_VARIANCE;
+		}
+		p[(ATTITUDE + 2) * N + ATTITUDE + 2] = Math.PI * Math.PI;
+		hasAccelerometer = false;
+		levelled = false;
+		headingKnown = false;
+		lastGyroTime = TimestampedReadableDevice.NO_SAMPLE_TIME;
+		frame = null;
+		updates = 0;
+		rejected = 0;
+	}
+
+	private void propagate(float dt, float wx, float wy, float wz) {
+		float fx = ax - accelerometerBias.x;
+		float fy = ay - accelerometerBias.y;
+		float fz = az - accelerometerBias.z;
+		Matrix3 r = rotation;
+		r.setRotation(attitude);
+
+		// Nominal state
+		float accelerationX = r.m00 * fx + r.m01 * fy + r.m02 * fz;
+		float accelerationY = r.m10 * fx + r.m11 * fy + r.m12 * fz;
+		float accelerationZ = r.m20 * fx + r.m21 * fy + r.m22 * fz - GRAVITY;
+		float halfDt2 = 0.5f * dt * dt;
+		position.x += velocity.x * dt + accelerationX * halfDt2;
+		position.y += velocity.y * dt + accelerationY * halfDt2;
+		position.z += velocity.z * dt + accelerationZ * halfDt2;
+		velocity.x += accelerationX * dt;
+		velocity.y += accelerationY * dt;
+		velocity.z += accelerationZ * dt;
+		delta.set(1, wx * dt / 2, wy * dt / 2, wz * dt / 2);
+		attitude.multiply(delta);
+		attitude.normalize();
+
+		// Transition matrix of the error state, I + F dt
+		Arrays.fill(phi, 0);
+		for (int i = 0; i < N; i++) {
+			phi[i * N + i] = 1;
+		}
+		for (int i = 0; i < 3; i++) {
+			phi[(POSITION + i) * N + VELOCITY + i] = dt;
+			phi[(ATTITUDE + i) * N + GYRO_BIAS + i] = -dt;
+		}
+		// Velocity error from attitude error, -R [f]x dt, and from
+		// accelerometer bias, -R dt
+		setVelocityRow(0, r.m00, r.m01, r.m02, fx, fy, fz, dt);
+		setVelocityRow(1, r.m10, r.m11, r.m12, fx, fy, fz, dt);
+		setVelocityRow(2, r.m20, r.m21, r.m22, fx, fy, fz, dt);
+		// Attitude error, I - [w]x dt
+		phi[ATTITUDE * N + ATTITUDE + 1] = wz * dt;
+		phi[ATTITUDE * N + ATTITUDE + 2] = -wy * dt;
+		phi[(ATTITUDE + 1) * N + ATTITUDE] = -wz * dt;
+		phi[(ATTITUDE + 1) * N + ATTITUDE + 2] = wx * dt;
+		phi[(ATTITUDE + 2) * N + ATTITUDE] = wy * dt;
+		phi[(ATTITUDE + 2) * N + ATTITUDE + 1] = -wx * dt;
+
+		// P = phi P phiᵀ + Q
+		multiply(phi, p, product);
+		multiplyTransposed(product, phi, p);
+		for (int i = 0; i < 3; i++) {
+			p[(VELOCITY + i) * N + VELOCITY + i] += accelerometerVariance * dt;
+			p[(ATTITUDE + i) * N + ATTITUDE + i] += gyroVariance * dt;
+			p[(ACCELEROMETER_BIAS + i) * N + ACCELEROMETER_BIAS + i] += ACCELEROMETER_BIAS_WALK
+					* ACCELEROMETER_BIAS_WALK * dt;
+			p[(GYRO_BIAS + i) * N + GYRO_BIAS + i] += GYRO_BIAS_WALK * GYRO_BIAS_WALK * dt;
+		}
+	}
+
+	private void setVelocityRow(int row, float r0, float r1, float r2, float fx, float fy, float fz, float dt) {
+		int offset = (VELOCITY + row) * N;
+		phi[offset + ATTITUDE] = -(r1 * fz - r2 * fy) * dt;
+		phi[offset + ATTITUDE + 1] = -(r2 * fx - r0 * fz) * dt;
+		phi[offset + ATTITUDE + 2] = -(r0 * fy - r1 * fx) * dt;
+		phi[offset + ACCELEROMETER_BIAS] = -r0 * dt;
+		phi[offset + ACCELEROMETER_BIAS + 1] = -r1 * dt;
+		phi[offset + ACCELEROMETER_BIAS + 2] = -r2 * dt;
+	}
+
+	/**
+	 * Applies a direct measurement of one element of the state.
+	 */
+	private void measure(int index, double innovation, double variance) {
+		Arrays.fill(h, 0);
+		h[index] = 1;
+		update(innovation, variance);
+	}
+
+	/**
+	 * Sequential scalar Kalman update, with the measurement row in h. The
+	 * correction is accumulated in dx until injected.
+	 */
+	private void update(double innovation, double variance) {
+		double hph = 0;
+		double hdx = 0;
+		for (int i = 0; i < N; i++) {
+			double sum = 0;
+			for (int j = 0; j < N; j++) {
+				sum += p[i * N + j] * h[j];
+			}
+			ph[i] = sum;
+			hph += h[i] * sum;
+			hdx += h[i] * dx[i];
+		}
+		double s = hph + variance;
+		double residual = innovation - hdx;
+		if (residual * residual > GATE * s) {
+			rejected++;
+			return;
+		}
+		for (int i = 0; i < N; i++) {
+			dx[i] += ph[i] * residual / s;
+		}
+		for (int i = 0; i < N; i++) {
+			double k = ph[i] / s;
+			for (int j = 0; j < N; j++) {
+				p[i * N + j] -= k * ph[j];
+			}
+		}
+	}
+
+	/**
+	 * Moves the accumulated error state into the nominal state.
+	 */
+	private void inject() {
+		position.x += dx[POSITION];
+		position.y += dx[POSITION + 1];
+		position.z += dx[POSITION + 2];
+		velocity.x += dx[VELOCITY];
+		velocity.y += dx[VELOCITY + 1];
+		velocity.z += dx[VELOCITY + 2];
+		delta.set(1, (float) dx[ATTITUDE] / 2, (float) dx[ATTITUDE + 1] / 2, (float) dx[ATTITUDE + 2] / 2);
+		attitude.multiply(delta);
+		attitude.normalize();
+		accelerometerBias.x += dx[ACCELEROMETER_BIAS];
+		accelerometerBias.y += dx[ACCELEROMETER_BIAS + 1];
+		accelerometerBias.z += dx[ACCELEROMETER_BIAS + 2];
+		gyroBias.x += dx[GYRO_BIAS];
+		gyroBias.y += dx[GYRO_BIAS + 1];
+		gyroBias.z += dx[GYRO_BIAS + 2];
+		Arrays.fill(dx, 0);
+	}
+
+	/**
+	 * Corrects the attitude with a heading, in degrees, with the variance in
+	 * radians².
+	 */
+	private void updateHeading(float heading, double variance) {
+		attitude.getEulerAngles(angles);
+		double innovation = (Math.PI / 2 - heading * DEG_TO_RAD) - angles.z;
+		innovation = Math.IEEEremainder(innovation, 2 * Math.PI);
+		// The yaw error caused by a body frame attitude error
+		rotation.setRotation(attitude);
+		Arrays.fill(h, 0);
+		h[ATTITUDE] = rotation.m20;
+		h[ATTITUDE + 1] = rotation.m21;
+		h[ATTITUDE + 2] = rotation.m22;
+		update(innovation, variance);
+		inject();
+	}
+
+	/**
+	 * Sets the heading directly, keeping roll and pitch, and restarts the
+	 * attitude uncertainty.
+	 */
+	private void alignHeading(float heading, double variance) {
+		attitude.getEulerAngles(angles);
+		attitude.setEulerAngles(angles.x, angles.y, (float) (Math.PI / 2 - heading * DEG_TO_RAD));
+		for (int i = 0; i < 3; i++) {
+			clear(ATTITUDE + i);
+			p[(ATTITUDE + i) * N + ATTITUDE + i] = i < 2 ? INITIAL_TILT_VARIANCE : variance;
+		}
+		headingKnown = true;
+	}
+
+	/**
+	 * Clears the correlations of an element of the state.
+	 */
+	private void clear(int index) {
+		for (int i = 0; i < N; i++) {
+			p[index * N + i] = 0;
+			p[i * N + index] = 0;
+		}
+	}
+
+	/**
+	 * c = a * b.
+	 */
+	private static void multiply(double[] a, double[] b, double[] c) {
+		for (int i = 0; i < N; i++) {
+			for (int j = 0; j < N; j++) {
+				double sum = 0;
+				for (int k = 0; k < N; k++) {
+					sum += a[i * N + k] * b[k * N + j];
+				}
+				c[i * N + j] = sum;
+			}
+		}
+	}
+
+	/**
+	 * c = a * bᵀ, symmetrized, as the result is a covariance.
+	 */
+	private static void multiplyTransposed(double[] a, double[] b, double[] c) {
+		for (int i = 0; i < N; i++) {
+			for (int j = 0; j <= i; j++) {
+				double sum = 0;
+				for (int k = 0; k < N; k++) {
+					sum += a[i * N + k] * b[j * N + k];
+				}
+				c[i * N + j] = sum;
+				c[j * N + i] = sum;
+			}
+		}
+	}
+
+	private static double square(double x) {
+		return x * x;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.navigation;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.serial.gps.Location;
+
+/**
+ * A local east-north-up frame, in meters, with its origin at a geographic
+ * location. Uses a flat earth approximation, which is accurate to well
+ * below GPS precision within a few kilometers of the origin.
+ * 
+ * @author Marcus Hirt
+ */
+public final class LocalFrame {
+	/**
+	 * The mean radius of the earth, in meters.
+	 */
+	public static final double EARTH_RADIUS = 6371008.8;
+
+	private static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+
+	private final double latitude;
+	private final double longitude;
+	private final double altitude;
+	private final double metersPerDegreeLongitude;
+
+	/**
+	 * @param latitude
+	 *            the latitude of the origin, in decimal degrees.
+	 * @param longitude
+	 *            the longitude of the origin, in decimal degrees.
+	 * @param altitude
+	 *            the altitude of the origin, in meters.
+	 */
+	public LocalFrame(double latitude, double longitude, double altitude) {
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.altitude = altitude;
+		this.metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+	}
+
+	/**
+	 * Converts a geographic position to the local frame.
+	 * 
+	 * @return dst, with x east, y north and z up, in meters.
+	 */
+	public Float3D toLocal(double latitude, double longitude, double altitude, Float3D dst) {
+		double deltaLongitude = longitude - this.longitude;
+		// Across the date line
+		if (deltaLongitude > 180) {
+			deltaLongitude -= 360;
+		} else if (deltaLongitude < -180) {
+			deltaLongitude += 360;
+		}
+		dst.set((float) (deltaLongitude * metersPerDegreeLongitude),
+				(float) ((latitude - this.latitude) * METERS_PER_DEGREE), (float) (altitude - this.altitude));
+		return dst;
+	}
+
+	/**
+	 * Converts a position in the local frame to a geographic location. Note
+	 * that {@link Location} keeps single precision degrees, good to about a
+	 * decimeter.
+	 */
+	public Location toLocation(Float3D local) {
+		return new Location((float) (latitude + local.y / METERS_PER_DEGREE),
+				(float) (longitude + local.x / metersPerDegreeLongitude));
+	}
+
+	/**
+	 * @return the altitude of a position in the local frame, in meters.
+	 */
+	public double toAltitude(Float3D local) {
+		return altitude + local.z;
+	}
+
+	public double getLatitude() {
+		return latitude;
+	}
+
+	public double getLongitude() {
+		return longitude;
+	}
+
+	public double getAltitude() {
+		return altitude;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Local frame at %.6f, %.6f, %.1f m", latitude, longitude, altitude);
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.sampling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * A fixed size ring buffer of timestamped {@link Float3D} samples, for one
+ * producer and any number of consumers. The samples are stored as primitives,
+ * so neither publishing nor reading allocates, and nobody ever blocks: a slow
+ * consumer does not hold back the producer, it just loses the samples that
+ * have been overwritten (see {@link Reader#getLost()}).
+ * <p>
+ * Each slot is guarded by its own sequence number, written before and after
+ * the sample (a sequence lock). A consumer accepts a slot only if the sequence
+ * is the one it expects, and unchanged after having read the values.
+ * 
+ * @author Marcus Hirt
+ */
+public final class Float3DRingBuffer {
+	/**
+	 * Returned by the read methods if there is no sample available.
+	 */
+	public static final long NO_SAMPLE = Long.MIN_VALUE;
+
+	// Slot layout: sequence, timestamp, x and y bits, z bits
+	private static final int SLOT_SIZE = 4;
+	private static final long WRITING = -1;
+
+	private final int capacity;
+	private final int mask;
+	private final AtomicLongArray slots;
+	// The sequence of the next sample to be published
+	private final AtomicLong cursor = new AtomicLong();
+
+	/**
+	 * Creates a ring buffer.
+	 * 
+	 * @param capacity
+	 *            the number of samples kept. Rounded up to the nearest power
+	 *            of two.
+	 */
+	public Float3DRingBuffer(int capacity) {
+		if (capacity <= 0 || capacity > 1 << 28) {
+			throw new IllegalArgumentException("Capacity must be in [1, 2^28]");
+		}
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.capacity = size;
+		this.mask = this.capacity - 1;
+		this.slots = new AtomicLongArray(this.capacity * SLOT_SIZE);
+		for (int i = 0; i < this.capacity; i++) {
+			slots.set(i * SLOT_SIZE, WRITING);
+		}
+	}
+
+	/**
+	 * @return the number of samples kept.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Publishes a sample. Must only be called by the one producer thread.
+	 * 
+	 * @param timestamp
+	 *            the time of the sample, as {@link System#nanoTime()}.
+	 * @return the sequence number of the sample.
+	 */
+	public long publish(long timestamp, float x, float y, float z) {
+		long sequence = cursor.get();
+		int index = (int) (sequence & mask) * SLOT_SIZE;
+		slots.lazySet(index, WRITING);
+		slots.lazySet(index + 1, timestamp);
+		slots.lazySet(index + 2, pack(x, y));
+		slots.lazySet(index + 3, Float.floatToRawIntBits(z) & 0xFFFFFFFFL);
+		slots.lazySet(index, sequence);
+		cursor.lazySet(sequence + 1);
+		return sequence;
+	}
+
+	/**
+	 * @return the sequence number of the most recently published sample, or
+	 *         -1 if nothing has been published yet.
+	 */
+	public long getLastSequence() {
+		return cursor.get() - 1;
+	}
+
+	/**
+	 * Reads the most recently published sample.
+	 * 
+	 * @param dst
+	 *            the vector to read the sample into.
+	 * @return the timestamp of the sample, or {@link #NO_SAMPLE} if nothing
+	 *         has been published yet.
+	 */
+	public long readLatest(Float3D dst) {
+		while (true) {
+			long sequence = cursor.get() - 1;
+			if (sequence < 0) {
+				return NO_SAMPLE;
+			}
+			long timestamp = read(sequence, dst);
+			if (timestamp != NO_SAMPLE) {
+				return timestamp;
+			}
+			// Overwritten while reading - the producer has moved on, so retry
+		}
+	}
+
+	/**
+	 * Reads a specific sample.
+	 * 
+	 * @param sequence
+	 *            the sequence number of the sample.
+	 * @param dst
+	 *            the vector to read the sample into.
+	 * @return the timestamp of the sample, or {@link #NO_SAMPLE} if the
+	 *         sample is not published yet, or has been overwritten.
+	 */
+	public long read(long sequence, Float3D dst) {
+		int index = (int) (sequence & mask) * SLOT_SIZE;
+		if (slots.get(index) != sequence) {
+			return NO_SAMPLE;
+		}
+		long timestamp = slots.get(index + 1);
+		long xy = slots.get(index + 2);
+		long z = slots.get(index + 3);
+		if (slots.get(index) != sequence) {
+			return NO_SAMPLE;
+		}
+		dst.x = Float.intBitsToFloat((int) (xy >>> 32));
+		dst.y = Float.intBitsToFloat((int) xy);
+		dst.z = Float.intBitsToFloat((int) z);
+		return timestamp;
+	}
+
+	/**
+	 * Creates a new consumer, starting at the next sample to be published.
+	 * 
+	 * @return the new consumer.
+	 */
+	public Reader newReader() {
+		return new Reader(cursor.get());
+	}
+
+	private static long pack(float x, float y) {
+		return ((long) Float.floatToRawIntBits(x) << 32) | (Float.floatToRawIntBits(y) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Receives samples drained from the buffer.
+	 */
+	public interface SampleHandler {
+		void onSample(long sequence, long timestamp, float x, float y, float z);
+	}
+
+	/**
+	 * A consumer of the buffer, keeping track of which samples it has seen.
+	 * Each reader must only be used by one thread.
+	 */
+	public final class Reader {
+		private final Float3D sample = new Float3D();
+		private long next;
+		private long lost;
+
+		private Reader(long next) {
+			this.next = next;
+		}
+
+		/**
+		 * @return the number of samples available to this reader. Some of
+		 *         them may be overwritten before they are drained.
+		 */
+		public int available() {
+			return (int) Math.min(cursor.get() - next, capacity);
+		}
+
+		/**
+		 * Hands the samples published since the last drain to the handler,
+		 * oldest first.
+		 * 
+		 * @param handler
+		 *            the handler to receive the samples.
+		 * @param max
+		 *            the max number of samples to drain.
+		 * @return the number of samples drained.
+		 */
+		public int drain(SampleHandler handler, int max) {
+			int count = 0;
+			while (count < max) {
+				long timestamp = next();
+				if (timestamp == NO_SAMPLE) {
+					break;
+				}
+				handler.onSample(next - 1, timestamp, sample.x, sample.y, sample.z);
+				count++;
+			}
+			return count;
+		}
+
+		/**
+		 * Copies the samples published since the last drain into arrays,
+		 * oldest first.
+		 * 
+		 * @param timestamps
+		 *            the array to receive the timestamps.
+		 * @param xyz
+		 *            the array to receive the values, three per sample.
+		 * @param offset
+		 *            the sample offset to start writing at.
+		 * @param max
+		 *            the max number of samples to drain.
+		 * @return the number of samples drained.
+		 */
+		public int drain(long[] timestamps, float[] xyz, int offset, int max) {
+			int count = 0;
+			while (count < max) {
+				long timestamp = next();
+				if (timestamp == NO_SAMPLE) {
+					break;
+				}
+				int i = offset + count;
+				timestamps[i] = timestamp;
+				xyz[3 * i] = sample.x;
+				xyz[3 * i + 1] = sample.y;
+				xyz[3 * i + 2] = sample.z;
+				count++;
+			}
+			return count;
+		}
+
+		/**
+		 * @return the number of samples which were overwritten before this
+		 *         reader got to them.
+		 */
+		public long getLost() {
+			return lost;
+		}
+
+		private long next() {
+			while (true) {
+				long published = cursor.get();
+				if (next >= published) {
+					return NO_SAMPLE;
+				}
+				if (published - next > capacity) {
+					lost += published - next - capacity;
+					next = published - capacity;
+				}
+				long timestamp = read(next, sample);
+				if (timestamp != NO_SAMPLE) {
+					next++;
+					return timestamp;
+				}
+				// Overwritten while reading, skip ahead and retry
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.sampling;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Helpers for working with the age of timestamped samples, for example to
+ * compensate for the latency between a sample being captured and it being
+ * used in sensor fusion. All times are {@link System#nanoTime()} values.
+ * 
+ * @author Marcus Hirt
+ */
+public final class SampleAge {
+	private SampleAge() {
+	}
+
+	/**
+	 * @return the age of the sample now, in ns, or {@link Long#MAX_VALUE} if
+	 *         there is no sample.
+	 */
+	public static long getAgeNanos(long sampleTime) {
+		return getAgeNanos(sampleTime, System.nanoTime());
+	}
+
+	/**
+	 * @return the age of the sample at the specified time, in ns, or
+	 *         {@link Long#MAX_VALUE} if there is no sample.
+	 */
+	public static long getAgeNanos(long sampleTime, long now) {
+		if (sampleTime == TimestampedReadableDevice.NO_SAMPLE_TIME) {
+			return Long.MAX_VALUE;
+		}
+		return now - sampleTime;
+	}
+
+	/**
+	 * @return the age of the sample at the specified time, in seconds.
+	 */
+	public static float getAgeSeconds(long sampleTime, long now) {
+		return getAgeNanos(sampleTime, now) / 1e9f;
+	}
+
+	/**
+	 * @return true if there is no sample, or if it is older than the max age.
+	 */
+	public static boolean isStale(long sampleTime, long maxAgeNanos) {
+		return getAgeNanos(sampleTime) > maxAgeNanos;
+	}
+
+	/**
+	 * Extrapolates a sample to the specified time, assuming a constant rate
+	 * of change. Use it to bring a delayed sample up to date, for example
+	 * moving an angle forward using the angular velocity from a gyro.
+	 * 
+	 * @param value
+	 *            the sample.
+	 * @param sampleTime
+	 *            the time the sample was captured.
+	 * @param ratePerSecond
+	 *            the rate of change of the sample, per second.
+	 * @param targetTime
+	 *            the time to extrapolate to.
+	 * @param dst
+	 *            the vector to store the extrapolated value in. May be the
+	 *            same as value.
+	 * @return dst, for chaining.
+	 */
+	public static Float3D extrapolate(Float3D value, long sampleTime, Float3D ratePerSecond, long targetTime, Float3D dst) {
+		float dt = (targetTime - sampleTime) / 1e9f;
+		dst.set(value.x + ratePerSecond.x * dt, value.y + ratePerSecond.y * dt, value.z + ratePerSecond.z * dt);
+		return dst;
+	}
+
+	/**
+	 * Linearly interpolates between two samples, for example to align
+	 * samples from devices read at different times.
+	 * 
+	 * @return dst, for chaining.
+	 */
+	public static Float3D interpolate(Float3D a, long timeA, Float3D b, long timeB, long targetTime, Float3D dst) {
+		float t = timeB == timeA ? 1 : (float) (targetTime - timeA) / (timeB - timeA);
+		dst.set(a.x + (b.x - a.x) * t, a.y + (b.y - a.y) * t, a.z + (b.z - a.z) * t);
+		return dst;
+	}
+}
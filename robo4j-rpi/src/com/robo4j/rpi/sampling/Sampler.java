@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.sampling;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.ReadableDevice;
+import com.robo4j.rpi.i2c.ReadableFloat3DDevice;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Reads a device at a fixed rate on a thread of its own, and publishes the
+ * timestamped samples to a {@link Float3DRingBuffer}.
+ * <p>
+ * Deadlines are absolute, calculated from the start time and the rate, so
+ * the time spent reading does not make the rate drift the way sleeping a
+ * fixed time between reads does. If a read takes longer than a period, the
+ * missed deadlines are skipped and counted as overruns, rather than
+ * catching up with a burst of reads.
+ * <p>
+ * Samples from a {@link TimestampedReadableDevice} are stamped with the time
+ * the device reports them captured, other samples with the midpoint of the
+ * read. Devices implementing {@link ReadableFloat3DDevice} are read without
+ * allocating.
+ * 
+ * @author Marcus Hirt
+ */
+public final class Sampler {
+	private final String name;
+	private final ReadableDevice<Float3D> device;
+	private final double rate;
+	private final Float3DRingBuffer buffer;
+	// Only used by the sampling thread
+	private final Float3D value = new Float3D();
+	private final Object statsLock = new Object();
+
+	private volatile boolean running;
+	private Thread thread;
+
+	// Guarded by statsLock
+	private long startTime;
+	private long lastTime;
+	private long samples;
+	private long overruns;
+	private long errors;
+	private long minJitter = Long.MAX_VALUE;
+	private long maxJitter;
+	private double jitterSum;
+	private double jitterSquareSum;
+	private long readSum;
+	private long maxRead;
+
+	/**
+	 * Creates a sampler.
+	 * 
+	 * @param name
+	 *            the name of the sampler, also used for the thread.
+	 * @param device
+	 *            the device to read.
+	 * @param rate
+	 *            the rate to read the device at, in Hz.
+	 * @param capacity
+	 *            the number of samples to keep in the buffer.
+	 */
+	public Sampler(String name, ReadableDevice<Float3D> device, double rate, int capacity) {
+		if (rate <= 0) {
+			throw new IllegalArgumentException("Rate must be positive");
+		}
+		this.name = name;
+		this.device = device;
+		this.rate = rate;
+		this.buffer = new Float3DRingBuffer(capacity);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ReadableDevice<Float3D> getDevice() {
+		return device;
+	}
+
+	/**
+	 * @return the requested rate, in Hz.
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * @return the buffer the samples are published to.
+	 */
+	public Float3DRingBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Starts sampling.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				sample();
+			}
+		}, "Sampler-" + name);
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Stops sampling, and waits for the current read to finish.
+	 */
+	public synchronized void stop() throws InterruptedException {
+		if (!running) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(thread);
+		thread.join();
+		thread = null;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return a snapshot of the timing statistics.
+	 */
+	public SamplingStatistics getStatistics() {
+		synchronized (statsLock) {
+			return new SamplingStatistics(samples, overruns, errors, lastTime - startTime, minJitter, maxJitter,
+					jitterSum, jitterSquareSum, readSum, maxRead);
+		}
+	}
+
+	/**
+	 * Resets the timing statistics.
+	 */
+	public void resetStatistics() {
+		synchronized (statsLock) {
+			startTime = lastTime = System.nanoTime();
+			samples = overruns = errors = maxJitter = readSum = maxRead = 0;
+			minJitter = Long.MAX_VALUE;
+			jitterSum = jitterSquareSum = 0;
+		}
+	}
+
+	private void sample() {
+		double periodNanos = 1e9 / rate;
+		long start = System.nanoTime();
+		long tick = 0;
+		long deadline = start;
+		resetStatistics();
+		while (running) {
+			long begin = waitUntil(deadline);
+			if (!running) {
+				break;
+			}
+			long jitter = begin - deadline;
+			boolean success = read();
+			long end = System.nanoTime();
+
+			tick++;
+			deadline = start + (long) (tick * periodNanos);
+			long missed = 0;
+			if (end > deadline) {
+				missed = (long) ((end - deadline) / periodNanos) + 1;
+				tick += missed;
+				deadline = start + (long) (tick * periodNanos);
+			}
+			record(success, jitter, end - begin, missed, end);
+		}
+	}
+
+	private boolean read() {
+		try {
+			long before = System.nanoTime();
+			if (device instanceof ReadableFloat3DDevice) {
+				((ReadableFloat3DDevice) device).read(value);
+			} else {
+				value.set(device.read());
+			}
+			long timestamp;
+			if (device instanceof TimestampedReadableDevice) {
+				timestamp = ((TimestampedReadableDevice<Float3D>) device).getLastSampleTime();
+			} else {
+				timestamp = before + (System.nanoTime() - before) / 2;
+			}
+			buffer.publish(timestamp, value.x, value.y, value.z);
+			return true;
+		} catch (IOException e) {
+			boolean first;
+			synchronized (statsLock) {
+				first = errors == 0;
+			}
+			Logger.getLogger(Sampler.class.getName()).log(first ? Level.WARNING : Level.FINE,
+					"Failed to read " + name, e);
+			return false;
+		}
+	}
+
+	private void record(boolean success, long jitter, long readNanos, long missed, long now) {
+		synchronized (statsLock) {
+			if (success) {
+				samples++;
+			} else {
+				errors++;
+			}
+			overruns += missed;
+			minJitter = Math.min(minJitter, jitter);
+			maxJitter = Math.max(maxJitter, jitter);
+			jitterSum += jitter;
+			jitterSquareSum += (double) jitter * jitter;
+			readSum += readNanos;
+			maxRead = Math.max(maxRead, readNanos);
+			lastTime = now;
+		}
+	}
+
+	private long waitUntil(long deadline) {
+		long now = System.nanoTime();
+		while (running && now < deadline) {
+			LockSupport.parkNanos(deadline - now);
+			now = System.nanoTime();
+		}
+		return now;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s @ %.1f Hz: %s", name, rate, getStatistics());
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.sampling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.ReadableDevice;
+
+/**
+ * Samples a set of devices, each at its own fixed rate. For example:
+ * 
+ * <pre>
+ * SamplingEngine engine = new SamplingEngine();
+ * Sampler gyroSampler = engine.add("gyro", gyro, 200, 256);
+ * engine.start();
+ * Float3DRingBuffer.Reader reader = gyroSampler.getBuffer().newReader();
+ * ...
+ * reader.drain(handler, 32);
+ * </pre>
+ * 
+ * @author Marcus Hirt
+ */
+public class SamplingEngine {
+	/**
+	 * The default number of samples kept per device.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final List<Sampler> samplers = new ArrayList<>();
+	private boolean running;
+
+	/**
+	 * Adds a device to sample, keeping {@link #DEFAULT_CAPACITY} samples.
+	 * 
+	 * @see #add(String, ReadableDevice, double, int)
+	 */
+	public synchronized Sampler add(String name, ReadableDevice<Float3D> device, double rate) {
+		return add(name, device, rate, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Adds a device to sample. If the engine is already started, the device
+	 * will start being sampled immediately.
+	 * 
+	 * @param name
+	 *            the name of the device.
+	 * @param device
+	 *            the device to sample.
+	 * @param rate
+	 *            the rate to sample at, in Hz.
+	 * @param capacity
+	 *            the number of samples to keep.
+	 * @return the sampler for the device.
+	 */
+	public synchronized Sampler add(String name, ReadableDevice<Float3D> device, double rate, int capacity) {
+		Sampler sampler = new Sampler(name, device, rate, capacity);
+		samplers.add(sampler);
+		if (running) {
+			sampler.start();
+		}
+		return sampler;
+	}
+
+	/**
+	 * @return the sampler with the specified name, or null if there is none.
+	 */
+	public synchronized Sampler getSampler(String name) {
+		for (Sampler sampler : samplers) {
+			if (sampler.getName().equals(name)) {
+				return sampler;
+			}
+		}
+		return null;
+	}
+
+	public synchronized List<Sampler> getSamplers() {
+		return Collections.unmodifiableList(new ArrayList<>(samplers));
+	}
+
+	public synchronized void start() {
+		running = true;
+		for (Sampler sampler : samplers) {
+			sampler.start();
+		}
+	}
+
+	public synchronized void stop() throws InterruptedException {
+		running = false;
+		for (Sampler sampler : samplers) {
+			sampler.stop();
+		}
+	}
+
+	public synchronized boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder builder = new StringBuilder("Sampling engine:");
+		for (Sampler sampler : samplers) {
+			builder.append("\n  ").append(sampler);
+		}
+		return builder.toString();
+	}
+}
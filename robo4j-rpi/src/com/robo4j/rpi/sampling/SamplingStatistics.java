@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.sampling;
+
+/**
+ * A snapshot of the timing statistics of a {@link Sampler}. Jitter is how
+ * late a read was started compared to its deadline.
+ * 
+ * @author Marcus Hirt
+ */
+public final class SamplingStatistics {
+	private final long samples;
+	private final long overruns;
+	private final long errors;
+	private final long elapsedNanos;
+	private final long minJitterNanos;
+	private final long maxJitterNanos;
+	private final double jitterSum;
+	private final double jitterSquareSum;
+	private final long readNanosSum;
+	private final long maxReadNanos;
+
+	SamplingStatistics(long samples, long overruns, long errors, long elapsedNanos, long minJitterNanos,
+			long maxJitterNanos, double jitterSum, double jitterSquareSum, long readNanosSum, long maxReadNanos) {
+		this.samples = samples;
+		this.overruns = overruns;
+		this.errors = errors;
+		this.elapsedNanos = elapsedNanos;
+		this.minJitterNanos = minJitterNanos;
+		this.maxJitterNanos = maxJitterNanos;
+		this.jitterSum = jitterSum;
+		this.jitterSquareSum = jitterSquareSum;
+		this.readNanosSum = readNanosSum;
+		this.maxReadNanos = maxReadNanos;
+	}
+
+	/**
+	 * @return the number of samples successfully read.
+	 */
+	public long getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return the number of deadlines skipped because a read did not finish
+	 *         before the next deadline.
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * @return the number of reads that failed.
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return the achieved sample rate, in Hz.
+	 */
+	public double getEffectiveRate() {
+		return elapsedNanos > 0 ? samples * 1e9 / elapsedNanos : 0;
+	}
+
+	public long getMinJitterNanos() {
+		return attempts() > 0 ? minJitterNanos : 0;
+	}
+
+	public long getMaxJitterNanos() {
+		return maxJitterNanos;
+	}
+
+	public double getMeanJitterNanos() {
+		long n = attempts();
+		return n > 0 ? jitterSum / n : 0;
+	}
+
+	public double getJitterStdDevNanos() {
+		long n = attempts();
+		if (n < 2) {
+			return 0;
+		}
+		double mean = jitterSum / n;
+		return Math.sqrt(Math.max(0, (jitterSquareSum - n * mean * mean) / (n - 1)));
+	}
+
+	/**
+	 * @return the mean time a read takes, in ns.
+	 */
+	public double getMeanReadNanos() {
+		long n = attempts();
+		return n > 0 ? (double) readNanosSum / n : 0;
+	}
+
+	public long getMaxReadNanos() {
+		return maxReadNanos;
+	}
+
+	private long attempts() {
+		return samples + errors;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"samples: %d (%.1f Hz), overruns: %d, errors: %d, jitter: mean %.1f µs, stddev %.1f µs, min %.1f µs, max %.1f µs, read: mean %.1f µs, max %.1f µs",
+				samples, getEffectiveRate(), overruns, errors, getMeanJitterNanos() / 1000, getJitterStdDevNanos() / 1000,
+				getMinJitterNanos() / 1000.0, maxJitterNanos / 1000.0, getMeanReadNanos() / 1000, maxReadNanos / 1000.0);
+	}
+}
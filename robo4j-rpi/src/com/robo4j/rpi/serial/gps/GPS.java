@@ -24,6 +24,7 @@ import java.util.logging.Level;
 
 import com.pi4j.io.serial.Serial;
 import com.pi4j.io.serial.SerialFactory;
+import com.robo4j.rpi.jfr.GPSSentenceEvent;
 import com.sun.istack.internal.logging.Logger;
 
 /**
@@ -164,11 +165,22 @@ public class GPS {
 
 		private void consume(String dataLine) {
 			if (dataLine.startsWith("$")) {
-				if (dataLine.startsWith(POSITION_TAG) && hasValidCheckSum(dataLine)) {
+				GPSSentenceEvent event = new GPSSentenceEvent();
+				event.begin();
+				boolean dispatched = false;
+				if (dataLine.startsWith(POSITION_TAG) && (dispatched = hasValidCheckSum(dataLine))) {
 					notifyListeners(new PositionEvent(GPS.this, dataLine));
-				} else if (dataLine.startsWith(VELOCITY_TAG) && hasValidCheckSum(dataLine)) {
+				} else if (dataLine.startsWith(VELOCITY_TAG) && (dispatched = hasValidCheckSum(dataLine))) {
 					notifyListeners(new VelocityEvent(GPS.this, dataLine));
 				}
+				event.end();
+				if (event.shouldCommit()) {
+					int tagEnd = dataLine.indexOf(',');
+					event.sentence = tagEnd > 0 ? dataLine.substring(0, tagEnd) : dataLine;
+					event.dispatched = dispatched;
+					event.listeners = dispatched ? listeners.size() : 0;
+					event.commit();
+				}
 			}
 		}
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.stats;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * Exponentially weighted mean and variance per axis of a {@link Float3D}
+ * stream, see {@link DecayingStats}. Not thread safe.
+ * 
+ * @author Marcus Hirt
+ */
+public class DecayingFloat3DStats {
+	private final float alpha;
+	private float meanX, meanY, meanZ;
+	private float varianceX, varianceY, varianceZ;
+	private long count;
+
+	/**
+	 * @param alpha
+	 *            the weight of a new value, between 0 and 1.
+	 */
+	public DecayingFloat3DStats(float alpha) {
+		if (alpha <= 0 || alpha > 1) {
+			throw new IllegalArgumentException("Alpha must be in (0, 1]: " + alpha);
+		}
+		this.alpha = alpha;
+	}
+
+	public void add(float x, float y, float z) {
+		if (count++ == 0) {
+			meanX = x;
+			meanY = y;
+			meanZ = z;
+			varianceX = varianceY = varianceZ = 0;
+			return;
+		}
+		float dx = x - meanX;
+		float dy = y - meanY;
+		float dz = z - meanZ;
+		meanX += alpha * dx;
+		meanY += alpha * dy;
+		meanZ += alpha * dz;
+		varianceX = (1 - alpha) * (varianceX + alpha * dx * dx);
+		varianceY = (1 - alpha) * (varianceY + alpha * dy * dy);
+		varianceZ = (1 - alpha) * (varianceZ + alpha * dz * dz);
+	}
+
+	public void add(Float3D value) {
+		add(value.x, value.y, value.z);
+	}
+
+	public void reset() {
+		count = 0;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Copies the weighted mean into dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D getMean(Float3D dst) {
+		dst.set(meanX, meanY, meanZ);
+		return dst;
+	}
+
+	/**
+	 * Copies the weighted variance of each axis into dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D getVariance(Float3D dst) {
+		dst.set(varianceX, varianceY, varianceZ);
+		return dst;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Avg: %s, Var: %s (alpha %s)", getMean(new Float3D()), getVariance(new Float3D()), alpha);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.stats;
+
+/**
+ * Exponentially weighted mean and variance of a scalar stream, tracking
+ * recent behavior rather than the whole history. Each new value has the
+ * weight alpha, and the weight of older values decays by (1 - alpha) per
+ * value. Not thread safe.
+ * 
+ * @author Marcus Hirt
+ */
+public class DecayingStats {
+	private final double alpha;
+	private double mean;
+	private double variance;
+	private long count;
+
+	/**
+	 * @param alpha
+	 *            the weight of a new value, between 0 and 1.
+	 */
+	public DecayingStats(double alpha) {
+		if (alpha <= 0 || alpha > 1) {
+			throw new IllegalArgumentException("Alpha must be in (0, 1]: " + alpha);
+		}
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Creates statistics where the weight of a value halves after the
+	 * specified number of newer values.
+	 */
+	public static DecayingStats forHalfLife(double values) {
+		return new DecayingStats(alphaForHalfLife(values));
+	}
+
+	/**
+	 * @return the alpha making the weight of a value halve after the
+	 *         specified number of newer values.
+	 */
+	public static double alphaForHalfLife(double values) {
+		return 1 - Math.pow(0.5, 1 / values);
+	}
+
+	public void add(double value) {
+		if (count++ == 0) {
+			mean = value;
+			variance = 0;
+			return;
+		}
+		double delta = value - mean;
+		double increment = alpha * delta;
+		mean += increment;
+		variance = (1 - alpha) * (variance + delta * increment);
+	}
+
+	public void reset() {
+		count = 0;
+		mean = 0;
+		variance = 0;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the weighted mean, or NaN if there are no values.
+	 */
+	public double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+
+	/**
+	 * @return the weighted variance, or NaN if there are no values.
+	 */
+	public double getVariance() {
+		return count > 0 ? variance : Double.NaN;
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Avg: %2.3f, StdDev: %2.3f (alpha %s)", getMean(), getStandardDeviation(), alpha);
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.stats;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Matrix3;
+
+/**
+ * One-pass statistics of a {@link Float3D} stream: count, mean, min and max
+ * per axis, and the covariance between the axes, in constant memory. Uses
+ * Welford's algorithm, generalized to co-moments. Not thread safe; see
+ * {@link StripedFloat3DStats} for concurrent use.
+ * 
+ * @author Marcus Hirt
+ */
+public class Float3DStats {
+	private long count;
+	private double meanX, meanY, meanZ;
+	// Sums of squared deviations, and of products of deviations
+	private double mXX, mYY, mZZ, mXY, mXZ, mYZ;
+	private float minX, minY, minZ;
+	private float maxX, maxY, maxZ;
+
+	public Float3DStats() {
+		reset();
+	}
+
+	public void add(float x, float y, float z) {
+		count++;
+		double dx = x - meanX;
+		double dy = y - meanY;
+		double dz = z - meanZ;
+		meanX += dx / count;
+		meanY += dy / count;
+		meanZ += dz / count;
+		double ex = x - meanX;
+		double ey = y - meanY;
+		double ez = z - meanZ;
+		mXX += dx * ex;
+		mYY += dy * ey;
+		mZZ += dz * ez;
+		mXY += dx * ey;
+		mXZ += dx * ez;
+		mYZ += dy * ez;
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		minZ = Math.min(minZ, z);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+		maxZ = Math.max(maxZ, z);
+	}
+
+	public void add(Float3D value) {
+		add(value.x, value.y, value.z);
+	}
+
+	/**
+	 * Adds the values of other to these statistics, as if they had all been
+	 * added here.
+	 */
+	public void merge(Float3DStats other) {
+		if (other.count == 0) {
+			return;
+		}
+		long total = count + other.count;
+		double weight = (double) count * other.count / total;
+		double dx = other.meanX - meanX;
+		double dy = other.meanY - meanY;
+		double dz = other.meanZ - meanZ;
+		mXX += other.mXX + dx * dx * weight;
+		mYY += other.mYY + dy * dy * weight;
+		mZZ += other.mZZ + dz * dz * weight;
+		mXY += other.mXY + dx * dy * weight;
+		mXZ += other.mXZ + dx * dz * weight;
+		mYZ += other.mYZ + dy * dz * weight;
+		meanX += dx * other.count / total;
+		meanY += dy * other.count / total;
+		meanZ += dz * other.count / total;
+		count = total;
+		minX = Math.min(minX, other.minX);
+		minY = Math.min(minY, other.minY);
+		minZ = Math.min(minZ, other.minZ);
+		maxX = Math.max(maxX, other.maxX);
+		maxY = Math.max(maxY, other.maxY);
+		maxZ = Math.max(maxZ, other.maxZ);
+	}
+
+	public void reset() {
+		count = 0;
+		meanX = meanY = meanZ = 0;
+		mXX = mYY = mZZ = mXY = mXZ = mYZ = 0;
+		minX = minY = minZ = Float.POSITIVE_INFINITY;
+		maxX = maxY = maxZ = Float.NEGATIVE_INFINITY;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Copies the mean into dst.
+	 * 
+	 * @return dst, set to NaN if there are no values.
+	 */
+	public Float3D getMean(Float3D dst) {
+		if (count == 0) {
+			dst.set(Float.NaN, Float.NaN, Float.NaN);
+			return dst;
+		}
+		dst.set((float) meanX, (float) meanY, (float) meanZ);
+		return dst;
+	}
+
+	/**
+	 * Copies the sample variance of each axis into dst.
+	 * 
+	 * @return dst, set to NaN if there are less than two values.
+	 */
+	public Float3D getVariance(Float3D dst) {
+		if (count < 2) {
+			dst.set(Float.NaN, Float.NaN, Float.NaN);
+			return dst;
+		}
+		double n = count - 1;
+		dst.set((float) (mXX / n), (float) (mYY / n), (float) (mZZ / n));
+		return dst;
+	}
+
+	/**
+	 * Copies the sample standard deviation of each axis into dst.
+	 * 
+	 * @return dst, set to NaN if there are less than two values.
+	 */
+	public Float3D getStandardDeviation(Float3D dst) {
+		if (count < 2) {
+			dst.set(Float.NaN, Float.NaN, Float.NaN);
+			return dst;
+		}
+		double n = count - 1;
+		dst.set((float) Math.sqrt(mXX / n), (float) Math.sqrt(mYY / n), (float) Math.sqrt(mZZ / n));
+		return dst;
+	}
+
+	/**
+	 * Copies the sample covariance matrix into dst. The diagonal holds the
+	 * variances of the axes.
+	 * 
+	 * @return dst, set to NaN if there are less than two values.
+	 */
+	public Matrix3 getCovariance(Matrix3 dst) {
+		if (count < 2) {
+			float nan = Float.NaN;
+			dst.set(nan, nan, nan, nan, nan, nan, nan, nan, nan);
+			return dst;
+		}
+		float n = count - 1;
+		float xy = (float) mXY / n;
+		float xz = (float) mXZ / n;
+		float yz = (float) mYZ / n;
+		dst.set((float) mXX / n, xy, xz, xy, (float) mYY / n, yz, xz, yz, (float) mZZ / n);
+		return dst;
+	}
+
+	/**
+	 * Copies the smallest value of each axis into dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D getMin(Float3D dst) {
+		dst.set(minX, minY, minZ);
+		return dst;
+	}
+
+	/**
+	 * Copies the largest value of each axis into dst.
+	 * 
+	 * @return dst.
+	 */
+	public Float3D getMax(Float3D dst) {
+		dst.set(maxX, maxY, maxZ);
+		return dst;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Count: %d, Min: %s, Max: %s, Avg: %s, StdDev: %s", count, getMin(new Float3D()),
+				getMax(new Float3D()), getMean(new Float3D()), getStandardDeviation(new Float3D()));
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.stats;
+
+import java.util.Arrays;
+
+/**
+ * Streaming estimate of a quantile, such as the median or the 99th
+ * percentile, using the P² algorithm by Jain and Chlamtac. Keeps five
+ * markers instead of the values, so it uses constant memory and time per
+ * value. The estimate is exact for up to five values, and generally very
+ * close for smooth distributions. Not thread safe.
+ * 
+ * @author Marcus Hirt
+ */
+public class P2Quantile {
+	private final double quantile;
+	// Marker heights, actual positions and desired positions
+	private final double[] heights = new double[5];
+	private final double[] positions = new double[5];
+	private final double[] desired = new double[5];
+	private final double[] increments = new double[5];
+	private long count;
+
+	/**
+	 * @param quantile
+	 *            the quantile to estimate, between 0 and 1, for instance 0.5
+	 *            for the median.
+	 */
+	public P2Quantile(double quantile) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+		}
+		this.quantile = quantile;
+		increments[0] = 0;
+		increments[1] = quantile / 2;
+		increments[2] = quantile;
+		increments[3] = (1 + quantile) / 2;
+		increments[4] = 1;
+		reset();
+	}
+
+	public void add(double value) {
+		if (count < 5) {
+			heights[(int) count++] = value;
+			if (count == 5) {
+				Arrays.sort(heights);
+			}
+			return;
+		}
+		count++;
+		int cell;
+		if (value < heights[0]) {
+			heights[0] = value;
+			cell = 0;
+		} else if (value >= heights[4]) {
+			heights[4] = value;
+			cell = 3;
+		} else {
+			cell = 0;
+			while (value >= heights[cell + 1]) {
+				cell++;
+			}
+		}
+		for (int i = cell + 1; i < 5; i++) {
+			positions[i]++;
+		}
+		for (int i = 0; i < 5; i++) {
+			desired[i] += increments[i];
+		}
+		for (int i = 1; i < 4; i++) {
+			double offset = desired[i] - positions[i];
+			if ((offset >= 1 && positions[i + 1] - positions[i] > 1)
+					|| (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+				int direction = offset >= 0 ? 1 : -1;
+				double height = parabolic(i, direction);
+				if (heights[i - 1] < height && height < heights[i + 1]) {
+					heights[i] = height;
+				} else {
+					heights[i] = linear(i, direction);
+				}
+				positions[i] += direction;
+			}
+		}
+	}
+
+	/**
+	 * @return the estimated quantile, or NaN if there are no values.
+	 */
+	public double getQuantile() {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (count <= 5) {
+			double[] sorted = Arrays.copyOf(heights, (int) count);
+			Arrays.sort(sorted);
+			return sorted[(int) Math.round(quantile * (count - 1))];
+		}
+		return heights[2];
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void reset() {
+		count = 0;
+		for (int i = 0; i < 5; i++) {
+			positions[i] = i;
+			desired[i] = 4 * increments[i];
+		}
+	}
+
+	private double parabolic(int i, int direction) {
+		double n = positions[i];
+		double nBelow = positions[i - 1];
+		double nAbove = positions[i + 1];
+		return heights[i] + direction / (nAbove - nBelow)
+				* ((n - nBelow + direction) * (heights[i + 1] - heights[i]) / (nAbove - n)
+						+ (nAbove - n - direction) * (heights[i] - heights[i - 1]) / (n - nBelow));
+	}
+
+	private double linear(int i, int direction) {
+		return heights[i] + direction * (heights[i + direction] - heights[i]) / (positions[i + direction] - positions[i]);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("P%s: %2.3f", quantile * 100, getQuantile());
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.stats;
+
+/**
+ * One-pass statistics of a scalar stream: count, mean, variance, min and
+ * max, in constant memory. Uses Welford's algorithm, which unlike summing
+ * squares does not lose precision when the mean is large compared to the
+ * spread. Not thread safe; see {@link StripedFloat3DStats} for concurrent
+ * use.
+ * 
+ * @author Marcus Hirt
+ */
+public class RunningStats {
+	private long count;
+	private double mean;
+	private double m2;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	public void add(double value) {
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Adds the values of other to these statistics, as if they had all been
+	 * added here.
+	 */
+	public void merge(RunningStats other) {
+		if (other.count == 0) {
+			return;
+		}
+		long total = count + other.count;
+		double delta = other.mean - mean;
+		mean += delta * other.count / total;
+		m2 += other.m2 + delta * delta * count * other.count / total;
+		count = total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	public void reset() {
+		count = 0;
+		mean = 0;
+		m2 = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the mean, or NaN if there are no values.
+	 */
+	public double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+
+	/**
+	 * @return the sample variance, or NaN if there are less than two values.
+	 */
+	public double getVariance() {
+		return count > 1 ? m2 / (count - 1) : Double.NaN;
+	}
+
+	/**
+	 * @return the sample standard deviation, or NaN if there are less than
+	 *         two values.
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return the smallest value, or positive infinity if there are none.
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the largest value, or negative infinity if there are none.
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Count: %d, Min: %2.3f, Max: %2.3f, Avg: %2.3f, StdDev: %2.3f", count, min, max,
+				getMean(), getStandardDeviation());
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.stats;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * Thread safe {@link Float3DStats}, for many threads adding values at high
+ * rates. Values are added to one of a number of stripes, picked by thread,
+ * each with its own lock, so that threads rarely contend. A snapshot merges
+ * the stripes.
+ * 
+ * @author Marcus Hirt
+ */
+public class StripedFloat3DStats {
+	private final Float3DStats[] stripes;
+	private final int mask;
+
+	/**
+	 * Creates striped statistics with two stripes per processor.
+	 */
+	public StripedFloat3DStats() {
+		this(2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param stripes
+	 *            the number of stripes, rounded up to a power of two.
+	 */
+	public StripedFloat3DStats(int stripes) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.stripes = new Float3DStats[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new Float3DStats();
+		}
+		this.mask = size - 1;
+	}
+
+	public void add(float x, float y, float z) {
+		Float3DStats stripe = getStripe();
+		synchronized (stripe) {
+			stripe.add(x, y, z);
+		}
+	}
+
+	public void add(Float3D value) {
+		add(value.x, value.y, value.z);
+	}
+
+	/**
+	 * Merges the stripes into dst, replacing its previous contents.
+	 * 
+	 * @return dst.
+	 */
+	public Float3DStats snapshot(Float3DStats dst) {
+		dst.reset();
+		for (Float3DStats stripe : stripes) {
+			synchronized (stripe) {
+				dst.merge(stripe);
+			}
+		}
+		return dst;
+	}
+
+	public void reset() {
+		for (Float3DStats stripe : stripes) {
+			synchronized (stripe) {
+				stripe.reset();
+			}
+		}
+	}
+
+	private Float3DStats getStripe() {
+		// Spread consecutive thread ids over the stripes
+		long id = Thread.currentThread().getId();
+		int hash = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+		return stripes[hash & mask];
+	}
+
+	@Override
+	public String toString() {
+		return snapshot(new Float3DStats()).toString();
+	}
+}
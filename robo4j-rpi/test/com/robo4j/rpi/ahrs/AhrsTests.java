@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.ahrs;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Quaternion;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class AhrsTests {
+	private static final long PERIOD = 10000000;
+
+	@Test
+	public void testGyroIntegration() {
+		// With a fixed time step every sample counts, with a variable one the
+		// first only provides the start time
+		testGyroIntegration(new MadgwickAhrs(MadgwickAhrs.DEFAULT_BETA, 100), 100);
+		testGyroIntegration(new MahonyAhrs(), 101);
+	}
+
+	@Test
+	public void testConvergesToTilt() {
+		testConvergesToTilt(new MadgwickAhrs(0.5f, 0));
+		testConvergesToTilt(new MahonyAhrs(2, 0, 100));
+	}
+
+	@Test
+	public void testMagnetometerHeading() {
+		testMagnetometerHeading(new MadgwickAhrs(0.5f, 0));
+		testMagnetometerHeading(new MahonyAhrs(2, 0, 0));
+	}
+
+	@Test
+	public void testCompassHeading() {
+		// Magnetic north along x, dipping 60 degrees down
+		Float3D north = new Float3D(0.25f, 0, -0.43f);
+		Float3D gravity = new Float3D(0, 0, 9.81f);
+		Quaternion orientation = new Quaternion();
+		Quaternion inverse = new Quaternion();
+		Float3D acceleration = new Float3D();
+		Float3D field = new Float3D();
+		TiltCompensatedCompass compass = new TiltCompensatedCompass(null, null, 0);
+		for (int roll = -40; roll <= 40; roll += 20) {
+			for (int pitch = -40; pitch <= 40; pitch += 20) {
+				for (int yaw = 0; yaw < 360; yaw += 30) {
+					orientation.setEulerAngles((float) Math.toRadians(roll), (float) Math.toRadians(pitch),
+							(float) Math.toRadians(yaw));
+					orientation.conjugate(inverse);
+					inverse.rotate(gravity, acceleration);
+					inverse.rotate(north, field);
+					// Yaw is counter clockwise, the heading clockwise
+					assertEquals((360 - yaw) % 360, compass.computeHeading(acceleration, field), 0.01);
+					assertEquals(roll, Math.toDegrees(compass.getRoll()), 0.01);
+					assertEquals(pitch, Math.toDegrees(compass.getPitch()), 0.01);
+				}
+			}
+		}
+		compass.setDeclination(-10);
+		assertEquals(350, compass.computeHeading(gravity, north), 0.01);
+		// Facing east, with the field coming in from the left
+		compass.setDeclination(0);
+		assertEquals(90, compass.computeHeading(gravity, new Float3D(0, 0.25f, -0.43f)), 0.01);
+	}
+
+	private static void testGyroIntegration(Ahrs ahrs, int samples) {
+		// Level, turning at 90 degrees/s around z for a second
+		for (int i = 0; i < samples; i++) {
+			ahrs.onAccelerometer(i * PERIOD, 0, 0, 9.81f);
+			ahrs.onGyro(i * PERIOD, 0, 0, 90);
+		}
+		assertEquals(100, ahrs.getUpdates());
+		assertEquals(90, Math.toDegrees(ahrs.getYaw()), 0.5);
+		assertEquals(0, Math.toDegrees(ahrs.getRoll()), 0.5);
+	}
+
+	private static void testConvergesToTilt(Ahrs ahrs) {
+		// Rolled 30 degrees, standing still
+		float roll = (float) Math.toRadians(30);
+		// The normalized gradient step of Madgwick dithers around the
+		// solution by about beta * dt, so average the last samples
+		double rollSum = 0;
+		for (int i = 0; i <= 2000; i++) {
+			ahrs.onAccelerometer(i * PERIOD, 0, 9.81f * (float) Math.sin(roll), 9.81f * (float) Math.cos(roll));
+			ahrs.onGyro(i * PERIOD, 0, 0, 0);
+			if (i >= 1900) {
+				rollSum += ahrs.getRoll();
+			}
+		}
+		assertEquals(30, Math.toDegrees(rollSum / 101), 0.5);
+		assertEquals(0, Math.toDegrees(ahrs.getPitch()), 0.5);
+	}
+
+	private static void testMagnetometerHeading(Ahrs ahrs) {
+		// Level, with magnetic north 45 degrees to the left, dipping down
+		float yaw = (float) Math.toRadians(45);
+		for (int i = 0; i <= 2000; i++) {
+			long time = i * PERIOD;
+			ahrs.onAccelerometer(time, 0, 0, 9.81f);
+			ahrs.onMagnetometer(time, 0.2f * (float) Math.cos(yaw), -0.2f * (float) Math.sin(yaw), -0.4f);
+			ahrs.onGyro(time, 0, 0, 0);
+		}
+		assertEquals(45, Math.toDegrees(ahrs.getYaw()), 1);
+	}
+}
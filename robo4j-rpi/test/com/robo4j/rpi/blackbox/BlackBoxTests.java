@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.blackbox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.blackbox.BlackBoxChannel.Kind;
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Int3D;
+import com.robo4j.rpi.i2c.RawScale;
+import com.robo4j.rpi.i2c.ReadableRawFloat3DDevice;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class BlackBoxTests {
+	private static final int BLOCK_SIZE = 4096;
+
+	private static class CollectingHandler implements RecordHandler {
+		final List<long[]> raw = new ArrayList<>();
+		final List<float[]> floats = new ArrayList<>();
+		final List<Long> timestamps = new ArrayList<>();
+
+		@Override
+		public void onFloat3D(BlackBoxChannel channel, long timestamp, float x, float y, float z) {
+			timestamps.add(timestamp);
+			floats.add(new float[] { x, y, z });
+		}
+
+		@Override
+		public void onRaw(BlackBoxChannel channel, long timestamp, int x, int y, int z) {
+			timestamps.add(timestamp);
+			raw.add(new long[] { x, y, z });
+		}
+
+		@Override
+		public void onScalar(BlackBoxChannel channel, long timestamp, float value) {
+			timestamps.add(timestamp);
+			floats.add(new float[] { value });
+		}
+	}
+
+	/**
+	 * A raw device which can be reconfigured to another scale.
+	 */
+	private static class ScalingDevice implements ReadableRawFloat3DDevice {
+		RawScale scale = new RawScale(1);
+
+		@Override
+		public void read(Float3D dst) throws IOException {
+			Int3D raw = new Int3D();
+			readRaw(raw);
+			scale.apply(raw, dst);
+		}
+
+		@Override
+		public void read(float[] dst, int offset) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void readRaw(Int3D dst) throws IOException {
+			dst.set(1, 2, 3);
+		}
+
+		@Override
+		public void readRaw(short[] dst, int offset) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public RawScale getRawScale() {
+			return scale;
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		File file = createTempFile();
+		try (BlackBoxRecorder recorder = new BlackBoxRecorder(file, 1024 * 1024, BLOCK_SIZE)) {
+			BlackBoxChannel gyro = recorder.addFloat3DChannel("gyro");
+			BlackBoxChannel accelerometer = recorder.addRawChannel("accelerometer", new RawScale(0.001f));
+			BlackBoxChannel servo = recorder.addScalarChannel("servo");
+			recorder.record(gyro, 1000, 1.5f, -2.25f, Float.NaN);
+			recorder.recordRaw(accelerometer, 1500, -2048, 0, 2047);
+			recorder.record(servo, 1400, 0.75f);
+			recorder.record(gyro, 2000, 1.5f, -2.5f, 0);
+		}
+
+		BlackBoxReader reader = new BlackBoxReader(file);
+		assertEquals(3, reader.getChannels().size());
+		assertEquals(0.001f, reader.getChannels("accelerometer").get(0).getScale().getX(), 0);
+		CollectingHandler handler = new CollectingHandler();
+		assertEquals(4, reader.read(handler));
+		assertEquals(0, reader.getCorruptRecords());
+		assertEquals(Long.valueOf(1400), handler.timestamps.get(2));
+		assertEquals(-2.25f, handler.floats.get(0)[1], 0);
+		assertTrue(Float.isNaN(handler.floats.get(0)[2]));
+		assertEquals(0.75f, handler.floats.get(1)[0], 0);
+		assertEquals(-2.5f, handler.floats.get(2)[1], 0);
+		assertEquals(-2048, handler.raw.get(0)[0]);
+		assertEquals(2047, handler.raw.get(0)[2]);
+		delete(file);
+	}
+
+	@Test
+	public void testWrapAround() throws IOException {
+		File file = createTempFile();
+		int count = 20000;
+		try (BlackBoxRecorder recorder = new BlackBoxRecorder(file, 16384 + 8 * BLOCK_SIZE, BLOCK_SIZE)) {
+			BlackBoxChannel channel = recorder.addRawChannel("ramp", new RawScale(1));
+			for (int i = 0; i < count; i++) {
+				recorder.recordRaw(channel, i * 1000L, i, -i, i % 7);
+			}
+		}
+		BlackBoxReader reader = new BlackBoxReader(file);
+		CollectingHandler handler = new CollectingHandler();
+		long read = reader.read(handler);
+		assertTrue(read > 0 && read < count);
+		// The newest records are kept, in order
+		for (int i = 0; i < read; i++) {
+			long expected = count - read + i;
+			assertEquals(expected * 1000, handler.timestamps.get(i).longValue());
+			assertEquals(-expected, handler.raw.get(i)[1]);
+		}
+		delete(file);
+	}
+
+	@Test
+	public void testTornRecord() throws IOException {
+		File file = createTempFile();
+		int offset;
+		try (BlackBoxRecorder recorder = new BlackBoxRecorder(file, 1024 * 1024, BLOCK_SIZE)) {
+			BlackBoxChannel channel = recorder.addScalarChannel("distance");
+			// Encode the records here too, to find the CRC of the last one
+			byte[] scratch = new byte[BlackBoxFormat.MAX_RECORD_SIZE];
+			offset = BlackBoxFormat.blockOffset(0, BLOCK_SIZE) + BlackBoxFormat.BLOCK_HEADER_SIZE;
+			int previous = 0;
+			for (int i = 0; i < 10; i++) {
+				recorder.record(channel, i, i * 0.5f);
+				int bits = Float.floatToRawIntBits(i * 0.5f);
+				int length = BlackBoxFormat.putVarLong(scratch, 1, BlackBoxFormat.zigzag(i == 0 ? 0L : 1L));
+				length = BlackBoxFormat.putVarInt(scratch, length, bits ^ previous);
+				previous = bits;
+				offset += length + 1;
+			}
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(offset - 1);
+			int crc = raf.read();
+			raf.seek(offset - 1);
+			raf.write(crc ^ 0x55);
+		}
+		BlackBoxReader reader = new BlackBoxReader(file);
+		assertEquals(9, reader.read(new CollectingHandler()));
+		assertEquals(1, reader.getCorruptRecords());
+		delete(file);
+	}
+
+	@Test
+	public void testKeepsPrevious() throws IOException {
+		File file = createTempFile();
+		new BlackBoxRecorder(file, 1024 * 1024, BLOCK_SIZE).close();
+		new BlackBoxRecorder(file, 1024 * 1024, BLOCK_SIZE).close();
+		File previous = new File(file.getPath() + ".previous");
+		assertTrue(previous.exists());
+		previous.delete();
+		new File(file.getPath() + ".previous" + BlackBoxFormat.INDEX_SUFFIX).delete();
+		delete(file);
+	}
+
+	@Test
+	public void testQuery() throws IOException {
+		File file = createTempFile();
+		try (BlackBoxRecorder recorder = new BlackBoxRecorder(file, 1024 * 1024, BLOCK_SIZE)) {
+			BlackBoxChannel ramp = recorder.addRawChannel("ramp", new RawScale(1));
+			BlackBoxChannel servo = recorder.addScalarChannel("servo");
+			for (int i = 0; i < 20000; i++) {
+				recorder.recordRaw(ramp, i * 1000L, i, 0, 0);
+				recorder.record(servo, i * 1000L + 500, i);
+			}
+		}
+		BlackBoxReader reader = new BlackBoxReader(file);
+		assertTrue(reader.isIndexed());
+		assertEquals(0, reader.getFirstTimestamp());
+		assertEquals(19999500, reader.getLastTimestamp());
+		assertQuery(reader);
+
+		// Without the index, the block headers are used
+		BlackBoxRecorder.getIndexFile(file).delete();
+		reader = new BlackBoxReader(file);
+		assertTrue(!reader.isIndexed());
+		assertQuery(reader);
+		delete(file);
+	}
+
+	@Test
+	public void testLateRecords() throws IOException {
+		File file = createTempFile();
+		try (BlackBoxRecorder recorder = new BlackBoxRecorder(file, 1024 * 1024, BLOCK_SIZE)) {
+			BlackBoxChannel ramp = recorder.addRawChannel("ramp", new RawScale(1));
+			BlackBoxChannel late = recorder.addScalarChannel("late");
+			for (int i = 0; i < 20000; i++) {
+				recorder.recordRaw(ramp, i * 1000L, i, 0, 0);
+				// Stamped well before the records around it, often in an earlier block
+				recorder.record(late, i * 1000L - 400000, i);
+			}
+		}
+		BlackBoxReader reader = new BlackBoxReader(file);
+		assertTrue(reader.isIndexed());
+		assertLateQuery(reader);
+		BlackBoxRecorder.getIndexFile(file).delete();
+		reader = new BlackBoxReader(file);
+		assertTrue(!reader.isIndexed());
+		assertLateQuery(reader);
+		delete(file);
+	}
+
+	@Test
+	public void testRescaledRecording() throws IOException {
+		File file = createTempFile();
+		try (BlackBoxRecorder recorder = new BlackBoxRecorder(file, 1024 * 1024, BLOCK_SIZE)) {
+			ScalingDevice device = new ScalingDevice();
+			RecordingFloat3DDevice recording = new RecordingFloat3DDevice(device, recorder, "device");
+			BlackBoxChannel first = recording.getChannel();
+			device.scale = new RawScale(2);
+			recording.read();
+			BlackBoxChannel second = recording.getChannel();
+			assertEquals(Kind.RAW3D, second.getKind());
+			device.scale = new RawScale(1);
+			recording.read();
+			assertSame(first, recording.getChannel());
+			assertEquals(2, recorder.getChannels().size());
+			ScalingDevice other = new ScalingDevice();
+			RecordingFloat3DDevice otherRecording = new RecordingFloat3DDevice(other, recorder, "other");
+
+			// Fill the table up to the last free entry
+			while (recorder.getChannels().size() < BlackBoxFormat.MAX_CHANNELS - 1) {
+				recorder.addScalarChannel("filler");
+			}
+			device.scale = new RawScale(3);
+			Float3D value = recording.read();
+			assertEquals(Kind.FLOAT3D, recording.getChannel().getKind());
+			assertEquals(9, value.z, 0.0001);
+			BlackBoxChannel floats = recording.getChannel();
+			device.scale = new RawScale(4);
+			recording.read();
+			assertSame(floats, recording.getChannel());
+			device.scale = new RawScale(2);
+			recording.read();
+			assertSame(second, recording.getChannel());
+			assertEquals(5, recorder.getRecordCount());
+
+			// The float channel took the last entry, so the other device drops
+			other.scale = new RawScale(5);
+			value = otherRecording.read();
+			assertEquals(15, value.z, 0.0001);
+			assertNull(otherRecording.getChannel());
+			assertEquals(5, recorder.getRecordCount());
+		}
+		delete(file);
+	}
+
+	@Test
+	public void testReplay() throws IOException {
+		File file = createTempFile();
+		try (BlackBoxRecorder recorder = new BlackBoxRecorder(file, 1024 * 1024, BLOCK_SIZE)) {
+			BlackBoxChannel ramp = recorder.addRawChannel("ramp", new RawScale(0.5f));
+			BlackBoxChannel lidar = recorder.addScalarChannel("lidar");
+			for (int i = 0; i < 20000; i++) {
+				recorder.recordRaw(ramp, i * 1000L, i, -i, 0);
+				if (i % 10 == 0) {
+					recorder.record(lidar, i * 1000L + 500, i);
+				}
+			}
+		}
+		BlackBoxReader reader = new BlackBoxReader(file);
+
+		// As fast as possible, every read returns the next sample
+		BlackBoxReplay replay = new BlackBoxReplay(reader, ReplayClock.SYSTEM, BlackBoxReplay.AS_FAST_AS_POSSIBLE);
+		ReplayFloat3DDevice device = new ReplayFloat3DDevice(replay, "ramp");
+		Float3D value = new Float3D();
+		for (int i = 0; i < 20000; i++) {
+			device.read(value);
+			assertEquals(i * 0.5f, value.x, 0);
+			assertEquals(-i * 0.5f, value.y, 0);
+			assertEquals(i * 1000L, device.getLastSampleTime());
+		}
+		assertEndOfReplay(device);
+		replay.close();
+
+		// In time, reads return the latest sample, here at double speed
+		ManualClock clock = new ManualClock();
+		replay = new BlackBoxReplay(reader, clock, 2, 5000000);
+		device = new ReplayFloat3DDevice(replay, "ramp");
+		ReplayRangeFinder rangeFinder = new ReplayRangeFinder(replay, "lidar");
+		device.read(value);
+		assertEquals(5000000, device.getLastSampleTime());
+		clock.time += 12345;
+		device.read(value);
+		assertEquals(5024000, device.getLastSampleTime());
+		rangeFinder.acquireRange();
+		assertEquals(5020500, rangeFinder.getLastSampleTime());
+		assertEquals(5020, rangeFinder.readDistance(), 0);
+		clock.time += 10000000;
+		assertEndOfReplay(device);
+		replay.close();
+		delete(file);
+	}
+
+	private static void assertEndOfReplay(ReplayFloat3DDevice device) throws IOException {
+		try {
+			device.read();
+			fail("Expected the replay to end");
+		} catch (EOFException e) {
+			// Expected
+		}
+	}
+
+	private static class ManualClock implements ReplayClock {
+		long time;
+
+		@Override
+		public long nanoTime() {
+			return time;
+		}
+
+		@Override
+		public void sleepUntil(long nanoTime) {
+			time = Math.max(time, nanoTime);
+		}
+	}
+
+	private static void assertQuery(BlackBoxReader reader) {
+		CollectingHandler handler = new CollectingHandler();
+		assertEquals(2001, reader.query(5000000, 7000000, handler, "ramp"));
+		assertEquals(5000000, handler.timestamps.get(0).longValue());
+		assertEquals(7000000, handler.timestamps.get(2000).longValue());
+		assertEquals(0, handler.floats.size());
+		assertEquals(4002, reader.query(5000000, 7000500, new CollectingHandler()));
+	}
+
+	private static void assertLateQuery(BlackBoxReader reader) {
+		assertEquals(-400000, reader.getFirstTimestamp());
+		CollectingHandler handler = new CollectingHandler();
+		assertEquals(2001, reader.query(5000000, 7000000, handler, "late"));
+		assertEquals(5400, handler.floats.get(0)[0], 0);
+		assertEquals(7400, handler.floats.get(2000)[0], 0);
+		handler = new CollectingHandler();
+		assertEquals(1, reader.query(19599000, Long.MAX_VALUE, handler, "late"));
+		assertEquals(1, reader.query(Long.MIN_VALUE, -400000, new CollectingHandler()));
+	}
+
+	private static void delete(File file) {
+		BlackBoxRecorder.getIndexFile(file).delete();
+		file.delete();
+	}
+
+	private static File createTempFile() throws IOException {
+		File file = File.createTempFile("blackbox", ".bbx");
+		file.delete();
+		return file;
+	}
+}
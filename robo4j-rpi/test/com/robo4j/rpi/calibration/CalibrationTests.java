@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.calibration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Matrix3;
+import com.robo4j.rpi.i2c.CalibratedFloat3DDevice;
+import com.robo4j.rpi.i2c.ReadableDevice;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class CalibrationTests {
+	/**
+	 * A magnetometer in a uniform field, turned in random directions, with
+	 * hard and soft iron distortion and some noise.
+	 */
+	private static class DistortedDevice implements ReadableDevice<Float3D> {
+		final Random random = new Random(4711);
+		final Float3D offset = new Float3D(120, -40, 75);
+		final Matrix3 softIron = new Matrix3();
+		final boolean planar;
+
+		DistortedDevice(boolean planar) {
+			this.planar = planar;
+			softIron.set(1.2f, 0.1f, 0, 0.1f, 0.9f, 0.05f, 0, 0.05f, 1.05f);
+		}
+
+		@Override
+		public Float3D read() throws IOException {
+			Float3D field = new Float3D((float) random.nextGaussian(), (float) random.nextGaussian(),
+					planar ? 0 : (float) random.nextGaussian());
+			field.normalize();
+			field.multiplyScalar(500);
+			softIron.transform(field);
+			field.add(offset);
+			field.add(new Float3D((float) random.nextGaussian(), (float) random.nextGaussian(),
+					(float) random.nextGaussian()));
+			return field;
+		}
+	}
+
+	@Test
+	public void testEllipsoidFit() throws IOException {
+		DistortedDevice distorted = new DistortedDevice(false);
+		EllipsoidCalibratedFloat3DDevice device = new EllipsoidCalibratedFloat3DDevice(distorted, 1, TimeUnit.HOURS);
+		for (int i = 0; i < 1000; i++) {
+			device.read();
+		}
+		assertTrue(device.update());
+		assertFalse("No new samples", device.update());
+
+		// The corrected field strength should be the same in all directions
+		double sum = 0;
+		double sumSquares = 0;
+		for (int i = 0; i < 1000; i++) {
+			float length = device.read().length();
+			sum += length;
+			sumSquares += length * length;
+		}
+		double mean = sum / 1000;
+		double deviation = Math.sqrt(sumSquares / 1000 - mean * mean);
+		assertEquals(500 * Math.cbrt(distorted.softIron.determinant()), mean, 5);
+		assertTrue("Deviation " + deviation, deviation < 2);
+		assertEquals(1, device.getUpdates());
+	}
+
+	@Test
+	public void testStore() throws IOException {
+		File file = File.createTempFile("calibration", ".properties");
+		file.delete();
+		try {
+			CalibrationStore store = new CalibrationStore(file);
+			Matrix3 correction = new Matrix3();
+			correction.setRotationZ(0.1f);
+			CalibratedFloat3DDevice device = new CalibratedFloat3DDevice(new DistortedDevice(false),
+					new Float3D(-120, 40, -75), new Float3D(1, 2, 3), correction);
+			store.store(1, 0x1e, "lsm303-magnetometer:0x48", device);
+			store.putInts(1, 0x77, "bmp085:0x55", "words", 408, 65483, 51322);
+			store.save();
+
+			store = new CalibrationStore(file);
+			CalibratedFloat3DDevice restored = new CalibratedFloat3DDevice(new DistortedDevice(false), new Float3D(),
+					new Float3D(1, 1, 1));
+			assertTrue(store.restore(1, 0x1e, "lsm303-magnetometer:0x48", restored));
+			assertEquals(-120, restored.getCenterOffsets().x, 0);
+			assertEquals(3, restored.getRangeMultipliers().z, 0);
+			assertEquals(correction.m01, restored.getCorrection().m01, 0);
+			assertEquals(65483, store.getInts(1, 0x77, "bmp085:0x55", "words")[1]);
+
+			// A different device at the same location discards the old entries
+			assertFalse(store.restore(1, 0x1e, "lsm303-magnetometer:0x49", restored));
+			assertFalse(store.restore(1, 0x1e, "lsm303-magnetometer:0x48", restored));
+			assertEquals(3, store.getInts(1, 0x77, "bmp085:0x55", "words").length);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testPlanarSamplesRejected() throws IOException {
+		EllipsoidCalibratedFloat3DDevice device = new EllipsoidCalibratedFloat3DDevice(new DistortedDevice(true), 1,
+				TimeUnit.HOURS);
+		for (int i = 0; i < 1000; i++) {
+			device.read();
+		}
+		assertFalse(device.update());
+		assertEquals(0, device.getUpdates());
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.device;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class DeviceManagerTests {
+	private static final long STARTUP_MILLIS = 200;
+
+	/**
+	 * Stands in for a device taking a while to initialize.
+	 */
+	private static class SlowFactory implements DeviceFactory<String> {
+		private final String device;
+
+		SlowFactory(String device) {
+			this.device = device;
+		}
+
+		@Override
+		public String create() throws IOException {
+			try {
+				Thread.sleep(STARTUP_MILLIS);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			return device;
+		}
+	}
+
+	@Test
+	public void testConcurrentStart() {
+		DeviceManager manager = new DeviceManager();
+		manager.add("gyro", new SlowFactory("gyro device"));
+		manager.add("accelerometer", new SlowFactory("accelerometer device"));
+		manager.add("magnetometer", new SlowFactory("magnetometer device"));
+		assertSame(manager, manager.start().join());
+		assertEquals("gyro device", manager.getDevice("gyro", String.class));
+		assertEquals("magnetometer device", manager.getDevice("magnetometer", String.class));
+
+		List<DeviceStartup> report = manager.getStartupReport();
+		assertEquals(3, report.size());
+		for (DeviceStartup startup : report) {
+			assertTrue(startup.isStarted());
+			assertTrue(startup.getDuration() >= TimeUnit.MILLISECONDS.toNanos(STARTUP_MILLIS));
+		}
+		// The start ups overlap, so together they take less than the sum
+		assertTrue(manager.getTimeToReady() < TimeUnit.MILLISECONDS.toNanos(3 * STARTUP_MILLIS));
+	}
+
+	@Test
+	public void testFailure() {
+		final IOException ioFailure = new IOException("No acknowledge");
+		final IllegalStateException runtimeFailure = new IllegalStateException("Bad configuration");
+		DeviceManager manager = new DeviceManager();
+		manager.add("gyro", new SlowFactory("gyro device"));
+		manager.add("lidar", new DeviceFactory<String>() {
+			@Override
+			public String create() throws IOException {
+				throw ioFailure;
+			}
+		});
+		manager.add("servo", new DeviceFactory<String>() {
+			@Override
+			public String create() throws IOException {
+				throw runtimeFailure;
+			}
+		});
+		try {
+			manager.start().join();
+			fail("Expected the start to fail");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			assertEquals(2, e.getCause().getSuppressed().length);
+		}
+
+		// The devices that did start are still usable
+		assertEquals("gyro device", manager.getDevice("gyro", String.class));
+		try {
+			manager.getDevice("lidar", String.class);
+			fail("Expected the failed device to be unavailable");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		int failed = 0;
+		for (DeviceStartup startup : manager.getStartupReport()) {
+			if (startup.getName().equals("lidar")) {
+				assertSame(ioFailure, startup.getFailure());
+				failed++;
+			} else if (startup.getName().equals("servo")) {
+				assertSame(runtimeFailure, startup.getFailure());
+				failed++;
+			} else {
+				assertTrue(startup.isStarted());
+			}
+			assertEquals(startup.getFailure() == null, startup.isStarted());
+		}
+		assertEquals(2, failed);
+	}
+
+	@Test
+	public void testLifecycle() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		DeviceManager manager = new DeviceManager();
+		manager.add("gyro", new DeviceFactory<String>() {
+			@Override
+			public String create() throws IOException {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return "gyro device";
+			}
+		});
+		try {
+			manager.add("gyro", new SlowFactory("another gyro"));
+			fail("Expected duplicate names to be rejected");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			manager.getDevice("gyro", String.class);
+			fail("Expected the device to be unavailable before the start");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+
+		CompletableFuture<DeviceManager> started = manager.start();
+		try {
+			manager.getDevice("gyro", String.class);
+			fail("Expected the device to be unavailable while starting");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		try {
+			manager.add("lidar", new SlowFactory("lidar device"));
+			fail("Expected adding after the start to fail");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		try {
+			manager.start();
+			fail("Expected a second start to fail");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		assertFalse(started.isDone());
+		release.countDown();
+		started.join();
+		assertEquals("gyro device", manager.getDevice("gyro", String.class));
+		try {
+			manager.getDevice("lidar", String.class);
+			fail("Expected unknown devices to be rejected");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		DeviceManager manager = new DeviceManager();
+		manager.start().join();
+		assertTrue(manager.getStartupReport().isEmpty());
+		assertEquals(0, manager.getTimeToReady());
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class EventBusTests {
+	private static final int PRODUCERS = 3;
+	private static final int EVENTS_PER_PRODUCER = 50000;
+
+	/**
+	 * Checks that the events of each producer, given by y, arrive in order,
+	 * and counts them.
+	 */
+	private static class CheckingHandler implements EventHandler {
+		final long[] lastValue = { -1, -1, -1 };
+		final CountDownLatch done = new CountDownLatch(PRODUCERS * EVENTS_PER_PRODUCER);
+		volatile boolean inOrder = true;
+
+		@Override
+		public void onEvent(SensorEvent event, long sequence, boolean endOfBatch) {
+			int producer = (int) event.getY();
+			long value = (long) event.getX();
+			if (value != lastValue[producer] + 1) {
+				inOrder = false;
+			}
+			lastValue[producer] = value;
+			done.countDown();
+		}
+	}
+
+	@Test
+	public void testMulticastWithDependency() throws InterruptedException {
+		// A small ring, to have the producers wait for the consumers
+		final EventBus bus = new EventBus(64, WaitStrategy.YIELD);
+		final CheckingHandler first = new CheckingHandler();
+		final EventConsumer firstConsumer = bus.addConsumer("first", first);
+		final CheckingHandler second = new CheckingHandler();
+		final AtomicBoolean dependencyRespected = new AtomicBoolean(true);
+		bus.addConsumer("second", new EventHandler() {
+			@Override
+			public void onEvent(SensorEvent event, long sequence, boolean endOfBatch) {
+				if (firstConsumer.getSequence().get() < sequence) {
+					dependencyRespected.set(false);
+				}
+				second.onEvent(event, sequence, endOfBatch);
+			}
+		}, firstConsumer);
+		bus.start();
+
+		Thread[] producers = new Thread[PRODUCERS];
+		for (int i = 0; i < PRODUCERS; i++) {
+			final int producer = i;
+			producers[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int value = 0; value < EVENTS_PER_PRODUCER; value++) {
+						bus.publish(SensorEvent.Type.SCALAR, "producer", System.nanoTime(), value, producer, 0, null);
+					}
+				}
+			};
+			producers[i].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		assertTrue(first.done.await(10, TimeUnit.SECONDS));
+		assertTrue(second.done.await(10, TimeUnit.SECONDS));
+		bus.stop();
+		assertTrue(first.inOrder);
+		assertTrue(second.inOrder);
+		assertTrue(dependencyRespected.get());
+		assertEquals(PRODUCERS * EVENTS_PER_PRODUCER - 1, bus.getCursor());
+	}
+
+	@Test
+	public void testEventsBeforeStartDropped() throws InterruptedException {
+		EventBus bus = new EventBus(8, WaitStrategy.PARK);
+		final CountDownLatch received = new CountDownLatch(1);
+		final long[] value = new long[1];
+		bus.addConsumer("consumer", new EventHandler() {
+			@Override
+			public void onEvent(SensorEvent event, long sequence, boolean endOfBatch) {
+				value[0] = (long) event.getX();
+				received.countDown();
+			}
+		});
+		for (int i = 0; i < 20; i++) {
+			bus.publishScalar("early", 0, i);
+		}
+		bus.start();
+		bus.publishScalar("late", 0, 4711);
+		assertTrue(received.await(10, TimeUnit.SECONDS));
+		bus.stop();
+		assertEquals(4711, value[0]);
+	}
+}
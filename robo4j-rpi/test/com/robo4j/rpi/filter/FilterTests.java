@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class FilterTests {
+	private static final float EPSILON = 1e-4f;
+
+	@Test
+	public void testMovingAverage() {
+		MovingAverageFilter filter = new MovingAverageFilter(4);
+		float[] expected = { 1, 1.5f, 2, 2.5f, 3.5f, 4.5f };
+		for (int i = 0; i < expected.length; i++) {
+			Float3D sample = new Float3D(i + 1, -(i + 1), 0);
+			assertTrue(filter.filter(sample));
+			assertEquals(expected[i], sample.x, EPSILON);
+			assertEquals(-expected[i], sample.y, EPSILON);
+		}
+	}
+
+	@Test
+	public void testMedian() {
+		MedianFilter filter = new MedianFilter(3);
+		float[] input = { 5, 100, 6, 7, -50, 8, 9 };
+		float[] expected = { 5, 52.5f, 6, 7, 6, 7, 8 };
+		for (int i = 0; i < input.length; i++) {
+			Float3D sample = new Float3D(input[i], input[i], -input[i]);
+			filter.filter(sample);
+			assertEquals(expected[i], sample.x, EPSILON);
+			assertEquals(-expected[i], sample.z, EPSILON);
+		}
+	}
+
+	@Test
+	public void testBiquad() {
+		// Steady state from the first sample, and unit gain for DC
+		BiquadFilter lowPass = BiquadFilter.lowPass(100, 5);
+		for (int i = 0; i < 10; i++) {
+			Float3D sample = new Float3D(3, 3, 3);
+			lowPass.filter(sample);
+			assertEquals(3, sample.x, EPSILON);
+		}
+		// Zero gain for DC
+		BiquadFilter highPass = BiquadFilter.highPass(100, 5);
+		Float3D sample = new Float3D();
+		for (int i = 0; i < 200; i++) {
+			sample.set(3, 3, 3);
+			highPass.filter(sample);
+		}
+		assertEquals(0, sample.x, EPSILON);
+		// A signal at the cutoff is attenuated 3 dB
+		lowPass = BiquadFilter.lowPass(1000, 50);
+		double peak = 0;
+		for (int i = 0; i < 2000; i++) {
+			sample.set((float) Math.sin(2 * Math.PI * 50 * i / 1000), 0, 0);
+			lowPass.filter(sample);
+			if (i > 1000) {
+				peak = Math.max(peak, sample.x);
+			}
+		}
+		assertEquals(Math.sqrt(0.5), peak, 0.01);
+	}
+
+	@Test
+	public void testChain() {
+		FilterChain chain = new FilterChain(new MovingAverageFilter(2), new Decimator(2));
+		float[] samples = new float[12];
+		for (int i = 0; i < 4; i++) {
+			samples[i * 3] = i;
+		}
+		assertEquals(2, chain.filter(samples, 0, 4));
+		assertEquals(0.5f, samples[0], EPSILON);
+		assertEquals(2.5f, samples[3], EPSILON);
+		chain.reset();
+		assertFalse(chain.filter(new Float3D()));
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.geometry;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class GeometryTests {
+	private static final float EPSILON = 1e-5f;
+
+	@Test
+	public void testInvSqrt() {
+		for (float x = 1e-6f; x < 1e6f; x *= 1.37f) {
+			assertEquals(1 / Math.sqrt(x), FastMath.invSqrt(x), 1e-5 / Math.sqrt(x));
+		}
+	}
+
+	@Test
+	public void testVectorOperations() {
+		Float3D x = new Float3D(1, 0, 0);
+		Float3D y = new Float3D(0, 1, 0);
+		Float3D z = Float3D.cross(x, y, new Float3D());
+		assertEquals(new Float3D(0, 0, 1), z);
+		assertEquals(0, x.dot(y), EPSILON);
+
+		Float3D v = new Float3D(3, 4, 12);
+		assertEquals(13, v.length(), EPSILON);
+		v.normalize();
+		assertEquals(1, v.length(), EPSILON);
+	}
+
+	@Test
+	public void testRotation() {
+		Quaternion q = new Quaternion();
+		q.setEulerAngles(0.3f, -0.2f, 1.1f);
+		Matrix3 m = new Matrix3();
+		m.setRotation(q);
+		Matrix3 expected = new Matrix3();
+		expected.setRotationZ(1.1f);
+		Matrix3 rotation = new Matrix3();
+		rotation.setRotationY(-0.2f);
+		expected.multiply(rotation);
+		rotation.setRotationX(0.3f);
+		expected.multiply(rotation);
+		assertEquals(expected, m);
+
+		Float3D v = new Float3D(1, 2, 3);
+		assertEquals(m.transform(v, new Float3D()), q.rotate(v, new Float3D()));
+
+		Float3D angles = q.getEulerAngles(new Float3D());
+		assertEquals(new Float3D(0.3f, -0.2f, 1.1f), angles);
+
+		Quaternion back = new Quaternion();
+		back.setRotation(m);
+		assertEquals(1, Math.abs(back.dot(q)), EPSILON);
+	}
+
+	@Test
+	public void testCompose() {
+		Quaternion a = new Quaternion();
+		a.setAxisAngle(new Float3D(0, 0, 1), (float) Math.PI / 2);
+		Quaternion b = new Quaternion();
+		b.setAxisAngle(new Float3D(1, 0, 0), (float) Math.PI / 2);
+		// b first, then a
+		Quaternion ab = Quaternion.multiply(a, b, new Quaternion());
+		Float3D v = ab.rotate(new Float3D(0, 1, 0), new Float3D());
+		// y -> z by b, and z is unchanged by a
+		assertEquals(new Float3D(0, 0, 1), v);
+
+		a.multiply(b);
+		assertEquals(1, a.dot(ab), EPSILON);
+
+		Quaternion inverse = ab.conjugate(new Quaternion());
+		Quaternion.multiply(ab, inverse, inverse);
+		assertEquals(1, inverse.w, EPSILON);
+	}
+
+	@Test
+	public void testSlerp() {
+		Quaternion a = new Quaternion();
+		Quaternion b = new Quaternion();
+		b.setAxisAngle(new Float3D(0, 0, 1), 1.0f);
+		Quaternion half = Quaternion.slerp(a, b, 0.5f, new Quaternion());
+		assertEquals(0.5f, half.getEulerAngles(new Float3D()).z, EPSILON);
+		assertEquals(1, half.length(), EPSILON);
+		Quaternion.slerp(a, b, 1, half);
+		assertEquals(1, half.dot(b), EPSILON);
+	}
+
+	@Test
+	public void testInvert() {
+		Matrix3 m = new Matrix3();
+		m.set(2, 0, 1, 1, 3, 0, 0, 1, 4);
+		Matrix3 inverse = new Matrix3();
+		assertTrue(m.invert(inverse));
+		assertEquals(new Matrix3(), Matrix3.multiply(m, inverse, new Matrix3()));
+
+		Matrix3 singular = new Matrix3();
+		singular.set(1, 2, 3, 2, 4, 6, 0, 0, 1);
+		assertFalse(singular.invert());
+	}
+
+	@Test
+	public void testArray() {
+		Float3DArray array = new Float3DArray(2);
+		Float3D[] vectors = new Float3D[100];
+		for (int i = 0; i < vectors.length; i++) {
+			vectors[i] = new Float3D(i, -i, i % 7);
+			array.append(vectors[i]);
+		}
+		assertEquals(100, array.size(), 0);
+		assertEquals(new Float3D(0, -99, 0), array.min(new Float3D()));
+		assertEquals(new Float3D(99, 0, 6), array.max(new Float3D()));
+		assertEquals(new Float3D(49.5f, -49.5f, 2.95f), array.mean(new Float3D()));
+
+		Float3D offset = new Float3D(1, 2, 3);
+		Matrix3 m = new Matrix3();
+		m.setRotationZ(0.5f);
+		array.subtract(offset);
+		array.multiplyScalar(0.5f);
+		array.transform(m);
+		float[] dots = array.dot(offset, new float[array.size()]);
+		float[] lengths = array.length(new float[array.size()]);
+		Float3D v = new Float3D();
+		for (int i = 0; i < vectors.length; i++) {
+			vectors[i].subtract(offset);
+			vectors[i].multiplyScalar(0.5f);
+			m.transform(vectors[i]);
+			assertEquals(vectors[i], array.get(i, v));
+			assertEquals(vectors[i].dot(offset), dots[i], 1e-3);
+			assertEquals(vectors[i].length(), lengths[i], 1e-4);
+		}
+	}
+
+	private static void assertEquals(Float3D expected, Float3D actual) {
+		assertEquals(expected.x, actual.x, EPSILON);
+		assertEquals(expected.y, actual.y, EPSILON);
+		assertEquals(expected.z, actual.z, EPSILON);
+	}
+
+	private static void assertEquals(Matrix3 expected, Matrix3 actual) {
+		assertEquals(expected.m00, actual.m00, EPSILON);
+		assertEquals(expected.m01, actual.m01, EPSILON);
+		assertEquals(expected.m02, actual.m02, EPSILON);
+		assertEquals(expected.m10, actual.m10, EPSILON);
+		assertEquals(expected.m11, actual.m11, EPSILON);
+		assertEquals(expected.m12, actual.m12, EPSILON);
+		assertEquals(expected.m20, actual.m20, EPSILON);
+		assertEquals(expected.m21, actual.m21, EPSILON);
+		assertEquals(expected.m22, actual.m22, EPSILON);
+	}
+
+	private static void assertEquals(double expected, double actual, double delta) {
+		org.junit.Assert.assertEquals(expected, actual, delta);
+	}
+}
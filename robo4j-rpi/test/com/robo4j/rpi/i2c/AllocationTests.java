@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import jdk.jfr.FlightRecorder;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.event.EventBus;
+import com.robo4j.rpi.event.EventHandler;
+import com.robo4j.rpi.event.PublishingFloat3DDevice;
+import com.robo4j.rpi.event.SensorEvent;
+import com.robo4j.rpi.event.WaitStrategy;
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.jfr.DeviceReadEvent;
+import com.robo4j.rpi.sampling.Float3DRingBuffer;
+
+/**
+ * Checks that the destination passing read API does not allocate, using the
+ * per thread allocation counter of the HotSpot ThreadMXBean. Skipped on JVMs
+ * without it.
+ * <p>
+ * The drivers cannot be run without a bus, so {@link InstrumentedRampDevice}
+ * mimics their read path, including the flight recorder event. That event is
+ * only created once the flight recorder is initialized, see
+ * {@link AbstractI2CDevice#beginRead()}, so this checks the read path of a
+ * JVM that is not recording.
+ * 
+ * @author Marcus Hirt
+ */
+public class AllocationTests {
+	private static final int WARMUP = 200000;
+	private static final int ITERATIONS = 100000;
+	// Slack for the counter and the odd deoptimization, not per read
+	private static final long MAX_ALLOCATED_BYTES = 1024;
+
+	/**
+	 * Stands in for a driver, producing a ramp.
+	 */
+	private static class RampDevice implements ReadableFloat3DDevice {
+		private float value;
+
+		@Override
+		public void read(Float3D dst) throws IOException {
+			value++;
+			dst.set(value, -value, 2 * value);
+		}
+
+		@Override
+		public void read(float[] dst, int offset) throws IOException {
+			value++;
+			dst[offset] = value;
+			dst[offset + 1] = -value;
+			dst[offset + 2] = 2 * value;
+		}
+	}
+
+	/**
+	 * A ramp read the way the drivers read, with a flight recorder event per
+	 * read while recording.
+	 */
+	private static class InstrumentedRampDevice implements ReadableFloat3DDevice {
+		private float value;
+
+		@Override
+		public void read(Float3D dst) throws IOException {
+			DeviceReadEvent event = FlightRecorder.isInitialized() ? new DeviceReadEvent() : null;
+			if (event != null) {
+				event.begin();
+			}
+			value++;
+			dst.set(value, -value, 2 * value);
+			if (event == null) {
+				return;
+			}
+			event.end();
+			if (event.shouldCommit()) {
+				event.x = dst.x;
+				event.y = dst.y;
+				event.z = dst.z;
+				event.commit();
+			}
+		}
+
+		@Override
+		public void read(float[] dst, int offset) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private interface Reader {
+		void read() throws IOException;
+	}
+
+	@Test
+	public void testCalibratedRead() throws IOException {
+		final CalibratedFloat3DDevice device = new CalibratedFloat3DDevice(new RampDevice(), new Float3D(1, 1, 1),
+				new Float3D(2, 2, 2));
+		final Float3D dst = new Float3D();
+		final float[] array = new float[6];
+		final Float3DRingBuffer buffer = new Float3DRingBuffer(16);
+
+		assertNoAllocation(new Reader() {
+			@Override
+			public void read() throws IOException {
+				device.read(dst);
+				buffer.publish(device.getLastSampleTime(), dst.x, dst.y, dst.z);
+			}
+		});
+		assertNoAllocation(new Reader() {
+			@Override
+			public void read() throws IOException {
+				device.read(array, 3);
+			}
+		});
+		device.read(dst);
+		device.read(array, 0);
+		assertEquals(dst.x + 2, array[0], 0.0001);
+		assertEquals(dst.y - 2, array[1], 0.0001);
+	}
+
+	@Test
+	public void testInstrumentedRead() throws IOException {
+		final CalibratedFloat3DDevice device = new CalibratedFloat3DDevice(new InstrumentedRampDevice(),
+				new Float3D(1, 1, 1), new Float3D(2, 2, 2));
+		final Float3D dst = new Float3D();
+		assertNoAllocation(new Reader() {
+			@Override
+			public void read() throws IOException {
+				device.read(dst);
+			}
+		});
+	}
+
+	@Test
+	public void testPublishingRead() throws IOException, InterruptedException {
+		EventBus bus = new EventBus(256, WaitStrategy.YIELD);
+		final float[] sum = new float[1];
+		bus.addConsumer("sum", new EventHandler() {
+			@Override
+			public void onEvent(SensorEvent event, long sequence, boolean endOfBatch) {
+				sum[0] += event.getX();
+			}
+		});
+		bus.start();
+		final PublishingFloat3DDevice device = new PublishingFloat3DDevice(new RampDevice(), bus, "ramp");
+		final Float3D dst = new Float3D();
+		assertNoAllocation(new Reader() {
+			@Override
+			public void read() throws IOException {
+				device.read(dst);
+			}
+		});
+		bus.stop();
+	}
+
+	private static void assertNoAllocation(Reader reader) throws IOException {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue("No HotSpot ThreadMXBean", bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue("Thread allocation counting not available",
+				hotspotBean.isThreadAllocatedMemorySupported() && hotspotBean.isThreadAllocatedMemoryEnabled());
+		long threadId = Thread.currentThread().getId();
+		for (int i = 0; i < WARMUP; i++) {
+			reader.read();
+		}
+		// The counter itself may allocate the first time around
+		long start = hotspotBean.getThreadAllocatedBytes(threadId);
+		long overhead = hotspotBean.getThreadAllocatedBytes(threadId) - start;
+		long before = hotspotBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < ITERATIONS; i++) {
+			reader.read();
+		}
+		long allocated = hotspotBean.getThreadAllocatedBytes(threadId) - before - overhead;
+		assertTrue("Allocated " + allocated + " bytes in " + ITERATIONS + " reads", allocated <= MAX_ALLOCATED_BYTES);
+	}
+}
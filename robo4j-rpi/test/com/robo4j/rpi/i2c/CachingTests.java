@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class CachingTests {
+	/**
+	 * A device taking a while to read, returning the number of reads.
+	 */
+	private static class SlowDevice implements ReadableDevice<Float3D> {
+		final AtomicInteger reads = new AtomicInteger();
+
+		@Override
+		public Float3D read() throws IOException {
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			int count = reads.incrementAndGet();
+			return new Float3D(count, count, count);
+		}
+	}
+
+	@Test
+	public void testCachedWithinMaxAge() throws IOException {
+		SlowDevice device = new SlowDevice();
+		CachingFloat3DDevice caching = new CachingFloat3DDevice(device, 1, TimeUnit.HOURS);
+		assertEquals(1, caching.read().x, 0);
+		assertEquals(1, caching.read().x, 0);
+		assertEquals(1, device.reads.get());
+		assertEquals(0.5, caching.getHitRate(), 0);
+
+		caching = new CachingFloat3DDevice(device, 0, TimeUnit.NANOSECONDS);
+		caching.read();
+		caching.read();
+		assertEquals(3, device.reads.get());
+		assertEquals(0, caching.getHitRate(), 0);
+	}
+
+	@Test
+	public void testConcurrentReadsShared() throws Exception {
+		final SlowDevice device = new SlowDevice();
+		final CachingFloat3DDevice caching = new CachingFloat3DDevice(device, 0, TimeUnit.NANOSECONDS);
+		final CountDownLatch start = new CountDownLatch(1);
+		final float[] values = new float[8 * 3];
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			final int offset = i * 3;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						caching.read(values, offset);
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// Even with a max age of zero, the readers arriving during a read
+		// share its result
+		assertTrue(device.reads.get() < threads.length);
+		assertEquals(device.reads.get(), caching.getMisses());
+		assertEquals(threads.length - device.reads.get(), caching.getSharedReads());
+		for (int i = 0; i < values.length; i++) {
+			assertTrue(values[i] >= 1 && values[i] <= device.reads.get());
+		}
+	}
+
+	@Test
+	public void testRecoversFromUncheckedFailure() throws Exception {
+		final AtomicInteger reads = new AtomicInteger();
+		ReadableDevice<Float3D> device = new ReadableDevice<Float3D>() {
+			@Override
+			public Float3D read() throws IOException {
+				if (reads.incrementAndGet() == 1) {
+					throw new IllegalStateException("Failing once");
+				}
+				return new Float3D(1, 2, 3);
+			}
+		};
+		final CachingFloat3DDevice caching = new CachingFloat3DDevice(device, 0, TimeUnit.NANOSECONDS);
+		try {
+			caching.read();
+			fail("Expected the failure to propagate");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		// A stuck read would leave this thread waiting forever
+		final Float3D value = new Float3D();
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					caching.read(value);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		thread.start();
+		thread.join(2000);
+		assertFalse(thread.isAlive());
+		assertEquals(2, value.y, 0);
+	}
+}
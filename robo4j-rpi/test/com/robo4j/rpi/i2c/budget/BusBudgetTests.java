@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.budget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.i2c.mux.TCA9548ADevice;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class BusBudgetTests {
+	// 2 + 1 + 9 * (3 + 6) = 84 bits, so that the limits below are exact
+	private static final I2COperation READ = I2COperation.registerRead("read", 6);
+	private static final int CLOCK = 84000;
+	// Half of the clock, 42000 bits/s, is 500 reads/s
+	private static final double MAX_UTILIZATION = 0.5;
+	private static final int BUS = 1;
+	private static final int OTHER_BUS = 3;
+	private static final double EPSILON = 0.000001;
+
+	@Test
+	public void testAdmit() {
+		BusBudget budget = new BusBudget(CLOCK, MAX_UTILIZATION);
+		assertEquals(84, READ.getBits());
+
+		// Exactly at the limit, also counting the devices behind a multiplexer
+		SamplingPlan plan = new SamplingPlan();
+		plan.add("direct", BUS, READ, 300);
+		plan.add("multiplexed", TCA9548ADevice.getVirtualBus(BUS, TCA9548ADevice.DEFAULT_ADDRESS, 2), READ, 200);
+		plan.add("other", OTHER_BUS, READ, 500);
+		assertSame(plan, budget.admit(plan));
+		BusLoadReport report = budget.evaluate(plan);
+		assertEquals(2, report.getLoads().size());
+		assertEquals(MAX_UTILIZATION, report.getLoad(BUS).getProjectedUtilization(), EPSILON);
+		assertFalse(report.isOverBudget());
+
+		// Just above
+		plan.add("extra", BUS, READ, 0.5);
+		assertTrue(budget.evaluate(plan).isOverBudget());
+		assertFalse(budget.evaluate(plan).getLoad(OTHER_BUS).isOverBudget());
+		try {
+			budget.admit(plan);
+			fail("Expected the plan to be rejected");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		// Until the bus is run faster
+		budget.setClock(BUS, 2 * CLOCK);
+		assertEquals(2 * CLOCK, budget.getClock(TCA9548ADevice.getVirtualBus(BUS, TCA9548ADevice.DEFAULT_ADDRESS, 2)));
+		assertSame(plan, budget.admit(plan));
+	}
+
+	@Test
+	public void testDegrade() {
+		BusBudget budget = new BusBudget(CLOCK, MAX_UTILIZATION);
+		SamplingPlan plan = new SamplingPlan();
+		plan.add("gyro", BUS, READ, 400, 100);
+		plan.add("accelerometer", BUS, READ, 400, 200);
+		plan.add("fixed", BUS, READ, 100);
+		plan.add("other", OTHER_BUS, READ, 400, 100);
+		SamplingPlan degraded = budget.degrade(plan);
+
+		// 500 reads/s fit, and the min rates take 400 of them. That leaves
+		// 100 for the 500 reads/s above the min rates, so 20% is kept.
+		assertEquals(160, degraded.getEntries().get(0).getRate(), EPSILON);
+		assertEquals(240, degraded.getEntries().get(1).getRate(), EPSILON);
+		assertEquals(100, degraded.getEntries().get(2).getRate(), EPSILON);
+		assertEquals(400, degraded.getEntries().get(3).getRate(), EPSILON);
+		assertEquals(100, degraded.getEntries().get(0).getMinRate(), EPSILON);
+		assertEquals(MAX_UTILIZATION, budget.evaluate(degraded).getLoad(BUS).getProjectedUtilization(), EPSILON);
+
+		// Already within budget
+		assertSame(degraded, budget.degrade(degraded));
+	}
+
+	@Test
+	public void testDegradeToMinRates() {
+		BusBudget budget = new BusBudget(CLOCK, MAX_UTILIZATION);
+		SamplingPlan plan = new SamplingPlan();
+		plan.add("gyro", BUS, READ, 1000, 300);
+		plan.add("accelerometer", BUS, READ, 1000, 200);
+		SamplingPlan degraded = budget.degrade(plan);
+		assertEquals(300, degraded.getEntries().get(0).getRate(), EPSILON);
+		assertEquals(200, degraded.getEntries().get(1).getRate(), EPSILON);
+
+		// One more read per second at the min rate can not fit
+		plan.add("servo", BUS, READ, 10, 1);
+		try {
+			budget.degrade(plan);
+			fail("Expected the plan to be impossible to degrade");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+}
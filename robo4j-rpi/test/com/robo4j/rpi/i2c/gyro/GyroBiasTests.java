@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.gyro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.ReadableDevice;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class GyroBiasTests {
+	/**
+	 * A noisy gyro with a constant bias, turning at a settable rate.
+	 */
+	private static class BiasedGyro implements ReadableDevice<Float3D> {
+		final Random random = new Random(4711);
+		final Float3D bias = new Float3D(1.5f, -0.7f, 0.3f);
+		float rate;
+
+		@Override
+		public Float3D read() throws IOException {
+			return new Float3D(bias.x + noise(), bias.y + noise(), bias.z + rate + noise());
+		}
+
+		private float noise() {
+			return (float) random.nextGaussian() * 0.1f;
+		}
+	}
+
+	@Test
+	public void testBiasLearnedWhenStationary() throws IOException {
+		BiasedGyro gyro = new BiasedGyro();
+		BiasCorrectedGyroDevice device = new BiasCorrectedGyroDevice(gyro);
+		for (int i = 0; i < 1000; i++) {
+			device.read();
+		}
+		assertTrue(device.isStationary());
+		Float3D bias = device.getBias(new Float3D());
+		assertEquals(1.5, bias.x, 0.05);
+		assertEquals(-0.7, bias.y, 0.05);
+		assertEquals(0.3, bias.z, 0.05);
+		assertEquals(0, device.read().z, 0.5);
+	}
+
+	@Test
+	public void testBiasKeptWhenTurning() throws IOException {
+		BiasedGyro gyro = new BiasedGyro();
+		BiasCorrectedGyroDevice device = new BiasCorrectedGyroDevice(gyro);
+		for (int i = 0; i < 1000; i++) {
+			device.read();
+		}
+		Float3D before = device.getBias(new Float3D());
+
+		// A steady turn is not mistaken for bias
+		gyro.rate = 30;
+		for (int i = 0; i < 1000; i++) {
+			device.read();
+		}
+		assertFalse(device.isStationary());
+		assertEquals(before.z, device.getBias(new Float3D()).z, 0);
+		assertEquals(30, device.read().z, 0.5);
+	}
+
+	@Test
+	public void testAccelerometerVetoes() throws IOException {
+		BiasCorrectedGyroDevice device = new BiasCorrectedGyroDevice(new BiasedGyro());
+		Random random = new Random(17);
+		for (int i = 0; i < 1000; i++) {
+			// Shaking, while the gyro happens to read steady
+			device.onAccelerometer((float) random.nextGaussian(), 0, 9.81f);
+			device.read();
+		}
+		assertFalse(device.isStationary());
+		assertEquals(0, device.getBias(new Float3D()).x, 0);
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.i2c.mux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+import com.pi4j.io.i2c.I2CFactory;
+import com.pi4j.io.i2c.I2CFactoryProvider;
+import com.robo4j.rpi.i2c.AbstractI2CDevice;
+import com.robo4j.rpi.i2c.mux.ChannelTransactionScheduler.Transaction;
+
+/**
+ * Unit tests.
+ * <p>
+ * Runs the multiplexer over a fake bus, installed as the PI4J bus provider,
+ * which records the channel select writes.
+ * 
+ * @author Marcus Hirt
+ */
+public class ChannelTransactionSchedulerTests {
+	private static final int BUS = 7;
+	private static final List<Integer> SELECT_WRITES = Collections.synchronizedList(new ArrayList<Integer>());
+
+	/**
+	 * Answers every read with zero, and records the single byte writes to
+	 * the multiplexers.
+	 */
+	private static class FakeI2C implements InvocationHandler {
+		private final int address;
+
+		FakeI2C(int address) {
+			this.address = address;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "getBus":
+				return create(I2CBus.class, -1);
+			case "getDevice":
+				return create(I2CDevice.class, (Integer) args[0]);
+			case "getBusNumber":
+				return BUS;
+			case "getAddress":
+				return address;
+			case "write":
+				if (args.length == 1 && address >= TCA9548ADevice.DEFAULT_ADDRESS) {
+					SELECT_WRITES.add((int) (Byte) args[0]);
+				}
+				return null;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Fake I2C 0x" + Integer.toHexString(address);
+			default:
+				return method.getReturnType() == int.class ? 0 : null;
+			}
+		}
+
+		static <T> T create(Class<T> type, int address) {
+			return type.cast(Proxy.newProxyInstance(FakeI2C.class.getClassLoader(), new Class<?>[] { type },
+					new FakeI2C(address)));
+		}
+	}
+
+	/**
+	 * A device doing single register reads.
+	 */
+	private static class ProbeDevice extends AbstractI2CDevice {
+		ProbeDevice(int bus, int address) throws IOException {
+			super(bus, address);
+		}
+
+		int probe() throws IOException {
+			return readByte(0);
+		}
+	}
+
+	static {
+		I2CFactory.setFactory(FakeI2C.create(I2CFactoryProvider.class, -1));
+	}
+
+	@Test
+	public void testBatching() throws IOException {
+		TCA9548ADevice multiplexer = TCA9548ADevice.getInstance(BUS, 0x71);
+		ChannelTransactionScheduler scheduler = new ChannelTransactionScheduler(multiplexer);
+		int[] channels = { 1, 4, 6, 1, 4, 6 };
+		ProbeDevice[] devices = new ProbeDevice[channels.length];
+		for (int i = 0; i < channels.length; i++) {
+			devices[i] = new ProbeDevice(TCA9548ADevice.getVirtualBus(BUS, 0x71, channels[i]), 0x20 + i);
+		}
+		List<Integer> visited = new ArrayList<>();
+		SELECT_WRITES.clear();
+
+		// Submitted interleaved, run grouped: one switch per channel
+		submitAll(scheduler, devices, visited);
+		assertEquals(3, scheduler.flush());
+		assertEquals(Arrays.asList(1, 1, 4, 4, 6, 6), visited);
+
+		// Later cycles start on the channel left selected, saving a switch
+		for (int cycle = 0; cycle < 20; cycle++) {
+			int selected = multiplexer.getSelectedChannel();
+			visited.clear();
+			submitAll(scheduler, devices, visited);
+			assertEquals(2, scheduler.flush());
+			assertEquals(selected, visited.get(0).intValue());
+			for (int i = 0; i < visited.size(); i += 2) {
+				assertEquals(visited.get(i), visited.get(i + 1));
+			}
+		}
+		assertEquals(Arrays.asList(4, 4, 6, 6, 1, 1), visited);
+		assertEquals(3 + 20 * 2, scheduler.getSwitchCount());
+		assertEquals(21, scheduler.getFlushCount());
+		assertEquals(21 * 6, scheduler.getTransactionCount());
+		// Every switch is exactly one write to the multiplexer
+		assertEquals(scheduler.getSwitchCount(), SELECT_WRITES.size());
+		assertEquals(multiplexer.getSwitchCount(), scheduler.getSwitchCount());
+	}
+
+	@Test
+	public void testUnmultiplexedFirst() throws IOException {
+		TCA9548ADevice multiplexer = TCA9548ADevice.getInstance(BUS, 0x72);
+		ChannelTransactionScheduler scheduler = new ChannelTransactionScheduler(multiplexer);
+		ProbeDevice behind = new ProbeDevice(TCA9548ADevice.getVirtualBus(BUS, 0x72, 3), 0x20);
+		ProbeDevice direct = new ProbeDevice(BUS, 0x21);
+		final List<String> order = new ArrayList<>();
+		scheduler.submit(behind, record(order, "behind"));
+		scheduler.submit(direct, record(order, "direct"));
+		assertEquals(1, scheduler.flush());
+		assertEquals(Arrays.asList("direct", "behind"), order);
+
+		order.clear();
+		scheduler.submit(direct, record(order, "direct"));
+		assertEquals(0, scheduler.flush());
+		assertEquals(Arrays.asList("direct"), order);
+	}
+
+	@Test
+	public void testFailure() throws IOException {
+		TCA9548ADevice multiplexer = TCA9548ADevice.getInstance(BUS, 0x73);
+		ChannelTransactionScheduler scheduler = new ChannelTransactionScheduler(multiplexer);
+		ProbeDevice first = new ProbeDevice(TCA9548ADevice.getVirtualBus(BUS, 0x73, 0), 0x20);
+		ProbeDevice second = new ProbeDevice(TCA9548ADevice.getVirtualBus(BUS, 0x73, 2), 0x21);
+		final IOException firstFailure = new IOException("First");
+		final IOException secondFailure = new IOException("Second");
+		final List<String> order = new ArrayList<>();
+		scheduler.submit(second, failing(secondFailure));
+		scheduler.submit(first, failing(firstFailure));
+		scheduler.submit(second, record(order, "second"));
+		try {
+			scheduler.flush();
+			fail("Expected the flush to fail");
+		} catch (IOException e) {
+			assertSame(firstFailure, e);
+			assertEquals(1, e.getSuppressed().length);
+			assertSame(secondFailure, e.getSuppressed()[0]);
+		}
+		// The failures do not keep the rest from running
+		assertEquals(Arrays.asList("second"), order);
+		assertEquals(3, scheduler.getTransactionCount());
+	}
+
+	private static void submitAll(ChannelTransactionScheduler scheduler, ProbeDevice[] devices,
+			final List<Integer> visited) {
+		for (final ProbeDevice device : devices) {
+			scheduler.submit(device, new Transaction() {
+				@Override
+				public void run() throws IOException {
+					device.probe();
+					visited.add(device.getMultiplexerChannel().getMultiplexer().getSelectedChannel());
+				}
+			});
+		}
+	}
+
+	private static Transaction record(final List<String> order, final String name) {
+		return new Transaction() {
+			@Override
+			public void run() throws IOException {
+				order.add(name);
+			}
+		};
+	}
+
+	private static Transaction failing(final IOException failure) {
+		return new Transaction() {
+			@Override
+			public void run() throws IOException {
+				throw failure;
+			}
+		};
+	}
+}
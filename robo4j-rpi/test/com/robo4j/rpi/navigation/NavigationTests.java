@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.bmp.Barometer;
+import com.robo4j.rpi.serial.gps.Location;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class NavigationTests {
+	@Test
+	public void testLocalFrame() {
+		LocalFrame frame = new LocalFrame(59.3293, 18.0686, 20);
+		Float3D local = new Float3D(120, -45, 3);
+		// Location keeps single precision degrees, about 0.1 m here
+		Location location = frame.toLocation(local);
+		Float3D back = frame.toLocal(location.getLatitude(), location.getLongitude(), frame.toAltitude(local),
+				new Float3D());
+		assertEquals(120, back.x, 0.2);
+		assertEquals(-45, back.y, 0.2);
+		assertEquals(3, back.z, 1e-3);
+
+		// Across the date line
+		frame = new LocalFrame(0, 179.9999, 0);
+		frame.toLocal(0, -179.9999, 0, back);
+		assertEquals(2 * 0.0001 * Math.PI / 180 * LocalFrame.EARTH_RADIUS, back.x, 1e-3);
+	}
+
+	@Test
+	public void testDriveEast() {
+		// Level robot driving east at 2 m/s, with a noisy and biased gyro,
+		// 100 Hz inertial samples and 5 Hz GPS with 1 m noise
+		Random random = new Random(4711);
+		InertialNavigationFilter filter = new InertialNavigationFilter();
+		LocalFrame truth = new LocalFrame(59.3293, 18.0686, 20);
+		Float3D position = new Float3D();
+		Float3D estimate = new Float3D();
+		float speed = 2;
+		long time = 0;
+		float lastEast = Float.NaN;
+		for (int i = 0; i < 3000; i++) {
+			time += 10_000_000L;
+			position.x = speed * i / 100f;
+			filter.onAccelerometer(time, (float) random.nextGaussian() * 0.3f, (float) random.nextGaussian() * 0.3f,
+					InertialNavigationFilter.GRAVITY + (float) random.nextGaussian() * 0.3f);
+			filter.onGyro(time, (float) random.nextGaussian() * 0.5f, (float) random.nextGaussian() * 0.5f,
+					0.5f + (float) random.nextGaussian() * 0.5f);
+			if (i % 20 == 0) {
+				Location location = truth.toLocation(new Float3D(position.x + (float) random.nextGaussian(),
+						position.y + (float) random.nextGaussian(), 0));
+				filter.onVelocity(speed, 90);
+				filter.onPosition(location.getLatitude(), location.getLongitude(),
+						20 + random.nextGaussian() * 1.5, 1);
+			} else if (i % 20 == 10 && i > 100) {
+				// Dead reckoning between the fixes
+				filter.getPosition(estimate);
+				assertTrue(estimate.x > lastEast);
+			}
+			lastEast = filter.getPosition(estimate).x;
+		}
+		assertTrue(filter.isHeadingKnown());
+		assertEquals(3000 - 1, filter.getUpdates());
+		filter.getPosition(estimate);
+		Float3D origin = truth.toLocal(filter.getLocalFrame().getLatitude(), filter.getLocalFrame().getLongitude(),
+				20, new Float3D());
+		assertEquals(position.x - origin.x, estimate.x, 1.5);
+		assertEquals(position.y - origin.y, estimate.y, 1.5);
+		assertEquals(speed, filter.getVelocity(estimate).x, 0.3);
+		assertEquals(90, filter.getHeading(), 5);
+		assertEquals(0, filter.getRoll(), 0.05);
+		assertEquals(0.5, filter.getGyroBias(estimate).z, 0.2);
+	}
+
+	@Test
+	public void testVelocityWithoutTrack() {
+		InertialNavigationFilter filter = new InertialNavigationFilter();
+		filter.onAccelerometer(0, 0, 0, InertialNavigationFilter.GRAVITY);
+		filter.onGyro(0, 0, 0, 0);
+		filter.onVelocity(2, 90);
+		Float3D velocity = new Float3D();
+		assertEquals(2, filter.getVelocity(velocity).x, 0.01);
+		// Moving, but without a track, is no information on the velocity
+		filter.onVelocity(1.4f, Float.NaN);
+		assertEquals(2, filter.getVelocity(velocity).x, 0.01);
+		// Standing still is
+		filter.onVelocity(0, Float.NaN);
+		assertTrue(filter.getVelocity(velocity).x < 1.5);
+	}
+
+	@Test
+	public void testAltitude() {
+		// Climbing at 0.5 m/s from 100 m for a minute on a low pressure day,
+		// with 25 Hz barometer and 1 Hz GPS altitudes
+		Random random = new Random(4711);
+		float seaLevelPressure = 100200;
+		AltitudeFilter filter = new AltitudeFilter();
+		long time = 0;
+		float altitude = 100;
+		for (int i = 0; i < 25 * 300; i++) {
+			time += 40_000_000L;
+			float speed = i < 25 * 60 ? 0.5f : 0;
+			altitude += speed / 25;
+			float barometricAltitude = altitude + (float) random.nextGaussian() * 0.3f;
+			filter.onPressure(time, (float) (seaLevelPressure * Math.pow(1 - barometricAltitude / 44330.0, 5.225)));
+			if (i % 25 == 0) {
+				filter.onGpsAltitude(altitude + random.nextGaussian() * 3, 1);
+			}
+			if (i == 25 * 50) {
+				assertEquals(0.5, filter.getVerticalSpeed(), 0.3);
+			}
+		}
+		assertEquals(altitude, filter.getAltitude(), 1.5);
+		assertEquals(0, filter.getVerticalSpeed(), 0.3);
+		assertEquals(seaLevelPressure, filter.getSeaLevelPressure(), 20);
+		assertEquals(0, filter.getRejected());
+
+		float pressure = 95000;
+		assertEquals(500, Barometer.toAltitude(pressure, Barometer.toSeaLevelPressure(pressure, 500)), 0.01);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.geometry.Float3D;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class RingBufferTests {
+
+	@Test
+	public void testReadLatest() {
+		Float3DRingBuffer buffer = new Float3DRingBuffer(4);
+		Float3D dst = new Float3D();
+		assertEquals(Float3DRingBuffer.NO_SAMPLE, buffer.readLatest(dst));
+		buffer.publish(10, 1, 2, 3);
+		buffer.publish(20, -4, 5.5f, Float.NaN);
+		assertEquals(20, buffer.readLatest(dst));
+		assertEquals(-4, dst.x, 0);
+		assertEquals(5.5f, dst.y, 0);
+		assertTrue(Float.isNaN(dst.z));
+	}
+
+	@Test
+	public void testDrainWithOverwrite() {
+		Float3DRingBuffer buffer = new Float3DRingBuffer(3);
+		assertEquals(4, buffer.getCapacity());
+		Float3DRingBuffer.Reader reader = buffer.newReader();
+		for (int i = 0; i < 6; i++) {
+			buffer.publish(i, i, 2 * i, 3 * i);
+		}
+		long[] timestamps = new long[8];
+		float[] xyz = new float[24];
+		assertEquals(4, reader.drain(timestamps, xyz, 0, 8));
+		assertEquals(2, reader.getLost());
+		assertEquals(2, timestamps[0]);
+		assertEquals(5, timestamps[3]);
+		assertEquals(15, xyz[11], 0);
+		assertEquals(0, reader.drain(timestamps, xyz, 0, 8));
+	}
+
+	@Test
+	public void testConcurrentConsumers() throws InterruptedException {
+		final Float3DRingBuffer buffer = new Float3DRingBuffer(64);
+		final int count = 200000;
+		final String[] failures = new String[2];
+		final Throwable[] errors = new Throwable[2];
+		Thread[] consumers = new Thread[2];
+		for (int i = 0; i < consumers.length; i++) {
+			final int id = i;
+			final Float3DRingBuffer.Reader reader = buffer.newReader();
+			consumers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						consume(reader, count, failures, id);
+					} catch (Throwable t) {
+						errors[id] = t;
+					}
+				}
+			});
+			consumers[i].start();
+		}
+		for (int i = 0; i < count; i++) {
+			buffer.publish(i, i, -i, i * 0.5f);
+		}
+		for (int i = 0; i < consumers.length; i++) {
+			consumers[i].join(10000);
+			assertFalse("Consumer " + i + " did not finish", consumers[i].isAlive());
+			if (errors[i] != null) {
+				throw new AssertionError("Consumer " + i + " failed", errors[i]);
+			}
+		}
+		assertEquals(null, failures[0]);
+		assertEquals(null, failures[1]);
+	}
+
+	private static void consume(Float3DRingBuffer.Reader reader, final int count, final String[] failures,
+			final int id) {
+		final long[] last = { -1 };
+		Float3DRingBuffer.SampleHandler handler = new Float3DRingBuffer.SampleHandler() {
+			@Override
+			public void onSample(long sequence, long timestamp, float x, float y, float z) {
+				if (timestamp <= last[0] || x != timestamp || y != -timestamp || z != timestamp * 0.5f) {
+					failures[id] = "Torn or out of order sample " + timestamp;
+				}
+				last[0] = timestamp;
+			}
+		};
+		while (last[0] < count - 1 && failures[id] == null) {
+			reader.drain(handler, 16);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.i2c.TimestampedReadableDevice;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class SampleAgeTests {
+	private static final float EPSILON = 0.0001f;
+
+	@Test
+	public void testAge() {
+		assertEquals(250, SampleAge.getAgeNanos(1000, 1250));
+		assertEquals(Long.MAX_VALUE, SampleAge.getAgeNanos(TimestampedReadableDevice.NO_SAMPLE_TIME, 1250));
+		assertEquals(Long.MAX_VALUE, SampleAge.getAgeNanos(TimestampedReadableDevice.NO_SAMPLE_TIME));
+		assertEquals(0.5f, SampleAge.getAgeSeconds(1000, 1000 + TimeUnit.MILLISECONDS.toNanos(500)), EPSILON);
+
+		// System.nanoTime() may wrap, the difference is still right
+		assertEquals(21, SampleAge.getAgeNanos(Long.MAX_VALUE - 10, Long.MIN_VALUE + 10));
+		assertEquals(-5, SampleAge.getAgeNanos(-995, -1000));
+	}
+
+	@Test
+	public void testStale() {
+		long now = System.nanoTime();
+		long maxAge = TimeUnit.SECONDS.toNanos(10);
+		assertFalse(SampleAge.isStale(now, maxAge));
+		assertTrue(SampleAge.isStale(now - 2 * maxAge, maxAge));
+		assertTrue(SampleAge.isStale(TimestampedReadableDevice.NO_SAMPLE_TIME, maxAge));
+	}
+
+	@Test
+	public void testExtrapolate() {
+		long second = TimeUnit.SECONDS.toNanos(1);
+		Float3D value = new Float3D(1, 2, 3);
+		Float3D rate = new Float3D(10, -4, 0);
+		Float3D result = SampleAge.extrapolate(value, second, rate, second + second / 4, new Float3D());
+		assertEquals(3.5f, result.x, EPSILON);
+		assertEquals(1, result.y, EPSILON);
+		assertEquals(3, result.z, EPSILON);
+
+		// Backwards, and in place
+		assertSame(value, SampleAge.extrapolate(value, second, rate, second / 2, value));
+		assertEquals(-4, value.x, EPSILON);
+		assertEquals(4, value.y, EPSILON);
+	}
+
+	@Test
+	public void testInterpolate() {
+		Float3D a = new Float3D(0, 10, -2);
+		Float3D b = new Float3D(4, 20, 2);
+		Float3D result = SampleAge.interpolate(a, 1000, b, 2000, 1250, new Float3D());
+		assertEquals(1, result.x, EPSILON);
+		assertEquals(12.5f, result.y, EPSILON);
+		assertEquals(-1, result.z, EPSILON);
+
+		// At the ends, and past them
+		SampleAge.interpolate(a, 1000, b, 2000, 1000, result);
+		assertEquals(0, result.x, EPSILON);
+		SampleAge.interpolate(a, 1000, b, 2000, 3000, result);
+		assertEquals(8, result.x, EPSILON);
+
+		// Samples taken at the same time give the later one
+		SampleAge.interpolate(a, 1000, b, 1000, 1500, result);
+		assertEquals(4, result.x, EPSILON);
+		assertEquals(20, result.y, EPSILON);
+	}
+}
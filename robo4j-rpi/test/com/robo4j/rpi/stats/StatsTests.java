@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016, Marcus Hirt
+ * 
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.rpi.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.robo4j.rpi.geometry.Float3D;
+import com.robo4j.rpi.geometry.Matrix3;
+
+/**
+ * Unit tests.
+ * 
+ * @author Marcus Hirt
+ */
+public class StatsTests {
+	@Test
+	public void testRunningStats() {
+		// A large offset would ruin the naive sum of squares
+		double[] values = new double[1000];
+		Random random = new Random(4711);
+		RunningStats stats = new RunningStats();
+		RunningStats first = new RunningStats();
+		RunningStats second = new RunningStats();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 1e6 + random.nextGaussian();
+			stats.add(values[i]);
+			(i < 300 ? first : second).add(values[i]);
+		}
+		double mean = 0;
+		for (double value : values) {
+			mean += value / values.length;
+		}
+		double variance = 0;
+		for (double value : values) {
+			variance += (value - mean) * (value - mean) / (values.length - 1);
+		}
+		assertEquals(mean, stats.getMean(), 1e-6);
+		assertEquals(variance, stats.getVariance(), 1e-6);
+
+		first.merge(second);
+		assertEquals(1000, first.getCount());
+		assertEquals(mean, first.getMean(), 1e-6);
+		assertEquals(variance, first.getVariance(), 1e-6);
+		assertEquals(stats.getMax(), first.getMax(), 0);
+	}
+
+	@Test
+	public void testNegativeMax() {
+		Float3DStats stats = new Float3DStats();
+		stats.add(-3, -2, -1);
+		stats.add(-1, -5, -7);
+		assertEquals(-1, stats.getMax(new Float3D()).x, 0);
+		assertEquals(-2, stats.getMax(new Float3D()).y, 0);
+		assertEquals(-7, stats.getMin(new Float3D()).z, 0);
+	}
+
+	@Test
+	public void testTooFewValues() {
+		Float3DStats stats = new Float3DStats();
+		assertTrue(Float.isNaN(stats.getMean(new Float3D()).x));
+		stats.add(1, 2, 3);
+		assertEquals(2, stats.getMean(new Float3D()).y, 0);
+		assertTrue(Float.isNaN(stats.getVariance(new Float3D()).x));
+		assertTrue(Float.isNaN(stats.getStandardDeviation(new Float3D()).y));
+		assertTrue(Float.isNaN(stats.getCovariance(new Matrix3()).m01));
+	}
+
+	@Test
+	public void testCovariance() {
+		Random random = new Random(4711);
+		Float3DStats stats = new Float3DStats();
+		for (int i = 0; i < 100000; i++) {
+			float a = (float) random.nextGaussian();
+			float b = (float) random.nextGaussian();
+			// y follows x, z is independent
+			stats.add(a, 2 * a + 0.1f * b, b);
+		}
+		Matrix3 covariance = stats.getCovariance(new Matrix3());
+		assertEquals(1, covariance.m00, 0.02);
+		assertEquals(2, covariance.m01, 0.04);
+		assertEquals(covariance.m01, covariance.m10, 0);
+		assertEquals(4.01, covariance.m11, 0.08);
+		assertEquals(0, covariance.m02, 0.02);
+	}
+
+	@Test
+	public void testP2Quantile() {
+		Random random = new Random(4711);
+		double[] values = new double[10001];
+		P2Quantile median = new P2Quantile(0.5);
+		P2Quantile p99 = new P2Quantile(0.99);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextDouble() * 100;
+			median.add(values[i]);
+			p99.add(values[i]);
+		}
+		Arrays.sort(values);
+		assertEquals(values[5000], median.getQuantile(), 1);
+		assertEquals(values[9900], p99.getQuantile(), 0.5);
+
+		P2Quantile small = new P2Quantile(0.5);
+		small.add(3);
+		small.add(1);
+		small.add(2);
+		assertEquals(2, small.getQuantile(), 0);
+
+		// Still exact at five values, whatever the quantile
+		P2Quantile p90 = new P2Quantile(0.9);
+		for (int value : new int[] { 4, 2, 5, 1, 3 }) {
+			p90.add(value);
+		}
+		assertEquals(5, p90.getQuantile(), 0);
+	}
+
+	@Test
+	public void testDecayingStats() {
+		DecayingStats stats = DecayingStats.forHalfLife(10);
+		for (int i = 0; i < 100; i++) {
+			stats.add(5);
+		}
+		assertEquals(5, stats.getMean(), 1e-9);
+		assertEquals(0, stats.getVariance(), 1e-9);
+		// Ten values later, halfway to the new level
+		for (int i = 0; i < 10; i++) {
+			stats.add(15);
+		}
+		assertEquals(10, stats.getMean(), 1e-9);
+	}
+
+	@Test
+	public void testStripedStats() throws InterruptedException {
+		final StripedFloat3DStats stats = new StripedFloat3DStats(4);
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			final float value = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						stats.add(value, -value, 1);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Float3DStats snapshot = stats.snapshot(new Float3DStats());
+		assertEquals(80000, snapshot.getCount());
+		assertEquals(3.5, snapshot.getMean(new Float3D()).x, 1e-5);
+		assertEquals(-7, snapshot.getMin(new Float3D()).y, 0);
+		assertEquals(0, snapshot.getVariance(new Float3D()).z, 0);
+	}
+}